@@ -0,0 +1,39 @@
+package edu.unifor.clysman.chat.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Ponto de entrada do jar de benchmarks. Aceita as mesmas opções do JMH, mas
+ * por padrão liga o profiler de GC (taxa de alocação) e grava o resultado em
+ * JSON em {@code results/}, para comparar execuções entre commits.
+ */
+public final class BenchMain {
+
+    private BenchMain() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers() || cmd.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder opts = new OptionsBuilder().parent(cmd);
+        if (!cmd.getResultFormat().hasValue()) {
+            File dir = new File("results");
+            dir.mkdirs();
+            String tag = System.getProperty("bench.tag", new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()));
+            opts.resultFormat(ResultFormatType.JSON).result(new File(dir, "jmh-" + tag + ".json").getPath());
+        }
+        if (cmd.getProfilers().isEmpty()) opts.addProfiler(GCProfiler.class);
+        new Runner(opts.build()).run();
+    }
+}
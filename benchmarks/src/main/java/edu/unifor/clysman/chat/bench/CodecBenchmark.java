@@ -0,0 +1,74 @@
+package edu.unifor.clysman.chat.bench;
+
+import edu.unifor.clysman.chat.codec.Codecs;
+import edu.unifor.clysman.chat.codec.FrameHeader;
+import edu.unifor.clysman.chat.codec.WireCodec;
+import edu.unifor.clysman.chat.model.Message;
+import edu.unifor.clysman.chat.util.Json;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codificação e decodificação de um CHAT em cada codec do fio, e o caminho
+ * Gson puro ({@code Json.get()}) que o codec JSON usa por baixo.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"json", "bin1"})
+    public String codec;
+
+    /** Texto curto (conversa), médio e longo (colagem de log). */
+    @Param({"64", "512", "4096"})
+    public int textBytes;
+
+    private WireCodec wire;
+    private Message message;
+    private ByteBuffer frame;
+    private String json;
+
+    @Setup
+    public void setup() {
+        wire = Codecs.byName(codec);
+        if (wire == null) throw new IllegalStateException("codec desconhecido: " + codec);
+        message = Payloads.chat(UUID.randomUUID().toString(), 42, textBytes, new Random(1));
+        frame = wire.encode(message);
+        json = Json.get().toJson(message);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        return wire.encode(message);
+    }
+
+    @Benchmark
+    public Message decode() throws IOException {
+        return wire.decode(frame.duplicate());
+    }
+
+    /** Leitura parcial usada para descartar duplicatas antes de decodificar. */
+    @Benchmark
+    public FrameHeader peek() throws IOException {
+        return wire.peek(frame.duplicate());
+    }
+
+    @Benchmark
+    public String gsonToJson() {
+        return Json.get().toJson(message);
+    }
+
+    @Benchmark
+    public Message gsonFromJson() {
+        return Json.get().fromJson(json, Message.class);
+    }
+}
@@ -0,0 +1,78 @@
+package edu.unifor.clysman.chat.bench;
+
+import edu.unifor.clysman.chat.util.LruSet;
+import edu.unifor.clysman.chat.util.SequenceDedup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Deduplicação de CHAT: o cache LRU de UUIDs (peers sem {@code seq}) contra a
+ * janela por origem. O estado é compartilhado para que as variantes com
+ * várias threads meçam a contenção de quem recebe de vários vizinhos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DedupBenchmark {
+
+    /** Origens ativas: sala pequena e malha grande. */
+    @Param({"8", "256"})
+    public int origins;
+
+    private static final int IDS = 1 << 14;
+
+    private LruSet<String> lru;
+    private SequenceDedup dedup;
+    private String[] ids;
+    private String[] originIds;
+    private AtomicLongArray seqs;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int i;
+    }
+
+    @Setup
+    public void setup() {
+        lru = new LruSet<>(5000);
+        dedup = new SequenceDedup(10_000);
+        ids = new String[IDS];
+        for (int i = 0; i < IDS; i++) ids[i] = UUID.randomUUID().toString();
+        originIds = Payloads.origins(origins);
+        seqs = new AtomicLongArray(origins);
+    }
+
+    /** Mistura de ids novos e repetidos; o conjunto é maior que o cache, então há despejos. */
+    @Benchmark
+    @Threads(1)
+    public boolean lruAdd(Cursor c) {
+        return lru.add(ids[c.i++ & (IDS - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean lruAdd4(Cursor c) {
+        return lru.add(ids[c.i++ & (IDS - 1)]);
+    }
+
+    /** Cada origem com sua sequência contígua, como num broadcast normal. */
+    @Benchmark
+    @Threads(1)
+    public boolean sequenceAdd(Cursor c) {
+        int o = c.i++ % originIds.length;
+        return dedup.add(originIds[o], seqs.incrementAndGet(o));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean sequenceAdd4(Cursor c) {
+        int o = c.i++ % originIds.length;
+        return dedup.add(originIds[o], seqs.incrementAndGet(o));
+    }
+}
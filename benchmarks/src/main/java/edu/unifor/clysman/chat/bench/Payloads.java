@@ -0,0 +1,40 @@
+package edu.unifor.clysman.chat.bench;
+
+import edu.unifor.clysman.chat.model.Message;
+
+import java.util.Random;
+import java.util.UUID;
+
+/** Mensagens de chat com texto de tamanho controlado, parecidas com as reais. */
+final class Payloads {
+
+    private static final String[] WORDS = {
+            "oi", "tudo", "bem", "mensagem", "reunião", "amanhã", "às", "dez", "horas",
+            "confirmado", "obrigado", "pessoal", "arquivo", "enviei", "versão", "nova", "ação", "ok"
+    };
+
+    private Payloads() {}
+
+    /** Texto com aproximadamente {@code bytes} bytes em UTF-8 (inclui acentos). */
+    static String text(int bytes, Random r) {
+        StringBuilder sb = new StringBuilder(bytes + 16);
+        while (sb.length() < bytes) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(WORDS[r.nextInt(WORDS.length)]);
+        }
+        sb.setLength(bytes);
+        return sb.toString();
+    }
+
+    static Message chat(String fromId, long seq, int textBytes, Random r) {
+        Message m = Message.chat(fromId, "usuario-" + fromId.substring(0, 4), text(textBytes, r));
+        m.setSeq(seq);
+        return m;
+    }
+
+    static String[] origins(int n) {
+        String[] ids = new String[n];
+        for (int i = 0; i < n; i++) ids[i] = UUID.randomUUID().toString();
+        return ids;
+    }
+}
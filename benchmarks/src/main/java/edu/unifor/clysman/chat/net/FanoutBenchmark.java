@@ -0,0 +1,85 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.codec.Codecs;
+import edu.unifor.clysman.chat.codec.WireCodec;
+import edu.unifor.clysman.chat.model.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caminho de {@code PeerNode.broadcast}/{@code flood}: um CHAT entregue às
+ * filas de saída de N vizinhos. Mede o frame compartilhado (serializa uma vez
+ * por codec) contra serializar para cada vizinho, e o repasse de um frame
+ * recebido sem reserializar. Sem sockets: as filas são drenadas a cada
+ * chamada, como faria o escritor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FanoutBenchmark {
+
+    @Param({"4", "16", "64"})
+    public int neighbors;
+
+    @Param({"json", "bin1"})
+    public String codec;
+
+    @Param({"256"})
+    public int textBytes;
+
+    private WireCodec wire;
+    private OutboundQueue[] queues;
+    private Message message;
+    private ByteBuffer received;
+    private final ByteBuffer[] batch = new ByteBuffer[1];
+
+    @Setup
+    public void setup() {
+        wire = Codecs.byName(codec);
+        long max = new NodeConfig().getOutboundQueueMaxBytes();
+        queues = new OutboundQueue[neighbors];
+        for (int i = 0; i < neighbors; i++) queues[i] = new OutboundQueue(max, SlowConsumerPolicy.DROP_OLDEST_CHAT);
+        char[] c = new char[textBytes];
+        Random r = new Random(1);
+        for (int i = 0; i < c.length; i++) c[i] = (char) ('a' + r.nextInt(26));
+        message = Message.chat(UUID.randomUUID().toString(), "bench", new String(c));
+        message.setSeq(1);
+        received = wire.encode(message);
+    }
+
+    /** Como o nó faz hoje: um {@link OutboundFrame} para todas as filas. */
+    @Benchmark
+    public int sharedFrame() {
+        OutboundFrame f = new OutboundFrame(message);
+        for (OutboundQueue q : queues) q.offer(f.frameFor(wire), false);
+        return drainAll();
+    }
+
+    /** Linha de base: serializa de novo para cada vizinho. */
+    @Benchmark
+    public int encodePerNeighbor() {
+        for (OutboundQueue q : queues) q.offer(wire.encode(message), false);
+        return drainAll();
+    }
+
+    /** Repasse de um CHAT recebido: copia os bytes uma vez e reaproveita. */
+    @Benchmark
+    public int relay() {
+        OutboundFrame f = OutboundFrame.relay(message, wire, received);
+        for (OutboundQueue q : queues) q.offer(f.frameFor(wire), false);
+        return drainAll();
+    }
+
+    private int drainAll() {
+        int n = 0;
+        for (OutboundQueue q : queues) n += q.drainTo(batch, 0, 1, Long.MAX_VALUE);
+        return n;
+    }
+}
@@ -0,0 +1,100 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.codec.Codecs;
+import edu.unifor.clysman.chat.model.Message;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fila de saída de uma conexão ({@link OutboundQueue}): produtores são as
+ * threads que fazem broadcast/repasse, o consumidor é o escritor, que drena
+ * em lotes como o {@code NioConnectionHandler}. Fica no pacote {@code net}
+ * porque a fila é interna ao pacote.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutboundQueueBenchmark {
+
+    @Param({"256", "4096"})
+    public int textBytes;
+
+    @Param({"DROP_OLDEST_CHAT", "BACKPRESSURE"})
+    public SlowConsumerPolicy policy;
+
+    private static final int BATCH = 64;
+
+    private OutboundQueue queue;
+    private ByteBuffer frame;
+
+    @State(Scope.Thread)
+    public static class Drain {
+        final ByteBuffer[] batch = new ByteBuffer[BATCH];
+    }
+
+    @Setup
+    public void setup() {
+        queue = new OutboundQueue(new NodeConfig().getOutboundQueueMaxBytes(), policy);
+        Message m = Message.chat(UUID.randomUUID().toString(), "bench", text(textBytes));
+        m.setSeq(1);
+        frame = new OutboundFrame(m).frameFor(Codecs.BINARY);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        queue.clear();
+    }
+
+    private static String text(int n) {
+        char[] c = new char[n];
+        Random r = new Random(1);
+        for (int i = 0; i < n; i++) c[i] = (char) ('a' + r.nextInt(26));
+        return new String(c);
+    }
+
+    /** Um produtor e o escritor. */
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public Object offer1() {
+        return queue.offer(frame.duplicate(), false);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public void drain1(Drain d, Blackhole bh) {
+        drain(d, bh);
+    }
+
+    /** Três vizinhos repassando para a mesma conexão. */
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(3)
+    public Object offer3() {
+        return queue.offer(frame.duplicate(), false);
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(1)
+    public void drain3(Drain d, Blackhole bh) {
+        drain(d, bh);
+    }
+
+    private void drain(Drain d, Blackhole bh) {
+        int n = queue.drainTo(d.batch, 0, BATCH, 256 * 1024);
+        for (int i = 0; i < n; i++) {
+            bh.consume(d.batch[i]);
+            d.batch[i] = null;
+        }
+    }
+}
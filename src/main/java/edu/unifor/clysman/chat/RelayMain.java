@@ -0,0 +1,231 @@
+package edu.unifor.clysman.chat;
+
+import edu.unifor.clysman.chat.event.OverflowPolicy;
+import edu.unifor.clysman.chat.model.Message;
+import edu.unifor.clysman.chat.net.*;
+import edu.unifor.clysman.chat.service.MessageHistory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nó sem interface gráfica, para servidores: sobe o {@link PeerNode} (e a
+ * descoberta multicast) a partir de um arquivo de propriedades e/ou de
+ * opções {@code --chave valor}; as opções valem sobre o arquivo. Não carrega
+ * nenhuma classe do AWT/Swing.
+ *
+ * Papéis: {@code relay} (padrão) só repassa, sem histórico nem estado de
+ * tela, e registra apenas status e conexões; {@code node} também grava o
+ * histórico, mostra as mensagens na saída e envia cada linha da entrada.
+ *
+ * Uso: java -cp p2pchat.jar edu.unifor.clysman.chat.RelayMain
+ *      [--config relay.properties] [--name relay] [--port 5000] [--role relay|node]
+ *      [--connect host:porta,...] [--transport NIO|BLOCKING] [--threads PLATFORM|VIRTUAL]
+ *      [--mode FLOOD|PLUMTREE] [--codecs bin1,json] [--discovery true] [--peer-share-connect true]
+ *      [--min-degree 4] [--max-degree 32] [--heartbeat 2000] [--peer-dead-timeout 6000] [--neighbor-swap 60000]
+ *      [--anti-entropy true] [--slow-policy DROP_OLDEST_CHAT] [--metrics-port -1] [--jmx false]
+ *      [--trace-rate 0] [--exit-when-ready false] [--cds-training false]
+ */
+public final class RelayMain {
+
+    private static final Set<String> KEYS = new LinkedHashSet<>(Arrays.asList(
+            "config", "name", "port", "role", "connect", "transport", "threads", "mode", "codecs",
+            "discovery", "peer-share-connect", "min-degree", "max-degree",
+            "heartbeat", "peer-dead-timeout", "neighbor-swap", "anti-entropy", "slow-policy", "metrics-port", "jmx",
+            "trace-rate", "exit-when-ready", "cds-training"));
+
+    private static final long TRAINING_TIMEOUT_MILLIS = 10_000;
+
+    private RelayMain() {}
+
+    public static void main(String[] args) throws Exception {
+        long mainNanos = System.nanoTime();
+        System.setProperty("java.awt.headless", "true");
+        Properties p;
+        try {
+            p = options(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        boolean relay = !"node".equalsIgnoreCase(p.getProperty("role", "relay"));
+        String name = p.getProperty("name", relay ? "relay" : "node");
+        int port = Integer.parseInt(p.getProperty("port", "5000"));
+        NodeConfig cfg = config(p, relay);
+        PeerNode node = new PeerNode(name, port, cfg);
+        node.subscribe("log", (e, seq, end) -> log(e, relay));
+
+        node.start();
+        long readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        long mainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mainNanos);
+        node.getMetrics().gauge("p2pchat_startup_millis", "Do início da JVM até o nó escutar", () -> readyMillis);
+        System.out.printf("Pronto (%s) em %d ms desde o início da JVM (%d ms em main), escutando em %d%n",
+                relay ? "relay" : "node", readyMillis, mainMillis, node.getListenPort());
+
+        MessageHistory history = null;
+        if (!relay) {
+            history = new MessageHistory();
+            history.start(name, node.getListenPort());
+            node.setSyncArchive(history::chatsBetween);
+            history.registerMetrics(node.getMetrics());
+            MessageHistory h = history;
+            node.subscribe("history", (e, seq, end) -> {
+                if (e.getType() == NodeEvent.Type.MESSAGE) h.append(e.getMessage(), e.getTime());
+                else if (e.getType() == NodeEvent.Type.STATUS) h.append(e.getText(), e.getTime());
+            });
+        }
+        for (String target : p.getProperty("connect", "").split(",")) {
+            target = target.trim();
+            if (target.isEmpty()) continue;
+            int colon = target.lastIndexOf(':');
+            if (colon <= 0) throw new IllegalArgumentException("--connect espera host:porta: " + target);
+            node.connectAsync(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+        }
+
+        boolean training = Boolean.parseBoolean(p.getProperty("cds-training", "false"));
+        if (training) train(node);
+        if (training || Boolean.parseBoolean(p.getProperty("exit-when-ready", "false"))) {
+            stop(node, history);
+            return;
+        }
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        MessageHistory h = history;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stop(node, h);
+            stopped.countDown();
+        }, "relay-shutdown"));
+        if (!relay) readInput(node);
+        stopped.await();
+    }
+
+    /** Arquivo de {@code --config} (se houver) com as opções da linha de comando por cima. */
+    static Properties options(String[] args) throws IOException {
+        Properties cli = new Properties();
+        for (int i = 0; i < args.length; i += 2) {
+            String a = args[i];
+            if (!a.startsWith("--") || i + 1 >= args.length) throw new IllegalArgumentException("argumento inválido: " + a);
+            cli.setProperty(a.substring(2), args[i + 1]);
+        }
+        Properties p = new Properties();
+        String file = cli.getProperty("config");
+        if (file != null) {
+            try (Reader r = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                p.load(r);
+            }
+        }
+        p.putAll(cli);
+        for (String key : p.stringPropertyNames()) {
+            if (!KEYS.contains(key)) throw new IllegalArgumentException("opção desconhecida: " + key + " (válidas: " + KEYS + ")");
+        }
+        return p;
+    }
+
+    static NodeConfig config(Properties p, boolean relay) {
+        NodeConfig cfg = new NodeConfig()
+                .setTransportMode(TransportMode.valueOf(p.getProperty("transport", "NIO").toUpperCase()))
+                .setThreadMode(ThreadMode.valueOf(p.getProperty("threads", "PLATFORM").toUpperCase()))
+                .setBroadcastMode(BroadcastMode.valueOf(p.getProperty("mode", "FLOOD").toUpperCase()))
+                .setDiscovery(Boolean.parseBoolean(p.getProperty("discovery", "true")))
+                .setPeerShareConnect(Boolean.parseBoolean(p.getProperty("peer-share-connect", "true")))
+                .setAntiEntropy(Boolean.parseBoolean(p.getProperty("anti-entropy", "true")))
+                // o MBean server da plataforma custa ~200 ms na partida: aqui é opcional
+                .setJmx(Boolean.parseBoolean(p.getProperty("jmx", "false")))
+                .setTraceSampleRate(Double.parseDouble(p.getProperty("trace-rate", "0")));
+        if (p.containsKey("codecs")) cfg.setWireCodecs(Arrays.asList(p.getProperty("codecs").split(",")));
+        if (p.containsKey("slow-policy")) cfg.setSlowConsumerPolicy(SlowConsumerPolicy.valueOf(p.getProperty("slow-policy").toUpperCase()));
+        if (p.containsKey("min-degree")) cfg.setMinDegree(Integer.parseInt(p.getProperty("min-degree")));
+        if (p.containsKey("max-degree")) cfg.setMaxDegree(Integer.parseInt(p.getProperty("max-degree")));
+        if (p.containsKey("heartbeat")) cfg.setHeartbeatIntervalMillis(Integer.parseInt(p.getProperty("heartbeat")));
+        if (p.containsKey("peer-dead-timeout")) cfg.setPeerDeadTimeoutMillis(Integer.parseInt(p.getProperty("peer-dead-timeout")));
+        if (p.containsKey("neighbor-swap")) cfg.setNeighborSwapIntervalMillis(Long.parseLong(p.getProperty("neighbor-swap")));
+        if (p.containsKey("metrics-port")) cfg.setMetricsPort(Integer.parseInt(p.getProperty("metrics-port")));
+        // o relay só registra status: um log atrasado nunca deve segurar o repasse
+        if (relay) cfg.setEventOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+        return cfg;
+    }
+
+    private static void log(NodeEvent e, boolean relay) {
+        switch (e.getType()) {
+            case STATUS:
+                System.out.println(e.getText());
+                break;
+            case PEER_CONNECTED:
+                System.out.println("+ " + e.getPeer().getName() + " " + e.getPeer().getHost() + ":" + e.getPeer().getPort());
+                break;
+            case PEER_DISCONNECTED:
+                System.out.println("- " + e.getPeer().getName() + " " + e.getPeer().getHost() + ":" + e.getPeer().getPort());
+                break;
+            case PEER_SLOW:
+                System.out.println("Peer lento: " + e.getPeer().getName() + " (política " + e.getPolicy() + ")");
+                break;
+            case MESSAGE:
+                if (!relay) {
+                    Message m = e.getMessage();
+                    System.out.println(m.getFromName() + ": " + m.getText());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Cada linha da entrada vira um CHAT; fim da entrada não encerra o nó. */
+    private static void readInput(PeerNode node) {
+        Thread t = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!line.trim().isEmpty()) node.broadcastChat(line);
+                }
+            } catch (IOException ignored) {}
+        }, "relay-stdin");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Execução de treino para o arquivo AppCDS: conecta um segundo nó local,
+     * troca um CHAT nos dois sentidos e encerra, passando pelas classes do
+     * handshake, dos codecs e do repasse.
+     */
+    private static void train(PeerNode node) throws Exception {
+        PeerNode client = new PeerNode("cds-client", 0, new NodeConfig().setDiscovery(false).setJmx(false).setMetricsPort(-1));
+        CountDownLatch delivered = new CountDownLatch(2);
+        node.subscribe("cds", (e, seq, end) -> {
+            if (e.getType() == NodeEvent.Type.MESSAGE && "cds-client".equals(e.getMessage().getFromName())) delivered.countDown();
+        });
+        client.subscribe("cds", (e, seq, end) -> {
+            if (e.getType() == NodeEvent.Type.PEER_CONNECTED) {
+                client.broadcastChat("cds");
+                node.broadcastChat("cds");
+            }
+            if (e.getType() == NodeEvent.Type.MESSAGE && !"cds-client".equals(e.getMessage().getFromName())) delivered.countDown();
+        });
+        try {
+            client.start();
+            client.connectAsync("127.0.0.1", node.getListenPort());
+            if (!delivered.await(TRAINING_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                System.err.println("Treino CDS: troca de mensagens não concluída");
+            }
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private static void stop(PeerNode node, MessageHistory history) {
+        node.shutdown();
+        if (history != null) history.close();
+    }
+}
@@ -0,0 +1,380 @@
+package edu.unifor.clysman.chat.codec;
+
+import edu.unifor.clysman.chat.model.Message;
+import edu.unifor.clysman.chat.model.PeerInfo;
+import edu.unifor.clysman.chat.model.TraceHop;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Framing binário compacto:
+ * <pre>
+ * 0xB1 | varint tamanho | tipo (1 byte) | varint flags | id (2 longs) | fromId (2 longs) | varint timestamp
+ *      | [varint seq] | campos opcionais
+ * </pre>
+ * {@code seq} vem logo após o timestamp (se F_SEQ) para que {@link #peek} o
+ * alcance sem decodificar o resto; os demais campos opcionais aparecem na ordem
+ * dos bits de {@code flags}. Strings são varint tamanho + UTF-8.
+ * <p>
+ * Depois dos campos opcionais podem vir extensões, {@code varint tipo | dados},
+ * até o fim do frame. Um leitor para na primeira extensão que não conhece e
+ * ignora o resto, então extensões novas não quebram decodificadores antigos:
+ * <ul>
+ * <li>{@code EXT_TRACE | varint n | n × (nó em 2 longs | varint recv | varint fwd)}:
+ *     rastreio de saltos;</li>
+ * <li>{@code EXT_PORT | varint porta}: porta de escuta do HELLO;</li>
+ * <li>{@code EXT_PEER_DIGEST | varint n | n × long}: digest da tabela de peers;</li>
+ * <li>{@code EXT_HEARTBEAT | varint ms}: intervalo de PING do HELLO;</li>
+ * <li>{@code EXT_PLUMTREE}, sem dados: o remetente do HELLO fala Plumtree.</li>
+ * </ul>
+ * <p>
+ * O byte 0xB1 nunca inicia uma linha UTF-8 válida, então frames binários e
+ * linhas JSON podem ser misturados na mesma conexão.
+ */
+public final class BinaryCodec implements WireCodec {
+
+    public static final String NAME = "bin1";
+    public static final byte MAGIC = (byte) 0xB1;
+    static final int MAX_FRAME = 16 * 1024 * 1024;
+
+    static final int T_HELLO = 1;
+    static final int T_CHAT = 2;
+    static final int T_PEERSHARE = 3;
+    static final int T_IHAVE = 4;
+    static final int T_GRAFT = 5;
+    static final int T_PRUNE = 6;
+    static final int T_DIGEST = 7;
+    static final int T_PING = 8;
+    static final int T_PONG = 9;
+    static final int T_SYNC = 10;
+
+    static final int F_FROM_NAME = 1;
+    static final int F_TEXT = 1 << 1;
+    static final int F_PEERS = 1 << 2;
+    static final int F_CODECS = 1 << 3;
+    static final int F_SEQ = 1 << 4;
+    static final int F_IDS = 1 << 5;
+    static final int F_WATERMARKS = 1 << 6;
+    static final int KNOWN_FLAGS = F_FROM_NAME | F_TEXT | F_PEERS | F_CODECS | F_SEQ | F_IDS | F_WATERMARKS;
+
+    static final int EXT_TRACE = 1;
+    static final int EXT_PORT = 2;
+    static final int EXT_PEER_DIGEST = 3;
+    static final int EXT_HEARTBEAT = 4;
+    static final int EXT_PLUMTREE = 5;
+
+    // Um writer por thread evita realocar o buffer de trabalho a cada mensagem
+    private final ThreadLocal<ByteWriter> scratch = ThreadLocal.withInitial(() -> new ByteWriter(256));
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean claims(byte firstByte) {
+        return firstByte == MAGIC;
+    }
+
+    @Override
+    public ByteBuffer encode(Message m) {
+        int type = typeCode(m.getType());
+        UUID id = uuid(m.getId());
+        UUID from = uuid(m.getFromId());
+
+        int flags = 0;
+        if (m.getFromName() != null) flags |= F_FROM_NAME;
+        if (m.getText() != null) flags |= F_TEXT;
+        if (m.getPeers() != null) flags |= F_PEERS;
+        if (m.getCodecs() != null) flags |= F_CODECS;
+        if (m.getSeq() != 0) flags |= F_SEQ;
+        if (m.getIds() != null) flags |= F_IDS;
+        if (m.getWatermarks() != null) flags |= F_WATERMARKS;
+
+        ByteWriter body = scratch.get();
+        body.reset();
+        body.put((byte) type);
+        body.putVarLong(flags);
+        body.putLong(id.getMostSignificantBits());
+        body.putLong(id.getLeastSignificantBits());
+        body.putLong(from.getMostSignificantBits());
+        body.putLong(from.getLeastSignificantBits());
+        body.putVarLong(m.getTimestamp());
+        if ((flags & F_SEQ) != 0) body.putVarLong(m.getSeq());
+        if ((flags & F_FROM_NAME) != 0) body.putString(m.getFromName());
+        if ((flags & F_TEXT) != 0) body.putString(m.getText());
+        if ((flags & F_PEERS) != 0) {
+            body.putVarLong(m.getPeers().size());
+            for (PeerInfo p : m.getPeers()) {
+                body.putString(nz(p.getId()));
+                body.putString(nz(p.getName()));
+                body.putString(nz(p.getHost()));
+                body.putVarLong(p.getPort());
+                body.putVarLong(p.getLastSeen());
+            }
+        }
+        if ((flags & F_CODECS) != 0) {
+            body.putVarLong(m.getCodecs().size());
+            for (String c : m.getCodecs()) body.putString(c);
+        }
+        if ((flags & F_IDS) != 0) {
+            body.putVarLong(m.getIds().size());
+            for (String s : m.getIds()) {
+                UUID u = uuid(s);
+                body.putLong(u.getMostSignificantBits());
+                body.putLong(u.getLeastSignificantBits());
+            }
+        }
+        if ((flags & F_WATERMARKS) != 0) {
+            body.putVarLong(m.getWatermarks().size());
+            for (Map.Entry<String, Long> e : m.getWatermarks().entrySet()) {
+                UUID u = uuid(e.getKey());
+                body.putLong(u.getMostSignificantBits());
+                body.putLong(u.getLeastSignificantBits());
+                body.putVarLong(e.getValue());
+            }
+        }
+        if (m.getTrace() != null) {
+            body.putVarLong(EXT_TRACE);
+            body.putVarLong(m.getTrace().size());
+            for (TraceHop h : m.getTrace()) {
+                UUID u = uuid(h.getNode());
+                body.putLong(u.getMostSignificantBits());
+                body.putLong(u.getLeastSignificantBits());
+                body.putVarLong(h.getRecv());
+                body.putVarLong(h.getFwd());
+            }
+        }
+        if (m.getPort() != 0) {
+            body.putVarLong(EXT_PORT);
+            body.putVarLong(m.getPort());
+        }
+        if (m.getPeerDigest() != null) {
+            body.putVarLong(EXT_PEER_DIGEST);
+            body.putVarLong(m.getPeerDigest().size());
+            for (Long h : m.getPeerDigest()) body.putLong(h);
+        }
+        if (m.getHeartbeat() != 0) {
+            body.putVarLong(EXT_HEARTBEAT);
+            body.putVarLong(m.getHeartbeat());
+        }
+        if (m.isPlumtree()) body.putVarLong(EXT_PLUMTREE);
+
+        int bodyLen = body.length();
+        ByteBuffer frame = ByteBuffer.allocate(1 + ByteWriter.varLongSize(bodyLen) + bodyLen);
+        frame.put(MAGIC);
+        putVarLong(frame, bodyLen);
+        frame.put(body.array(), 0, bodyLen);
+        frame.flip();
+        return frame;
+    }
+
+    @Override
+    public int frameLength(ByteBuffer in) throws IOException {
+        int p = in.position() + 1;
+        long len = 0;
+        int shift = 0;
+        while (true) {
+            if (p >= in.limit()) return -1;
+            byte b = in.get(p++);
+            len |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+            shift += 7;
+            if (shift > 28) throw new IOException("Tamanho de frame inválido");
+        }
+        if (len > MAX_FRAME) throw new IOException("Frame excede " + MAX_FRAME + " bytes");
+        int total = (p - in.position()) + (int) len;
+        return in.remaining() >= total ? total : -1;
+    }
+
+    @Override
+    public Message decode(ByteBuffer frame) throws IOException {
+        ByteBuffer in = frame.duplicate();
+        try {
+            in.get(); // magic
+            getVarLong(in); // tamanho já validado em frameLength
+
+            Message m = new Message();
+            m.setType(typeName(in.get()));
+            long flags = getVarLong(in);
+            if ((flags & ~KNOWN_FLAGS) != 0) throw new IOException("Flags desconhecidas: " + flags);
+            m.setId(new UUID(in.getLong(), in.getLong()).toString());
+            m.setFromId(new UUID(in.getLong(), in.getLong()).toString());
+            m.setTimestamp(getVarLong(in));
+            if ((flags & F_SEQ) != 0) m.setSeq(getVarLong(in));
+            if ((flags & F_FROM_NAME) != 0) m.setFromName(getString(in));
+            if ((flags & F_TEXT) != 0) m.setText(getString(in));
+            if ((flags & F_PEERS) != 0) {
+                int n = (int) getVarLong(in);
+                List<PeerInfo> peers = new ArrayList<>(Math.min(n, 1024));
+                for (int i = 0; i < n; i++) {
+                    PeerInfo p = new PeerInfo();
+                    p.setId(emptyToNull(getString(in)));
+                    p.setName(emptyToNull(getString(in)));
+                    p.setHost(emptyToNull(getString(in)));
+                    p.setPort((int) getVarLong(in));
+                    p.setLastSeen(getVarLong(in));
+                    peers.add(p);
+                }
+                m.setPeers(peers);
+            }
+            if ((flags & F_CODECS) != 0) {
+                int n = (int) getVarLong(in);
+                List<String> codecs = new ArrayList<>(Math.min(n, 16));
+                for (int i = 0; i < n; i++) codecs.add(getString(in));
+                m.setCodecs(codecs);
+            }
+            if ((flags & F_IDS) != 0) {
+                int n = (int) getVarLong(in);
+                if (n < 0 || n > in.remaining() / 16) throw new IOException("Lista de ids excede o frame");
+                List<String> ids = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) ids.add(new UUID(in.getLong(), in.getLong()).toString());
+                m.setIds(ids);
+            }
+            if ((flags & F_WATERMARKS) != 0) {
+                int n = (int) getVarLong(in);
+                if (n < 0 || n > in.remaining() / 17) throw new IOException("Digest excede o frame");
+                Map<String, Long> wm = new LinkedHashMap<>(n * 2);
+                for (int i = 0; i < n; i++) wm.put(new UUID(in.getLong(), in.getLong()).toString(), getVarLong(in));
+                m.setWatermarks(wm);
+            }
+            while (in.hasRemaining()) {
+                long ext = getVarLong(in);
+                if (ext == EXT_TRACE) {
+                    int n = (int) getVarLong(in);
+                    if (n < 0 || n > in.remaining() / 18) throw new IOException("Rastreio excede o frame");
+                    List<TraceHop> trace = new ArrayList<>(n);
+                    for (int i = 0; i < n; i++) {
+                        String node = new UUID(in.getLong(), in.getLong()).toString();
+                        trace.add(new TraceHop(node, getVarLong(in), getVarLong(in)));
+                    }
+                    m.setTrace(trace);
+                } else if (ext == EXT_PORT) {
+                    m.setPort((int) getVarLong(in));
+                } else if (ext == EXT_PEER_DIGEST) {
+                    int n = (int) getVarLong(in);
+                    if (n < 0 || n > in.remaining() / 8) throw new IOException("Digest de peers excede o frame");
+                    List<Long> digest = new ArrayList<>(n);
+                    for (int i = 0; i < n; i++) digest.add(in.getLong());
+                    m.setPeerDigest(digest);
+                } else if (ext == EXT_HEARTBEAT) {
+                    m.setHeartbeat((int) getVarLong(in));
+                } else if (ext == EXT_PLUMTREE) {
+                    m.setPlumtree(true);
+                } else {
+                    break; // extensão mais nova que este leitor: ignora o resto
+                }
+            }
+            return m;
+        } catch (RuntimeException e) {
+            throw new IOException("Frame binário malformado", e);
+        }
+    }
+
+    @Override
+    public FrameHeader peek(ByteBuffer frame) throws IOException {
+        ByteBuffer in = frame.duplicate();
+        try {
+            in.get();
+            getVarLong(in);
+            String type = typeName(in.get());
+            long flags = getVarLong(in);
+            String id = new UUID(in.getLong(), in.getLong()).toString();
+            String fromId = new UUID(in.getLong(), in.getLong()).toString();
+            getVarLong(in); // timestamp
+            long seq = (flags & F_SEQ) != 0 ? getVarLong(in) : 0;
+            return new FrameHeader(type, id, fromId, seq);
+        } catch (RuntimeException e) {
+            throw new IOException("Frame binário malformado", e);
+        }
+    }
+
+    static int typeCode(String type) {
+        if (type == null) throw new IllegalArgumentException("Mensagem sem tipo");
+        switch (type) {
+            case "HELLO": return T_HELLO;
+            case "CHAT": return T_CHAT;
+            case "PEERSHARE": return T_PEERSHARE;
+            case "IHAVE": return T_IHAVE;
+            case "GRAFT": return T_GRAFT;
+            case "PRUNE": return T_PRUNE;
+            case "DIGEST": return T_DIGEST;
+            case "PING": return T_PING;
+            case "PONG": return T_PONG;
+            case "SYNC": return T_SYNC;
+            default: throw new IllegalArgumentException("Tipo sem representação binária: " + type);
+        }
+    }
+
+    static String typeName(byte code) throws IOException {
+        switch (code) {
+            case T_HELLO: return "HELLO";
+            case T_CHAT: return "CHAT";
+            case T_PEERSHARE: return "PEERSHARE";
+            case T_IHAVE: return "IHAVE";
+            case T_GRAFT: return "GRAFT";
+            case T_PRUNE: return "PRUNE";
+            case T_DIGEST: return "DIGEST";
+            case T_PING: return "PING";
+            case T_PONG: return "PONG";
+            case T_SYNC: return "SYNC";
+            default: throw new IOException("Tipo binário desconhecido: " + code);
+        }
+    }
+
+    private static UUID uuid(String s) {
+        if (s == null) throw new IllegalArgumentException("Identificador ausente");
+        UUID u = UUID.fromString(s);
+        // UUID.fromString aceita formas abreviadas; só serve se a volta for idêntica
+        if (!u.toString().equals(s)) throw new IllegalArgumentException("Identificador não canônico: " + s);
+        return u;
+    }
+
+    private static String nz(String s) {
+        return s != null ? s : "";
+    }
+
+    private static String emptyToNull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    static void putVarLong(ByteBuffer out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    static long getVarLong(ByteBuffer in) {
+        long v = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+            shift += 7;
+            if (shift > 63) throw new IllegalArgumentException("varint inválido");
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int n = (int) getVarLong(in);
+        if (n < 0 || n > in.remaining()) throw new IllegalArgumentException("String excede o frame");
+        if (in.hasArray()) {
+            String s = new String(in.array(), in.arrayOffset() + in.position(), n, StandardCharsets.UTF_8);
+            in.position(in.position() + n);
+            return s;
+        }
+        byte[] b = new byte[n];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+package edu.unifor.clysman.chat.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Buffer de escrita crescente com varints e strings UTF-8 prefixadas pelo tamanho. */
+final class ByteWriter {
+
+    private byte[] buf;
+    private int len;
+
+    ByteWriter(int initialCapacity) {
+        buf = new byte[initialCapacity];
+    }
+
+    int length() {
+        return len;
+    }
+
+    void reset() {
+        len = 0;
+    }
+
+    void put(byte b) {
+        ensure(1);
+        buf[len++] = b;
+    }
+
+    void putLong(long v) {
+        ensure(8);
+        for (int i = 7; i >= 0; i--) buf[len++] = (byte) (v >>> (i * 8));
+    }
+
+    void putVarLong(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            buf[len++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[len++] = (byte) v;
+    }
+
+    void putBytes(byte[] b, int off, int n) {
+        ensure(n);
+        System.arraycopy(b, off, buf, len, n);
+        len += n;
+    }
+
+    void putString(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        putVarLong(b.length);
+        putBytes(b, 0, b.length);
+    }
+
+    static int varLongSize(long v) {
+        int n = 1;
+        while ((v & ~0x7FL) != 0) {
+            n++;
+            v >>>= 7;
+        }
+        return n;
+    }
+
+    byte[] array() {
+        return buf;
+    }
+
+    ByteBuffer toBuffer() {
+        return ByteBuffer.wrap(Arrays.copyOf(buf, len));
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+    }
+}
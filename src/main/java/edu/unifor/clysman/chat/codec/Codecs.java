@@ -0,0 +1,63 @@
+package edu.unifor.clysman.chat.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registro dos codecs conhecidos. Na leitura o primeiro codec que reivindica
+ * o byte inicial do frame vence; JSON fica sempre por último como fallback.
+ */
+public final class Codecs {
+
+    public static final WireCodec JSON = new JsonLineCodec();
+    public static final WireCodec BINARY = new BinaryCodec();
+
+    private static final List<WireCodec> registered = new CopyOnWriteArrayList<>(new WireCodec[]{BINARY});
+
+    private Codecs() {}
+
+    /** Registra um codec adicional (ex.: compressão). O byte inicial não pode colidir com os existentes. */
+    public static void register(WireCodec codec) {
+        if (byName(codec.name()) != null) throw new IllegalArgumentException("Codec já registrado: " + codec.name());
+        registered.add(0, codec);
+    }
+
+    public static WireCodec byName(String name) {
+        if (JSON.name().equals(name)) return JSON;
+        for (WireCodec c : registered) {
+            if (c.name().equals(name)) return c;
+        }
+        return null;
+    }
+
+    public static WireCodec forFirstByte(byte b) {
+        for (WireCodec c : registered) {
+            if (c.claims(b)) return c;
+        }
+        return JSON;
+    }
+
+    /** Nomes de todos os codecs, em ordem de preferência. */
+    public static List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (WireCodec c : registered) names.add(c.name());
+        names.add(JSON.name());
+        return names;
+    }
+
+    /**
+     * Primeiro codec de {@code preferred} que o vizinho também anunciou;
+     * JSON se não houver anúncio (peers antigos).
+     */
+    public static WireCodec negotiate(List<String> preferred, List<String> offered) {
+        if (offered == null || preferred == null) return JSON;
+        for (String name : preferred) {
+            if (offered.contains(name)) {
+                WireCodec c = byName(name);
+                if (c != null) return c;
+            }
+        }
+        return JSON;
+    }
+}
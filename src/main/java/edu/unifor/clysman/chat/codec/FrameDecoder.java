@@ -0,0 +1,55 @@
+package edu.unifor.clysman.chat.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Acumula bytes lidos de uma conexão e recorta frames completos, escolhendo o
+ * codec pelo primeiro byte de cada frame. Não é thread-safe: pertence à
+ * thread de leitura da conexão.
+ */
+public final class FrameDecoder {
+
+    public interface Sink {
+        /** Recebe um frame completo, válido só durante a chamada. Retorna false para parar. */
+        boolean onFrame(WireCodec codec, ByteBuffer frame) throws IOException;
+    }
+
+    private static final int MAX_BUFFER = BinaryCodec.MAX_FRAME + 16;
+
+    private ByteBuffer buf;
+
+    public FrameDecoder(int initialCapacity) {
+        buf = ByteBuffer.allocate(initialCapacity);
+    }
+
+    /** Buffer (em modo escrita) onde a conexão deve colocar os bytes lidos. */
+    public ByteBuffer buffer() throws IOException {
+        if (!buf.hasRemaining()) {
+            if (buf.capacity() >= MAX_BUFFER) throw new IOException("Frame excede o tamanho máximo");
+            ByteBuffer bigger = ByteBuffer.allocate(Math.min(buf.capacity() * 2, MAX_BUFFER));
+            buf.flip();
+            bigger.put(buf);
+            buf = bigger;
+        }
+        return buf;
+    }
+
+    /** Entrega todos os frames completos já acumulados. */
+    public void drain(Sink sink) throws IOException {
+        buf.flip();
+        try {
+            while (buf.hasRemaining()) {
+                WireCodec codec = Codecs.forFirstByte(buf.get(buf.position()));
+                int len = codec.frameLength(buf);
+                if (len < 0) break;
+                ByteBuffer frame = buf.slice();
+                frame.limit(len);
+                buf.position(buf.position() + len);
+                if (!sink.onFrame(codec, frame)) return;
+            }
+        } finally {
+            buf.compact();
+        }
+    }
+}
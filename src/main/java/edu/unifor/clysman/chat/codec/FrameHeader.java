@@ -0,0 +1,22 @@
+package edu.unifor.clysman.chat.codec;
+
+/** Campos lidos de um frame sem decodificá-lo por completo. */
+public final class FrameHeader {
+
+    private final String type;
+    private final String id;
+    private final String fromId;
+    private final long seq;
+
+    public FrameHeader(String type, String id, String fromId, long seq) {
+        this.type = type;
+        this.id = id;
+        this.fromId = fromId;
+        this.seq = seq;
+    }
+
+    public String getType() { return type; }
+    public String getId() { return id; }
+    public String getFromId() { return fromId; }
+    public long getSeq() { return seq; }
+}
@@ -0,0 +1,208 @@
+package edu.unifor.clysman.chat.codec;
+
+import edu.unifor.clysman.chat.model.Message;
+import edu.unifor.clysman.chat.util.Json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** Formato original: um JSON (Gson) por linha terminada em '\n'. */
+public final class JsonLineCodec implements WireCodec {
+
+    public static final String NAME = "json";
+
+    private static final byte[] TYPE_KEY = "type".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ID_KEY = "id".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FROM_ID_KEY = "fromId".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEQ_KEY = "seq".getBytes(StandardCharsets.US_ASCII);
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean claims(byte firstByte) {
+        // qualquer coisa que não seja de outro codec é tratada como linha JSON
+        return true;
+    }
+
+    @Override
+    public ByteBuffer encode(Message m) {
+        byte[] json = Json.get().toJson(m).getBytes(StandardCharsets.UTF_8);
+        byte[] line = new byte[json.length + 1];
+        System.arraycopy(json, 0, line, 0, json.length);
+        line[json.length] = '\n';
+        return ByteBuffer.wrap(line);
+    }
+
+    @Override
+    public int frameLength(ByteBuffer in) {
+        for (int i = in.position(); i < in.limit(); i++) {
+            if (in.get(i) == '\n') return i - in.position() + 1;
+        }
+        return -1;
+    }
+
+    @Override
+    public Message decode(ByteBuffer frame) {
+        return Json.get().fromJson(text(frame), Message.class);
+    }
+
+    /**
+     * Varre só o objeto de nível superior atrás de "type", "id", "fromId" e
+     * "seq", sem montar a árvore nem decodificar o resto da linha. Qualquer
+     * coisa fora do caminho simples (escapes, estrutura inesperada) cai na
+     * decodificação completa.
+     */
+    @Override
+    public FrameHeader peek(ByteBuffer frame) {
+        int end = frame.limit();
+        int p = skipWs(frame, frame.position(), end);
+        if (p >= end || frame.get(p) != '{') return fullPeek(frame);
+        p++;
+        String type = null;
+        String id = null;
+        String fromId = null;
+        long seq = 0;
+        boolean seqFound = false;
+        while (type == null || id == null || fromId == null || !seqFound) {
+            p = skipWs(frame, p, end);
+            if (p >= end) return fullPeek(frame);
+            byte c = frame.get(p);
+            if (c == '}') break;
+            if (c == ',') {
+                p++;
+                continue;
+            }
+            if (c != '"') return fullPeek(frame);
+            int keyEnd = endOfString(frame, p, end);
+            if (keyEnd < 0) return fullPeek(frame);
+            byte[] key = keyOf(frame, p + 1, keyEnd);
+            p = skipWs(frame, keyEnd + 1, end);
+            if (p >= end || frame.get(p) != ':') return fullPeek(frame);
+            p = skipWs(frame, p + 1, end);
+            if (p >= end) return fullPeek(frame);
+            if (key == SEQ_KEY) {
+                int q = p;
+                long v = 0;
+                while (q < end && frame.get(q) >= '0' && frame.get(q) <= '9') {
+                    v = v * 10 + (frame.get(q) - '0');
+                    q++;
+                }
+                if (q == p || q - p > 18) return fullPeek(frame);
+                seq = v;
+                seqFound = true;
+                p = q;
+            } else if (key != null && frame.get(p) == '"') {
+                int valueEnd = endOfString(frame, p, end);
+                if (valueEnd < 0) return fullPeek(frame);
+                String v = plainString(frame, p + 1, valueEnd);
+                if (v == null) return fullPeek(frame);
+                if (key == TYPE_KEY) type = v;
+                else if (key == ID_KEY) id = v;
+                else fromId = v;
+                p = valueEnd + 1;
+            } else {
+                p = skipValue(frame, p, end);
+                if (p < 0) return fullPeek(frame);
+            }
+        }
+        if (type == null) return fullPeek(frame);
+        return new FrameHeader(type, id, fromId, seq);
+    }
+
+    private FrameHeader fullPeek(ByteBuffer frame) {
+        Message m = decode(frame);
+        if (m == null) return new FrameHeader(null, null, null, 0);
+        return new FrameHeader(m.getType(), m.getId(), m.getFromId(), m.getSeq());
+    }
+
+    /** Uma das chaves procuradas por {@link #peek}, ou null. */
+    private static byte[] keyOf(ByteBuffer b, int from, int to) {
+        if (matches(b, from, to, TYPE_KEY)) return TYPE_KEY;
+        if (matches(b, from, to, ID_KEY)) return ID_KEY;
+        if (matches(b, from, to, FROM_ID_KEY)) return FROM_ID_KEY;
+        if (matches(b, from, to, SEQ_KEY)) return SEQ_KEY;
+        return null;
+    }
+
+    private static int skipWs(ByteBuffer b, int p, int end) {
+        while (p < end) {
+            byte c = b.get(p);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') break;
+            p++;
+        }
+        return p;
+    }
+
+    /** Índice da aspa que fecha a string iniciada em {@code p}, ou -1. */
+    private static int endOfString(ByteBuffer b, int p, int end) {
+        for (int i = p + 1; i < end; i++) {
+            byte c = b.get(i);
+            if (c == '\\') i++;
+            else if (c == '"') return i;
+        }
+        return -1;
+    }
+
+    /** Pula um valor JSON qualquer; retorna o índice seguinte ou -1. */
+    private static int skipValue(ByteBuffer b, int p, int end) {
+        byte c = b.get(p);
+        if (c == '"') {
+            int e = endOfString(b, p, end);
+            return e < 0 ? -1 : e + 1;
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            for (int i = p; i < end; i++) {
+                byte x = b.get(i);
+                if (x == '"') {
+                    i = endOfString(b, i, end);
+                    if (i < 0) return -1;
+                } else if (x == '{' || x == '[') {
+                    depth++;
+                } else if (x == '}' || x == ']') {
+                    if (--depth == 0) return i + 1;
+                }
+            }
+            return -1;
+        }
+        // número, true, false, null
+        while (p < end) {
+            byte x = b.get(p);
+            if (x == ',' || x == '}' || x == ']' || x == ' ' || x == '\n' || x == '\r' || x == '\t') return p;
+            p++;
+        }
+        return -1;
+    }
+
+    private static boolean matches(ByteBuffer b, int from, int to, byte[] key) {
+        if (to - from != key.length) return false;
+        for (int i = 0; i < key.length; i++) {
+            if (b.get(from + i) != key[i]) return false;
+        }
+        return true;
+    }
+
+    /** String sem escapes entre {@code from} e {@code to}; null se houver escape. */
+    private static String plainString(ByteBuffer b, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            byte c = b.get(i);
+            if (c == '\\') return null;
+            bytes[i - from] = c;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Conteúdo da linha sem o terminador. */
+    static String text(ByteBuffer frame) {
+        int len = frame.remaining();
+        if (len > 0 && frame.get(frame.position() + len - 1) == '\n') len--;
+        if (len > 0 && frame.get(frame.position() + len - 1) == '\r') len--;
+        byte[] bytes = new byte[len];
+        frame.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,45 @@
+package edu.unifor.clysman.chat.codec;
+
+import edu.unifor.clysman.chat.model.Message;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Formato de uma mensagem no fio. Cada frame começa com um byte que identifica
+ * o codec, de modo que o leitor aceita qualquer codec registrado sem precisar
+ * saber em que momento o vizinho trocou de formato.
+ */
+public interface WireCodec {
+
+    /** Nome anunciado no HELLO. */
+    String name();
+
+    /** Indica se um frame que começa com este byte pertence ao codec. */
+    boolean claims(byte firstByte);
+
+    /**
+     * Codifica a mensagem num frame completo (já com delimitação).
+     *
+     * @throws IllegalArgumentException se a mensagem não for representável
+     */
+    ByteBuffer encode(Message m);
+
+    /**
+     * Tamanho total do frame que começa na posição atual de {@code in}, ou -1
+     * se os bytes disponíveis ainda não contêm o frame inteiro. Não altera a posição.
+     */
+    int frameLength(ByteBuffer in) throws java.io.IOException;
+
+    /** Decodifica um frame completo, como delimitado por {@link #frameLength}. */
+    Message decode(ByteBuffer frame) throws java.io.IOException;
+
+    /**
+     * Lê apenas {@code type}, {@code id}, {@code fromId} e {@code seq}, para descartar duplicatas antes de
+     * decodificar. Codecs sem leitura parcial podem usar esta implementação.
+     */
+    default FrameHeader peek(ByteBuffer frame) throws java.io.IOException {
+        Message m = decode(frame);
+        if (m == null) return new FrameHeader(null, null, null, 0);
+        return new FrameHeader(m.getType(), m.getId(), m.getFromId(), m.getSeq());
+    }
+}
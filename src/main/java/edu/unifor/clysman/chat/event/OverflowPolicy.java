@@ -0,0 +1,9 @@
+package edu.unifor.clysman.chat.event;
+
+/** O que o publicador faz quando o assinante mais lento está uma volta inteira atrás. */
+public enum OverflowPolicy {
+    /** Espera o assinante abrir espaço (backpressure até a thread de rede). */
+    BLOCK,
+    /** Descarta o evento novo e conta; o publicador nunca espera. */
+    DROP_NEWEST
+}
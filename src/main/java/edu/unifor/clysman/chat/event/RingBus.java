@@ -0,0 +1,260 @@
+package edu.unifor.clysman.chat.event;
+
+import edu.unifor.clysman.chat.metrics.MetricSink;
+import edu.unifor.clysman.chat.metrics.MetricsRegistry;
+import edu.unifor.clysman.chat.util.Threads;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Barramento de eventos no estilo do Disruptor: um anel de eventos
+ * pré-alocados, vários publicadores e, para cada assinante, uma thread e um
+ * cursor próprios. Publicar é reservar uma sequência, preencher o espaço
+ * com um {@link Translator} e marcá-lo como publicado; nenhum assinante
+ * espera pelo outro, e cada um processa em lotes tudo o que já estiver
+ * disponível, avançando o cursor uma vez por lote.
+ *
+ * O anel dá a volta até o assinante mais lento; a partir daí vale a
+ * {@link OverflowPolicy}. Assinantes entram a qualquer momento e recebem os
+ * eventos publicados depois disso. Os espaços guardam referências até serem
+ * reaproveitados, o que limita a memória retida à capacidade do anel.
+ */
+public final class RingBus<E> {
+
+    private static final int MAX_BATCH = 256;
+    private static final long PRODUCER_PARK_NANOS = 50_000;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+    private final int mask;
+    private final Object[] slots;
+    private final AtomicLongArray published; // sequência gravada em cada espaço; -1 = nunca
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final OverflowPolicy policy;
+    @SuppressWarnings("unchecked")
+    private volatile Subscription[] subscriptions = (Subscription[]) Array.newInstance(Subscription.class, 0);
+    private volatile long gateCache = -1;
+    private volatile boolean closed;
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder producerWaits = new LongAdder();
+
+    public RingBus(String name, int capacity, Supplier<E> factory, OverflowPolicy policy) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacidade deve ser potência de 2: " + capacity);
+        this.name = name;
+        this.mask = capacity - 1;
+        this.slots = new Object[capacity];
+        for (int i = 0; i < capacity; i++) slots[i] = factory.get();
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) published.set(i, -1);
+        this.policy = policy;
+    }
+
+    /**
+     * Publica um evento. Pode ser chamado de qualquer thread; não aloca.
+     *
+     * @return false se o evento foi descartado (anel cheio em DROP_NEWEST, ou barramento fechado)
+     */
+    public <A, B> boolean publish(Translator<? super E, A, B> translator, A a, B b) {
+        long seq = claim();
+        if (seq < 0) return false;
+        try {
+            translator.translate(slot(seq), a, b);
+        } finally {
+            published.lazySet((int) (seq & mask), seq);
+            publishedCount.increment();
+            wakeSubscribers();
+        }
+        return true;
+    }
+
+    private long claim() {
+        int capacity = mask + 1;
+        while (true) {
+            if (closed) {
+                dropped.increment();
+                return -1;
+            }
+            long current = claimed.get();
+            long next = current + 1;
+            long wrapPoint = next - capacity;
+            if (wrapPoint > gateCache) {
+                long gate = minCursor(current);
+                gateCache = gate;
+                if (wrapPoint > gate) {
+                    if (policy == OverflowPolicy.DROP_NEWEST) {
+                        dropped.increment();
+                        return -1;
+                    }
+                    producerWaits.increment();
+                    wakeSubscribers();
+                    LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+                    continue;
+                }
+            }
+            if (claimed.compareAndSet(current, next)) return next;
+        }
+    }
+
+    /** Cursor do assinante mais atrasado; sem assinantes o anel não segura nada. */
+    private long minCursor(long current) {
+        long min = current;
+        for (Subscription s : subscriptions) min = Math.min(min, s.cursor.get());
+        return min;
+    }
+
+    private void wakeSubscribers() {
+        for (Subscription s : subscriptions) {
+            if (s.waiting) LockSupport.unpark(s.thread);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private E slot(long seq) {
+        return (E) slots[(int) (seq & mask)];
+    }
+
+    /** Registra um assinante com thread própria ({@code events-<barramento>-<nome>}). */
+    public synchronized Subscription subscribe(String subscriberName, Subscriber<? super E> subscriber) {
+        if (closed) throw new IllegalStateException("barramento fechado");
+        Subscription s = new Subscription(subscriberName, subscriber);
+        s.cursor.set(claimed.get());
+        Subscription[] next = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        next[next.length - 1] = s;
+        subscriptions = next;
+        s.thread = Threads.platformFactory("events-" + name + "-" + subscriberName + "-").newThread(s::run);
+        s.thread.start();
+        return s;
+    }
+
+    /**
+     * Para de aceitar eventos e espera cada assinante terminar o que já foi
+     * publicado (até {@code timeoutMillis} no total).
+     */
+    public void close(long timeoutMillis) {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Subscription s : subscriptions) {
+            LockSupport.unpark(s.thread);
+            long left = deadline - System.nanoTime();
+            if (left <= 0) break;
+            try {
+                s.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(left)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /** Contadores do barramento e, por assinante, processados, falhas e atraso. */
+    public void registerMetrics(MetricsRegistry registry, String prefix) {
+        registry.counter(prefix + "_published_total", "Eventos publicados", publishedCount::sum);
+        registry.counter(prefix + "_dropped_total", "Eventos descartados (anel cheio ou barramento fechado)", dropped::sum);
+        registry.counter(prefix + "_producer_waits_total", "Esperas de publicadores por anel cheio", producerWaits::sum);
+        registry.register(sink -> {
+            Subscription[] subs = subscriptions;
+            if (subs.length == 0) return;
+            sink.family(prefix + "_processed_total", MetricSink.Type.COUNTER, "Eventos entregues ao assinante");
+            for (Subscription s : subs) sink.value(prefix + "_processed_total", s.processed, "subscriber", s.name);
+            sink.family(prefix + "_failures_total", MetricSink.Type.COUNTER, "Exceções lançadas pelo assinante");
+            for (Subscription s : subs) sink.value(prefix + "_failures_total", s.failures, "subscriber", s.name);
+            sink.family(prefix + "_lag", MetricSink.Type.GAUGE, "Eventos publicados que o assinante ainda não processou");
+            for (Subscription s : subs) sink.value(prefix + "_lag", s.lag(), "subscriber", s.name);
+        });
+    }
+
+    public long getPublished() {
+        return publishedCount.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /** Um assinante: cursor (última sequência processada), thread e contadores. */
+    public final class Subscription {
+
+        private final String name;
+        private final Subscriber<? super E> subscriber;
+        private final AtomicLong cursor = new AtomicLong(-1);
+        private Thread thread;
+        private volatile boolean waiting;
+        // só a thread do assinante escreve
+        private volatile long processed;
+        private volatile long failures;
+
+        private Subscription(String name, Subscriber<? super E> subscriber) {
+            this.name = name;
+            this.subscriber = subscriber;
+        }
+
+        private void run() {
+            long next = cursor.get() + 1;
+            while (true) {
+                long available = available(next);
+                if (available < next) {
+                    if (closed && next > claimed.get()) return;
+                    waiting = true;
+                    // um publicador pode ter marcado o espaço antes de ver waiting
+                    if (available(next) < next && !closed) LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    waiting = false;
+                    continue;
+                }
+                for (long s = next; s <= available; s++) {
+                    try {
+                        subscriber.onEvent(slot(s), s, s == available);
+                    } catch (Exception | LinkageError e) {
+                        failures++;
+                    }
+                }
+                processed += available - next + 1;
+                cursor.set(available);
+                next = available + 1;
+            }
+        }
+
+        /** Maior sequência publicada em sequência a partir de {@code from}, limitada a um lote. */
+        private long available(long from) {
+            long last = from - 1;
+            long limit = Math.min(claimed.get(), from + MAX_BATCH - 1);
+            for (long s = from; s <= limit; s++) {
+                if (published.get((int) (s & mask)) != s) break;
+                last = s;
+            }
+            return last;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getProcessed() {
+            return processed;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        /** Eventos publicados (ou reservados) que este assinante ainda não processou. */
+        public long lag() {
+            return Math.max(0, claimed.get() - cursor.get());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package edu.unifor.clysman.chat.event;
+
+/**
+ * Consumidor de um {@link RingBus}, chamado sempre pela mesma thread
+ * (própria do assinante). O evento só vale durante a chamada: o espaço é
+ * reaproveitado depois que todos os assinantes passarem por ele.
+ */
+public interface Subscriber<E> {
+
+    /**
+     * @param endOfBatch último evento disponível agora; bom momento para
+     *                   descarregar o que foi acumulado (ex.: um único repaint)
+     */
+    void onEvent(E event, long sequence, boolean endOfBatch) throws Exception;
+}
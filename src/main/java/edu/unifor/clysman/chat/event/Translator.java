@@ -0,0 +1,10 @@
+package edu.unifor.clysman.chat.event;
+
+/**
+ * Preenche um espaço pré-alocado do anel com os argumentos da publicação.
+ * Use constantes ({@code static final}): assim publicar não aloca.
+ */
+public interface Translator<E, A, B> {
+
+    void translate(E event, A a, B b);
+}
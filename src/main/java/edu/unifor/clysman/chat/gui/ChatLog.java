@@ -0,0 +1,127 @@
+package edu.unifor.clysman.chat.gui;
+
+import javax.swing.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Modelo da área de chat: um anel limitado de linhas já formatadas. Só a
+ * EDT mexe nele; cada lote vira um único evento de lista, e a {@link JList}
+ * (com altura de célula fixa) só desenha as linhas visíveis.
+ */
+final class ChatLog extends AbstractListModel<ChatLog.Line> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Uma linha da tela. */
+    static final class Line {
+        final long time;  // quando foi gravada no histórico (ou recebida), epoch ms
+        final String key; // id do CHAT ou texto da linha de sistema: evita repetir ao paginar
+        final String text;
+
+        Line(long time, String key, String text) {
+            this.time = time;
+            this.key = key;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return text; // copiar (Ctrl+C) e renderizador padrão usam o texto
+        }
+    }
+
+    private final Line[] ring;
+    private int head;
+    private int size;
+
+    ChatLog(int capacity) {
+        this.ring = new Line[capacity];
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public Line getElementAt(int index) {
+        return ring[slot(index)];
+    }
+
+    int capacity() {
+        return ring.length;
+    }
+
+    Line first() {
+        return size == 0 ? null : ring[head];
+    }
+
+    /**
+     * Acrescenta no fim, descartando do começo o que passar de {@code limit}.
+     * Retorna quantas linhas antigas saíram.
+     */
+    int append(List<Line> lines, int limit) {
+        limit = Math.min(limit, ring.length);
+        int from = Math.max(0, lines.size() - limit);
+        int add = lines.size() - from;
+        int evicted = removeFirst(Math.max(0, size + add - limit));
+        if (add == 0) return evicted;
+        for (int i = from; i < lines.size(); i++) {
+            ring[slot(size)] = lines.get(i);
+            size++;
+        }
+        fireIntervalAdded(this, size - add, size - 1);
+        return evicted;
+    }
+
+    /**
+     * Acrescenta linhas mais antigas no começo, até {@code limit} no total
+     * (ficam as mais novas da página). Retorna quantas entraram.
+     */
+    int prepend(List<Line> lines, int limit) {
+        int add = Math.min(lines.size(), Math.max(0, Math.min(limit, ring.length) - size));
+        if (add == 0) return 0;
+        for (int i = lines.size() - 1; i >= lines.size() - add; i--) {
+            head = (head - 1 + ring.length) % ring.length;
+            ring[head] = lines.get(i);
+            size++;
+        }
+        fireIntervalAdded(this, 0, add - 1);
+        return add;
+    }
+
+    /** Descarta as {@code n} linhas mais antigas. */
+    int removeFirst(int n) {
+        n = Math.min(n, size);
+        if (n == 0) return 0;
+        for (int i = 0; i < n; i++) {
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+        }
+        size -= n;
+        fireIntervalRemoved(this, 0, n - 1);
+        return n;
+    }
+
+    void clear() {
+        removeFirst(size);
+        head = 0;
+    }
+
+    /** Chaves das primeiras linhas com {@code time < until} (a fronteira com a página anterior). */
+    Set<String> leadingKeys(long until) {
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            Line l = ring[slot(i)];
+            if (l.time >= until) break;
+            keys.add(l.key);
+        }
+        return keys;
+    }
+
+    private int slot(int index) {
+        return (head + index) % ring.length;
+    }
+}
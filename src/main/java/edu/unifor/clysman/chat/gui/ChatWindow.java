@@ -1,20 +1,32 @@
 package edu.unifor.clysman.chat.gui;
 
+import edu.unifor.clysman.chat.event.Subscriber;
 import edu.unifor.clysman.chat.model.Message;
 import edu.unifor.clysman.chat.model.PeerInfo;
+import edu.unifor.clysman.chat.net.NodeEvent;
 import edu.unifor.clysman.chat.net.PeerNode;
 import edu.unifor.clysman.chat.service.MessageHistory;
+import edu.unifor.clysman.chat.service.SearchHit;
+import edu.unifor.clysman.chat.service.SearchQuery;
+import edu.unifor.clysman.chat.service.StoredMessage;
 
 import javax.swing.*;
+import javax.swing.Timer;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
 import java.util.*;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ChatWindow extends JFrame {
 
-    private final JTextArea chatArea = new JTextArea();
+    private final ChatLog chatLog = new ChatLog(VIEW_MAX_LINES);
+    private final JList<ChatLog.Line> chatList = new JList<>(chatLog);
+    private final JScrollPane chatScroll = new JScrollPane(chatList, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
+            ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+    private final JScrollBar chatScrollBar = chatScroll.getVerticalScrollBar();
     private final JTextField inputField = new JTextField();
     private final JButton sendButton = new JButton("Enviar (Broadcast)");
     private final JTextField nameField = new JTextField("Usuario-" + new Random().nextInt(1000));
@@ -33,11 +45,31 @@ public class ChatWindow extends JFrame {
     private final JList<String> discoveredList = new JList<>(discoveredModel);
     private final JButton connectDiscoveredButton = new JButton("Conectar Selecionado");
 
+    private final JTextField searchField = new JTextField();
+    private final JButton searchButton = new JButton("Buscar");
+
+    private static final int SCROLLBACK_LINES = 500;
+    /** Linhas mantidas na tela acompanhando o fim; subindo, o histórico completa até VIEW_MAX_LINES. */
+    private static final int VIEW_LINES = 5_000;
+    private static final int VIEW_MAX_LINES = 10_000;
+    private static final int PAGE_LINES = 200;
+    /** Folga ao paginar: a tela e o histórico podem discordar em alguns ms no instante de uma linha. */
+    private static final long PAGE_SLACK_MILLIS = 50;
+    /** Intervalo entre atualizações da área de chat (~30 quadros/s). */
+    private static final int FRAME_MILLIS = 33;
+
     private PeerNode node;
     private MessageHistory history;
 
     private final Map<String, PeerInfo> connectedByKey = new ConcurrentHashMap<>();
 
+    // produzido pela thread de eventos do nó (e por appendSystem); a EDT consome a cada quadro
+    private final Object pendingLock = new Object();
+    private List<ChatLog.Line> pendingLines = new ArrayList<>();
+    private List<Runnable> pendingChanges = new ArrayList<>();
+    private boolean loadingOlder;
+    private boolean historyExhausted;
+
     public ChatWindow() {
         super("P2P Chat - Java (Swing)");
         setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
@@ -90,11 +122,35 @@ public class ChatWindow extends JFrame {
         // Área de chat
         JPanel chatPanel = new JPanel(new BorderLayout(6,6));
         chatPanel.setBorder(new TitledBorder("Chat"));
-        chatArea.setEditable(false);
-        chatArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
-        JScrollPane chatScroll = new JScrollPane(chatArea);
+        chatList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        // altura e largura fixas: a JList não mede as linhas, só desenha as visíveis
+        chatList.setFixedCellHeight(chatList.getFontMetrics(chatList.getFont()).getHeight() + 2);
+        chatList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean selected, boolean focus) {
+                super.getListCellRendererComponent(list, value, index, selected, focus);
+                setToolTipText(((ChatLog.Line) value).text);
+                return this;
+            }
+        });
+        chatScroll.getViewport().addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                chatList.setFixedCellWidth(chatScroll.getViewport().getWidth());
+            }
+        });
+        chatScrollBar.addAdjustmentListener(e -> {
+            if (!e.getValueIsAdjusting() && e.getValue() == chatScrollBar.getMinimum()) loadOlder();
+        });
         chatPanel.add(chatScroll, BorderLayout.CENTER);
 
+        JPanel searchPanel = new JPanel(new BorderLayout(6,6));
+        searchField.setToolTipText("Termos a buscar no histórico; \"de:nome\" filtra por remetente");
+        searchPanel.add(new JLabel("Histórico:"), BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        searchPanel.add(searchButton, BorderLayout.EAST);
+        chatPanel.add(searchPanel, BorderLayout.NORTH);
+
         JPanel inputPanel = new JPanel(new BorderLayout(6,6));
         inputPanel.add(inputField, BorderLayout.CENTER);
         inputPanel.add(sendButton, BorderLayout.EAST);
@@ -137,58 +193,45 @@ public class ChatWindow extends JFrame {
         connectButton.addActionListener(e -> connectToManual());
         connectDiscoveredButton.addActionListener(e -> connectToDiscovered());
 
+        searchButton.addActionListener(e -> searchHistory());
+        searchField.addActionListener(e -> searchHistory());
+
+        Timer frame = new Timer(FRAME_MILLIS, e -> flushPending());
+        frame.setCoalesce(true);
+        frame.start();
+
         sendButton.addActionListener(e -> sendChat());
         inputField.addActionListener(e -> sendChat());
     }
 
     private void startNode() {
+        PeerNode n = null;
+        MessageHistory h = null;
         try {
             String name = nameField.getText().trim();
             int port = Integer.parseInt(listenPortField.getText().trim());
             if (name.isEmpty()) throw new IllegalArgumentException("Nome não pode ser vazio.");
-            node = new PeerNode(name, port);
-            node.setUiCallbacks(new PeerNode.UiCallbacks() {
-                @Override
-                public void onStatus(String msg) {
-                    appendSystem(msg);
-                }
-                @Override
-                public void onPeerConnected(PeerInfo peer) {
-                    SwingUtilities.invokeLater(() -> {
-                        String key = key(peer);
-                        connectedByKey.put(key, peer);
-                        if (!containsValue(connectedModel, key)) connectedModel.addElement(key);
-                    });
-                }
-                @Override
-                public void onPeerDisconnected(PeerInfo peer) {
-                    SwingUtilities.invokeLater(() -> {
-                        String key = key(peer);
-                        connectedByKey.remove(key);
-                        connectedModel.removeElement(key);
-                    });
-                }
-                @Override
-                public void onMessageReceived(Message m) {
-                    SwingUtilities.invokeLater(() -> {
-                        String line = String.format("[%tT] %s: %s", new Date(m.getTimestamp()), m.getFromName(), m.getText());
-                        chatArea.append(line + "\n");
-                        if (history != null) history.append(line);
-                        chatArea.setCaretPosition(chatArea.getDocument().getLength());
-                    });
-                }
-                @Override
-                public void onPeerDiscovered(String host, int port, String name, String id) {
-                    SwingUtilities.invokeLater(() -> {
-                        String entry = host + ":" + port + " (" + name + ")";
-                        if (!containsValue(discoveredModel, entry)) discoveredModel.addElement(entry);
-                    });
-                }
+            n = new PeerNode(name, port);
+            n.subscribe("ui", new UiBatch());
+
+            // assinantes do barramento só veem o que vem depois deles: o histórico entra antes
+            // do start, senão os eventos da partida (descoberta, primeiros HELLO/CHAT) não são gravados
+            h = new MessageHistory();
+            h.start(name, port);
+            MessageHistory hist = h;
+            // com o instante do evento, a linha na tela e no histórico têm o mesmo horário (paginação)
+            n.subscribe("history", (e, seq, endOfBatch) -> {
+                if (e.getType() == NodeEvent.Type.MESSAGE) hist.append(e.getMessage(), e.getTime());
+                else if (e.getType() == NodeEvent.Type.STATUS) hist.append(e.getText(), e.getTime());
+                else if (e.getType() == NodeEvent.Type.PEER_SLOW) hist.append(slowText(e), e.getTime());
             });
-            node.start();
-
-            history = new MessageHistory();
-            history.start(name, node.getListenPort());
+            n.setSyncArchive(h::chatsBetween);
+            h.registerMetrics(n.getMetrics());
+            history = h;
+            // sessões anteriores na tela antes do start; o que vier da partida chega ao vivo, sem repetir
+            reloadScrollback();
+            n.start();
+            node = n;
 
             startButton.setEnabled(false);
             stopButton.setEnabled(true);
@@ -196,6 +239,11 @@ public class ChatWindow extends JFrame {
             listenPortField.setEnabled(false);
             appendSystem("Nó iniciado. Aguardando conexões em porta " + node.getListenPort());
         } catch (Exception ex) {
+            // nada fica meio iniciado: a tela volta ao estado de parado
+            if (n != null) n.shutdown();
+            if (h != null) h.close();
+            node = null;
+            history = null;
             JOptionPane.showMessageDialog(this, "Falha ao iniciar: " + ex.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE);
         }
     }
@@ -207,8 +255,10 @@ public class ChatWindow extends JFrame {
                 node = null;
             }
             if (history != null) {
-                history.close();
+                MessageHistory h = history;
                 history = null;
+                h.close();
+                appendSystem("Histórico: " + h.getStats());
             }
             connectedModel.clear();
             discoveredModel.clear();
@@ -263,17 +313,244 @@ public class ChatWindow extends JFrame {
         inputField.setText("");
     }
 
+    private void searchHistory() {
+        if (history == null) {
+            JOptionPane.showMessageDialog(this, "Inicie o nó para buscar no histórico.", "Atenção", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        String raw = searchField.getText().trim();
+        if (raw.isEmpty()) return;
+        // "de:nome" vira filtro de remetente; o resto são os termos
+        StringBuilder terms = new StringBuilder();
+        String sender = null;
+        for (String part : raw.split("\\s+")) {
+            if (part.startsWith("de:") && part.length() > 3) sender = part.substring(3);
+            else terms.append(part).append(' ');
+        }
+        SearchQuery query = new SearchQuery(terms.toString()).setSender(sender).setLimit(100);
+        MessageHistory h = history;
+        searchButton.setEnabled(false);
+        new SwingWorker<List<SearchHit>, Void>() {
+            @Override
+            protected List<SearchHit> doInBackground() throws Exception {
+                return h.search(query);
+            }
+
+            @Override
+            protected void done() {
+                searchButton.setEnabled(true);
+                try {
+                    showSearchResults(raw, get());
+                } catch (Exception ex) {
+                    appendSystem("Falha na busca: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void showSearchResults(String query, List<SearchHit> hits) {
+        DefaultListModel<String> model = new DefaultListModel<>();
+        for (SearchHit hit : hits) {
+            StoredMessage m = hit.getMessage();
+            model.addElement(String.format("[%1$tF %1$tT] %2$s: %3$s", new Date(m.getTimestamp()), m.getFromName(), m.getText()));
+        }
+        if (model.isEmpty()) model.addElement("Nenhuma mensagem encontrada.");
+        JDialog dialog = new JDialog(this, "Busca: " + query + " (" + hits.size() + ")", false);
+        dialog.add(new JScrollPane(new JList<>(model)));
+        dialog.setSize(700, 400);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
     private void performShutdown() {
         stopNode();
     }
 
+    /** Mostra as últimas mensagens gravadas (inclusive de sessões anteriores). */
+    private void reloadScrollback() {
+        try {
+            List<ChatLog.Line> lines = new ArrayList<>();
+            for (StoredMessage sm : history.last(SCROLLBACK_LINES)) lines.add(line(sm));
+            chatLog.clear();
+            chatLog.append(lines, VIEW_LINES);
+            chatScroll.validate();
+            historyExhausted = false;
+            scrollToEnd();
+        } catch (IOException ex) {
+            appendSystem("Falha ao carregar histórico: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Chegou ao topo: busca no histórico a página anterior à primeira linha
+     * da tela, fora da EDT, e a insere sem mover o que está visível.
+     */
+    private void loadOlder() {
+        MessageHistory h = history;
+        ChatLog.Line top = chatLog.first();
+        if (h == null || top == null || loadingOlder || historyExhausted || chatLog.getSize() >= VIEW_MAX_LINES) return;
+        loadingOlder = true;
+        long until = top.time + PAGE_SLACK_MILLIS;
+        Set<String> shown = chatLog.leadingKeys(until);
+        new SwingWorker<List<ChatLog.Line>, Void>() {
+            @Override
+            protected List<ChatLog.Line> doInBackground() throws Exception {
+                List<ChatLog.Line> page = new ArrayList<>();
+                for (StoredMessage sm : h.before(until, PAGE_LINES + shown.size())) {
+                    ChatLog.Line l = line(sm);
+                    if (!shown.contains(l.key)) page.add(l);
+                }
+                return page;
+            }
+
+            @Override
+            protected void done() {
+                loadingOlder = false;
+                try {
+                    List<ChatLog.Line> page = get();
+                    if (h != history || chatLog.first() != top) return; // a tela mudou enquanto buscava
+                    if (page.isEmpty()) {
+                        historyExhausted = true;
+                        return;
+                    }
+                    int added = chatLog.prepend(page, VIEW_MAX_LINES);
+                    chatScroll.validate(); // o tamanho da lista precisa estar atualizado para compensar a rolagem
+                    chatScrollBar.setValue(chatScrollBar.getValue() + added * chatList.getFixedCellHeight());
+                } catch (Exception ex) {
+                    historyExhausted = true;
+                    appendSystem("Falha ao carregar histórico: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /** Um quadro: aplica de uma vez tudo o que chegou desde o anterior. */
+    private void flushPending() {
+        List<ChatLog.Line> lines;
+        List<Runnable> changes;
+        synchronized (pendingLock) {
+            if (pendingLines.isEmpty() && pendingChanges.isEmpty()) return;
+            lines = pendingLines;
+            changes = pendingChanges;
+            pendingLines = new ArrayList<>();
+            pendingChanges = new ArrayList<>();
+        }
+        for (Runnable r : changes) r.run();
+        if (lines.isEmpty()) return;
+        boolean following = atEnd();
+        int evicted = chatLog.append(lines, following ? VIEW_LINES : VIEW_MAX_LINES);
+        chatScroll.validate();
+        if (following) {
+            scrollToEnd();
+        } else if (evicted > 0) {
+            // linhas saíram do topo: compensa para o trecho que o usuário está lendo não pular
+            chatScrollBar.setValue(Math.max(0, chatScrollBar.getValue() - evicted * chatList.getFixedCellHeight()));
+        }
+    }
+
+    private void publishLines(List<ChatLog.Line> lines, List<Runnable> changes) {
+        synchronized (pendingLock) {
+            pendingLines.addAll(lines);
+            pendingChanges.addAll(changes);
+        }
+    }
+
+    private boolean atEnd() {
+        return chatScrollBar.getValue() + chatScrollBar.getVisibleAmount()
+                >= chatScrollBar.getMaximum() - chatList.getFixedCellHeight();
+    }
+
+    private void scrollToEnd() {
+        if (chatLog.getSize() > 0) chatList.ensureIndexIsVisible(chatLog.getSize() - 1);
+    }
+
+    private static ChatLog.Line line(StoredMessage sm) {
+        if (sm.getKind() == StoredMessage.Kind.CHAT) {
+            return new ChatLog.Line(sm.getStoredAt(), sm.getId(), formatChat(sm.getTimestamp(), sm.getFromName(), sm.getText()));
+        }
+        return new ChatLog.Line(sm.getStoredAt(), sm.getText(), formatSystem(sm.getStoredAt(), sm.getText()));
+    }
+
+    private static ChatLog.Line systemLine(long time, String text) {
+        return new ChatLog.Line(time, text, formatSystem(time, text));
+    }
+
+    private static String formatChat(long timestamp, String fromName, String text) {
+        return String.format("[%tT] %s: %s", new Date(timestamp), fromName, text);
+    }
+
+    private static String formatSystem(long timestamp, String msg) {
+        return String.format("[%tT] [sistema] %s", new Date(timestamp), msg);
+    }
+
     private void appendSystem(String msg) {
-        SwingUtilities.invokeLater(() -> {
-            String line = String.format("[%tT] [sistema] %s", new Date(), msg);
-            chatArea.append(line + "\n");
-            if (history != null) history.append(line);
-            chatArea.setCaretPosition(chatArea.getDocument().getLength());
-        });
+        long now = System.currentTimeMillis();
+        MessageHistory h = history;
+        if (h != null) h.append(msg, now);
+        publishLines(Collections.singletonList(systemLine(now, msg)), Collections.emptyList());
+    }
+
+    private static String slowText(NodeEvent e) {
+        return "Peer lento: " + key(e.getPeer()) + " (política " + e.getPolicy() + ")";
+    }
+
+    /**
+     * Assinante "ui": roda na thread de eventos do nó, formata as linhas fora
+     * da EDT e entrega o lote para o próximo quadro. O histórico grava por conta própria.
+     */
+    private final class UiBatch implements Subscriber<NodeEvent> {
+
+        private final List<ChatLog.Line> lines = new ArrayList<>();
+        private final List<Runnable> changes = new ArrayList<>();
+
+        @Override
+        public void onEvent(NodeEvent e, long sequence, boolean endOfBatch) {
+            switch (e.getType()) {
+                case STATUS:
+                    lines.add(systemLine(e.getTime(), e.getText()));
+                    break;
+                case MESSAGE:
+                    Message m = e.getMessage();
+                    lines.add(new ChatLog.Line(e.getTime(), m.getId(), formatChat(m.getTimestamp(), m.getFromName(), m.getText())));
+                    break;
+                case PEER_SLOW:
+                    lines.add(systemLine(e.getTime(), slowText(e)));
+                    break;
+                case PEER_CONNECTED: {
+                    PeerInfo peer = e.getPeer();
+                    changes.add(() -> {
+                        String key = key(peer);
+                        connectedByKey.put(key, peer);
+                        if (!containsValue(connectedModel, key)) connectedModel.addElement(key);
+                    });
+                    break;
+                }
+                case PEER_DISCONNECTED: {
+                    PeerInfo peer = e.getPeer();
+                    changes.add(() -> {
+                        String key = key(peer);
+                        connectedByKey.remove(key);
+                        connectedModel.removeElement(key);
+                    });
+                    break;
+                }
+                case PEER_DISCOVERED: {
+                    PeerInfo peer = e.getPeer();
+                    String entry = peer.getHost() + ":" + peer.getPort() + " (" + peer.getName() + ")";
+                    changes.add(() -> {
+                        if (!containsValue(discoveredModel, entry)) discoveredModel.addElement(entry);
+                    });
+                    break;
+                }
+                default:
+                    break;
+            }
+            if (endOfBatch && (!lines.isEmpty() || !changes.isEmpty())) {
+                publishLines(lines, changes);
+                lines.clear();
+                changes.clear();
+            }
+        }
     }
 
     private static String key(PeerInfo p) {
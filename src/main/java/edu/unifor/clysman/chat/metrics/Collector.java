@@ -0,0 +1,7 @@
+package edu.unifor.clysman.chat.metrics;
+
+/** Produz métricas na hora da coleta, ex.: uma série por conexão aberta. */
+public interface Collector {
+
+    void collect(MetricSink sink);
+}
@@ -0,0 +1,24 @@
+package edu.unifor.clysman.chat.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contador monotônico sobre {@link LongAdder}: threads diferentes incrementam
+ * células diferentes, sem disputa nem alocação no caminho quente.
+ */
+public final class Counter {
+
+    private final LongAdder adder = new LongAdder();
+
+    public void inc() {
+        adder.increment();
+    }
+
+    public void add(long n) {
+        adder.add(n);
+    }
+
+    public long get() {
+        return adder.sum();
+    }
+}
@@ -0,0 +1,98 @@
+package edu.unifor.clysman.chat.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma com faixas em potências de 2: a faixa {@code i} conta valores
+ * até {@code 2^i}, e a última recebe tudo acima. Registrar custa um
+ * {@code numberOfLeadingZeros} e dois {@link LongAdder#add}, sem alocação;
+ * percentis saem do limite superior da faixa (erro de até 2x), o que basta
+ * para acompanhar tendências.
+ */
+public final class Histogram {
+
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+    private final double scale;
+
+    /**
+     * @param buckets faixas (a última vai de {@code 2^(buckets-2)} ao infinito)
+     * @param scale   fator aplicado ao exportar (ex.: 1e-9 para registrar ns e exportar segundos)
+     */
+    public Histogram(int buckets, double scale) {
+        if (buckets < 2 || buckets > 64) throw new IllegalArgumentException("buckets deve estar entre 2 e 64");
+        this.buckets = new LongAdder[buckets];
+        for (int i = 0; i < buckets; i++) this.buckets[i] = new LongAdder();
+        this.scale = scale;
+    }
+
+    public void record(long value) {
+        int b = value <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+        buckets[Math.min(b, buckets.length - 1)].increment();
+        sum.add(value);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < counts.length; i++) counts[i] = buckets[i].sum();
+        return new Snapshot(counts, sum.sum(), scale);
+    }
+
+    /** Contagens lidas de uma vez; aproximadas se houver registros concorrentes. */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long sum;
+        private final double scale;
+
+        Snapshot(long[] counts, long sum, double scale) {
+            this.counts = counts;
+            this.sum = sum;
+            this.scale = scale;
+        }
+
+        public int buckets() {
+            return counts.length;
+        }
+
+        public long countAt(int bucket) {
+            return counts[bucket];
+        }
+
+        /** Limite superior (inclusive, já escalado) da faixa; infinito na última. */
+        public double upperBound(int bucket) {
+            return bucket == counts.length - 1 ? Double.POSITIVE_INFINITY : (1L << bucket) * scale;
+        }
+
+        public long count() {
+            long n = 0;
+            for (long c : counts) n += c;
+            return n;
+        }
+
+        public double sum() {
+            return sum * scale;
+        }
+
+        public double mean() {
+            long n = count();
+            return n == 0 ? 0 : sum() / n;
+        }
+
+        /**
+         * Limite superior da faixa que contém o quantil {@code q} (0..1); a
+         * faixa aberta responde com o limite da anterior.
+         */
+        public double quantile(double q) {
+            long n = count();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) return upperBound(Math.min(i, counts.length - 2));
+            }
+            return upperBound(counts.length - 2);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package edu.unifor.clysman.chat.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Achata a coleta em atributos: {@code nome} ou {@code nome[rótulo=valor]};
+ * contadores viram {@code Long}, gauges {@code Double}, e cada histograma vira
+ * {@code _count}, {@code _sum}, {@code _mean}, {@code _p50} e {@code _p99}.
+ */
+final class JmxFormat implements MetricSink {
+
+    private final Map<String, Object> values = new LinkedHashMap<>();
+    private Type current = Type.GAUGE;
+
+    @Override
+    public void family(String name, Type type, String help) {
+        current = type;
+    }
+
+    @Override
+    public void value(String name, double value, String... labels) {
+        values.put(key(name, labels), current == Type.COUNTER ? (Object) (long) value : (Object) value);
+    }
+
+    @Override
+    public void histogram(String name, Histogram.Snapshot s, String... labels) {
+        values.put(key(name + "_count", labels), s.count());
+        values.put(key(name + "_sum", labels), s.sum());
+        values.put(key(name + "_mean", labels), s.mean());
+        values.put(key(name + "_p50", labels), s.quantile(0.5));
+        values.put(key(name + "_p99", labels), s.quantile(0.99));
+    }
+
+    private static String key(String name, String[] labels) {
+        if (labels.length == 0) return name;
+        StringBuilder key = new StringBuilder(name).append('[');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) key.append(',');
+            key.append(labels[i]).append('=').append(labels[i + 1]);
+        }
+        return key.append(']').toString();
+    }
+
+    Map<String, Object> values() {
+        return values;
+    }
+}
@@ -0,0 +1,17 @@
+package edu.unifor.clysman.chat.metrics;
+
+/**
+ * Destino de uma coleta: o formato texto do Prometheus ou os atributos JMX.
+ * Cada família é anunciada uma vez, seguida das suas amostras.
+ */
+public interface MetricSink {
+
+    enum Type { COUNTER, GAUGE, HISTOGRAM }
+
+    void family(String name, Type type, String help);
+
+    /** Amostra de contador ou gauge; {@code labels} em pares nome, valor. */
+    void value(String name, double value, String... labels);
+
+    void histogram(String name, Histogram.Snapshot snapshot, String... labels);
+}
@@ -0,0 +1,62 @@
+package edu.unifor.clysman.chat.metrics;
+
+import javax.management.*;
+import java.util.Map;
+
+/**
+ * MBean dinâmico, só leitura: cada coleta do registro vira a lista de
+ * atributos, então conexões novas aparecem sem registrar nada.
+ */
+final class MetricsMBean implements DynamicMBean {
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object v = registry.snapshot().get(attribute);
+        if (v == null) throw new AttributeNotFoundException(attribute);
+        return v;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Object> snapshot = registry.snapshot();
+        AttributeList list = new AttributeList();
+        for (String a : attributes) {
+            Object v = snapshot.get(a);
+            if (v != null) list.add(new Attribute(a, v));
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("métricas são só leitura: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException {
+        throw new MBeanException(new UnsupportedOperationException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Object> snapshot = registry.snapshot();
+        MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[snapshot.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> e : snapshot.entrySet()) {
+            attrs[i++] = new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(), e.getKey(),
+                    true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Métricas do nó P2P", attrs, null, null, null);
+    }
+}
@@ -0,0 +1,119 @@
+package edu.unifor.clysman.chat.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Métricas de um nó. Contadores e histogramas são obtidos uma vez (em geral
+ * no construtor de quem registra) e atualizados sem alocação; gauges e
+ * {@link Collector}s são lidos só na coleta. A mesma coleta alimenta o
+ * formato texto do Prometheus ({@link #scrape()}) e o MBean de
+ * {@link #registerJmx}.
+ *
+ * Nomes seguem a convenção do Prometheus: {@code snake_case}, contadores
+ * terminando em {@code _total}, unidade no nome ({@code _bytes}, {@code _seconds}).
+ */
+public final class MetricsRegistry {
+
+    private final ConcurrentMap<String, Object> byName = new ConcurrentHashMap<>();
+    private final List<Collector> collectors = new CopyOnWriteArrayList<>();
+    private volatile ObjectName jmxName;
+
+    /** Contador com esse nome; criado na primeira chamada. */
+    public synchronized Counter counter(String name, String help) {
+        Object existing = byName.get(name);
+        if (existing instanceof Counter) return (Counter) existing;
+        Counter c = new Counter();
+        return register(name, c, sink -> {
+            sink.family(name, MetricSink.Type.COUNTER, help);
+            sink.value(name, c.get());
+        });
+    }
+
+    /** Contador mantido por outra classe (ex.: um {@code AtomicLong} que já existia). */
+    public synchronized void counter(String name, String help, LongSupplier value) {
+        register(name, value, sink -> {
+            sink.family(name, MetricSink.Type.COUNTER, help);
+            sink.value(name, value.getAsLong());
+        });
+    }
+
+    public synchronized void gauge(String name, String help, DoubleSupplier value) {
+        register(name, value, sink -> {
+            sink.family(name, MetricSink.Type.GAUGE, help);
+            sink.value(name, value.getAsDouble());
+        });
+    }
+
+    /** Histograma com esse nome; ver {@link Histogram#Histogram(int, double)}. */
+    public Histogram histogram(String name, String help, int buckets, double scale) {
+        return histogram(name, help, new Histogram(buckets, scale));
+    }
+
+    /** Exporta um histograma que já existe (ex.: criado antes de haver registro). */
+    public synchronized Histogram histogram(String name, String help, Histogram h) {
+        Object existing = byName.get(name);
+        if (existing instanceof Histogram) return (Histogram) existing;
+        return register(name, h, sink -> {
+            sink.family(name, MetricSink.Type.HISTOGRAM, help);
+            sink.histogram(name, h.snapshot());
+        });
+    }
+
+    /** Famílias montadas na coleta; o coletor anuncia cada família que emitir. */
+    public void register(Collector collector) {
+        collectors.add(collector);
+    }
+
+    private <T> T register(String name, T metric, Collector collector) {
+        Object prev = byName.putIfAbsent(name, metric);
+        if (prev != null) throw new IllegalArgumentException("métrica já registrada: " + name);
+        collectors.add(collector);
+        return metric;
+    }
+
+    public void collect(MetricSink sink) {
+        for (Collector c : collectors) c.collect(sink);
+    }
+
+    /** Todas as métricas no formato texto do Prometheus (versão 0.0.4). */
+    public String scrape() {
+        PrometheusFormat out = new PrometheusFormat();
+        collect(out);
+        return out.toString();
+    }
+
+    /** Fotografia plana (nome{rótulos} → valor), a mesma que o MBean expõe. */
+    public Map<String, Object> snapshot() {
+        JmxFormat out = new JmxFormat();
+        collect(out);
+        return out.values();
+    }
+
+    /** Publica as métricas como atributos de um MBean na plataforma; ignorado se já publicado. */
+    public synchronized void registerJmx(String objectName) throws JMException {
+        if (jmxName != null) return;
+        ObjectName name = new ObjectName(objectName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), name);
+        jmxName = name;
+    }
+
+    public synchronized void unregisterJmx() {
+        if (jmxName == null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(jmxName);
+        } catch (JMException ignored) {
+        }
+        jmxName = null;
+    }
+}
@@ -0,0 +1,65 @@
+package edu.unifor.clysman.chat.metrics;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/** Formato texto do Prometheus; famílias repetidas (ex.: várias conexões) saem com um só HELP/TYPE. */
+final class PrometheusFormat implements MetricSink {
+
+    private final StringBuilder out = new StringBuilder(4096);
+    private final Set<String> announced = new HashSet<>();
+
+    @Override
+    public void family(String name, Type type, String help) {
+        if (!announced.add(name)) return;
+        out.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type.name().toLowerCase(Locale.ROOT)).append('\n');
+    }
+
+    @Override
+    public void value(String name, double value, String... labels) {
+        out.append(name);
+        if (labels.length > 0) {
+            out.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) out.append(',');
+                out.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(number(value)).append('\n');
+    }
+
+    @Override
+    public void histogram(String name, Histogram.Snapshot s, String... labels) {
+        String[] bucket = Arrays.copyOf(labels, labels.length + 2);
+        bucket[labels.length] = "le";
+        long cumulative = 0;
+        for (int i = 0; i < s.buckets(); i++) {
+            cumulative += s.countAt(i);
+            bucket[labels.length + 1] = number(s.upperBound(i));
+            value(name + "_bucket", cumulative, bucket);
+        }
+        value(name + "_sum", s.sum(), labels);
+        value(name + "_count", cumulative, labels);
+    }
+
+    private static String escape(String v) {
+        if (v == null) return "";
+        return v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    static String number(double v) {
+        if (Double.isInfinite(v)) return v > 0 ? "+Inf" : "-Inf";
+        if (Double.isNaN(v)) return "NaN";
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) return Long.toString((long) v);
+        return Double.toString(v);
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
@@ -1,17 +1,27 @@
 package edu.unifor.clysman.chat.model;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class Message {
 
     private String id;
-    private String type; // HELLO, CHAT, PEERSHARE
+    private String type; // HELLO, CHAT, SYNC, PEERSHARE, IHAVE, GRAFT, PRUNE, DIGEST, PING, PONG
     private String fromId;
+    private long seq; // sequência por origem (CHAT); 0 = peer antigo, deduplica por id. PING/PONG: hora do envio do PING em µs
     private String fromName;
     private String text;
     private long timestamp;
-    private List<PeerInfo> peers; // para HELLO/PEERSHARE
+    private List<PeerInfo> peers; // PEERSHARE (e HELLO de peers antigos)
+    private int port; // HELLO: porta de escuta do remetente; 0 = peer antigo
+    private int heartbeat; // HELLO: intervalo de PING do remetente em ms; 0 = não manda nem responde PING
+    private boolean plumtree; // HELLO: o remetente trata IHAVE/GRAFT/PRUNE; false = peer antigo ou modo FLOOD
+    private List<Long> peerDigest; // PEERSHARE sem peers: hashes da tabela de peers, por balde
+    private List<String> codecs; // HELLO: codecs de fio suportados, em ordem de preferência
+    private List<String> ids; // IHAVE/GRAFT: ids de CHAT anunciados ou pedidos
+    private Map<String, Long> watermarks; // DIGEST: maior seq contíguo já visto de cada origem
+    private List<TraceHop> trace; // CHAT amostrado: origem e cada repasse, em ordem; null = sem rastreio
 
     public static Message chat(String fromId, String fromName, String text) {
         Message m = new Message();
@@ -24,6 +34,22 @@ public class Message {
         return m;
     }
 
+    /**
+     * Cópia de um CHAT para reenvio pela anti-entropia. Tem tipo próprio para
+     * que quem recebe o entregue sem repassar nem tratar como gossip.
+     */
+    public static Message sync(Message chat) {
+        Message m = new Message();
+        m.id = chat.id;
+        m.type = "SYNC";
+        m.fromId = chat.fromId;
+        m.seq = chat.seq;
+        m.fromName = chat.fromName;
+        m.text = chat.text;
+        m.timestamp = chat.timestamp;
+        return m;
+    }
+
     public static Message hello(String fromId, String fromName, int port, List<PeerInfo> peers) {
         Message m = new Message();
         m.id = UUID.randomUUID().toString();
@@ -31,6 +57,7 @@ public class Message {
         m.fromId = fromId;
         m.fromName = fromName;
         m.timestamp = System.currentTimeMillis();
+        m.port = port;
         m.peers = peers;
         return m;
     }
@@ -46,19 +73,89 @@ public class Message {
         return m;
     }
 
+    /** Pedido de troca incremental: o vizinho responde com PEERSHARE só dos baldes que diferem. */
+    public static Message peerDigest(String fromId, String fromName, List<Long> digest) {
+        Message m = peerShare(fromId, fromName, null);
+        m.peerDigest = digest;
+        return m;
+    }
+
+    /** Anúncio preguiçoso (Plumtree): tenho estes CHAT. */
+    public static Message ihave(String fromId, List<String> ids) {
+        return control("IHAVE", fromId, ids);
+    }
+
+    /** Plumtree: me envie estes CHAT e passe a empurrar mensagens para mim. */
+    public static Message graft(String fromId, List<String> ids) {
+        return control("GRAFT", fromId, ids);
+    }
+
+    /** Plumtree: pare de empurrar mensagens para mim (recebi duplicata). */
+    public static Message prune(String fromId) {
+        return control("PRUNE", fromId, null);
+    }
+
+    /** Anti-entropia: o que já vi de cada origem, para o vizinho mandar só o que falta. */
+    public static Message digest(String fromId, Map<String, Long> watermarks) {
+        Message m = control("DIGEST", fromId, null);
+        m.watermarks = watermarks;
+        return m;
+    }
+
+    /** Heartbeat: o vizinho responde com PONG ecoando {@code sentMicros}, de onde sai o RTT. */
+    public static Message ping(String fromId, long sentMicros) {
+        Message m = control("PING", fromId, null);
+        m.seq = sentMicros;
+        return m;
+    }
+
+    public static Message pong(String fromId, long echoMicros) {
+        Message m = control("PONG", fromId, null);
+        m.seq = echoMicros;
+        return m;
+    }
+
+    private static Message control(String type, String fromId, List<String> ids) {
+        Message m = new Message();
+        m.id = UUID.randomUUID().toString();
+        m.type = type;
+        m.fromId = fromId;
+        m.timestamp = System.currentTimeMillis();
+        m.ids = ids;
+        return m;
+    }
+
     public String getId() { return id; }
     public String getType() { return type; }
     public String getFromId() { return fromId; }
+    public long getSeq() { return seq; }
     public String getFromName() { return fromName; }
     public String getText() { return text; }
     public long getTimestamp() { return timestamp; }
     public List<PeerInfo> getPeers() { return peers; }
+    public int getPort() { return port; }
+    public int getHeartbeat() { return heartbeat; }
+    public boolean isPlumtree() { return plumtree; }
+    public List<Long> getPeerDigest() { return peerDigest; }
+    public List<String> getCodecs() { return codecs; }
+    public List<String> getIds() { return ids; }
+    public Map<String, Long> getWatermarks() { return watermarks; }
+    public List<TraceHop> getTrace() { return trace; }
 
     public void setId(String id) { this.id = id; }
     public void setType(String type) { this.type = type; }
     public void setFromId(String fromId) { this.fromId = fromId; }
+    public void setSeq(long seq) { this.seq = seq; }
     public void setFromName(String fromName) { this.fromName = fromName; }
     public void setText(String text) { this.text = text; }
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
     public void setPeers(List<PeerInfo> peers) { this.peers = peers; }
+    public void setPort(int port) { this.port = port; }
+    public void setHeartbeat(int heartbeat) { this.heartbeat = heartbeat; }
+    public void setPlumtree(boolean plumtree) { this.plumtree = plumtree; }
+    public void setPeerDigest(List<Long> peerDigest) { this.peerDigest = peerDigest; }
+    public void setCodecs(List<String> codecs) { this.codecs = codecs; }
+    public void setIds(List<String> ids) { this.ids = ids; }
+    public void setWatermarks(Map<String, Long> watermarks) { this.watermarks = watermarks; }
+    public void setTrace(List<TraceHop> trace) { this.trace = trace; }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package edu.unifor.clysman.chat.model;
+
+/**
+ * Uma passagem de um CHAT amostrado por um nó: quando chegou e quando foi
+ * repassado, em µs desde a época no relógio daquele nó. Na origem as duas
+ * marcas coincidem (instante do envio).
+ */
+public class TraceHop {
+    private String node;
+    private long recv;
+    private long fwd;
+
+    public TraceHop() {}
+
+    public TraceHop(String node, long recv, long fwd) {
+        this.node = node;
+        this.recv = recv;
+        this.fwd = fwd;
+    }
+
+    public String getNode() { return node; }
+    public long getRecv() { return recv; }
+    public long getFwd() { return fwd; }
+
+    public void setNode(String node) { this.node = node; }
+    public void setRecv(long recv) { this.recv = recv; }
+    public void setFwd(long fwd) { this.fwd = fwd; }
+}
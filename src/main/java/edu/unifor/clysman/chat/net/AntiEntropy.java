@@ -0,0 +1,245 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.model.Message;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Anti-entropia na (re)conexão. Depois do HELLO cada lado manda um DIGEST com
+ * a marca d'água de cada origem (o maior seq contíguo já visto); quem recebe
+ * envia de volta só os CHAT acima dessas marcas, em lotes. O custo acompanha
+ * o que falta, não o tamanho do histórico.
+ *
+ * Um nó novo (DIGEST vazio, ou só com as próprias mensagens) não recebe o
+ * histórico. Quem está reconectando também recebe, desde o início, as origens
+ * que não listou (nós que entraram ou começaram a falar enquanto o enlace
+ * estava fora), mas só se a memória ainda guarda a origem desde o seq 1: o
+ * reenvio fica limitado a {@code syncRetainPerOrigin} por origem e nunca vai
+ * ao arquivo.
+ *
+ * Os reenvios vão como SYNC, não CHAT: quem recebe entrega e repassa como
+ * SYNC aos outros vizinhos que também mandaram DIGEST, e duplicatas não podam
+ * enlaces do Plumtree.
+ *
+ * Os CHAT recentes ficam em memória, por origem; se o vizinho estiver atrás
+ * do que a memória cobre, o {@link SyncArchive} (histórico em disco) completa.
+ * Os lotes entram na mesma fila de saída que o tráfego ao vivo, mas só quando
+ * ela está abaixo de um quarto do limite, então o repasse normal nunca espera
+ * atrás de uma recuperação longa.
+ */
+final class AntiEntropy {
+
+    static final int MAX_DIGEST_ORIGINS = 1024;
+    private static final int MAX_RECENT_ORIGINS = 256;
+    private static final long PACE_MILLIS = 20;
+
+    private final PeerNode node;
+    private final ScheduledExecutorService scheduler;
+    private final Executor io;
+    private final int batchSize;
+    private final int retainPerOrigin;
+    private volatile SyncArchive archive;
+
+    // origem -> seq -> CHAT; acesso sob o monitor deste objeto
+    private final LinkedHashMap<String, TreeMap<Long, Message>> recent =
+            new LinkedHashMap<String, TreeMap<Long, Message>>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TreeMap<Long, Message>> eldest) {
+                    return size() > MAX_RECENT_ORIGINS;
+                }
+            };
+
+    private final Map<ConnectionHandler, Session> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong digestsSent = new AtomicLong();
+    private final AtomicLong digestsReceived = new AtomicLong();
+    private final AtomicLong messagesStreamed = new AtomicLong();
+    private final AtomicLong archiveReads = new AtomicLong();
+
+    private static final class Cursor {
+        final String origin;
+        long after;
+
+        Cursor(String origin, long after) {
+            this.origin = origin;
+            this.after = after;
+        }
+    }
+
+    private final class Session implements Runnable {
+        final ConnectionHandler to;
+        final Deque<Cursor> cursors;
+        volatile boolean cancelled;
+
+        Session(ConnectionHandler to, Deque<Cursor> cursors) {
+            this.to = to;
+            this.cursors = cursors;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled || !to.running.get()) {
+                sessions.remove(to, this);
+                return;
+            }
+            OutboundQueue q = to.getOutQueue();
+            if (q.bytes() > q.maxBytes() / 4) {
+                // fila ocupada com tráfego ao vivo: tenta de novo depois
+                schedule(this);
+                return;
+            }
+            int budget = batchSize;
+            while (budget > 0 && !cursors.isEmpty()) {
+                Cursor c = cursors.peekFirst();
+                List<Message> batch = fetch(c.origin, c.after, budget);
+                if (batch.isEmpty()) {
+                    cursors.pollFirst();
+                    continue;
+                }
+                for (Message m : batch) {
+                    to.send(new OutboundFrame(Message.sync(m)), null);
+                    c.after = m.getSeq();
+                }
+                messagesStreamed.addAndGet(batch.size());
+                budget -= batch.size();
+            }
+            if (cursors.isEmpty()) sessions.remove(to, this);
+            else schedule(this);
+        }
+    }
+
+    AntiEntropy(PeerNode node, ScheduledExecutorService scheduler, Executor io, NodeConfig config) {
+        this.node = node;
+        this.scheduler = scheduler;
+        this.io = io;
+        this.batchSize = config.getSyncBatchSize();
+        this.retainPerOrigin = config.getSyncRetainPerOrigin();
+    }
+
+    void setArchive(SyncArchive archive) {
+        this.archive = archive;
+    }
+
+    /** Guarda um CHAT novo (com seq) para reenviar a quem chegar atrasado. */
+    synchronized void record(Message m) {
+        if (m.getSeq() <= 0 || m.getFromId() == null) return;
+        TreeMap<Long, Message> byseq = recent.computeIfAbsent(m.getFromId(), k -> new TreeMap<>());
+        byseq.put(m.getSeq(), m);
+        if (byseq.size() > retainPerOrigin) byseq.pollFirstEntry();
+    }
+
+    Message digest(Map<String, Long> watermarks) {
+        digestsSent.incrementAndGet();
+        return Message.digest(node.getMyId(), watermarks);
+    }
+
+    /**
+     * O vizinho informou o que já viu; planeja o envio do que temos acima
+     * disso. {@code ours} são nossas marcas d'água, para origens que a
+     * memória já não cobre mas o arquivo talvez sim.
+     */
+    void onDigest(ConnectionHandler from, Map<String, Long> theirs, Map<String, Long> ours) {
+        digestsReceived.incrementAndGet();
+        if (theirs == null) theirs = Collections.emptyMap();
+        String peerId = from.getPeerInfo() != null ? from.getPeerInfo().getId() : null;
+        boolean reconnect = false;
+        for (String origin : theirs.keySet()) {
+            if (!origin.equals(peerId)) {
+                reconnect = true;
+                break;
+            }
+        }
+        Map<String, Long> have = new HashMap<>(ours);
+        Set<String> whole = new HashSet<>(); // origens que a memória cobre desde o seq 1
+        synchronized (this) {
+            for (Map.Entry<String, TreeMap<Long, Message>> e : recent.entrySet()) {
+                if (e.getValue().isEmpty()) continue;
+                have.merge(e.getKey(), e.getValue().lastKey(), Math::max);
+                if (e.getValue().firstKey() == 1) whole.add(e.getKey());
+            }
+        }
+        Deque<Cursor> cursors = new ArrayDeque<>();
+        for (Map.Entry<String, Long> e : have.entrySet()) {
+            String origin = e.getKey();
+            if (origin.equals(peerId)) continue; // as próprias mensagens ele já tem
+            Long theirWm = theirs.get(origin);
+            if (theirWm == null) {
+                // origem que ele nunca viu: surgiu enquanto o enlace estava fora
+                if (reconnect && whole.contains(origin)) cursors.add(new Cursor(origin, 0));
+                continue;
+            }
+            if (e.getValue() > theirWm) cursors.add(new Cursor(origin, theirWm));
+        }
+        Session old = cursors.isEmpty() ? sessions.remove(from) : sessions.put(from, new Session(from, cursors));
+        if (old != null) old.cancelled = true;
+        Session s = sessions.get(from);
+        if (s != null && !cursors.isEmpty()) io.execute(s);
+    }
+
+    void neighborDown(ConnectionHandler ch) {
+        Session s = sessions.remove(ch);
+        if (s != null) s.cancelled = true;
+    }
+
+    private void schedule(Session s) {
+        try {
+            scheduler.schedule(() -> io.execute(s), PACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // nó encerrando
+            sessions.remove(s.to, s);
+        }
+    }
+
+    /** Até {@code max} CHAT de {@code origin} com seq acima de {@code after}, em ordem. */
+    private List<Message> fetch(String origin, long after, int max) {
+        List<Message> out = new ArrayList<>();
+        Long first;
+        synchronized (this) {
+            TreeMap<Long, Message> byseq = recent.get(origin);
+            first = byseq != null && !byseq.isEmpty() ? byseq.firstKey() : null;
+            if (first != null && first <= after + 1) {
+                for (Message m : byseq.tailMap(after, false).values()) {
+                    if (out.size() == max) break;
+                    out.add(m);
+                }
+                return out;
+            }
+        }
+        // a memória não cobre o começo do intervalo: o que faltar vem do arquivo
+        SyncArchive a = archive;
+        if (a != null) {
+            try {
+                List<Message> old = a.chatsBetween(origin, after, first != null ? first : Long.MAX_VALUE, max);
+                archiveReads.incrementAndGet();
+                if (!old.isEmpty()) return old;
+            } catch (IOException ignored) {
+                // arquivo indisponível: segue só com a memória
+            }
+        }
+        synchronized (this) {
+            TreeMap<Long, Message> byseq = recent.get(origin);
+            if (byseq == null) return out;
+            for (Message m : byseq.tailMap(after, false).values()) {
+                if (out.size() == max) break;
+                out.add(m);
+            }
+        }
+        return out;
+    }
+
+    void shutdown() {
+        for (Session s : sessions.values()) s.cancelled = true;
+        sessions.clear();
+    }
+
+    SyncStats stats() {
+        return new SyncStats(digestsSent.get(), digestsReceived.get(), messagesStreamed.get(),
+                archiveReads.get(), sessions.size());
+    }
+}
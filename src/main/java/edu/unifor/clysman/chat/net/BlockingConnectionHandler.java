@@ -0,0 +1,160 @@
+package edu.unifor.clysman.chat.net;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modelo clássico: uma thread de leitura e uma de escrita por conexão. As
+ * threads vêm do PeerNode e podem ser virtuais (ThreadMode.VIRTUAL).
+ */
+class BlockingConnectionHandler extends ConnectionHandler {
+
+    private final Socket socket;
+
+    private Thread readerThread;
+    private Thread writerThread;
+    private final Object pauseLock = new Object();
+    private volatile InputStream in;
+    private volatile OutputStream out;
+
+    BlockingConnectionHandler(Socket socket, PeerNode node) {
+        super(node);
+        this.socket = socket;
+    }
+
+    @Override
+    void start() {
+        if (!running.compareAndSet(false, true)) return;
+        try {
+            in = socket.getInputStream();
+            // buffer do tamanho do lote: um flush por lote vira uma única escrita no socket
+            out = new BufferedOutputStream(socket.getOutputStream(), node.getConfig().getWriteBatchMaxBytes());
+        } catch (IOException e) {
+            stop();
+            return;
+        }
+
+        readerThread = node.newThread(this::readLoop, "reader-" + getRemoteKey());
+        writerThread = node.newThread(this::writeLoop, "writer-" + getRemoteKey());
+        readerThread.start();
+        writerThread.start();
+
+        node.onHandlerStarted(this);
+    }
+
+    @Override
+    void stop() {
+        if (!running.compareAndSet(true, false)) return;
+        try { socket.close(); } catch (IOException ignored) {}
+        if (readerThread != null) readerThread.interrupt();
+        if (writerThread != null) writerThread.interrupt();
+        outQueue.clear();
+        resumeSources();
+        node.onHandlerStopped(this);
+    }
+
+    @Override
+    protected void onEnqueued(int size) {
+        // a própria fila acorda o escritor
+    }
+
+    @Override
+    protected void readPauseChanged() {
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (running.get()) {
+                awaitReadResume();
+                ByteBuffer buf = decoder.buffer();
+                int n = in.read(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+                if (n < 0) break;
+                buf.position(buf.position() + n);
+                decoder.drain(this::deliver);
+            }
+        } catch (IOException | InterruptedException ignored) {
+        } finally {
+            stop();
+        }
+    }
+
+    private void awaitReadResume() throws InterruptedException {
+        synchronized (pauseLock) {
+            while (isReadPaused() && running.get()) pauseLock.wait(100);
+        }
+    }
+
+    /**
+     * Escreve em lotes: pega tudo o que já está na fila (até o orçamento de
+     * frames/bytes), opcionalmente espera a janela de linger por mais, e faz
+     * um único flush por lote.
+     */
+    private void writeLoop() {
+        NodeConfig cfg = node.getConfig();
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(cfg.getWriteLingerMillis());
+        int maxFrames = cfg.getWriteBatchMaxFrames();
+        int maxBytes = cfg.getWriteBatchMaxBytes();
+        ByteBuffer[] batch = new ByteBuffer[maxFrames];
+        byte[] scratch = new byte[READ_BUFFER_SIZE];
+        try {
+            while (running.get()) {
+                batch[0] = outQueue.take();
+                long deadline = System.nanoTime() + lingerNanos;
+                int frames = 1;
+                long bytes = batch[0].remaining();
+                while (frames < maxFrames && bytes < maxBytes) {
+                    int n = outQueue.drainTo(batch, frames, maxFrames - frames, maxBytes - bytes);
+                    if (n == 0) {
+                        long left = deadline - System.nanoTime();
+                        ByteBuffer next = left > 0 ? outQueue.poll(left, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) break;
+                        batch[frames] = next;
+                        n = 1;
+                    }
+                    for (int i = frames; i < frames + n; i++) bytes += batch[i].remaining();
+                    frames += n;
+                }
+
+                bytes = 0;
+                for (int i = 0; i < frames; i++) {
+                    ByteBuffer frame = batch[i];
+                    bytes += frame.remaining();
+                    // frames compartilhados são somente leitura: copia em blocos para o stream
+                    while (frame.hasRemaining()) {
+                        int chunk = Math.min(scratch.length, frame.remaining());
+                        frame.get(scratch, 0, chunk);
+                        out.write(scratch, 0, chunk);
+                    }
+                }
+                out.flush();
+                Arrays.fill(batch, 0, frames, null);
+                recordWrite(frames, bytes);
+                afterDrain();
+            }
+        } catch (Exception ignored) {
+        } finally {
+            stop();
+        }
+    }
+
+    @Override
+    String getRemoteKey() {
+        return socket.getRemoteSocketAddress() != null ? socket.getRemoteSocketAddress().toString() : "unknown";
+    }
+
+    @Override
+    String getRemoteHost() {
+        return socket.getInetAddress() != null ? socket.getInetAddress().getHostAddress() : "unknown";
+    }
+
+    @Override
+    int getRemotePort() {
+        return socket.getPort();
+    }
+}
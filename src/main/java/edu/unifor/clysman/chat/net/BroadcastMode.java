@@ -0,0 +1,11 @@
+package edu.unifor.clysman.chat.net;
+
+public enum BroadcastMode {
+    /** Repassa cada CHAT novo a todos os vizinhos, exceto quem enviou. */
+    FLOOD,
+    /**
+     * Árvore epidêmica (Plumtree): push imediato só pelos enlaces da árvore,
+     * anúncios IHAVE pelos demais, e GRAFT/PRUNE para reparar e podar a árvore.
+     */
+    PLUMTREE
+}
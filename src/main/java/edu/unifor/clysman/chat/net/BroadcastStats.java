@@ -0,0 +1,42 @@
+package edu.unifor.clysman.chat.net;
+
+/** Contadores do modo de broadcast, para medir redundância por mensagem. */
+public class BroadcastStats {
+
+    private final BroadcastMode mode;
+    private final long messagesPushed;
+    private final long duplicatesReceived;
+    private final long ihaveSent;
+    private final long graftsSent;
+    private final long prunesSent;
+    private final int eagerPeers;
+    private final int lazyPeers;
+
+    BroadcastStats(BroadcastMode mode, long messagesPushed, long duplicatesReceived, long ihaveSent,
+                   long graftsSent, long prunesSent, int eagerPeers, int lazyPeers) {
+        this.mode = mode;
+        this.messagesPushed = messagesPushed;
+        this.duplicatesReceived = duplicatesReceived;
+        this.ihaveSent = ihaveSent;
+        this.graftsSent = graftsSent;
+        this.prunesSent = prunesSent;
+        this.eagerPeers = eagerPeers;
+        this.lazyPeers = lazyPeers;
+    }
+
+    public BroadcastMode getMode() { return mode; }
+    /** CHAT enviados a vizinhos (originais e repasses). */
+    public long getMessagesPushed() { return messagesPushed; }
+    public long getDuplicatesReceived() { return duplicatesReceived; }
+    public long getIhaveSent() { return ihaveSent; }
+    public long getGraftsSent() { return graftsSent; }
+    public long getPrunesSent() { return prunesSent; }
+    public int getEagerPeers() { return eagerPeers; }
+    public int getLazyPeers() { return lazyPeers; }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d enviados, %d duplicatas, %d IHAVE, %d GRAFT, %d PRUNE, %d eager/%d lazy",
+                mode, messagesPushed, duplicatesReceived, ihaveSent, graftsSent, prunesSent, eagerPeers, lazyPeers);
+    }
+}
@@ -0,0 +1,116 @@
+package edu.unifor.clysman.chat.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Conexão sobre um {@link TransportChannel} de um transporte plugável. */
+final class ChannelConnectionHandler extends ConnectionHandler implements TransportChannel.Receiver {
+
+    // buffer de leitura começa pequeno: a simulação mantém dezenas de milhares de conexões
+    private static final int INITIAL_READ_BUFFER = 1024;
+
+    private final TransportChannel channel;
+    private final ByteBuffer[] batch;
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    ChannelConnectionHandler(TransportChannel channel, PeerNode node) {
+        super(node, INITIAL_READ_BUFFER);
+        this.channel = channel;
+        this.batch = new ByteBuffer[node.getConfig().getWriteBatchMaxFrames()];
+    }
+
+    @Override
+    void start() {
+        if (!running.compareAndSet(false, true)) return;
+        channel.open(this);
+        node.onHandlerStarted(this);
+    }
+
+    @Override
+    void stop() {
+        if (!running.compareAndSet(true, false)) return;
+        channel.close();
+        outQueue.clear();
+        resumeSources();
+        node.onHandlerStopped(this);
+    }
+
+    @Override
+    protected void onEnqueued(int size) {
+        flush();
+    }
+
+    @Override
+    protected void readPauseChanged() {
+        channel.setReadPaused(isReadPaused());
+    }
+
+    @Override
+    public void onData(ByteBuffer data) {
+        try {
+            while (data.hasRemaining() && running.get()) {
+                ByteBuffer buf = decoder.buffer();
+                int n = Math.min(buf.remaining(), data.remaining());
+                ByteBuffer chunk = data.duplicate();
+                chunk.limit(chunk.position() + n);
+                buf.put(chunk);
+                data.position(data.position() + n);
+                decoder.drain(this::deliver);
+            }
+        } catch (IOException | RuntimeException e) {
+            stop();
+        }
+    }
+
+    @Override
+    public void onWritable() {
+        flush();
+    }
+
+    @Override
+    public void onClosed() {
+        stop();
+    }
+
+    /** Drena a fila em lotes enquanto o canal aceitar escritas. */
+    private void flush() {
+        while (running.get() && flushing.compareAndSet(false, true)) {
+            try {
+                while (channel.isWritable()) {
+                    int n = outQueue.drainTo(batch, 0, batch.length, node.getConfig().getWriteBatchMaxBytes());
+                    if (n == 0) break;
+                    long bytes = 0;
+                    for (int i = 0; i < n; i++) bytes += batch[i].remaining();
+                    channel.write(batch, 0, n);
+                    recordWrite(n, bytes);
+                    Arrays.fill(batch, 0, n, null);
+                    afterDrain();
+                }
+            } catch (IOException | RuntimeException e) {
+                flushing.set(false);
+                stop();
+                return;
+            }
+            flushing.set(false);
+            // Um produtor pode ter enfileirado entre o último drain e o set(false)
+            if (outQueue.isEmpty() || !channel.isWritable()) return;
+        }
+    }
+
+    @Override
+    String getRemoteKey() {
+        return channel.remoteHost() + ":" + channel.remotePort();
+    }
+
+    @Override
+    String getRemoteHost() {
+        return channel.remoteHost();
+    }
+
+    @Override
+    int getRemotePort() {
+        return channel.remotePort();
+    }
+}
@@ -1,106 +1,234 @@
 package edu.unifor.clysman.chat.net;
 
+import edu.unifor.clysman.chat.codec.Codecs;
+import edu.unifor.clysman.chat.codec.FrameDecoder;
+import edu.unifor.clysman.chat.codec.WireCodec;
 import edu.unifor.clysman.chat.model.Message;
 import edu.unifor.clysman.chat.model.PeerInfo;
-import edu.unifor.clysman.chat.util.Json;
-import com.google.gson.Gson;
 
-import java.io.*;
-import java.net.Socket;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-
-class ConnectionHandler {
-
-    private final Socket socket;
-    private final PeerNode node;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Conexão com um vizinho. As implementações concretas definem o modelo de I/O
+ * (threads bloqueantes ou event loop NIO); o protocolo fica no PeerNode.
+ */
+abstract class ConnectionHandler {
+
+    protected static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    protected final PeerNode node;
+    protected final AtomicBoolean running = new AtomicBoolean(false);
+    protected final FrameDecoder decoder;
+    protected final WriteStats writeStats = new WriteStats();
+    protected final OutboundQueue outQueue;
+    // Começa em JSON (peers antigos); troca após o HELLO do vizinho
+    private volatile WireCodec codec = Codecs.JSON;
     private volatile PeerInfo peerInfo;
 
-    private Thread readerThread;
-    private Thread writerThread;
-    private final BlockingQueue<String> outQueue = new LinkedBlockingQueue<>();
-    private final AtomicBoolean running = new AtomicBoolean(false);
-    private final Gson gson = Json.get();
-    private volatile BufferedReader in;
-    private volatile BufferedWriter out;
+    // Vizinho lento: marcado ao passar do limite, limpo quando a fila cai à metade
+    private final AtomicBoolean slow = new AtomicBoolean(false);
+    // Conexões com a leitura pausada porque repassavam para esta (BACKPRESSURE)
+    private final Set<ConnectionHandler> pausedSources = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger readPauses = new AtomicInteger();
+
+    // Só a thread de leitura atualiza; leituras de outras threads são aproximadas
+    private volatile long framesRead;
+    private volatile long bytesRead;
+
+    // Heartbeat: RTT pelos PONG; o silêncio é medido pelo timer do nó, a partir de framesRead
+    private final RttEstimator rtt = new RttEstimator();
+    private volatile boolean heartbeat;
+    private volatile long lastPingMicros;
+    private volatile boolean sync; // mandou DIGEST: entende SYNC
+    private long framesAtLastCheck = -1;
+    private long silentSince;
+
+    ConnectionHandler(PeerNode node) {
+        this(node, READ_BUFFER_SIZE);
+    }
 
-    ConnectionHandler(Socket socket, PeerNode node) {
-        this.socket = socket;
+    /** {@code readBufferSize} é só o tamanho inicial; o buffer cresce até caber o maior frame. */
+    ConnectionHandler(PeerNode node, int readBufferSize) {
         this.node = node;
+        this.decoder = new FrameDecoder(readBufferSize);
+        NodeConfig cfg = node.getConfig();
+        this.outQueue = new OutboundQueue(cfg.getOutboundQueueMaxBytes(), cfg.getSlowConsumerPolicy());
     }
 
-    void start() {
-        if (!running.compareAndSet(false, true)) return;
-        try {
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
-            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
-        } catch (IOException e) {
-            stop();
-            return;
-        }
+    abstract void start();
 
-        readerThread = new Thread(this::readLoop, "reader-" + getRemoteKey());
-        writerThread = new Thread(this::writeLoop, "writer-" + getRemoteKey());
-        readerThread.setDaemon(true);
-        writerThread.setDaemon(true);
-        readerThread.start();
-        writerThread.start();
+    abstract void stop();
 
-        node.onHandlerStarted(this);
-    }
+    /** Chamado após um frame de {@code size} bytes entrar na fila; a implementação agenda a escrita. */
+    protected abstract void onEnqueued(int size);
 
-    void stop() {
-        if (!running.compareAndSet(true, false)) return;
-        try { socket.close(); } catch (IOException ignored) {}
-        if (readerThread != null) readerThread.interrupt();
-        if (writerThread != null) writerThread.interrupt();
-        node.onHandlerStopped(this);
-    }
+    /** Reaplica o interesse de leitura conforme {@link #isReadPaused()}. */
+    protected abstract void readPauseChanged();
+
+    abstract String getRemoteKey();
+
+    abstract String getRemoteHost();
+
+    abstract int getRemotePort();
 
     void send(Message m) {
+        send(new OutboundFrame(m), null);
+    }
+
+    /**
+     * Envia um frame possivelmente compartilhado com outras conexões (broadcast).
+     * {@code source} é a conexão de onde veio o repasse, pausada sob BACKPRESSURE.
+     */
+    void send(OutboundFrame frame, ConnectionHandler source) {
         if (!running.get()) return;
-        try {
-            outQueue.offer(gson.toJson(m));
-        } catch (Exception ignored) {}
-    }
-
-    private void readLoop() {
-        try {
-            String line;
-            while (running.get() && (line = in.readLine()) != null) {
-                node.onLineReceived(this, line);
-            }
-        } catch (IOException ignored) {
-        } finally {
-            stop();
+        ByteBuffer wire = frame.frameFor(codec);
+        int size = wire.remaining();
+        switch (outQueue.offer(wire, frame.isControl())) {
+            case ACCEPTED:
+                break;
+            case DROPPED:
+                markSlow();
+                break;
+            case OVER_LIMIT:
+                markSlow();
+                if (source != null && source != this && pausedSources.add(source)) {
+                    source.pauseReads();
+                    // a fila pode ter esvaziado entre o offer e o add
+                    if (outQueue.bytes() <= outQueue.maxBytes() / 2) resumeSources();
+                }
+                break;
+            case OVERFLOW:
+                markSlow();
+                stop();
+                return;
+        }
+        onEnqueued(size);
+    }
+
+    /** Chamado pelo escritor após cada lote escrito. */
+    protected void afterDrain() {
+        if (slow.get() && outQueue.bytes() <= outQueue.maxBytes() / 2) {
+            slow.set(false);
+            resumeSources();
         }
     }
 
-    private void writeLoop() {
-        try {
-            while (running.get()) {
-                String line = outQueue.take();
-                out.write(line);
-                out.write("\n");
-                out.flush();
-            }
-        } catch (Exception ignored) {
-        } finally {
-            stop();
+    /** Libera quem estava esperando por esta conexão; chamar também ao encerrar. */
+    protected void resumeSources() {
+        for (ConnectionHandler src : pausedSources) {
+            if (pausedSources.remove(src)) src.resumeReads();
         }
     }
 
-    String getRemoteKey() {
-        return socket.getRemoteSocketAddress() != null ? socket.getRemoteSocketAddress().toString() : "unknown";
+    private void markSlow() {
+        if (slow.compareAndSet(false, true)) node.onPeerSlow(this);
+    }
+
+    void pauseReads() {
+        readPauses.incrementAndGet();
+        readPauseChanged();
+    }
+
+    void resumeReads() {
+        readPauses.decrementAndGet();
+        readPauseChanged();
+    }
+
+    boolean isReadPaused() {
+        return readPauses.get() > 0;
+    }
+
+    boolean isSlow() {
+        return slow.get();
+    }
+
+    /** Sink do FrameDecoder: repassa o frame ao nó enquanto a conexão estiver ativa. */
+    protected boolean deliver(WireCodec frameCodec, ByteBuffer frame) {
+        int size = frame.remaining();
+        framesRead++;
+        bytesRead += size;
+        NodeMetrics m = node.metrics();
+        m.framesReceived.inc();
+        m.bytesReceived.add(size);
+        m.frameSize.record(size);
+        node.onFrameReceived(this, frameCodec, frame);
+        return running.get();
+    }
+
+    /** Chamado pelo escritor após cada lote escrito no socket. */
+    protected void recordWrite(int frames, long bytes) {
+        writeStats.recordBatch(frames, bytes);
+        NodeMetrics m = node.metrics();
+        m.framesSent.add(frames);
+        m.bytesSent.add(bytes);
+    }
+
+    long getFramesRead() {
+        return framesRead;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    RttEstimator getRtt() {
+        return rtt;
+    }
+
+    /** O vizinho anunciou heartbeat no HELLO: responde PING e pode ser dado como morto. */
+    boolean isHeartbeat() {
+        return heartbeat;
+    }
+
+    void setHeartbeat(boolean heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+
+    /** O vizinho mandou DIGEST, então fala anti-entropia e aceita SYNC repassado. */
+    boolean isSync() {
+        return sync;
+    }
+
+    void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    long getLastPingMicros() {
+        return lastPingMicros;
+    }
+
+    void setLastPingMicros(long lastPingMicros) {
+        this.lastPingMicros = lastPingMicros;
+    }
+
+    /** Há quanto tempo o vizinho não manda nenhum frame; só o timer do heartbeat chama. */
+    long silenceMillis(long now) {
+        long frames = framesRead;
+        if (frames != framesAtLastCheck) {
+            framesAtLastCheck = frames;
+            silentSince = now;
+        }
+        return now - silentSince;
+    }
+
+    WriteStats getWriteStats() {
+        return writeStats;
+    }
+
+    OutboundQueue getOutQueue() {
+        return outQueue;
     }
 
-    String getRemoteHost() {
-        return socket.getInetAddress() != null ? socket.getInetAddress().getHostAddress() : "unknown";
+    WireCodec getCodec() {
+        return codec;
     }
 
-    int getRemotePort() {
-        return socket.getPort();
+    void setCodec(WireCodec codec) {
+        this.codec = codec;
     }
 
     public PeerInfo getPeerInfo() {
@@ -110,4 +238,4 @@ class ConnectionHandler {
     public void setPeerInfo(PeerInfo peerInfo) {
         this.peerInfo = peerInfo;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,309 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.model.PeerInfo;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Mantém o grau do nó: com menos de {@code minDegree} vizinhos disca para
+ * peers conhecidos, no máximo {@code maxConcurrentDials} de cada vez.
+ * Endereços que falham esperam um backoff exponencial com jitter antes de
+ * nova tentativa, então uma partição que se desfaz não vira uma rajada de
+ * discagens repetidas.
+ *
+ * Roda a cada {@link #MAINTAIN_MILLIS} e quando algo muda (vizinho caiu,
+ * peers novos em PEERSHARE). O backoff vale também para as discagens pedidas
+ * à mão, mas só as automáticas o respeitam.
+ *
+ * Entre candidatos vêm antes os de menor RTT já medido (numa conexão
+ * anterior), depois os vistos mais recentemente. Com o grau entre o mínimo e
+ * o máximo, a cada {@code neighborSwapIntervalMillis} o nó disca um candidato
+ * de teste; depois de {@link #PROBE_SAMPLES} PONG, se o RTT dele for menor que
+ * {@link #SWAP_RATIO} do pior vizinho discado por nós, o pior sai, senão sai o
+ * de teste. Só vizinhos que nós discamos são trocados: quem nos escolheu
+ * decide por conta própria.
+ */
+final class ConnectionManager {
+
+    static final long MAINTAIN_MILLIS = 5000;
+    static final int PROBE_SAMPLES = 3;
+    static final double SWAP_RATIO = 0.8;
+    private static final int MAX_BACKOFF_ENTRIES = 4096;
+    private static final int MAX_RTT_ENTRIES = 4096;
+
+    private static final class Backoff {
+        int failures;
+        long retryAt;
+    }
+
+    private final PeerNode node;
+    private final ScheduledExecutorService scheduler;
+    private final HostResolver resolver;
+    private final ConnectionRegistry registry;
+    private final LongSupplier clock;
+    private final NodeConfig config;
+    private final Random random;
+
+    // endereço -> falhas seguidas; acesso sob o monitor do mapa
+    private final Map<InetSocketAddress, Backoff> backoff = new HashMap<>();
+    // peerId -> último RTT suavizado (µs) de uma conexão já encerrada ou testada; acesso sob o monitor do mapa
+    private final Map<String, Long> knownRtt = new LinkedHashMap<String, Long>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_RTT_ENTRIES;
+        }
+    };
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicBoolean wakeScheduled = new AtomicBoolean();
+    private final AtomicLong retryTimerAt = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong dials = new AtomicLong();
+    private final AtomicLong skippedBackoff = new AtomicLong();
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong swaps = new AtomicLong();
+    private volatile String probe; // peer em teste para a troca, até ser avaliado
+    private ScheduledFuture<?> maintainer;
+    private ScheduledFuture<?> swapper;
+
+    ConnectionManager(PeerNode node, ScheduledExecutorService scheduler, HostResolver resolver,
+                      ConnectionRegistry registry, LongSupplier clock) {
+        this.node = node;
+        this.scheduler = scheduler;
+        this.resolver = resolver;
+        this.registry = registry;
+        this.clock = clock;
+        this.config = node.getConfig();
+        // semente pelo id: na rede simulada o jitter também é reproduzível
+        this.random = new Random(node.getMyId().hashCode());
+    }
+
+    void start() {
+        maintainer = scheduler.scheduleWithFixedDelay(this::maintain, MAINTAIN_MILLIS, MAINTAIN_MILLIS, TimeUnit.MILLISECONDS);
+        long swap = config.getNeighborSwapIntervalMillis();
+        if (swap > 0 && config.getHeartbeatIntervalMillis() > 0) {
+            swapper = scheduler.scheduleWithFixedDelay(this::startProbe, swap, swap, TimeUnit.MILLISECONDS);
+        }
+        wake();
+    }
+
+    void shutdown() {
+        if (maintainer != null) maintainer.cancel(false);
+        if (swapper != null) swapper.cancel(false);
+    }
+
+    /** Agenda uma rodada já; chamadas seguidas antes dela rodar viram uma só. */
+    void wake() {
+        if (config.isPeerShareConnect() && wakeScheduled.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                wakeScheduled.set(false);
+                maintain();
+            });
+        }
+    }
+
+    /** Uma discagem para {@code target} falhou (automática ou não). */
+    void dialFailed(InetSocketAddress target) {
+        synchronized (backoff) {
+            if (backoff.size() >= MAX_BACKOFF_ENTRIES && !backoff.containsKey(target)) purge(clock.getAsLong());
+            Backoff b = backoff.computeIfAbsent(target, k -> new Backoff());
+            b.failures++;
+            long max = config.getDialBackoffMaxMillis();
+            long delay = Math.min(max, config.getDialBackoffMinMillis() << Math.min(b.failures - 1, 30));
+            // "equal jitter": metade fixa, metade sorteada, para os nós não rediscarem em sincronia
+            b.retryAt = clock.getAsLong() + delay / 2 + (long) (random.nextDouble() * (delay - delay / 2));
+        }
+    }
+
+    /** HELLO concluído numa conexão que discamos: o endereço volta a valer. */
+    void connected(InetSocketAddress target) {
+        synchronized (backoff) {
+            backoff.remove(target);
+        }
+    }
+
+    /** Guarda o RTT de um vizinho que está saindo, para ordenar candidatos depois. */
+    void remember(String peerId, RttEstimator rtt) {
+        long srtt = rtt.srtt();
+        if (srtt < 0) return;
+        synchronized (knownRtt) {
+            knownRtt.put(peerId, srtt);
+        }
+    }
+
+    /** Discagem automática terminou (com ou sem sucesso). */
+    void dialDone() {
+        inflight.decrementAndGet();
+        wake();
+    }
+
+    int inflight() {
+        return inflight.get();
+    }
+
+    long dials() {
+        return dials.get();
+    }
+
+    long skippedBackoff() {
+        return skippedBackoff.get();
+    }
+
+    long probes() {
+        return probes.get();
+    }
+
+    long swaps() {
+        return swaps.get();
+    }
+
+    int backingOff() {
+        long now = clock.getAsLong();
+        int n = 0;
+        synchronized (backoff) {
+            for (Backoff b : backoff.values()) if (b.retryAt > now) n++;
+        }
+        return n;
+    }
+
+    private void maintain() {
+        if (!config.isPeerShareConnect()) return;
+        // em andamento: na fila do ioPool ou já no registro, até o HELLO (pode contar duas vezes por um instante)
+        int dialing = inflight.get() + registry.outboundInProgress();
+        int want = config.getMinDegree() - node.getConnectedPeerCount() - dialing;
+        int slots = Math.min(want, config.getMaxConcurrentDials() - dialing);
+        if (slots <= 0) return;
+
+        List<PeerInfo> candidates = candidates();
+        long now = clock.getAsLong();
+        long nextRetry = Long.MAX_VALUE;
+        for (PeerInfo p : candidates) {
+            if (slots <= 0) break;
+            if (node.connection(p.getId()) != null) continue;
+            InetSocketAddress target = resolver.resolve(p.getHost(), p.getPort());
+            if (registry.contains(target)) continue;
+            long retryAt = retryAt(target);
+            if (retryAt > now) {
+                skippedBackoff.incrementAndGet();
+                nextRetry = Math.min(nextRetry, retryAt);
+                continue;
+            }
+            slots--;
+            inflight.incrementAndGet();
+            dials.incrementAndGet();
+            node.dial(p.getHost(), p.getPort(), true);
+        }
+        if (slots > 0 && nextRetry != Long.MAX_VALUE) scheduleRetry(nextRetry, now);
+    }
+
+    /** Peers conhecidos: os de RTT conhecido primeiro, do menor ao maior; depois os vistos mais recentemente. */
+    private List<PeerInfo> candidates() {
+        List<PeerInfo> peers = node.getKnownPeers();
+        Map<String, Long> rtt = new HashMap<>();
+        synchronized (knownRtt) {
+            for (PeerInfo p : peers) {
+                Long r = knownRtt.get(p.getId());
+                if (r != null) rtt.put(p.getId(), r);
+            }
+        }
+        peers.sort((a, b) -> {
+            long ra = rtt.getOrDefault(a.getId(), Long.MAX_VALUE);
+            long rb = rtt.getOrDefault(b.getId(), Long.MAX_VALUE);
+            return ra != rb ? Long.compare(ra, rb) : Long.compare(b.getLastSeen(), a.getLastSeen());
+        });
+        return peers;
+    }
+
+    private Long knownRtt(String peerId) {
+        synchronized (knownRtt) {
+            return knownRtt.get(peerId);
+        }
+    }
+
+    // disca um candidato de teste; avaliado quando já deve ter PROBE_SAMPLES PONG
+    private void startProbe() {
+        if (!config.isPeerShareConnect() || probe != null) return;
+        int degree = node.getConnectedPeerCount();
+        if (degree < config.getMinDegree() || degree >= config.getMaxDegree()) return;
+        if (inflight.get() + registry.outboundInProgress() > 0) return;
+        ConnectionHandler worst = worstNeighbor(null);
+        if (worst == null) return;
+        long limit = (long) (worst.getRtt().srtt() * SWAP_RATIO);
+        long now = clock.getAsLong();
+        for (PeerInfo p : candidates()) {
+            if (node.connection(p.getId()) != null) continue;
+            Long rtt = knownRtt(p.getId());
+            if (rtt != null && rtt >= limit) continue; // já medido e não compensa
+            InetSocketAddress target = resolver.resolve(p.getHost(), p.getPort());
+            if (registry.contains(target) || retryAt(target) > now) continue;
+            probe = p.getId();
+            probes.incrementAndGet();
+            inflight.incrementAndGet();
+            dials.incrementAndGet();
+            node.dial(p.getHost(), p.getPort(), true);
+            long wait = (long) config.getHeartbeatIntervalMillis() * (PROBE_SAMPLES + 2);
+            scheduler.schedule(this::finishProbe, wait, TimeUnit.MILLISECONDS);
+            return;
+        }
+    }
+
+    private void finishProbe() {
+        String id = probe;
+        probe = null;
+        ConnectionHandler candidate = id != null ? node.connection(id) : null;
+        if (candidate == null) return; // discagem falhou ou já caiu
+        RttEstimator rtt = candidate.getRtt();
+        if (rtt.samples() >= PROBE_SAMPLES) remember(id, rtt);
+        // um vizinho caiu enquanto isso: fica com os dois
+        if (node.getConnectedPeerCount() <= config.getMinDegree()) return;
+        ConnectionHandler worst = worstNeighbor(id);
+        if (worst != null && rtt.samples() >= PROBE_SAMPLES && rtt.srtt() < worst.getRtt().srtt() * SWAP_RATIO) {
+            swaps.incrementAndGet();
+            node.disconnect(worst, "trocado por vizinho de menor RTT");
+        } else {
+            node.disconnect(candidate, "RTT não compensa a troca");
+        }
+    }
+
+    /** Vizinho discado por nós com o maior RTT medido (com amostras suficientes), fora {@code exclude}. */
+    private ConnectionHandler worstNeighbor(String exclude) {
+        ConnectionHandler worst = null;
+        for (Map.Entry<String, ConnectionHandler> e : registry.established().entrySet()) {
+            ConnectionHandler h = e.getValue();
+            if (e.getKey().equals(exclude) || registry.dialedAddress(h) == null) continue;
+            if (h.getRtt().samples() < PROBE_SAMPLES) continue;
+            if (worst == null || h.getRtt().srtt() > worst.getRtt().srtt()) worst = h;
+        }
+        return worst;
+    }
+
+    private long retryAt(InetSocketAddress target) {
+        synchronized (backoff) {
+            Backoff b = backoff.get(target);
+            return b != null ? b.retryAt : 0;
+        }
+    }
+
+    // ainda falta vizinho e só há endereços em backoff: volta quando o primeiro vencer
+    private void scheduleRetry(long at, long now) {
+        long current = retryTimerAt.get();
+        if (current <= at && current > now) return; // já há um despertar antes disso
+        if (!retryTimerAt.compareAndSet(current, at)) return;
+        scheduler.schedule(() -> {
+            retryTimerAt.compareAndSet(at, Long.MAX_VALUE);
+            maintain();
+        }, at - now, TimeUnit.MILLISECONDS);
+    }
+
+    // esquece endereços cujo backoff já passou há tempo; se ainda estiver cheio, começa do zero
+    private void purge(long now) {
+        backoff.values().removeIf(b -> now - b.retryAt > config.getDialBackoffMaxMillis());
+        if (backoff.size() >= MAX_BACKOFF_ENTRIES) backoff.clear();
+    }
+}
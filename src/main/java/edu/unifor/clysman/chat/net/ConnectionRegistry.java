@@ -0,0 +1,228 @@
+package edu.unifor.clysman.chat.net;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Conexões do nó, indexadas por endereço normalizado (resolvido pelo
+ * {@link HostResolver}) e por id do vizinho. Uma conexão de entrada fica sob o
+ * endereço de origem e, depois do HELLO, também sob a porta de escuta
+ * anunciada; assim "já estou conectado a host:porta?" é uma consulta O(1),
+ * sem varrer conexões nem resolver nomes.
+ *
+ * Reservar o endereço antes de discar ({@link #dial}) é atômico, então duas
+ * tentativas simultâneas ao mesmo destino não abrem dois sockets. Quando os
+ * dois lados discam um para o outro ao mesmo tempo, {@link #establish} fica
+ * com a conexão discada pelo nó de menor id; os dois lados chegam à mesma
+ * escolha sem combinar nada. Alterações sob o monitor deste objeto; consultas
+ * sem trava.
+ */
+final class ConnectionRegistry {
+
+    /** Uma conexão (ou discagem) registrada. */
+    static final class Entry {
+        final boolean outbound;
+        final InetSocketAddress address; // destino discado ou origem da conexão de entrada
+        final long since;
+        volatile ConnectionHandler handler; // null enquanto PENDING
+        volatile ConnectionState state;
+        volatile InetSocketAddress listen; // entrada: porta de escuta do HELLO
+        volatile String peerId; // definido ao estabelecer; continua após ser deslocada
+
+        Entry(boolean outbound, InetSocketAddress address, ConnectionState state, long since) {
+            this.outbound = outbound;
+            this.address = address;
+            this.state = state;
+            this.since = since;
+        }
+    }
+
+    /** Resultado de {@link #establish}. */
+    static final class Result {
+        enum Status { ESTABLISHED, DUPLICATE, FULL }
+
+        static final Result DUPLICATE = new Result(Status.DUPLICATE, null);
+        static final Result FULL = new Result(Status.FULL, null);
+
+        final Status status;
+        final ConnectionHandler displaced; // conexão concorrente ao mesmo vizinho que perdeu o desempate
+
+        Result(Status status, ConnectionHandler displaced) {
+            this.status = status;
+            this.displaced = displaced;
+        }
+    }
+
+    private final LongSupplier clock;
+    private final Map<InetSocketAddress, Entry> byAddress = new ConcurrentHashMap<>();
+    private final Map<ConnectionHandler, Entry> byHandler = new ConcurrentHashMap<>();
+    private final Map<String, ConnectionHandler> byPeerId = new ConcurrentHashMap<>();
+    private final Map<String, ConnectionHandler> established = Collections.unmodifiableMap(byPeerId);
+
+    ConnectionRegistry(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /** Reserva {@code target} para uma conexão de saída; null se já houver conexão ou discagem para ele. */
+    synchronized Entry dial(InetSocketAddress target) {
+        Entry e = new Entry(true, target, ConnectionState.PENDING, clock.getAsLong());
+        return byAddress.putIfAbsent(target, e) == null ? e : null;
+    }
+
+    /** A discagem falhou: libera o endereço. */
+    synchronized void dialFailed(Entry dial) {
+        byAddress.remove(dial.address, dial);
+    }
+
+    /** Socket de saída aberto; registrar antes de {@code handler.start()}. */
+    synchronized void opened(Entry dial, ConnectionHandler handler) {
+        dial.handler = handler;
+        dial.state = ConnectionState.HANDSHAKING;
+        byHandler.put(handler, dial);
+    }
+
+    /** Conexão de entrada aceita; registrar antes de {@code handler.start()}. */
+    synchronized void accepted(ConnectionHandler handler, InetSocketAddress remote) {
+        Entry e = new Entry(false, remote, ConnectionState.HANDSHAKING, clock.getAsLong());
+        e.handler = handler;
+        byHandler.put(handler, e);
+        byAddress.put(remote, e);
+    }
+
+    /**
+     * HELLO recebido de {@code peerId}; {@code listen} é a porta de escuta
+     * anunciada (ou null). Se já houver outra conexão com o vizinho (pelo id,
+     * ou uma discagem nossa para {@code listen}) e as duas tiverem sentidos
+     * opostos, fica a discada pelo menor id entre {@code myId} e
+     * {@code peerId}, e a outra volta em {@link Result#displaced} para ser
+     * fechada; com o mesmo sentido fica a mais antiga. Sem concorrente, falha
+     * com {@code FULL} se já houver {@code maxDegree} vizinhos.
+     */
+    synchronized Result establish(ConnectionHandler handler, String myId, String peerId, InetSocketAddress listen, int maxDegree) {
+        Entry e = byHandler.get(handler);
+        if (e == null) return Result.DUPLICATE; // já encerrada
+        Entry rival = null;
+        ConnectionHandler current = byPeerId.get(peerId);
+        if (current != null) {
+            rival = byHandler.get(current);
+        } else if (!e.outbound && listen != null) {
+            Entry r = byAddress.get(listen);
+            if (r != null && r.outbound && r.handler != null) rival = r;
+        }
+        if (rival != null) {
+            boolean preferOutbound = myId.compareTo(peerId) < 0; // o menor id disca
+            if (e.outbound == rival.outbound || e.outbound != preferOutbound) return Result.DUPLICATE;
+            displace(rival);
+        } else if (byPeerId.size() >= maxDegree) {
+            return Result.FULL;
+        }
+        byPeerId.put(peerId, handler);
+        e.peerId = peerId;
+        e.state = ConnectionState.ESTABLISHED;
+        if (!e.outbound && listen != null && !listen.equals(e.address) && byAddress.putIfAbsent(listen, e) == null) {
+            e.listen = listen;
+        }
+        return new Result(Result.Status.ESTABLISHED, rival != null ? rival.handler : null);
+    }
+
+    private void displace(Entry rival) {
+        rival.state = ConnectionState.CLOSING;
+        if (rival.peerId != null) byPeerId.remove(rival.peerId, rival.handler);
+        byAddress.remove(rival.address, rival);
+        if (rival.listen != null) byAddress.remove(rival.listen, rival);
+    }
+
+    /** Este nó pediu o encerramento; a entrada sai em {@link #remove}. */
+    synchronized void closing(ConnectionHandler handler) {
+        Entry e = byHandler.get(handler);
+        if (e != null) e.state = ConnectionState.CLOSING;
+    }
+
+    /** Conexão encerrada. Retorna true se ela chegou a ser estabelecida. */
+    synchronized boolean remove(ConnectionHandler handler) {
+        Entry e = byHandler.remove(handler);
+        if (e == null) return false;
+        byAddress.remove(e.address, e);
+        if (e.listen != null) byAddress.remove(e.listen, e);
+        if (e.peerId == null) return false;
+        byPeerId.remove(e.peerId, handler);
+        return true;
+    }
+
+    /** Endereço discado de uma conexão de saída; null se for de entrada ou já tiver saído. */
+    InetSocketAddress dialedAddress(ConnectionHandler handler) {
+        Entry e = byHandler.get(handler);
+        return e != null && e.outbound ? e.address : null;
+    }
+
+    /** Conexões de saída ainda sem HELLO (discando ou em handshake). */
+    int outboundInProgress() {
+        int n = 0;
+        for (Entry e : byAddress.values()) {
+            if (e.outbound && (e.state == ConnectionState.PENDING || e.state == ConnectionState.HANDSHAKING)) n++;
+        }
+        return n;
+    }
+
+    /** Conexões com socket aberto que ainda não concluíram o HELLO desde antes de {@code before}. */
+    List<ConnectionHandler> handshakingSince(long before) {
+        List<ConnectionHandler> out = new ArrayList<>();
+        for (Entry e : byHandler.values()) {
+            if (e.state == ConnectionState.HANDSHAKING && e.since < before) out.add(e.handler);
+        }
+        return out;
+    }
+
+    /** Há conexão (em qualquer fase) ou discagem para este endereço? */
+    boolean contains(InetSocketAddress address) {
+        return byAddress.containsKey(address);
+    }
+
+    /** Vizinhos com HELLO concluído, por id; visão somente leitura. */
+    Map<String, ConnectionHandler> established() {
+        return established;
+    }
+
+    /** Conexões com socket aberto, em qualquer fase. */
+    Collection<ConnectionHandler> handlers() {
+        return byHandler.keySet();
+    }
+
+    int open() {
+        return byHandler.size();
+    }
+
+    /** Quantidade por fase (as discagens contam como PENDING). */
+    Map<ConnectionState, Integer> counts() {
+        Map<ConnectionState, Integer> counts = new EnumMap<>(ConnectionState.class);
+        for (ConnectionState s : ConnectionState.values()) counts.put(s, 0);
+        for (Entry e : entries()) counts.merge(e.state, 1, Integer::sum);
+        return counts;
+    }
+
+    List<ConnectionSnapshot> snapshot() {
+        List<ConnectionSnapshot> out = new ArrayList<>();
+        for (Entry e : entries()) {
+            ConnectionHandler h = e.handler;
+            String name = h != null && h.getPeerInfo() != null ? h.getPeerInfo().getName() : null;
+            out.add(new ConnectionSnapshot(e.state, e.outbound, format(e.address), e.listen != null ? format(e.listen) : null,
+                    e.peerId, name, e.since));
+        }
+        out.sort(Comparator.comparingLong(ConnectionSnapshot::getSinceMillis));
+        return out;
+    }
+
+    // cada entrada uma vez, mesmo com dois endereços
+    private Collection<Entry> entries() {
+        Set<Entry> all = Collections.newSetFromMap(new IdentityHashMap<>());
+        all.addAll(byAddress.values());
+        all.addAll(byHandler.values());
+        return all;
+    }
+
+    private static String format(InetSocketAddress a) {
+        return (a.isUnresolved() ? a.getHostString() : a.getAddress().getHostAddress()) + ":" + a.getPort();
+    }
+}
@@ -0,0 +1,40 @@
+package edu.unifor.clysman.chat.net;
+
+/** Fotografia de uma conexão do registro: fase, sentido, endereços e vizinho. */
+public class ConnectionSnapshot {
+
+    private final ConnectionState state;
+    private final boolean outbound;
+    private final String address;
+    private final String listenAddress;
+    private final String peerId;
+    private final String peerName;
+    private final long sinceMillis;
+
+    ConnectionSnapshot(ConnectionState state, boolean outbound, String address, String listenAddress,
+                       String peerId, String peerName, long sinceMillis) {
+        this.state = state;
+        this.outbound = outbound;
+        this.address = address;
+        this.listenAddress = listenAddress;
+        this.peerId = peerId;
+        this.peerName = peerName;
+        this.sinceMillis = sinceMillis;
+    }
+
+    public ConnectionState getState() { return state; }
+    public boolean isOutbound() { return outbound; }
+    /** Endereço discado (saída) ou de origem (entrada), já resolvido. */
+    public String getAddress() { return address; }
+    /** Porta de escuta anunciada no HELLO de uma conexão de entrada; null se ainda não houver. */
+    public String getListenAddress() { return listenAddress; }
+    public String getPeerId() { return peerId; }
+    public String getPeerName() { return peerName; }
+    /** Quando a conexão entrou no registro (epoch ms, ou relógio do transporte). */
+    public long getSinceMillis() { return sinceMillis; }
+
+    @Override
+    public String toString() {
+        return state + (outbound ? " -> " : " <- ") + address + (peerName != null ? " (" + peerName + ")" : "");
+    }
+}
@@ -0,0 +1,13 @@
+package edu.unifor.clysman.chat.net;
+
+/** Fase de uma conexão no {@link ConnectionRegistry}. */
+public enum ConnectionState {
+    /** Conexão de saída em andamento (socket ainda não aberto). */
+    PENDING,
+    /** Socket aberto, esperando o HELLO do vizinho. */
+    HANDSHAKING,
+    /** HELLO concluído: o vizinho participa do broadcast. */
+    ESTABLISHED,
+    /** Encerramento pedido por este nó (HELLO duplicado, desligamento...). */
+    CLOSING
+}
@@ -0,0 +1,84 @@
+package edu.unifor.clysman.chat.net;
+
+/** Fotografia das métricas de uma conexão, para UI e diagnóstico. */
+public class ConnectionStats {
+
+    private final String peerId;
+    private final String peerName;
+    private final String remote;
+    private final String codec;
+    private final long framesWritten;
+    private final long bytesWritten;
+    private final long batches;
+    private final long maxBatchFrames;
+    private final long[] batchHistogram;
+    private final long queuedBytes;
+    private final int queuedFrames;
+    private final long droppedFrames;
+    private final boolean slow;
+    private final long rttMicros;
+    private final long rttJitterMicros;
+    private final long rttMinMicros;
+    private final long rttSamples;
+
+    ConnectionStats(ConnectionHandler h) {
+        WriteStats w = h.getWriteStats();
+        this.peerId = h.getPeerInfo() != null ? h.getPeerInfo().getId() : null;
+        this.peerName = h.getPeerInfo() != null ? h.getPeerInfo().getName() : null;
+        this.remote = h.getRemoteKey();
+        this.codec = h.getCodec().name();
+        this.framesWritten = w.frames();
+        this.bytesWritten = w.bytes();
+        this.batches = w.batches();
+        this.maxBatchFrames = w.maxBatchFrames();
+        this.batchHistogram = w.histogram();
+        this.queuedBytes = h.getOutQueue().bytes();
+        this.queuedFrames = h.getOutQueue().size();
+        this.droppedFrames = h.getOutQueue().dropped();
+        this.slow = h.isSlow();
+        RttEstimator rtt = h.getRtt();
+        this.rttMicros = rtt.srtt();
+        this.rttJitterMicros = rtt.rttvar();
+        this.rttMinMicros = rtt.min();
+        this.rttSamples = rtt.samples();
+    }
+
+    public String getPeerId() { return peerId; }
+    public String getPeerName() { return peerName; }
+    public String getRemote() { return remote; }
+    public String getCodec() { return codec; }
+    public long getFramesWritten() { return framesWritten; }
+    public long getBytesWritten() { return bytesWritten; }
+    public long getBatches() { return batches; }
+    public long getMaxBatchFrames() { return maxBatchFrames; }
+    public long getQueuedBytes() { return queuedBytes; }
+    public int getQueuedFrames() { return queuedFrames; }
+    public long getDroppedFrames() { return droppedFrames; }
+    public boolean isSlow() { return slow; }
+    /** RTT suavizado em µs; -1 sem amostras (heartbeat desligado ou peer antigo). */
+    public long getRttMicros() { return rttMicros; }
+    public long getRttJitterMicros() { return rttJitterMicros; }
+    public long getRttMinMicros() { return rttMinMicros; }
+    public long getRttSamples() { return rttSamples; }
+
+    public double getAvgBatchFrames() {
+        return batches == 0 ? 0 : (double) framesWritten / batches;
+    }
+
+    public double getAvgBatchBytes() {
+        return batches == 0 ? 0 : (double) bytesWritten / batches;
+    }
+
+    /** Lotes por faixa de frames: 1, 2, 3-4, 5-8, 9-16, 17-32, 33-64, 65+. */
+    public long[] getBatchHistogram() {
+        return batchHistogram.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s) %s: %d frames, %d bytes, %d lotes, média %.1f frames/%.0f bytes, máx %d; fila %d bytes, %d descartados%s%s",
+                peerName, remote, codec, framesWritten, bytesWritten, batches,
+                getAvgBatchFrames(), getAvgBatchBytes(), maxBatchFrames, queuedBytes, droppedFrames, slow ? " (lento)" : "",
+                rttMicros < 0 ? "" : String.format("; RTT %.1f ms ± %.1f", rttMicros / 1000.0, rttJitterMicros / 1000.0));
+    }
+}
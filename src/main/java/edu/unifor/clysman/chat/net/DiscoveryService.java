@@ -1,7 +1,10 @@
 package edu.unifor.clysman.chat.net;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.gson.annotations.SerializedName;
+import edu.unifor.clysman.chat.metrics.Counter;
+import edu.unifor.clysman.chat.metrics.MetricsRegistry;
 
 import java.io.IOException;
 import java.net.*;
@@ -32,11 +35,26 @@ public class DiscoveryService {
     private Thread recvThread;
     private ScheduledExecutorService senderScheduler;
 
+    private final Counter announcesSent;
+    private final Counter announcesReceived;
+    private final Counter packetsIgnored;
+    private final Counter sendFailures;
+
     public DiscoveryService(String myId, String myName, int myPort, Listener listener) {
+        this(myId, myName, myPort, listener, null);
+    }
+
+    /** {@code metrics} recebe os contadores de pacotes; pode ser null. */
+    public DiscoveryService(String myId, String myName, int myPort, Listener listener, MetricsRegistry metrics) {
         this.myId = Objects.requireNonNull(myId);
         this.myName = Objects.requireNonNull(myName);
         this.myPort = myPort;
         this.listener = listener;
+        MetricsRegistry m = metrics != null ? metrics : new MetricsRegistry();
+        this.announcesSent = m.counter("p2pchat_discovery_announces_sent_total", "Anúncios multicast enviados");
+        this.announcesReceived = m.counter("p2pchat_discovery_announces_received_total", "Anúncios de outros nós recebidos");
+        this.packetsIgnored = m.counter("p2pchat_discovery_packets_ignored_total", "Pacotes multicast inválidos ou do próprio nó");
+        this.sendFailures = m.counter("p2pchat_discovery_send_failures_total", "Falhas ao enviar anúncio");
     }
 
     public void start() throws IOException {
@@ -82,7 +100,10 @@ public class DiscoveryService {
             byte[] buf = gson.toJson(a).getBytes(StandardCharsets.UTF_8);
             DatagramPacket packet = new DatagramPacket(buf, buf.length, group, PORT);
             socket.send(packet);
-        } catch (IOException ignored) {}
+            announcesSent.inc();
+        } catch (IOException e) {
+            sendFailures.inc();
+        }
     }
 
     private void recvLoop() {
@@ -92,9 +113,17 @@ public class DiscoveryService {
                 DatagramPacket packet = new DatagramPacket(buf, buf.length);
                 socket.receive(packet);
                 String json = new String(packet.getData(), packet.getOffset(), packet.getLength(), StandardCharsets.UTF_8);
-                Announce a = gson.fromJson(json, Announce.class);
-                if (a == null || !"DISCOVERY".equals(a.type)) continue;
-                if (myId.equals(a.id)) continue; // ignora a si mesmo
+                Announce a;
+                try {
+                    a = gson.fromJson(json, Announce.class);
+                } catch (JsonParseException e) {
+                    a = null;
+                }
+                if (a == null || !"DISCOVERY".equals(a.type) || myId.equals(a.id)) { // inválido ou a si mesmo
+                    packetsIgnored.inc();
+                    continue;
+                }
+                announcesReceived.inc();
                 String host = packet.getAddress().getHostAddress();
                 if (listener != null) listener.onDiscovered(host, a.port, a.name, a.id);
             } catch (IOException e) {
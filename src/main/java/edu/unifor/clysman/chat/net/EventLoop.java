@@ -0,0 +1,134 @@
+package edu.unifor.clysman.chat.net;
+
+import java.io.IOException;
+import java.nio.channels.*;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread única com um Selector. Canais registrados aqui só são tocados por esta
+ * thread; outras threads submetem trabalho via {@link #execute(Runnable)}.
+ */
+final class EventLoop implements Runnable {
+
+    /** Anexado à SelectionKey; chamado quando o canal fica pronto. */
+    interface Handler {
+        void onReady(SelectionKey key) throws IOException;
+        void onError(Exception e);
+    }
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Queue<Timer> newTimers = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>(); // só a thread do loop
+    private long timerSeq;
+    private volatile boolean running = true;
+
+    EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    void execute(Runnable task) {
+        tasks.offer(task);
+        if (!inLoop()) selector.wakeup();
+    }
+
+    /** Executa {@code task} no loop após {@code delayMillis} (resolução de ~1 ms). */
+    void schedule(Runnable task, long delayMillis) {
+        newTimers.offer(new Timer(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis), task));
+        if (!inLoop()) selector.wakeup();
+    }
+
+    SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws ClosedChannelException {
+        return channel.register(selector, ops, handler);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Timer t;
+                while ((t = newTimers.poll()) != null) {
+                    t.seq = timerSeq++;
+                    timers.add(t);
+                }
+                if (!tasks.isEmpty()) {
+                    selector.selectNow();
+                } else if (timers.isEmpty()) {
+                    selector.select();
+                } else {
+                    long waitNanos = timers.peek().deadline - System.nanoTime();
+                    if (waitNanos <= 0) selector.selectNow();
+                    else selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+                }
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Handler h = (Handler) key.attachment();
+                    try {
+                        if (key.isValid()) h.onReady(key);
+                    } catch (Exception e) {
+                        h.onError(e);
+                    }
+                }
+                selector.selectedKeys().clear();
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    runSafely(task);
+                }
+                long now = System.nanoTime();
+                while (!timers.isEmpty() && timers.peek().deadline - now <= 0) {
+                    runSafely(timers.poll().task);
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                break;
+            }
+        }
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException ignored) {}
+    }
+
+    void shutdown() {
+        running = false;
+        try {
+            for (SelectionKey key : selector.keys()) {
+                try { key.channel().close(); } catch (IOException ignored) {}
+            }
+            selector.close();
+        } catch (IOException | ClosedSelectorException ignored) {}
+    }
+
+    private static final class Timer implements Comparable<Timer> {
+        final long deadline;
+        final Runnable task;
+        long seq;
+
+        Timer(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Timer o) {
+            int c = Long.compare(deadline - o.deadline, 0);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package edu.unifor.clysman.chat.net;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Conjunto fixo de event loops; novas conexões são distribuídas em round-robin. */
+final class EventLoopGroup {
+
+    private final EventLoop[] loops;
+    private final AtomicInteger next = new AtomicInteger();
+
+    EventLoopGroup(int threads) throws IOException {
+        loops = new EventLoop[threads];
+        try {
+            for (int i = 0; i < threads; i++) {
+                loops[i] = new EventLoop("nio-loop-" + i);
+            }
+        } catch (IOException e) {
+            shutdown();
+            throw e;
+        }
+        for (EventLoop l : loops) l.start();
+    }
+
+    EventLoop next() {
+        return loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+    }
+
+    EventLoop acceptor() {
+        return loops[0];
+    }
+
+    void shutdown() {
+        for (EventLoop l : loops) {
+            if (l != null) l.shutdown();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.model.Message;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PING/PONG com os vizinhos. A cada {@code heartbeatIntervalMillis} manda um
+ * PING com a hora do envio a cada vizinho que anunciou heartbeat no HELLO; o
+ * PONG ecoa essa hora e vira uma amostra no {@link RttEstimator} da conexão.
+ *
+ * Qualquer frame recebido conta como sinal de vida, então vizinhos com
+ * tráfego não dependem do PONG. Quem fica {@code peerDeadTimeoutMillis} em
+ * silêncio é desconectado: uma conexão TCP meio aberta cai em segundos, e não
+ * quando o SO desistir. O mesmo prazo vale para conexões sem HELLO.
+ */
+final class Heartbeat {
+
+    private final PeerNode node;
+    private final ScheduledExecutorService scheduler;
+    private final ConnectionRegistry registry;
+    private final NodeConfig config;
+
+    private final AtomicLong pingsSent = new AtomicLong();
+    private final AtomicLong pongsReceived = new AtomicLong();
+    private final AtomicLong deadPeers = new AtomicLong();
+    private final AtomicLong handshakeTimeouts = new AtomicLong();
+    private ScheduledFuture<?> ticker;
+
+    Heartbeat(PeerNode node, ScheduledExecutorService scheduler, ConnectionRegistry registry) {
+        this.node = node;
+        this.scheduler = scheduler;
+        this.registry = registry;
+        this.config = node.getConfig();
+    }
+
+    void start() {
+        long interval = config.getHeartbeatIntervalMillis();
+        if (interval > 0) ticker = scheduler.scheduleWithFixedDelay(this::tick, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    void shutdown() {
+        if (ticker != null) ticker.cancel(false);
+    }
+
+    void onPing(ConnectionHandler from, Message ping) {
+        from.send(Message.pong(node.getMyId(), ping.getSeq()));
+    }
+
+    void onPong(ConnectionHandler from, Message pong) {
+        long echo = pong.getSeq();
+        // só ecos de PING que mandamos: um eco inventado não faz o RTT parecer menor
+        if (echo <= 0 || echo > from.getLastPingMicros()) return;
+        pongsReceived.incrementAndGet();
+        from.getRtt().sample(node.currentTimeMicros() - echo);
+    }
+
+    private void tick() {
+        long now = node.nowMillis();
+        long timeout = config.getPeerDeadTimeoutMillis();
+        for (ConnectionHandler h : registry.handshakingSince(now - timeout)) {
+            handshakeTimeouts.incrementAndGet();
+            node.disconnect(h, "sem HELLO após " + timeout + " ms");
+        }
+        long sent = 0;
+        OutboundFrame ping = null; // o mesmo frame (e a mesma hora) para todos os vizinhos
+        for (ConnectionHandler h : registry.established().values()) {
+            if (!h.isHeartbeat()) continue; // peer antigo: não responde PING
+            long silent = h.silenceMillis(now);
+            if (silent > timeout) {
+                deadPeers.incrementAndGet();
+                node.disconnect(h, "sem resposta há " + silent + " ms");
+                continue;
+            }
+            if (ping == null) {
+                sent = node.currentTimeMicros();
+                ping = new OutboundFrame(Message.ping(node.getMyId(), sent));
+            }
+            h.setLastPingMicros(sent);
+            h.send(ping, null);
+            pingsSent.incrementAndGet();
+        }
+    }
+
+    long pingsSent() {
+        return pingsSent.get();
+    }
+
+    long pongsReceived() {
+        return pongsReceived.get();
+    }
+
+    long deadPeers() {
+        return deadPeers.get();
+    }
+
+    long handshakeTimeouts() {
+        return handshakeTimeouts.get();
+    }
+}
@@ -0,0 +1,129 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.metrics.Histogram;
+import edu.unifor.clysman.chat.metrics.MetricSink;
+import edu.unifor.clysman.chat.metrics.MetricsRegistry;
+import edu.unifor.clysman.chat.model.Message;
+import edu.unifor.clysman.chat.model.TraceHop;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Rastreio de saltos de CHAT amostrados. A origem sorteia (com
+ * {@link NodeConfig#setTraceSampleRate}) se a mensagem leva rastreio; cada nó
+ * que a recebe mede o salto (do repasse do vizinho até a chegada) e a
+ * propagação desde a origem, e acrescenta a sua passagem antes de repassar.
+ * Mensagens sem rastreio não pagam nada além de um teste de null.
+ *
+ * Os tempos vêm do relógio de cada nó, então entre máquinas o salto inclui a
+ * diferença entre os relógios; valores negativos contam como zero.
+ */
+final class HopTracer {
+
+    /** Acima disto a mensagem segue sem acrescentar passagens, para o frame não crescer sem limite. */
+    static final int MAX_HOPS = 64;
+    private static final int MAX_KEYS = 256;
+    // µs, exportado em segundos; faixas fechadas até ~537 s
+    private static final int LATENCY_BUCKETS = 31;
+
+    private final double sampleRate;
+    private final Histogram hops = new Histogram(8, 1);
+    private final Histogram propagation = new Histogram(LATENCY_BUCKETS, 1e-6);
+    private final Map<String, Histogram> byNeighbor = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> byOrigin = new ConcurrentHashMap<>();
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+
+    HopTracer(double sampleRate, MetricsRegistry registry) {
+        this.sampleRate = sampleRate;
+        registry.histogram("p2pchat_trace_hops", "Saltos até aqui dos CHAT rastreados recebidos", hops);
+        registry.histogram("p2pchat_trace_propagation_seconds", "Da origem até este nó, CHAT rastreados", propagation);
+        registry.register(sink -> {
+            export(sink, "p2pchat_trace_hop_seconds", "Do repasse pelo vizinho até a chegada aqui", "neighbor", byNeighbor);
+            export(sink, "p2pchat_trace_origin_propagation_seconds", "Da origem até este nó, por origem", "origin", byOrigin);
+        });
+    }
+
+    private void export(MetricSink sink, String name, String help, String label, Map<String, Histogram> byKey) {
+        if (byKey.isEmpty()) return;
+        sink.family(name, MetricSink.Type.HISTOGRAM, help);
+        for (Map.Entry<String, Histogram> e : byKey.entrySet()) {
+            sink.histogram(name, e.getValue().snapshot(), label, e.getKey(), "name", names.getOrDefault(e.getKey(), ""));
+        }
+    }
+
+    /** Rastreio inicial de um CHAT originado aqui, ou null se não sorteado. */
+    List<TraceHop> start(String myId, long nowMicros) {
+        if (sampleRate <= 0 || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) return null;
+        List<TraceHop> trace = new ArrayList<>(8);
+        trace.add(new TraceHop(myId, nowMicros, nowMicros));
+        return trace;
+    }
+
+    /** Registra a chegada de um CHAT rastreado; {@code neighborName} é só para exibição. */
+    void received(Message m, String neighborName, long recvMicros) {
+        List<TraceHop> trace = m.getTrace();
+        if (trace.isEmpty()) return;
+        TraceHop first = trace.get(0);
+        TraceHop last = trace.get(trace.size() - 1);
+        long total = Math.max(0, recvMicros - first.getFwd());
+        long hop = Math.max(0, recvMicros - last.getFwd());
+        hops.record(trace.size());
+        propagation.record(total);
+        Histogram n = histogram(byNeighbor, last.getNode());
+        if (n != null) {
+            n.record(hop);
+            if (neighborName != null) names.putIfAbsent(last.getNode(), neighborName);
+        }
+        Histogram o = histogram(byOrigin, m.getFromId());
+        if (o != null) {
+            o.record(total);
+            if (m.getFromName() != null) names.putIfAbsent(m.getFromId(), m.getFromName());
+        }
+    }
+
+    /**
+     * Cópia do CHAT para repasse, com a passagem por este nó acrescentada;
+     * chamar logo antes de repassar. A mensagem recebida não muda: a UI e a
+     * anti-entropia ficam com o caminho até aqui.
+     */
+    Message forwarding(Message m, String myId, long recvMicros, long fwdMicros) {
+        if (m.getTrace().size() >= MAX_HOPS) return m;
+        List<TraceHop> trace = new ArrayList<>(m.getTrace().size() + 1);
+        trace.addAll(m.getTrace());
+        trace.add(new TraceHop(myId, recvMicros, fwdMicros));
+        Message relay = new Message();
+        relay.setId(m.getId());
+        relay.setType(m.getType());
+        relay.setFromId(m.getFromId());
+        relay.setSeq(m.getSeq());
+        relay.setFromName(m.getFromName());
+        relay.setText(m.getText());
+        relay.setTimestamp(m.getTimestamp());
+        relay.setTrace(trace);
+        return relay;
+    }
+
+    private static Histogram histogram(Map<String, Histogram> byKey, String key) {
+        if (key == null) return null;
+        Histogram h = byKey.get(key);
+        if (h != null || byKey.size() >= MAX_KEYS) return h;
+        return byKey.computeIfAbsent(key, k -> new Histogram(LATENCY_BUCKETS, 1e-6));
+    }
+
+    TraceStats stats() {
+        return new TraceStats(propagation.snapshot(), hops.snapshot(), latencies(byNeighbor), latencies(byOrigin));
+    }
+
+    private Map<String, TraceStats.Latency> latencies(Map<String, Histogram> byKey) {
+        Map<String, TraceStats.Latency> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Histogram> e : byKey.entrySet()) {
+            out.put(e.getKey(), new TraceStats.Latency(names.get(e.getKey()), e.getValue().snapshot()));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,70 @@
+package edu.unifor.clysman.chat.net;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de resolução de nomes com TTL, para que comparar endereços nunca
+ * dependa de DNS: cada nome é resolvido no máximo uma vez por TTL (falhas
+ * também ficam em cache, por menos tempo). IPs literais não geram consulta.
+ */
+final class HostResolver {
+
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final long NEGATIVE_TTL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int MAX_ENTRIES = 4096;
+
+    private static final class Cached {
+        final InetAddress address; // null = nome não resolvido
+        final long expiresAt;
+
+        Cached(InetAddress address, long expiresAt) {
+            this.address = address;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+
+    /**
+     * Endereço normalizado de {@code host:port}. Se o nome não resolver, volta
+     * um endereço não resolvido com o nome em minúsculas, que ainda serve de
+     * chave (ex.: hosts de um transporte simulado).
+     */
+    InetSocketAddress resolve(String host, int port) {
+        String key = host.trim().toLowerCase(Locale.ROOT);
+        long now = System.nanoTime();
+        Cached c = cache.get(key);
+        if (c != null && now - c.expiresAt < 0) {
+            hits.incrementAndGet();
+        } else {
+            lookups.incrementAndGet();
+            InetAddress a;
+            try {
+                a = InetAddress.getByName(key);
+            } catch (UnknownHostException | SecurityException e) {
+                a = null;
+            }
+            c = new Cached(a, now + (a != null ? TTL_NANOS : NEGATIVE_TTL_NANOS));
+            if (cache.size() >= MAX_ENTRIES) cache.clear();
+            cache.put(key, c);
+        }
+        return c.address != null ? new InetSocketAddress(c.address, port) : InetSocketAddress.createUnresolved(key, port);
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long lookups() {
+        return lookups.get();
+    }
+}
@@ -0,0 +1,162 @@
+package edu.unifor.clysman.chat.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Conexão não bloqueante atendida por um {@link EventLoop}. Leitura, escrita e
+ * recorte dos frames acontecem na thread do loop; {@link #send} pode ser
+ * chamado de qualquer thread.
+ */
+final class NioConnectionHandler extends ConnectionHandler implements EventLoop.Handler {
+
+    private final SocketChannel channel;
+    private final EventLoop loop;
+    private final InetSocketAddress remote;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    // Estado abaixo só é acessado pela thread do loop
+    private SelectionKey key;
+    // Lote em escrita: batch[batchPos..batchLen) ainda tem bytes pendentes
+    private final ByteBuffer[] batch;
+    private int batchPos;
+    private int batchLen;
+    private long batchBytes;
+
+    NioConnectionHandler(SocketChannel channel, EventLoop loop, PeerNode node) throws IOException {
+        super(node);
+        this.channel = channel;
+        this.loop = loop;
+        this.remote = (InetSocketAddress) channel.getRemoteAddress();
+        this.batch = new ByteBuffer[node.getConfig().getWriteBatchMaxFrames()];
+        channel.configureBlocking(false);
+    }
+
+    @Override
+    void start() {
+        if (!running.compareAndSet(false, true)) return;
+        loop.execute(() -> {
+            try {
+                key = loop.register(channel, SelectionKey.OP_READ, this);
+            } catch (IOException e) {
+                stop();
+                return;
+            }
+            node.onHandlerStarted(this);
+        });
+    }
+
+    @Override
+    void stop() {
+        if (!running.compareAndSet(true, false)) return;
+        try { channel.close(); } catch (IOException ignored) {}
+        outQueue.clear();
+        resumeSources();
+        node.onHandlerStopped(this);
+    }
+
+    @Override
+    protected void onEnqueued(int size) {
+        NodeConfig cfg = node.getConfig();
+        long queued = outQueue.bytes();
+        if (flushScheduled.compareAndSet(false, true)) {
+            if (cfg.getWriteLingerMillis() > 0) loop.schedule(this::flush, cfg.getWriteLingerMillis());
+            else loop.execute(this::flush);
+        } else if (cfg.getWriteLingerMillis() > 0 && queued >= cfg.getWriteBatchMaxBytes()
+                && queued - size < cfg.getWriteBatchMaxBytes()) {
+            // orçamento atingido durante a janela de linger: não espera o timer
+            loop.execute(this::flush);
+        }
+    }
+
+    @Override
+    protected void readPauseChanged() {
+        loop.execute(() -> {
+            if (key == null || !key.isValid()) return;
+            int ops = key.interestOps();
+            key.interestOps(isReadPaused() ? ops & ~SelectionKey.OP_READ : ops | SelectionKey.OP_READ);
+        });
+    }
+
+    @Override
+    public void onReady(SelectionKey key) throws IOException {
+        if (key.isReadable()) onReadable();
+        if (key.isValid() && key.isWritable()) flush();
+    }
+
+    @Override
+    public void onError(Exception e) {
+        stop();
+    }
+
+    private void onReadable() throws IOException {
+        int n = channel.read(decoder.buffer());
+        if (n < 0) {
+            stop();
+            return;
+        }
+        decoder.drain(this::deliver);
+    }
+
+    /**
+     * Junta o que está na fila (até o orçamento de frames/bytes) e escreve com
+     * uma única chamada de gather write. Idempotente: pode rodar a mais sem efeito.
+     */
+    private void flush() {
+        if (!running.get() || key == null) return;
+        try {
+            while (true) {
+                if (batchLen == 0 && !fillBatch()) {
+                    if ((key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                    }
+                    flushScheduled.set(false);
+                    // Um produtor pode ter enfileirado entre o último poll e o set(false)
+                    if (outQueue.isEmpty() || !flushScheduled.compareAndSet(false, true)) return;
+                    continue;
+                }
+                channel.write(batch, batchPos, batchLen - batchPos);
+                while (batchPos < batchLen && !batch[batchPos].hasRemaining()) batchPos++;
+                if (batchPos < batchLen) {
+                    // buffer do socket cheio: espera OP_WRITE
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                recordWrite(batchLen, batchBytes);
+                Arrays.fill(batch, 0, batchLen, null);
+                batchPos = batchLen = 0;
+                afterDrain();
+            }
+        } catch (IOException | RuntimeException e) {
+            stop();
+        }
+    }
+
+    private boolean fillBatch() {
+        batchLen = outQueue.drainTo(batch, 0, batch.length, node.getConfig().getWriteBatchMaxBytes());
+        batchBytes = 0;
+        for (int i = 0; i < batchLen; i++) batchBytes += batch[i].remaining();
+        return batchLen > 0;
+    }
+
+    @Override
+    String getRemoteKey() {
+        return remote != null ? remote.toString() : "unknown";
+    }
+
+    @Override
+    String getRemoteHost() {
+        return remote != null && remote.getAddress() != null ? remote.getAddress().getHostAddress() : "unknown";
+    }
+
+    @Override
+    int getRemotePort() {
+        return remote != null ? remote.getPort() : -1;
+    }
+}
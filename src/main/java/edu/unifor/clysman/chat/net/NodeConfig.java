@@ -0,0 +1,340 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.codec.Codecs;
+import edu.unifor.clysman.chat.event.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/** Parâmetros de execução do PeerNode. Os valores padrão servem para a aplicação Swing. */
+public class NodeConfig {
+
+    private TransportMode transportMode = TransportMode.NIO;
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+    private int eventLoopThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private List<String> wireCodecs = Codecs.names();
+    private int writeBatchMaxFrames = 64;
+    private int writeBatchMaxBytes = 64 * 1024;
+    private int writeLingerMillis = 0;
+    private long outboundQueueMaxBytes = 4L * 1024 * 1024;
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP_OLDEST_CHAT;
+    private BroadcastMode broadcastMode = BroadcastMode.FLOOD;
+    private int plumtreeMissingTimeoutMillis = 500;
+    private int plumtreeIhaveFlushMillis = 100;
+    private int plumtreeCacheSize = 10_000;
+    private boolean antiEntropy = true;
+    private boolean discovery = true;
+    private boolean peerShareConnect = true;
+    private int peerTableMaxSize = 1024;
+    private int minDegree = 4;
+    private int maxDegree = 32;
+    private int maxConcurrentDials = 4;
+    private long dialBackoffMinMillis = 1000;
+    private long dialBackoffMaxMillis = 60_000;
+    private int heartbeatIntervalMillis = 2000;
+    private int peerDeadTimeoutMillis = 6000;
+    private long neighborSwapIntervalMillis = 60_000;
+    private long peerTtlMillis = 10 * 60 * 1000L;
+    private int syncBatchSize = 128;
+    private int syncRetainPerOrigin = 1024;
+    private double traceSampleRate = 0;
+    private boolean jmx = true;
+    private int metricsPort = Integer.getInteger("p2pchat.metrics.port", -1);
+    private boolean asyncEvents = true;
+    private int eventRingSize = 8192;
+    private OverflowPolicy eventOverflowPolicy = OverflowPolicy.BLOCK;
+
+    public TransportMode getTransportMode() { return transportMode; }
+    public ThreadMode getThreadMode() { return threadMode; }
+    public int getEventLoopThreads() { return eventLoopThreads; }
+    public List<String> getWireCodecs() { return wireCodecs; }
+    public int getWriteBatchMaxFrames() { return writeBatchMaxFrames; }
+    public int getWriteBatchMaxBytes() { return writeBatchMaxBytes; }
+    public int getWriteLingerMillis() { return writeLingerMillis; }
+    public long getOutboundQueueMaxBytes() { return outboundQueueMaxBytes; }
+    public SlowConsumerPolicy getSlowConsumerPolicy() { return slowConsumerPolicy; }
+    public BroadcastMode getBroadcastMode() { return broadcastMode; }
+    public int getPlumtreeMissingTimeoutMillis() { return plumtreeMissingTimeoutMillis; }
+    public int getPlumtreeIhaveFlushMillis() { return plumtreeIhaveFlushMillis; }
+    public int getPlumtreeCacheSize() { return plumtreeCacheSize; }
+    public boolean isAntiEntropy() { return antiEntropy; }
+    public boolean isDiscovery() { return discovery; }
+    public boolean isPeerShareConnect() { return peerShareConnect; }
+    public int getPeerTableMaxSize() { return peerTableMaxSize; }
+    public int getMinDegree() { return minDegree; }
+    public int getMaxDegree() { return maxDegree; }
+    public int getMaxConcurrentDials() { return maxConcurrentDials; }
+    public long getDialBackoffMinMillis() { return dialBackoffMinMillis; }
+    public long getDialBackoffMaxMillis() { return dialBackoffMaxMillis; }
+    public int getHeartbeatIntervalMillis() { return heartbeatIntervalMillis; }
+    public int getPeerDeadTimeoutMillis() { return peerDeadTimeoutMillis; }
+    public long getNeighborSwapIntervalMillis() { return neighborSwapIntervalMillis; }
+    public long getPeerTtlMillis() { return peerTtlMillis; }
+    public int getSyncBatchSize() { return syncBatchSize; }
+    public int getSyncRetainPerOrigin() { return syncRetainPerOrigin; }
+    public double getTraceSampleRate() { return traceSampleRate; }
+    public boolean isJmx() { return jmx; }
+    public int getMetricsPort() { return metricsPort; }
+    public boolean isAsyncEvents() { return asyncEvents; }
+    public int getEventRingSize() { return eventRingSize; }
+    public OverflowPolicy getEventOverflowPolicy() { return eventOverflowPolicy; }
+
+    public NodeConfig setTransportMode(TransportMode transportMode) {
+        this.transportMode = transportMode;
+        return this;
+    }
+
+    /**
+     * Com VIRTUAL, conexões de saída, o loop de aceitação e as threads de
+     * leitura/escrita do transporte BLOCKING rodam em virtual threads.
+     */
+    public NodeConfig setThreadMode(ThreadMode threadMode) {
+        this.threadMode = threadMode;
+        return this;
+    }
+
+    /** Codecs anunciados no HELLO, em ordem de preferência. JSON é sempre aceito na leitura. */
+    public NodeConfig setWireCodecs(List<String> wireCodecs) {
+        this.wireCodecs = new ArrayList<>(wireCodecs);
+        return this;
+    }
+
+    public NodeConfig setEventLoopThreads(int eventLoopThreads) {
+        if (eventLoopThreads < 1) throw new IllegalArgumentException("eventLoopThreads deve ser >= 1");
+        this.eventLoopThreads = eventLoopThreads;
+        return this;
+    }
+
+    /** Máximo de frames juntados numa única escrita no socket. */
+    public NodeConfig setWriteBatchMaxFrames(int writeBatchMaxFrames) {
+        if (writeBatchMaxFrames < 1) throw new IllegalArgumentException("writeBatchMaxFrames deve ser >= 1");
+        this.writeBatchMaxFrames = writeBatchMaxFrames;
+        return this;
+    }
+
+    /** Orçamento em bytes de uma escrita; o lote fecha ao atingi-lo. */
+    public NodeConfig setWriteBatchMaxBytes(int writeBatchMaxBytes) {
+        if (writeBatchMaxBytes < 1) throw new IllegalArgumentException("writeBatchMaxBytes deve ser >= 1");
+        this.writeBatchMaxBytes = writeBatchMaxBytes;
+        return this;
+    }
+
+    /**
+     * Janela em que o escritor espera mais frames antes de escrever, para que
+     * rajadas virem poucos segmentos TCP grandes. 0 escreve imediatamente.
+     */
+    public NodeConfig setWriteLingerMillis(int writeLingerMillis) {
+        if (writeLingerMillis < 0) throw new IllegalArgumentException("writeLingerMillis deve ser >= 0");
+        this.writeLingerMillis = writeLingerMillis;
+        return this;
+    }
+
+    /** Limite em bytes de CHAT na fila de saída de cada vizinho (controle não conta). */
+    public NodeConfig setOutboundQueueMaxBytes(long outboundQueueMaxBytes) {
+        if (outboundQueueMaxBytes < 1) throw new IllegalArgumentException("outboundQueueMaxBytes deve ser >= 1");
+        this.outboundQueueMaxBytes = outboundQueueMaxBytes;
+        return this;
+    }
+
+    public NodeConfig setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        return this;
+    }
+
+    public NodeConfig setBroadcastMode(BroadcastMode broadcastMode) {
+        this.broadcastMode = broadcastMode;
+        return this;
+    }
+
+    /** Plumtree: quanto esperar por um CHAT anunciado em IHAVE antes de pedir GRAFT. */
+    public NodeConfig setPlumtreeMissingTimeoutMillis(int plumtreeMissingTimeoutMillis) {
+        if (plumtreeMissingTimeoutMillis < 1) throw new IllegalArgumentException("plumtreeMissingTimeoutMillis deve ser >= 1");
+        this.plumtreeMissingTimeoutMillis = plumtreeMissingTimeoutMillis;
+        return this;
+    }
+
+    /** Plumtree: intervalo de envio dos IHAVE acumulados. */
+    public NodeConfig setPlumtreeIhaveFlushMillis(int plumtreeIhaveFlushMillis) {
+        if (plumtreeIhaveFlushMillis < 1) throw new IllegalArgumentException("plumtreeIhaveFlushMillis deve ser >= 1");
+        this.plumtreeIhaveFlushMillis = plumtreeIhaveFlushMillis;
+        return this;
+    }
+
+    /** Plumtree: quantos CHAT recentes guardar para responder a GRAFT. */
+    public NodeConfig setPlumtreeCacheSize(int plumtreeCacheSize) {
+        if (plumtreeCacheSize < 1) throw new IllegalArgumentException("plumtreeCacheSize deve ser >= 1");
+        this.plumtreeCacheSize = plumtreeCacheSize;
+        return this;
+    }
+
+    /** Troca de DIGEST após o HELLO para recuperar CHAT perdidos enquanto a conexão estava caída. */
+    public NodeConfig setAntiEntropy(boolean antiEntropy) {
+        this.antiEntropy = antiEntropy;
+        return this;
+    }
+
+    /** Anti-entropia: CHAT enviados por lote a um vizinho atrasado. */
+    public NodeConfig setSyncBatchSize(int syncBatchSize) {
+        if (syncBatchSize < 1) throw new IllegalArgumentException("syncBatchSize deve ser >= 1");
+        this.syncBatchSize = syncBatchSize;
+        return this;
+    }
+
+    /** Anti-entropia: quantos CHAT recentes de cada origem manter em memória. */
+    public NodeConfig setSyncRetainPerOrigin(int syncRetainPerOrigin) {
+        if (syncRetainPerOrigin < 1) throw new IllegalArgumentException("syncRetainPerOrigin deve ser >= 1");
+        this.syncRetainPerOrigin = syncRetainPerOrigin;
+        return this;
+    }
+
+    /** Anúncio e escuta por multicast na LAN. Desligue para topologias montadas à mão (testes de carga). */
+    public NodeConfig setDiscovery(boolean discovery) {
+        this.discovery = discovery;
+        return this;
+    }
+
+    /** Conectar sozinho a peers recebidos em PEERSHARE. */
+    public NodeConfig setPeerShareConnect(boolean peerShareConnect) {
+        this.peerShareConnect = peerShareConnect;
+        return this;
+    }
+
+    /**
+     * Com {@link #setPeerShareConnect} ligado, o nó disca sozinho para peers
+     * conhecidos enquanto tiver menos que {@code minDegree} vizinhos. Não
+     * pode passar de {@code maxDegree} (conferido ao criar o nó).
+     */
+    public NodeConfig setMinDegree(int minDegree) {
+        if (minDegree < 0) throw new IllegalArgumentException("minDegree não pode ser negativo");
+        this.minDegree = minDegree;
+        return this;
+    }
+
+    /** Acima disto novos vizinhos são recusados após o HELLO (inclusive conexões pedidas à mão). */
+    public NodeConfig setMaxDegree(int maxDegree) {
+        if (maxDegree < 1) throw new IllegalArgumentException("maxDegree deve ser positivo");
+        this.maxDegree = maxDegree;
+        return this;
+    }
+
+    /** Discagens automáticas em andamento ao mesmo tempo. */
+    public NodeConfig setMaxConcurrentDials(int maxConcurrentDials) {
+        if (maxConcurrentDials < 1) throw new IllegalArgumentException("maxConcurrentDials deve ser positivo");
+        this.maxConcurrentDials = maxConcurrentDials;
+        return this;
+    }
+
+    /**
+     * Espera antes de rediscar um endereço que falhou: dobra a cada falha
+     * seguida, de {@code minMillis} até {@code maxMillis}, com jitter.
+     */
+    public NodeConfig setDialBackoff(long minMillis, long maxMillis) {
+        if (minMillis < 1 || maxMillis < minMillis) throw new IllegalArgumentException("backoff inválido: " + minMillis + ".." + maxMillis);
+        this.dialBackoffMinMillis = minMillis;
+        this.dialBackoffMaxMillis = maxMillis;
+        return this;
+    }
+
+    /**
+     * Intervalo entre PING a cada vizinho, para medir o RTT e detectar
+     * conexões mortas; 0 desliga (o nó continua respondendo PING).
+     */
+    public NodeConfig setHeartbeatIntervalMillis(int heartbeatIntervalMillis) {
+        if (heartbeatIntervalMillis < 0) throw new IllegalArgumentException("heartbeatIntervalMillis não pode ser negativo");
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        return this;
+    }
+
+    /**
+     * Vizinho que responde PING e fica este tempo sem mandar nenhum frame é
+     * dado como morto e desconectado; vale também para conexões presas antes
+     * do HELLO. Deve cobrir alguns intervalos de heartbeat.
+     */
+    public NodeConfig setPeerDeadTimeoutMillis(int peerDeadTimeoutMillis) {
+        if (peerDeadTimeoutMillis < 1) throw new IllegalArgumentException("peerDeadTimeoutMillis deve ser positivo");
+        this.peerDeadTimeoutMillis = peerDeadTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * A cada intervalo, com o grau entre o mínimo e o máximo, o nó testa um
+     * peer conhecido e troca o vizinho de maior RTT por ele se o RTT for
+     * claramente menor; 0 desliga. Depende do heartbeat.
+     */
+    public NodeConfig setNeighborSwapIntervalMillis(long neighborSwapIntervalMillis) {
+        if (neighborSwapIntervalMillis < 0) throw new IllegalArgumentException("neighborSwapIntervalMillis não pode ser negativo");
+        this.neighborSwapIntervalMillis = neighborSwapIntervalMillis;
+        return this;
+    }
+
+    /** Máximo de peers conhecidos; cheia, sai o visto há mais tempo (nunca um vizinho conectado). */
+    public NodeConfig setPeerTableMaxSize(int peerTableMaxSize) {
+        if (peerTableMaxSize < 1) throw new IllegalArgumentException("peerTableMaxSize deve ser positivo");
+        this.peerTableMaxSize = peerTableMaxSize;
+        return this;
+    }
+
+    /** Peers não conectados somem da tabela (e do PEERSHARE) depois deste tempo sem notícia. */
+    public NodeConfig setPeerTtlMillis(long peerTtlMillis) {
+        if (peerTtlMillis < 1) throw new IllegalArgumentException("peerTtlMillis deve ser positivo");
+        this.peerTtlMillis = peerTtlMillis;
+        return this;
+    }
+
+    /**
+     * Fração dos CHAT originados aqui que levam rastreio de saltos (0 a 1).
+     * Repasses de mensagens já rastreadas acontecem sempre, qualquer que seja o valor.
+     */
+    public NodeConfig setTraceSampleRate(double traceSampleRate) {
+        if (!(traceSampleRate >= 0 && traceSampleRate <= 1)) throw new IllegalArgumentException("traceSampleRate deve estar entre 0 e 1");
+        this.traceSampleRate = traceSampleRate;
+        return this;
+    }
+
+    /** Publica as métricas do nó como MBean na plataforma (jconsole, VisualVM). */
+    public NodeConfig setJmx(boolean jmx) {
+        this.jmx = jmx;
+        return this;
+    }
+
+    /**
+     * Porta do endpoint Prometheus em 127.0.0.1 ({@code /metrics}); 0 escolhe
+     * uma porta livre, -1 desliga. Padrão: {@code -Dp2pchat.metrics.port}, ou desligado.
+     */
+    public NodeConfig setMetricsPort(int metricsPort) {
+        if (metricsPort < -1 || metricsPort > 65535) throw new IllegalArgumentException("metricsPort deve estar entre -1 e 65535");
+        this.metricsPort = metricsPort;
+        return this;
+    }
+
+    /**
+     * Com true (padrão), eventos para a interface e o histórico passam por um
+     * anel e são consumidos em threads próprias; com false os assinantes são
+     * chamados na thread de rede, como na rede simulada.
+     */
+    public NodeConfig setAsyncEvents(boolean asyncEvents) {
+        this.asyncEvents = asyncEvents;
+        return this;
+    }
+
+    /** Capacidade do anel de eventos (potência de 2). */
+    public NodeConfig setEventRingSize(int eventRingSize) {
+        if (eventRingSize < 2 || Integer.bitCount(eventRingSize) != 1) throw new IllegalArgumentException("eventRingSize deve ser potência de 2");
+        this.eventRingSize = eventRingSize;
+        return this;
+    }
+
+    /** O que fazer quando o assinante mais lento fica um anel inteiro para trás. */
+    public NodeConfig setEventOverflowPolicy(OverflowPolicy eventOverflowPolicy) {
+        this.eventOverflowPolicy = Objects.requireNonNull(eventOverflowPolicy);
+        return this;
+    }
+
+    /** Confere as combinações que os setters isolados não podem checar (a ordem das chamadas é livre). */
+    void validate() {
+        if (minDegree > maxDegree) {
+            throw new IllegalArgumentException("minDegree (" + minDegree + ") maior que maxDegree (" + maxDegree + ")");
+        }
+    }
+}
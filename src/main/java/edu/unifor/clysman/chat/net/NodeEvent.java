@@ -0,0 +1,70 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.model.Message;
+import edu.unifor.clysman.chat.model.PeerInfo;
+
+/**
+ * Evento publicado pelo nó para a interface, o histórico e demais
+ * assinantes de {@link PeerNode#subscribe}. Os objetos são reaproveitados
+ * pelo anel: leia os campos durante {@code onEvent} e copie o que precisar
+ * guardar.
+ */
+public final class NodeEvent {
+
+    public enum Type {
+        STATUS,
+        PEER_CONNECTED,
+        PEER_DISCONNECTED,
+        /** CHAT entregue (recebido ou enviado por este nó). */
+        MESSAGE,
+        /** Anúncio de descoberta; o peer traz host, porta de escuta, nome e id. */
+        PEER_DISCOVERED,
+        PEER_SLOW
+    }
+
+    private Type type;
+    private long time;
+    private String text;
+    private PeerInfo peer;
+    private Message message;
+    private SlowConsumerPolicy policy;
+
+    public Type getType() { return type; }
+    /** Quando o evento foi publicado (epoch ms); o mesmo para todos os assinantes. */
+    public long getTime() { return time; }
+    /** Texto de STATUS. */
+    public String getText() { return text; }
+    public PeerInfo getPeer() { return peer; }
+    public Message getMessage() { return message; }
+    /** Política aplicada ao vizinho em PEER_SLOW. */
+    public SlowConsumerPolicy getPolicy() { return policy; }
+
+    /** Preenche o evento; os campos que o tipo não usa ficam null para não reter objetos antigos. */
+    void set(Type type, String text, PeerInfo peer, Message message, SlowConsumerPolicy policy) {
+        this.type = type;
+        this.time = System.currentTimeMillis();
+        this.text = text;
+        this.peer = peer;
+        this.message = message;
+        this.policy = policy;
+    }
+
+    /** Entrega o evento ao callback correspondente. */
+    void dispatch(PeerNode.UiCallbacks ui) {
+        switch (type) {
+            case STATUS: ui.onStatus(text); break;
+            case PEER_CONNECTED: ui.onPeerConnected(peer); break;
+            case PEER_DISCONNECTED: ui.onPeerDisconnected(peer); break;
+            case MESSAGE: ui.onMessageReceived(message); break;
+            case PEER_DISCOVERED: ui.onPeerDiscovered(peer.getHost(), peer.getPort(), peer.getName(), peer.getId()); break;
+            case PEER_SLOW: ui.onPeerSlow(peer, policy); break;
+            default: break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + (text != null ? " " + text : "") + (peer != null ? " " + peer.getId() : "")
+                + (message != null ? " " + message.getId() : "");
+    }
+}
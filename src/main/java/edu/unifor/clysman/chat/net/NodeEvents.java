@@ -0,0 +1,125 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.event.RingBus;
+import edu.unifor.clysman.chat.event.Subscriber;
+import edu.unifor.clysman.chat.event.Translator;
+import edu.unifor.clysman.chat.metrics.MetricsRegistry;
+import edu.unifor.clysman.chat.model.Message;
+import edu.unifor.clysman.chat.model.PeerInfo;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Saída de eventos do nó. No modo assíncrono as threads de rede só
+ * publicam no {@link RingBus} e cada assinante (interface, histórico...)
+ * consome na própria thread, no seu ritmo. No modo síncrono (rede simulada,
+ * que precisa ser determinística) os assinantes são chamados na hora, na
+ * thread de quem publicou.
+ */
+final class NodeEvents {
+
+    private static final Translator<NodeEvent, NodeEvent.Type, Object> SIMPLE = (e, type, payload) -> {
+        if (type == NodeEvent.Type.STATUS) e.set(type, (String) payload, null, null, null);
+        else if (type == NodeEvent.Type.MESSAGE) e.set(type, null, null, (Message) payload, null);
+        else e.set(type, null, (PeerInfo) payload, null, null);
+    };
+    private static final Translator<NodeEvent, PeerInfo, SlowConsumerPolicy> SLOW =
+            (e, peer, policy) -> e.set(NodeEvent.Type.PEER_SLOW, null, peer, null, policy);
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 5_000;
+
+    private final RingBus<NodeEvent> bus; // null no modo síncrono
+    private final List<Subscriber<? super NodeEvent>> inline = new CopyOnWriteArrayList<>();
+    private long inlineSeq;
+    private volatile PeerNode.UiCallbacks ui;
+    private boolean uiSubscribed;
+
+    NodeEvents(NodeConfig config) {
+        this.bus = config.isAsyncEvents()
+                ? new RingBus<>("node", config.getEventRingSize(), NodeEvent::new, config.getEventOverflowPolicy())
+                : null;
+    }
+
+    /** Troca os callbacks da interface; o assinante "ui" é criado na primeira vez. */
+    synchronized void setUi(PeerNode.UiCallbacks ui) {
+        this.ui = ui;
+        if (uiSubscribed || ui == null) return;
+        uiSubscribed = true;
+        subscribe("ui", (e, seq, end) -> {
+            PeerNode.UiCallbacks cb = this.ui;
+            if (cb != null) e.dispatch(cb);
+        });
+    }
+
+    void subscribe(String name, Subscriber<? super NodeEvent> subscriber) {
+        if (bus != null) bus.subscribe(name, subscriber);
+        else inline.add(subscriber);
+    }
+
+    void status(String text) {
+        publish(NodeEvent.Type.STATUS, text);
+    }
+
+    void peerConnected(PeerInfo peer) {
+        publish(NodeEvent.Type.PEER_CONNECTED, peer);
+    }
+
+    void peerDisconnected(PeerInfo peer) {
+        publish(NodeEvent.Type.PEER_DISCONNECTED, peer);
+    }
+
+    void message(Message m) {
+        publish(NodeEvent.Type.MESSAGE, m);
+    }
+
+    void discovered(String host, int port, String name, String id) {
+        PeerInfo p = new PeerInfo();
+        p.setHost(host);
+        p.setPort(port);
+        p.setName(name);
+        p.setId(id);
+        publish(NodeEvent.Type.PEER_DISCOVERED, p);
+    }
+
+    void slow(PeerInfo peer, SlowConsumerPolicy policy) {
+        if (bus != null) {
+            bus.publish(SLOW, peer, policy);
+            return;
+        }
+        NodeEvent e = new NodeEvent();
+        SLOW.translate(e, peer, policy);
+        deliverInline(e);
+    }
+
+    private void publish(NodeEvent.Type type, Object payload) {
+        if (bus != null) {
+            bus.publish(SIMPLE, type, payload);
+            return;
+        }
+        if (inline.isEmpty()) return;
+        NodeEvent e = new NodeEvent();
+        SIMPLE.translate(e, type, payload);
+        deliverInline(e);
+    }
+
+    private void deliverInline(NodeEvent e) {
+        long seq = inlineSeq++;
+        for (Subscriber<? super NodeEvent> s : inline) {
+            try {
+                s.onEvent(e, seq, true);
+            } catch (Exception ignored) {
+                // como no modo assíncrono: a falha de um assinante não afeta os outros
+            }
+        }
+    }
+
+    void registerMetrics(MetricsRegistry registry) {
+        if (bus != null) bus.registerMetrics(registry, "p2pchat_events");
+    }
+
+    /** Entrega o que já foi publicado e para as threads dos assinantes. */
+    void close() {
+        if (bus != null) bus.close(CLOSE_TIMEOUT_MILLIS);
+    }
+}
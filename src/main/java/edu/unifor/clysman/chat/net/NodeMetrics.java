@@ -0,0 +1,95 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.metrics.Counter;
+import edu.unifor.clysman.chat.metrics.Histogram;
+import edu.unifor.clysman.chat.metrics.MetricSink;
+import edu.unifor.clysman.chat.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Contadores do nó e das conexões, publicados no {@link MetricsRegistry} do
+ * nó. Os campos são incrementados direto no caminho quente; o que já existe
+ * em outras classes (filas, Plumtree, anti-entropia) é lido só na coleta.
+ */
+final class NodeMetrics {
+
+    final MetricsRegistry registry = new MetricsRegistry();
+
+    final Counter bytesReceived = registry.counter("p2pchat_received_bytes_total", "Bytes de frames recebidos de vizinhos");
+    final Counter framesReceived = registry.counter("p2pchat_received_frames_total", "Frames recebidos de vizinhos");
+    final Counter bytesSent = registry.counter("p2pchat_sent_bytes_total", "Bytes escritos para vizinhos");
+    final Counter framesSent = registry.counter("p2pchat_sent_frames_total", "Frames escritos para vizinhos");
+    final Histogram frameSize = registry.histogram("p2pchat_received_frame_bytes", "Tamanho dos frames recebidos", 21, 1);
+
+    final Counter chatOriginated = registry.counter("p2pchat_chat_originated_total", "CHAT criados neste nó");
+    final Counter chatDelivered = registry.counter("p2pchat_chat_delivered_total", "CHAT novos de outros nós entregues à UI");
+    final Counter chatPushed = registry.counter("p2pchat_chat_pushed_total", "CHAT enviados a vizinhos (originais e repasses)");
+    final Counter duplicatesBySeq = new Counter();
+    final Counter duplicatesById = new Counter();
+    final Counter syncForwarded = registry.counter("p2pchat_sync_forwarded_total", "SYNC novos repassados aos outros vizinhos");
+    final Counter syncDuplicates = registry.counter("p2pchat_sync_duplicates_total", "CHAT reenviados pela anti-entropia que já tínhamos");
+    final Counter decodeFailures = registry.counter("p2pchat_decode_failures_total", "Frames descartados por erro de decodificação");
+
+    final Counter connectionsOpened = registry.counter("p2pchat_connections_opened_total", "Conexões que completaram o HELLO");
+    final Counter connectionsClosed = registry.counter("p2pchat_connections_closed_total", "Conexões encerradas");
+    final Counter connectionsRejectedFull = registry.counter("p2pchat_connections_rejected_full_total", "HELLO recusados por já haver maxDegree vizinhos");
+    final Counter connectionsDuplicate = registry.counter("p2pchat_connections_duplicate_total", "Conexões fechadas por já haver outra com o mesmo vizinho");
+    final Counter connectFailures = registry.counter("p2pchat_connect_failures_total", "Tentativas de conexão de saída que falharam");
+    final Counter slowPeers = registry.counter("p2pchat_slow_peer_events_total", "Vezes em que um vizinho passou do limite da fila");
+
+    NodeMetrics(Supplier<Collection<ConnectionHandler>> connections) {
+        registry.register(sink -> {
+            sink.family("p2pchat_duplicates_dropped_total", MetricSink.Type.COUNTER, "CHAT duplicados descartados antes de decodificar");
+            sink.value("p2pchat_duplicates_dropped_total", duplicatesBySeq.get(), "dedup", "seq");
+            sink.value("p2pchat_duplicates_dropped_total", duplicatesById.get(), "dedup", "id");
+        });
+        registry.gauge("p2pchat_peers_connected", "Vizinhos com HELLO concluído", () -> connections.get().size());
+        registry.register(sink -> {
+            List<ConnectionHandler> conns = new ArrayList<>(connections.get());
+            if (conns.isEmpty()) return;
+            perConnection(sink, conns, "p2pchat_peer_queue_bytes", MetricSink.Type.GAUGE,
+                    "Bytes na fila de saída do vizinho", h -> h.getOutQueue().bytes());
+            perConnection(sink, conns, "p2pchat_peer_queue_frames", MetricSink.Type.GAUGE,
+                    "Frames na fila de saída do vizinho", h -> h.getOutQueue().size());
+            perConnection(sink, conns, "p2pchat_peer_received_bytes_total", MetricSink.Type.COUNTER,
+                    "Bytes recebidos do vizinho", ConnectionHandler::getBytesRead);
+            perConnection(sink, conns, "p2pchat_peer_sent_bytes_total", MetricSink.Type.COUNTER,
+                    "Bytes escritos para o vizinho", h -> h.getWriteStats().bytes());
+            perConnection(sink, conns, "p2pchat_peer_received_frames_total", MetricSink.Type.COUNTER,
+                    "Frames recebidos do vizinho", ConnectionHandler::getFramesRead);
+            perConnection(sink, conns, "p2pchat_peer_sent_frames_total", MetricSink.Type.COUNTER,
+                    "Frames escritos para o vizinho", h -> h.getWriteStats().frames());
+            perConnection(sink, conns, "p2pchat_peer_dropped_frames_total", MetricSink.Type.COUNTER,
+                    "CHAT descartados pela política de vizinho lento", h -> h.getOutQueue().dropped());
+            perConnection(sink, conns, "p2pchat_peer_slow", MetricSink.Type.GAUGE,
+                    "1 enquanto o vizinho estiver marcado como lento", h -> h.isSlow() ? 1 : 0);
+            perConnection(sink, conns, "p2pchat_peer_rtt_seconds", MetricSink.Type.GAUGE,
+                    "RTT suavizado (PING/PONG) do vizinho; NaN sem amostras", h -> seconds(h.getRtt().srtt()));
+            perConnection(sink, conns, "p2pchat_peer_rtt_jitter_seconds", MetricSink.Type.GAUGE,
+                    "Variação média do RTT do vizinho; NaN sem amostras", h -> seconds(h.getRtt().rttvar()));
+        });
+    }
+
+    private static void perConnection(MetricSink sink, List<ConnectionHandler> conns, String name, MetricSink.Type type,
+                                      String help, ToDoubleFunction<ConnectionHandler> value) {
+        sink.family(name, type, help);
+        for (ConnectionHandler h : conns) {
+            String id = h.getPeerInfo() != null ? h.getPeerInfo().getId() : "";
+            String peer = h.getPeerInfo() != null ? h.getPeerInfo().getName() : "";
+            sink.value(name, value.applyAsDouble(h), "peer", peer, "id", id, "remote", h.getRemoteKey());
+        }
+    }
+
+    private static double seconds(long micros) {
+        return micros < 0 ? Double.NaN : micros / 1e6;
+    }
+
+    long duplicates() {
+        return duplicatesBySeq.get() + duplicatesById.get();
+    }
+}
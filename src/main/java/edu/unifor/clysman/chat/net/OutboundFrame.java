@@ -0,0 +1,81 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.codec.Codecs;
+import edu.unifor.clysman.chat.codec.WireCodec;
+import edu.unifor.clysman.chat.model.Message;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mensagem de saída serializada no máximo uma vez por codec. O frame é um
+ * ByteBuffer somente leitura compartilhado por todas as filas de saída; cada
+ * fila recebe apenas um {@code duplicate()} (posição própria, mesmo conteúdo).
+ */
+final class OutboundFrame {
+
+    private final Message message;
+
+    // Quase sempre só um codec está em uso: caminho rápido sem mapa
+    private volatile WireCodec firstCodec;
+    private volatile ByteBuffer firstFrame;
+    private Map<WireCodec, ByteBuffer> others;
+
+    OutboundFrame(Message message) {
+        this.message = message;
+    }
+
+    /**
+     * Frame recebido de um vizinho e repassado sem reserializar: os bytes
+     * originais (copiados, pois o buffer de leitura é reutilizado) valem para
+     * o mesmo codec; outros codecs ainda codificam a partir da mensagem.
+     */
+    static OutboundFrame relay(Message message, WireCodec codec, ByteBuffer wire) {
+        OutboundFrame f = new OutboundFrame(message);
+        ByteBuffer copy = ByteBuffer.allocate(wire.remaining());
+        copy.put(wire.duplicate()).flip();
+        f.firstFrame = copy.asReadOnlyBuffer();
+        f.firstCodec = codec;
+        return f;
+    }
+
+    Message message() {
+        return message;
+    }
+
+    /** Tudo que não é CHAT (ou CHAT reenviado, SYNC) é controle e fura o limite das filas de saída. */
+    boolean isControl() {
+        String type = message.getType();
+        return !"CHAT".equals(type) && !"SYNC".equals(type);
+    }
+
+    /** Visão própria (somente leitura) do frame no codec pedido. */
+    ByteBuffer frameFor(WireCodec codec) {
+        return encoded(codec).duplicate();
+    }
+
+    private ByteBuffer encoded(WireCodec codec) {
+        if (firstCodec == codec) return firstFrame;
+        synchronized (this) {
+            if (firstCodec == null) {
+                ByteBuffer f = encode(codec);
+                firstFrame = f;
+                firstCodec = codec;
+                return f;
+            }
+            if (firstCodec == codec) return firstFrame;
+            if (others == null) others = new ConcurrentHashMap<>(4);
+            return others.computeIfAbsent(codec, this::encode);
+        }
+    }
+
+    private ByteBuffer encode(WireCodec codec) {
+        try {
+            return codec.encode(message).asReadOnlyBuffer();
+        } catch (RuntimeException e) {
+            // mensagem sem representação no codec negociado: JSON sempre serve
+            return Codecs.JSON.encode(message).asReadOnlyBuffer();
+        }
+    }
+}
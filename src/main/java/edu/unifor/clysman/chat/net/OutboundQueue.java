@@ -0,0 +1,193 @@
+package edu.unifor.clysman.chat.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fila de saída limitada em bytes. Frames de controle (HELLO, PEERSHARE...)
+ * sempre entram; o limite só é aplicado a CHAT, conforme a política.
+ */
+final class OutboundQueue {
+
+    enum Result {
+        /** Enfileirado dentro do limite. */
+        ACCEPTED,
+        /** Enfileirado, mas acima do limite (BACKPRESSURE). */
+        OVER_LIMIT,
+        /** Algum CHAT foi descartado (o novo ou antigos). */
+        DROPPED,
+        /** Limite estourado com política DISCONNECT. */
+        OVERFLOW
+    }
+
+    private static final class Entry {
+        final ByteBuffer frame;
+        final boolean control;
+
+        Entry(ByteBuffer frame, boolean control) {
+            this.frame = frame;
+            this.control = control;
+        }
+    }
+
+    private final long maxBytes;
+    private final SlowConsumerPolicy policy;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private volatile long bytes;
+    private volatile long dropped;
+
+    OutboundQueue(long maxBytes, SlowConsumerPolicy policy) {
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+    }
+
+    Result offer(ByteBuffer frame, boolean control) {
+        int size = frame.remaining();
+        lock.lock();
+        try {
+            Result result = Result.ACCEPTED;
+            if (!control && bytes + size > maxBytes) {
+                switch (policy) {
+                    case DROP_NEWEST:
+                        dropped++;
+                        return Result.DROPPED;
+                    case DISCONNECT:
+                        return Result.OVERFLOW;
+                    case DROP_OLDEST_CHAT:
+                        Iterator<Entry> it = entries.iterator();
+                        while (bytes + size > maxBytes && it.hasNext()) {
+                            Entry e = it.next();
+                            if (e.control) continue;
+                            it.remove();
+                            bytes -= e.frame.remaining();
+                            dropped++;
+                        }
+                        if (bytes + size > maxBytes) {
+                            dropped++;
+                            return Result.DROPPED;
+                        }
+                        result = Result.DROPPED;
+                        break;
+                    case BACKPRESSURE:
+                        if (bytes + size > 2 * maxBytes) {
+                            dropped++;
+                            return Result.DROPPED;
+                        }
+                        result = Result.OVER_LIMIT;
+                        break;
+                }
+            }
+            entries.addLast(new Entry(frame, control));
+            bytes += size;
+            notEmpty.signal();
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ByteBuffer poll() {
+        lock.lock();
+        try {
+            return unlink();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ByteBuffer poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) {
+                if (nanos <= 0) return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return unlink();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ByteBuffer take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) notEmpty.await();
+            return unlink();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Move para {@code dst[offset..]} até {@code maxFrames} frames ou até somar
+     * {@code maxBytes} (sempre move ao menos um, se houver). Retorna quantos moveu.
+     */
+    int drainTo(ByteBuffer[] dst, int offset, int maxFrames, long maxBytes) {
+        lock.lock();
+        try {
+            int n = 0;
+            long total = 0;
+            while (n < maxFrames && (n == 0 || total < maxBytes) && !entries.isEmpty()) {
+                ByteBuffer f = unlink();
+                dst[offset + n++] = f;
+                total += f.remaining();
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ByteBuffer unlink() {
+        Entry e = entries.pollFirst();
+        if (e == null) return null;
+        bytes -= e.frame.remaining();
+        return e.frame;
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            bytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    long dropped() {
+        return dropped;
+    }
+
+    long maxBytes() {
+        return maxBytes;
+    }
+
+    SlowConsumerPolicy policy() {
+        return policy;
+    }
+}
@@ -1,54 +1,175 @@
 package edu.unifor.clysman.chat.net;
 
+import edu.unifor.clysman.chat.codec.Codecs;
+import edu.unifor.clysman.chat.codec.FrameHeader;
+import edu.unifor.clysman.chat.codec.WireCodec;
+import edu.unifor.clysman.chat.event.Subscriber;
+import edu.unifor.clysman.chat.metrics.MetricSink;
+import edu.unifor.clysman.chat.metrics.MetricsHttpServer;
+import edu.unifor.clysman.chat.metrics.MetricsRegistry;
 import edu.unifor.clysman.chat.model.Message;
 import edu.unifor.clysman.chat.model.PeerInfo;
-import edu.unifor.clysman.chat.util.Json;
 import edu.unifor.clysman.chat.util.LruSet;
-import com.google.gson.Gson;
+import edu.unifor.clysman.chat.util.SequenceDedup;
+import edu.unifor.clysman.chat.util.Threads;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PeerNode {
 
+    private static final int MAX_PEERSHARE_ENTRIES = 256;
+
+    /** Chamados na thread do assinante "ui" (ou na de rede, com eventos síncronos), nunca na EDT. */
     public interface UiCallbacks {
         void onStatus(String msg);
         void onPeerConnected(PeerInfo peer);
         void onPeerDisconnected(PeerInfo peer);
         void onMessageReceived(Message m);
         void onPeerDiscovered(String host, int port, String name, String id);
+        void onPeerSlow(PeerInfo peer, SlowConsumerPolicy policy);
     }
 
-    private final String myId = UUID.randomUUID().toString();
+    private final String myId;
     private volatile String myName;
     private final int configuredPort;
+    private final NodeConfig config;
     private volatile int listenPort;
     private ServerSocket serverSocket;
     private Thread acceptThread;
-
-    private final Map<String, ConnectionHandler> connectionsByPeerId = new ConcurrentHashMap<>();
-    private final Map<String, PeerInfo> peersById = new ConcurrentHashMap<>();
-    private final Map<String, ConnectionHandler> pendingByRemote = new ConcurrentHashMap<>();
-
-    private final ExecutorService ioPool = Executors.newCachedThreadPool();
+    private ServerSocketChannel serverChannel;
+    private EventLoopGroup eventLoops;
+    private final Transport transport; // null nos modos TCP embutidos
+
+    private final HostResolver resolver = new HostResolver();
+    private final ConnectionRegistry registry = new ConnectionRegistry(this::nowMillis);
+    private final Map<String, ConnectionHandler> connectionsByPeerId = registry.established();
+    private final PeerTable peers;
+    private final ConnectionManager connectionManager;
+    private final Heartbeat heartbeat;
+    private final AtomicLong peersShared = new AtomicLong();
+
+    private final ExecutorService ioPool;
+    private final ThreadFactory threadFactory;
+    private final ScheduledExecutorService scheduler;
     private final AtomicBoolean running = new AtomicBoolean(false);
 
-    private UiCallbacks ui;
-    private final Gson gson = Json.get();
+    private final NodeEvents events;
     private DiscoveryService discovery;
 
+    // CHAT com seq: deduplicação exata por origem; sem seq (peers antigos): LRU de UUIDs
+    private final SequenceDedup seenSequences = new SequenceDedup(10_000);
     private final LruSet<String> seenMessageIds = new LruSet<>(5000);
+    private final AtomicLong nextSeq = new AtomicLong();
+
+    private PlumtreeBroadcast plumtree; // só no modo PLUMTREE
+    private AntiEntropy antiEntropy; // null se desativada
+    private volatile SyncArchive syncArchive;
+    private final NodeMetrics metrics = new NodeMetrics(connectionsByPeerId::values);
+    private final HopTracer tracer;
+    private MetricsHttpServer metricsHttp;
 
     public PeerNode(String myName, int port) {
+        this(myName, port, new NodeConfig());
+    }
+
+    public PeerNode(String myName, int port, NodeConfig config) {
+        this(myName, port, config, null);
+    }
+
+    /**
+     * Nó sobre um transporte plugável (ex.: a rede simulada); com null usa o
+     * TCP de {@link NodeConfig#getTransportMode()}. Executor, agendador e ids
+     * vêm do transporte quando ele os fornece.
+     */
+    public PeerNode(String myName, int port, NodeConfig config, Transport transport) {
         this.myName = Objects.requireNonNull(myName);
         this.configuredPort = port;
+        this.config = Objects.requireNonNull(config);
+        config.validate();
+        this.transport = transport;
+        this.myId = transport != null ? transport.newId() : UUID.randomUUID().toString();
+        boolean virtual = config.getThreadMode() == ThreadMode.VIRTUAL;
+        ExecutorService io = transport != null ? transport.executor() : null;
+        ScheduledExecutorService timers = transport != null ? transport.scheduler() : null;
+        this.ioPool = io != null ? io : Threads.ioExecutor(virtual, "io-");
+        this.threadFactory = Threads.factory(virtual, "conn-");
+        this.scheduler = timers != null ? timers
+                : Executors.newSingleThreadScheduledExecutor(Threads.platformFactory("node-timer-"));
+        this.tracer = new HopTracer(config.getTraceSampleRate(), metrics.registry);
+        this.peers = new PeerTable(config.getPeerTableMaxSize(), config.getPeerTtlMillis(), connectionsByPeerId::containsKey);
+        this.connectionManager = new ConnectionManager(this, scheduler, resolver, registry, this::nowMillis);
+        this.heartbeat = new Heartbeat(this, scheduler, registry);
+        this.events = new NodeEvents(config);
+        events.registerMetrics(metrics.registry);
+        registerMetrics();
+    }
+
+    private void registerMetrics() {
+        MetricsRegistry r = metrics.registry;
+        r.gauge("p2pchat_connections_open", "Conexões abertas, com ou sem HELLO concluído", registry::open);
+        r.register(sink -> {
+            sink.family("p2pchat_connections", MetricSink.Type.GAUGE, "Conexões e discagens por fase");
+            for (Map.Entry<ConnectionState, Integer> e : registry.counts().entrySet()) {
+                sink.value("p2pchat_connections", e.getValue(), "state", e.getKey().name().toLowerCase(Locale.ROOT));
+            }
+        });
+        r.gauge("p2pchat_dials_inflight", "Discagens automáticas em andamento", connectionManager::inflight);
+        r.counter("p2pchat_dials_total", "Discagens automáticas para manter o grau mínimo", connectionManager::dials);
+        r.gauge("p2pchat_dial_backoff_addresses", "Endereços esperando o backoff após falhar", connectionManager::backingOff);
+        r.counter("p2pchat_dials_skipped_backoff_total", "Candidatos pulados por ainda estarem em backoff", connectionManager::skippedBackoff);
+        r.counter("p2pchat_pings_sent_total", "PING enviados a vizinhos", heartbeat::pingsSent);
+        r.counter("p2pchat_pongs_received_total", "PONG recebidos (amostras de RTT)", heartbeat::pongsReceived);
+        r.counter("p2pchat_dead_peers_total", "Vizinhos desconectados por silêncio acima de peerDeadTimeoutMillis", heartbeat::deadPeers);
+        r.counter("p2pchat_handshake_timeouts_total", "Conexões fechadas por não concluírem o HELLO a tempo", heartbeat::handshakeTimeouts);
+        r.counter("p2pchat_neighbor_probes_total", "Candidatos discados para testar o RTT", connectionManager::probes);
+        r.counter("p2pchat_neighbor_swaps_total", "Vizinhos trocados por um candidato de menor RTT", connectionManager::swaps);
+        r.counter("p2pchat_resolver_lookups_total", "Resoluções de nome feitas (fora do cache)", resolver::lookups);
+        r.counter("p2pchat_resolver_hits_total", "Resoluções de nome servidas pelo cache", resolver::hits);
+        r.gauge("p2pchat_dedup_origins", "Origens com marca d'água na deduplicação por seq", seenSequences::origins);
+        r.gauge("p2pchat_peer_table_size", "Peers conhecidos (conectados ou não)", peers::size);
+        r.counter("p2pchat_peer_table_expired_total", "Peers removidos por TTL", peers::expired);
+        r.counter("p2pchat_peer_table_evicted_total", "Peers despejados com a tabela cheia", peers::evicted);
+        r.counter("p2pchat_peer_table_rejected_total", "Peers recusados com a tabela cheia de entradas mais novas", peers::rejected);
+        r.counter("p2pchat_peershare_entries_sent_total", "Entradas de peers enviadas em PEERSHARE", peersShared::get);
+        r.counter("p2pchat_plumtree_ihave_sent_total", "IHAVE enviados (modo Plumtree)", () -> plumtree != null ? plumtree.ihaveSent() : 0);
+        r.counter("p2pchat_plumtree_grafts_sent_total", "GRAFT enviados (modo Plumtree)", () -> plumtree != null ? plumtree.graftsSent() : 0);
+        r.counter("p2pchat_plumtree_prunes_sent_total", "PRUNE enviados (modo Plumtree)", () -> plumtree != null ? plumtree.prunesSent() : 0);
+        r.gauge("p2pchat_plumtree_eager_peers", "Vizinhos na árvore (modo Plumtree)", () -> plumtree != null ? plumtree.eagerCount() : 0);
+        r.gauge("p2pchat_plumtree_lazy_peers", "Vizinhos só com IHAVE (modo Plumtree)", () -> plumtree != null ? plumtree.lazyCount() : 0);
+        r.counter("p2pchat_sync_messages_streamed_total", "CHAT reenviados pela anti-entropia", () -> {
+            SyncStats s = getSyncStats();
+            return s != null ? s.getMessagesStreamed() : 0;
+        });
+        r.gauge("p2pchat_sync_sessions", "Vizinhos recebendo CHAT faltantes", () -> {
+            SyncStats s = getSyncStats();
+            return s != null ? s.getActiveSessions() : 0;
+        });
     }
 
     public void setUiCallbacks(UiCallbacks ui) {
-        this.ui = ui;
+        events.setUi(ui);
+    }
+
+    /**
+     * Assina os eventos do nó (status, conexões, mensagens...). Com eventos
+     * assíncronos cada assinante tem thread própria e recebe em lotes o que
+     * for publicado a partir de agora; as threads de rede nunca esperam por
+     * ele, a não ser com o anel cheio e a política BLOCK.
+     */
+    public void subscribe(String name, Subscriber<? super NodeEvent> subscriber) {
+        events.subscribe(name, subscriber);
     }
 
     public String getMyId() {
@@ -63,9 +184,145 @@ public class PeerNode {
         return listenPort;
     }
 
+    public int getConnectedPeerCount() {
+        return connectionsByPeerId.size();
+    }
+
+    /** Cópia da tabela de peers conhecidos (vizinhos e os recebidos em PEERSHARE ainda dentro do TTL). */
+    public List<PeerInfo> getKnownPeers() {
+        return peers.snapshot();
+    }
+
+    /** Todas as conexões e discagens em andamento, com a fase de cada uma. */
+    public List<ConnectionSnapshot> getConnections() {
+        return registry.snapshot();
+    }
+
+    /** Métricas de escrita e RTT de cada conexão estabelecida. */
+    public List<ConnectionStats> getConnectionStats() {
+        List<ConnectionStats> stats = new ArrayList<>();
+        for (ConnectionHandler ch : connectionsByPeerId.values()) stats.add(new ConnectionStats(ch));
+        return stats;
+    }
+
+    /**
+     * Métricas do nó (tráfego, deduplicação, filas por vizinho...). Outros
+     * componentes, como o histórico, podem registrar as suas aqui.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics.registry;
+    }
+
+    /** Porta do endpoint Prometheus local, ou -1 se desligado. */
+    public int getMetricsPort() {
+        MetricsHttpServer http = metricsHttp;
+        return http != null ? http.getPort() : -1;
+    }
+
+    /** Latências de salto e de propagação dos CHAT rastreados recebidos. */
+    public TraceStats getTraceStats() {
+        return tracer.stats();
+    }
+
+    public BroadcastStats getBroadcastStats() {
+        PlumtreeBroadcast pt = plumtree;
+        return new BroadcastStats(config.getBroadcastMode(), metrics.chatPushed.get(), metrics.duplicates(),
+                pt != null ? pt.ihaveSent() : 0, pt != null ? pt.graftsSent() : 0, pt != null ? pt.prunesSent() : 0,
+                pt != null ? pt.eagerCount() : connectionsByPeerId.size(), pt != null ? pt.lazyCount() : 0);
+    }
+
+    /** Null se a anti-entropia estiver desativada ou o nó não tiver sido iniciado. */
+    public SyncStats getSyncStats() {
+        AntiEntropy ae = antiEntropy;
+        return ae != null ? ae.stats() : null;
+    }
+
+    /** Histórico persistente usado pela anti-entropia quando a memória não cobre o que um vizinho perdeu. */
+    public void setSyncArchive(SyncArchive archive) {
+        this.syncArchive = archive;
+        AntiEntropy ae = antiEntropy;
+        if (ae != null) ae.setArchive(archive);
+    }
+
+    NodeConfig getConfig() {
+        return config;
+    }
+
+    NodeMetrics metrics() {
+        return metrics;
+    }
+
+    /** CHAT já recebido por gossip, SYNC ou originado aqui (pelo id; janela de {@code seenMessageIds}). */
+    boolean hasSeen(String msgId) {
+        return seenMessageIds.contains(msgId);
+    }
+
+    ConnectionHandler connection(String peerId) {
+        return connectionsByPeerId.get(peerId);
+    }
+
     public void start() throws IOException {
         if (!running.compareAndSet(false, true)) return;
 
+        try {
+            if (transport != null) listenPort = transport.listen(configuredPort, this::acceptChannel);
+            else if (config.getTransportMode() == TransportMode.NIO) startNio();
+            else startBlocking();
+        } catch (IOException e) {
+            running.set(false);
+            if (eventLoops != null) eventLoops.shutdown();
+            throw e;
+        }
+
+        if (config.getBroadcastMode() == BroadcastMode.PLUMTREE) {
+            plumtree = new PlumtreeBroadcast(this, scheduler, config);
+        }
+        if (config.isAntiEntropy()) {
+            antiEntropy = new AntiEntropy(this, scheduler, ioPool, config);
+            antiEntropy.setArchive(syncArchive);
+        }
+
+        // Inicia descoberta via multicast
+        if (config.isDiscovery()) {
+            discovery = new DiscoveryService(myId, myName, listenPort, events::discovered, metrics.registry);
+            discovery.start();
+        }
+
+        long ttl = config.getPeerTtlMillis();
+        long sweep = Math.max(1000, Math.min(ttl / 4, 60_000));
+        scheduler.scheduleWithFixedDelay(() -> peers.expire(nowMillis()), sweep, sweep, TimeUnit.MILLISECONDS);
+        connectionManager.start();
+        heartbeat.start();
+
+        startMetricsExport();
+
+        events.status("Escutando em " + listenPort + " (ID: " + myId + ")");
+        if (config.getThreadMode() == ThreadMode.VIRTUAL && !Threads.virtualThreadsSupported()) {
+            events.status("Virtual threads indisponíveis neste JDK; usando threads de plataforma.");
+        }
+    }
+
+    /** JMX e endpoint HTTP; falhas aqui não impedem o nó de funcionar. */
+    private void startMetricsExport() {
+        if (config.isJmx()) {
+            try {
+                metrics.registry.registerJmx("edu.unifor.clysman.chat:type=PeerNode,name="
+                        + ObjectName.quote(myName + ":" + listenPort) + ",id=" + myId);
+            } catch (JMException e) {
+                events.status("Métricas JMX indisponíveis: " + e.getMessage());
+            }
+        }
+        if (config.getMetricsPort() >= 0) {
+            try {
+                metricsHttp = MetricsHttpServer.start(metrics.registry, config.getMetricsPort());
+                events.status("Métricas em http://127.0.0.1:" + metricsHttp.getPort() + "/metrics");
+            } catch (IOException e) {
+                events.status("Endpoint de métricas indisponível: " + e.getMessage());
+            }
+        }
+    }
+
+    private void startBlocking() throws IOException {
         // Abrir servidor; caso porta ocupada, tenta próxima
         int port = configuredPort;
         ServerSocket ss = null;
@@ -75,27 +332,89 @@ public class PeerNode {
                 ss.bind(new InetSocketAddress("0.0.0.0", port));
                 break;
             } catch (IOException e) {
+                ss.close();
+                ss = null;
                 port++;
             }
         }
-        if (ss == null) {
-            running.set(false);
-            throw new IOException("Não foi possível abrir uma porta de escuta.");
-        }
+        if (ss == null) throw new IOException("Não foi possível abrir uma porta de escuta.");
         serverSocket = ss;
-        listenPort = port;
+        listenPort = ss.getLocalPort(); // porta 0: a que o SO escolheu
 
-        acceptThread = new Thread(this::acceptLoop, "accept-loop");
-        acceptThread.setDaemon(true);
+        acceptThread = newThread(this::acceptLoop, "accept-loop");
         acceptThread.start();
+    }
 
-        // Inicia descoberta via multicast
-        discovery = new DiscoveryService(myId, myName, listenPort, (host, p, name, id) -> {
-            if (ui != null) ui.onPeerDiscovered(host, p, name, id);
+    private void startNio() throws IOException {
+        eventLoops = new EventLoopGroup(config.getEventLoopThreads());
+
+        int port = configuredPort;
+        ServerSocketChannel ssc = null;
+        while (port < configuredPort + 50) {
+            try {
+                ssc = ServerSocketChannel.open();
+                ssc.bind(new InetSocketAddress("0.0.0.0", port));
+                break;
+            } catch (IOException e) {
+                if (ssc != null) ssc.close();
+                ssc = null;
+                port++;
+            }
+        }
+        if (ssc == null) throw new IOException("Não foi possível abrir uma porta de escuta.");
+        ssc.configureBlocking(false);
+        serverChannel = ssc;
+        listenPort = ((InetSocketAddress) ssc.getLocalAddress()).getPort(); // porta 0: a que o SO escolheu
+
+        EventLoop acceptLoop = eventLoops.acceptor();
+        acceptLoop.execute(() -> {
+            try {
+                acceptLoop.register(serverChannel, SelectionKey.OP_ACCEPT, new EventLoop.Handler() {
+                    @Override
+                    public void onReady(SelectionKey key) throws IOException {
+                        SocketChannel ch;
+                        while ((ch = serverChannel.accept()) != null) {
+                            acceptChannel(ch);
+                        }
+                    }
+                    @Override
+                    public void onError(Exception e) {
+                        if (running.get()) events.status("Loop de aceitação encerrado: " + e.getMessage());
+                    }
+                });
+            } catch (IOException e) {
+                events.status("Falha ao registrar aceitação: " + e.getMessage());
+            }
         });
-        discovery.start();
+    }
+
+    private void acceptChannel(SocketChannel ch) {
+        try {
+            ch.socket().setTcpNoDelay(true);
+            ConnectionHandler handler = new NioConnectionHandler(ch, eventLoops.next(), this);
+            registerAccepted(handler);
+            handler.start();
+        } catch (IOException e) {
+            try { ch.close(); } catch (IOException ignored) {}
+        }
+    }
 
-        if (ui != null) ui.onStatus("Escutando em " + listenPort + " (ID: " + myId + ")");
+    private void acceptChannel(TransportChannel ch) {
+        ConnectionHandler handler = new ChannelConnectionHandler(ch, this);
+        registerAccepted(handler);
+        handler.start();
+    }
+
+    private void registerAccepted(ConnectionHandler handler) {
+        // a origem é sempre um IP literal: resolver não consulta DNS
+        registry.accepted(handler, resolver.resolve(handler.getRemoteHost(), handler.getRemotePort()));
+    }
+
+    /** Threads de conexão do transporte BLOCKING, conforme o ThreadMode configurado. */
+    Thread newThread(Runnable task, String name) {
+        Thread t = threadFactory.newThread(task);
+        t.setName(name);
+        return t;
     }
 
     private void acceptLoop() {
@@ -103,78 +422,98 @@ public class PeerNode {
             while (running.get()) {
                 Socket socket = serverSocket.accept();
                 socket.setTcpNoDelay(true);
-                String remoteKey = remoteKey(socket);
-                ConnectionHandler handler = new ConnectionHandler(socket, this);
-                pendingByRemote.put(remoteKey, handler);
+                ConnectionHandler handler = new BlockingConnectionHandler(socket, this);
+                registerAccepted(handler);
                 ioPool.submit(handler::start);
             }
         } catch (IOException e) {
-            if (running.get() && ui != null) ui.onStatus("Loop de aceitação encerrado: " + e.getMessage());
+            if (running.get()) events.status("Loop de aceitação encerrado: " + e.getMessage());
         }
     }
 
     public void connectAsync(String host, int port) {
-        ioPool.submit(() -> {
-            if (!running.get()) return;
-            if (isSelf(host, port)) {
-                if (ui != null) ui.onStatus("Não foi possível se conectar: destino é este próprio nó.");
-                return;
-            }
-            if (isAlreadyConnected(host, port)) {
-                if (ui != null) ui.onStatus("Não foi possível se conectar: já existe conexão com " + host + ":" + port);
-                return;
-            }
+        dial(host, port, false);
+    }
 
+    /** {@code automatic}: discagem do {@link ConnectionManager}, que é avisado ao terminar. */
+    void dial(String host, int port, boolean automatic) {
+        ioPool.submit(() -> {
             try {
-                Socket socket = new Socket();
-                socket.connect(new InetSocketAddress(host, port), 4000);
-                socket.setTcpNoDelay(true);
-                ConnectionHandler handler = new ConnectionHandler(socket, this);
-                pendingByRemote.put(remoteKey(socket), handler);
-                handler.start();
-
-                if (ui != null) ui.onStatus("Conectado a " + host + ":" + port);
-            } catch (IOException e) {
-                if (ui != null) ui.onStatus("Falha ao conectar: " + e.getMessage());
+                connect(host, port);
+            } finally {
+                if (automatic) connectionManager.dialDone();
             }
         });
     }
 
-    private boolean isSelf(String host, int port) {
-        if (port != listenPort) return false;
-        String h = host.toLowerCase(Locale.ROOT);
-        return h.equals("127.0.0.1") || h.equals("localhost");
-    }
-
-    private boolean isAlreadyConnected(String host, int port) {
-        String key = remoteKey(host, port);
-        if (pendingByRemote.containsKey(key)) return true;
+    private void connect(String host, int port) {
+        if (!running.get()) return;
+        InetSocketAddress target = resolver.resolve(host, port);
+        if (isSelf(target)) {
+            events.status("Não foi possível se conectar: destino é este próprio nó.");
+            return;
+        }
+        // reserva o endereço: outra tentativa ao mesmo destino desiste aqui
+        ConnectionRegistry.Entry dial = registry.dial(target);
+        if (dial == null) {
+            events.status("Não foi possível se conectar: já existe conexão com " + host + ":" + port);
+            return;
+        }
 
-        for (ConnectionHandler ch : connectionsByPeerId.values()) {
-            String rh = ch.getRemoteHost();
-            int rp = ch.getRemotePort();
-            if (hostEquals(rh, host) && rp == port) return true;
+        try {
+            ConnectionHandler handler;
+            if (transport != null) handler = new ChannelConnectionHandler(transport.connect(host, port), this);
+            else if (config.getTransportMode() == TransportMode.NIO) handler = connectNio(target);
+            else handler = connectBlocking(target);
+            registry.opened(dial, handler);
+            handler.start();
+
+            events.status("Conectado a " + host + ":" + port);
+        } catch (IOException e) {
+            registry.dialFailed(dial);
+            connectionManager.dialFailed(target);
+            metrics.connectFailures.inc();
+            events.status("Falha ao conectar: " + e.getMessage());
         }
+    }
 
-        for (Map.Entry<String, ConnectionHandler> e : pendingByRemote.entrySet()) {
-            ConnectionHandler ch = e.getValue();
-            if (hostEquals(ch.getRemoteHost(), host) && ch.getRemotePort() == port) return true;
+    private ConnectionHandler connectBlocking(InetSocketAddress target) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(target, 4000);
+            socket.setTcpNoDelay(true);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
         }
-        return false;
+        return new BlockingConnectionHandler(socket, this);
     }
 
-    private boolean hostEquals(String a, String b) {
-        if (a == null || b == null) return false;
-        if (a.equalsIgnoreCase(b)) return true;
+    private ConnectionHandler connectNio(InetSocketAddress target) throws IOException {
+        SocketChannel ch = SocketChannel.open();
         try {
-            return InetAddress.getByName(a).equals(InetAddress.getByName(b));
-        } catch (Exception ignored) {
-            return false;
+            // connect bloqueante com timeout no ioPool; depois o canal passa ao event loop
+            ch.socket().connect(target, 4000);
+            ch.socket().setTcpNoDelay(true);
+            return new NioConnectionHandler(ch, eventLoops.next(), this);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
         }
     }
 
+    private boolean isSelf(InetSocketAddress target) {
+        if (target.getPort() != listenPort || target.isUnresolved()) return false;
+        InetAddress a = target.getAddress();
+        return a.isLoopbackAddress() || a.isAnyLocalAddress();
+    }
+
     private void sendHello(ConnectionHandler handler) {
-        Message hello = Message.hello(myId, myName, listenPort, new ArrayList<>(peersById.values()));
+        // a tabela de peers vem depois, por digest (PEERSHARE), quando já sabemos quem é o vizinho
+        Message hello = Message.hello(myId, myName, listenPort, null);
+        hello.setCodecs(config.getWireCodecs());
+        hello.setHeartbeat(config.getHeartbeatIntervalMillis());
+        hello.setPlumtree(config.getBroadcastMode() == BroadcastMode.PLUMTREE);
         handler.send(hello);
     }
 
@@ -183,34 +522,100 @@ public class PeerNode {
     }
 
     void onHandlerStopped(ConnectionHandler handler) {
+        InetSocketAddress dialed = registry.dialedAddress(handler);
+        boolean established = registry.remove(handler);
+        // discamos, o socket abriu, mas o vizinho fechou antes do HELLO (cheio, duplicata...): conta como falha
+        if (dialed != null && !established && running.get()) connectionManager.dialFailed(dialed);
         PeerInfo p = handler.getPeerInfo();
         if (p != null) {
-            connectionsByPeerId.remove(p.getId());
-            if (ui != null) ui.onPeerDisconnected(p);
+            if (established) {
+                metrics.connectionsClosed.inc();
+                connectionManager.remember(p.getId(), handler.getRtt());
+            }
+            // o TTL conta a partir da queda da conexão
+            p.setLastSeen(nowMillis());
+            peers.merge(p, p.getLastSeen());
+            if (plumtree != null) plumtree.neighborDown(p.getId());
+            events.peerDisconnected(p);
         }
-        pendingByRemote.remove(handler.getRemoteKey());
+        if (antiEntropy != null) antiEntropy.neighborDown(handler);
+        if (established) connectionManager.wake();
+    }
+
+    void onPeerSlow(ConnectionHandler handler) {
+        metrics.slowPeers.inc();
+        PeerInfo p = handler.getPeerInfo();
+        if (p != null) events.slow(p, config.getSlowConsumerPolicy());
     }
 
-    void onLineReceived(ConnectionHandler handler, String line) {
+    void onFrameReceived(ConnectionHandler handler, WireCodec codec, ByteBuffer frame) {
         try {
-            Message msg = gson.fromJson(line, Message.class);
-            if (msg == null || msg.getType() == null) return;
+            // Caminho rápido: CHAT duplicado é descartado só com type/id, sem decodificar
+            FrameHeader header = codec.peek(frame);
+            boolean sync = "SYNC".equals(header.getType());
+            if (sync || "CHAT".equals(header.getType())) {
+                if (!markSeen(header)) {
+                    if (sync) {
+                        // reenvio da anti-entropia: não diz nada sobre a árvore do Plumtree
+                        metrics.syncDuplicates.inc();
+                        return;
+                    }
+                    if (header.getSeq() > 0 && header.getFromId() != null) metrics.duplicatesBySeq.inc();
+                    else metrics.duplicatesById.inc();
+                    if (plumtree != null) plumtree.onDuplicate(handler);
+                    return;
+                }
+                Message msg = codec.decode(frame);
+                if (msg == null) {
+                    metrics.decodeFailures.inc();
+                    return;
+                }
+                // o frame repassado fica como SYNC; handleSync entrega a mensagem como CHAT
+                if (sync) handleSync(handler, msg, OutboundFrame.relay(Message.sync(msg), codec, frame));
+                else handleChat(handler, msg, OutboundFrame.relay(msg, codec, frame));
+                return;
+            }
+
+            Message msg = codec.decode(frame);
+            if (msg == null || msg.getType() == null) {
+                metrics.decodeFailures.inc();
+                return;
+            }
 
             switch (msg.getType()) {
                 case "HELLO":
                     handleHello(handler, msg);
                     break;
-                case "CHAT":
-                    handleChat(handler, msg);
-                    break;
                 case "PEERSHARE":
                     handlePeerShare(handler, msg);
                     break;
+                case "PING":
+                    heartbeat.onPing(handler, msg);
+                    break;
+                case "PONG":
+                    heartbeat.onPong(handler, msg);
+                    break;
+                case "IHAVE":
+                    if (plumtree != null) plumtree.onIhave(handler, msg.getIds());
+                    break;
+                case "GRAFT":
+                    if (plumtree != null) plumtree.onGraft(handler, msg.getIds());
+                    break;
+                case "PRUNE":
+                    if (plumtree != null) plumtree.onPrune(handler);
+                    break;
+                case "DIGEST":
+                    handler.setSync(true);
+                    if (antiEntropy != null && handler.getPeerInfo() != null) {
+                        antiEntropy.onDigest(handler, msg.getWatermarks(), seenSequences.watermarks(AntiEntropy.MAX_DIGEST_ORIGINS));
+                    }
+                    break;
                 default:
                     // ignorar tipos desconhecidos
             }
         } catch (Exception e) {
-            if (ui != null) ui.onStatus("Falha ao processar mensagem: " + e.getMessage());
+            metrics.decodeFailures.inc();
+            events.status("Falha ao processar mensagem: " + e.getMessage());
         }
     }
 
@@ -218,12 +623,7 @@ public class PeerNode {
         if (m.getFromId() == null) return;
 
         if (m.getFromId().equals(myId)) {
-            handler.stop();
-            return;
-        }
-
-        if (connectionsByPeerId.containsKey(m.getFromId())) {
-            handler.stop();
+            close(handler);
             return;
         }
 
@@ -231,84 +631,168 @@ public class PeerNode {
         info.setId(m.getFromId());
         info.setName(m.getFromName() != null ? m.getFromName() : "peer");
         info.setHost(handler.getRemoteHost());
-        info.setPort(handler.getRemotePort());
-        info.setLastSeen(System.currentTimeMillis());
-
+        // porta de escuta anunciada; peers antigos não mandam, e aí só resta a remota (efêmera se a conexão veio dele)
+        info.setPort(m.getPort() > 0 ? m.getPort() : handler.getRemotePort());
+        info.setLastSeen(nowMillis());
+
+        InetSocketAddress listen = m.getPort() > 0 ? resolver.resolve(handler.getRemoteHost(), m.getPort()) : null;
+        ConnectionRegistry.Result r = registry.establish(handler, myId, info.getId(), listen, config.getMaxDegree());
+        if (r.status == ConnectionRegistry.Result.Status.FULL) {
+            metrics.connectionsRejectedFull.inc();
+            events.status("Conexão de " + info.getName() + " recusada: limite de " + config.getMaxDegree() + " vizinhos");
+            close(handler);
+            return;
+        }
+        if (r.status == ConnectionRegistry.Result.Status.DUPLICATE) {
+            metrics.connectionsDuplicate.inc();
+            close(handler); // fica a outra conexão com este vizinho
+            return;
+        }
+        if (r.displaced != null) {
+            // discagens cruzadas: fica a do menor id, a mesma escolha feita do outro lado
+            metrics.connectionsDuplicate.inc();
+            close(r.displaced);
+        }
+        InetSocketAddress dialed = registry.dialedAddress(handler);
+        if (dialed != null) connectionManager.connected(dialed);
         handler.setPeerInfo(info);
-        connectionsByPeerId.put(info.getId(), handler);
-        peersById.put(info.getId(), info);
-
-        if (ui != null) ui.onPeerConnected(info);
-
-        // Se HELLO trouxe peers conhecidos, compartilha/atualiza
-        if (m.getPeers() != null && !m.getPeers().isEmpty()) {
-            for (PeerInfo pi : m.getPeers()) {
-                if (pi == null || pi.getId() == null) continue;
-                if (pi.getId().equals(myId)) continue;
-                peersById.put(pi.getId(), pi);
-            }
-            sharePeers(handler);
+        // peers antigos não conhecem PING: sem heartbeat, também não podem ser dados como mortos
+        handler.setHeartbeat(m.getHeartbeat() > 0);
+        // A partir daqui nossos frames seguem o melhor codec em comum; o HELLO já foi em JSON
+        handler.setCodec(Codecs.negotiate(config.getWireCodecs(), m.getCodecs()));
+        metrics.connectionsOpened.inc();
+        peers.merge(info, info.getLastSeen());
+        if (plumtree != null) plumtree.neighborUp(info.getId(), m.isPlumtree());
+        // o que perdemos enquanto estávamos desconectados: o vizinho responde com os CHAT faltantes
+        if (antiEntropy != null) handler.send(antiEntropy.digest(seenSequences.watermarks(AntiEntropy.MAX_DIGEST_ORIGINS)));
+
+        events.peerConnected(info);
+
+        if (m.getPort() > 0) {
+            // troca incremental: o vizinho responde só com os baldes em que a tabela dele difere
+            handler.send(Message.peerDigest(myId, myName, peers.digest(info.getId())));
+        } else if (m.getPeers() != null && !m.getPeers().isEmpty()) {
+            // peer antigo: lista completa no HELLO, e espera a nossa de volta
+            mergePeers(m.getPeers());
+            sharePeers(handler, null);
         }
     }
 
-    private void sharePeers(ConnectionHandler to) {
-        Message share = Message.peerShare(myId, myName, new ArrayList<>(peersById.values()));
-        if (to != null) {
-            to.send(share);
-        } else {
-            broadcast(share, null);
+    /** PEERSHARE com as entradas dos baldes em que {@code remoteDigest} difere (todas, se null). */
+    private void sharePeers(ConnectionHandler to, List<Long> remoteDigest) {
+        PeerInfo neighbor = to.getPeerInfo();
+        List<PeerInfo> delta = peers.delta(remoteDigest, neighbor != null ? neighbor.getId() : null, MAX_PEERSHARE_ENTRIES);
+        if (delta.isEmpty()) return;
+        peersShared.addAndGet(delta.size());
+        to.send(Message.peerShare(myId, myName, delta));
+    }
+
+    /** Retorna os peers que não conhecíamos. */
+    private List<PeerInfo> mergePeers(List<PeerInfo> received) {
+        List<PeerInfo> learned = new ArrayList<>();
+        long now = nowMillis();
+        for (PeerInfo pi : received) {
+            if (pi == null || pi.getId() == null || pi.getId().equals(myId)) continue;
+            if (peers.merge(pi, now)) learned.add(pi);
         }
+        return learned;
     }
 
-    private void handleChat(ConnectionHandler handler, Message m) {
-        String id = m.getId();
-        if (id == null) return;
+    /**
+     * Registra o CHAT pela sequência da origem e também pelo id: um peer antigo
+     * repassa a mesma mensagem sem {@code seq}, e só o id a reconhece.
+     */
+    private boolean markSeen(FrameHeader h) {
+        boolean bySeq = h.getSeq() > 0 && h.getFromId() != null;
+        // os dois conjuntos são sempre atualizados, mesmo que o primeiro já acuse a duplicata
+        boolean newSeq = !bySeq || seenSequences.add(h.getFromId(), h.getSeq());
+        boolean newId = h.getId() == null ? bySeq : seenMessageIds.add(h.getId());
+        return newSeq && newId;
+    }
 
-        if (!seenMessageIds.add(id)) {
-            return;
+    /** CHAT novo (já deduplicado em onFrameReceived); {@code wire} reaproveita os bytes recebidos. */
+    private void handleChat(ConnectionHandler handler, Message m, OutboundFrame wire) {
+        long recvMicros = 0;
+        if (m.getTrace() != null) {
+            recvMicros = currentTimeMicros();
+            PeerInfo from = handler.getPeerInfo();
+            tracer.received(m, from != null ? from.getName() : null, recvMicros);
         }
-
         PeerInfo sender = connectionsByPeerId.getOrDefault(m.getFromId(), handler).getPeerInfo();
         if (sender != null) {
-            sender.setLastSeen(System.currentTimeMillis());
-            peersById.put(sender.getId(), sender);
+            sender.setLastSeen(nowMillis());
+            peers.merge(sender, sender.getLastSeen());
         }
 
-        if (ui != null) ui.onMessageReceived(m);
+        metrics.chatDelivered.inc();
+        events.message(m);
+        if (antiEntropy != null) antiEntropy.record(m);
+        if (m.getTrace() != null) {
+            // o frame muda a cada salto: não dá para repassar os bytes recebidos
+            wire = new OutboundFrame(tracer.forwarding(m, myId, recvMicros, currentTimeMicros()));
+        }
 
-        broadcast(m, handler);
+        if (plumtree != null) plumtree.onGossip(handler, m.getId(), wire);
+        else flood(wire, handler);
+    }
+
+    /**
+     * CHAT que perdemos, reenviado por um vizinho na reconexão. Segue como
+     * SYNC para os outros vizinhos que falam anti-entropia (quem ficou atrás
+     * de nós também o perdeu; a deduplicação absorve as repetições), mas não
+     * é gossip: não conta para o Plumtree.
+     */
+    private void handleSync(ConnectionHandler handler, Message m, OutboundFrame wire) {
+        m.setType("CHAT");
+        metrics.chatDelivered.inc();
+        events.message(m);
+        if (antiEntropy != null) antiEntropy.record(m);
+        for (ConnectionHandler ch : connectionsByPeerId.values()) {
+            if (ch == handler || !ch.isSync()) continue;
+            metrics.syncForwarded.inc();
+            ch.send(wire, handler);
+        }
     }
 
     private void handlePeerShare(ConnectionHandler handler, Message m) {
-        if (m.getPeers() == null) return;
-        int attempts = 0;
-        for (PeerInfo pi : m.getPeers()) {
-            if (pi == null || pi.getId() == null) continue;
-            if (pi.getId().equals(myId)) continue;
-            peersById.put(pi.getId(), pi);
-
-            // Estratégia simples: tentar conectar até 3 peers novos
-            if (!connectionsByPeerId.containsKey(pi.getId()) && attempts < 3) {
-                attempts++;
-                connectAsync(pi.getHost(), pi.getPort());
-            }
+        if (handler.getPeerInfo() == null) return;
+        if (m.getPeerDigest() != null) {
+            sharePeers(handler, m.getPeerDigest());
+            return;
         }
+        if (m.getPeers() == null) return;
+        // quem disca (e quanto) é o ConnectionManager, conforme o grau mínimo
+        if (!mergePeers(m.getPeers()).isEmpty()) connectionManager.wake();
     }
 
     public void broadcastChat(String text) {
         Message m = Message.chat(myId, myName, text);
+        if (transport != null) m.setId(transport.newId());
+        m.setSeq(nextSeq.incrementAndGet());
+        seenSequences.add(myId, m.getSeq());
         seenMessageIds.add(m.getId());
-        if (ui != null) ui.onMessageReceived(m);
-        broadcast(m, null);
+        m.setTrace(tracer.start(myId, currentTimeMicros()));
+        metrics.chatOriginated.inc();
+        events.message(m);
+        if (antiEntropy != null) antiEntropy.record(m);
+        OutboundFrame frame = new OutboundFrame(m);
+        if (plumtree != null) plumtree.broadcast(m.getId(), frame);
+        else flood(frame, null);
     }
 
-    private void broadcast(Message m, ConnectionHandler except) {
-        for (ConnectionHandler ch : new ArrayList<>(connectionsByPeerId.values())) {
-            if (except != null && ch == except) continue;
-            ch.send(m);
+    private void flood(OutboundFrame frame, ConnectionHandler except) {
+        for (ConnectionHandler ch : connectionsByPeerId.values()) {
+            if (ch == except) continue;
+            pushChat(ch, frame, except);
         }
     }
 
+    /** Envia um CHAT a um vizinho; {@code source} é quem o repassou (backpressure). */
+    void pushChat(ConnectionHandler to, OutboundFrame frame, ConnectionHandler source) {
+        metrics.chatPushed.inc();
+        to.send(frame, source);
+    }
+
     public void shutdown() {
         if (!running.compareAndSet(true, false)) return;
 
@@ -319,24 +803,51 @@ public class PeerNode {
 
         try {
             if (serverSocket != null) serverSocket.close();
+            if (serverChannel != null) serverChannel.close();
         } catch (IOException ignored) {}
+        if (transport != null) transport.close();
 
-        for (ConnectionHandler ch : new ArrayList<>(connectionsByPeerId.values())) {
-            ch.stop();
+        for (ConnectionHandler ch : new ArrayList<>(registry.handlers())) {
+            close(ch);
         }
-        for (ConnectionHandler ch : new ArrayList<>(pendingByRemote.values())) {
-            ch.stop();
+        connectionManager.shutdown();
+        heartbeat.shutdown();
+        if (plumtree != null) plumtree.shutdown();
+        if (antiEntropy != null) antiEntropy.shutdown();
+        metrics.registry.unregisterJmx();
+        if (metricsHttp != null) {
+            metricsHttp.close();
+            metricsHttp = null;
         }
+        scheduler.shutdownNow();
         ioPool.shutdownNow();
-        if (ui != null) ui.onStatus("Encerrado.");
+        if (eventLoops != null) {
+            eventLoops.shutdown();
+            eventLoops = null;
+        }
+        events.status("Encerrado.");
+        events.close();
+    }
+
+    /** Fecha uma conexão por decisão do nó (vizinho morto, troca por RTT...). */
+    void disconnect(ConnectionHandler handler, String reason) {
+        PeerInfo p = handler.getPeerInfo();
+        events.status("Desconectando " + (p != null ? p.getName() : handler.getRemoteKey()) + ": " + reason);
+        close(handler);
+    }
+
+    private void close(ConnectionHandler handler) {
+        registry.closing(handler);
+        handler.stop();
     }
 
-    private static String remoteKey(Socket s) {
-        SocketAddress ra = s.getRemoteSocketAddress();
-        return ra != null ? ra.toString() : UUID.randomUUID().toString();
+    long nowMillis() {
+        return currentTimeMicros() / 1000;
     }
 
-    private static String remoteKey(String host, int port) {
-        return host + ":" + port;
+    long currentTimeMicros() {
+        if (transport != null) return transport.currentTimeMicros();
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
     }
-}
\ No newline at end of file
+}
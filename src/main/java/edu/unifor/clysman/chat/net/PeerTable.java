@@ -0,0 +1,200 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.model.PeerInfo;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Peers conhecidos (diretos ou recebidos em PEERSHARE), limitados em tamanho
+ * e em idade. Uma entrada vence {@code ttlMillis} depois do último
+ * {@code lastSeen}; com a tabela cheia sai a de {@code lastSeen} mais antigo.
+ * Vizinhos conectados nunca saem.
+ *
+ * Para a troca incremental a tabela mantém um digest de
+ * {@link #DIGEST_BUCKETS} hashes: o id de cada peer escolhe um balde, e o
+ * hash do balde é o XOR dos hashes (id, host, porta) das suas entradas, então
+ * inserir, remover ou mudar endereço custa O(1). Dois nós com o mesmo digest
+ * têm (com altíssima probabilidade) as mesmas entradas; onde o balde difere,
+ * basta mandar as entradas daquele balde.
+ */
+final class PeerTable {
+
+    static final int DIGEST_BUCKETS = 16;
+
+    private static final class Entry {
+        final PeerInfo info;
+        final long hash;
+
+        Entry(PeerInfo info) {
+            this.info = info;
+            this.hash = hash(info);
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Predicate<String> pinned;
+
+    // acesso sob o monitor deste objeto
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final long[] buckets = new long[DIGEST_BUCKETS];
+    private long expired;
+    private long evicted;
+    private long rejected;
+
+    /** {@code pinned}: ids que não podem vencer nem ser despejados (vizinhos conectados). */
+    PeerTable(int maxSize, long ttlMillis, Predicate<String> pinned) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.pinned = pinned;
+    }
+
+    /**
+     * Acrescenta ou atualiza um peer; {@code lastSeen} no futuro (relógio de
+     * outro nó) vale como agora, e o endereço só muda se a informação for
+     * mais recente. Retorna true se o peer era desconhecido.
+     */
+    synchronized boolean merge(PeerInfo p, long now) {
+        if (p == null || p.getId() == null || p.getHost() == null || p.getPort() <= 0) return false;
+        long seen = Math.min(p.getLastSeen(), now);
+        Entry cur = entries.get(p.getId());
+        if (cur != null) {
+            if (seen < cur.info.getLastSeen()) return false;
+            if (Objects.equals(cur.info.getHost(), p.getHost()) && cur.info.getPort() == p.getPort()) {
+                cur.info.setLastSeen(seen);
+                if (p.getName() != null) cur.info.setName(p.getName());
+                return false;
+            }
+            put(copy(p, seen), cur);
+            return false;
+        }
+        boolean connected = pinned.test(p.getId());
+        if (now - seen > ttlMillis && !connected) return false;
+        if (entries.size() >= maxSize && !connected && !evictOlderThan(seen)) {
+            rejected++;
+            return false;
+        }
+        put(copy(p, seen), null);
+        return true;
+    }
+
+    /** Remove o que passou do TTL; retorna quantas entradas saíram. */
+    synchronized int expire(long now) {
+        int n = 0;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry e = it.next();
+            if (now - e.info.getLastSeen() <= ttlMillis || pinned.test(e.info.getId())) continue;
+            it.remove();
+            buckets[bucket(e.info.getId())] ^= e.hash;
+            n++;
+        }
+        expired += n;
+        return n;
+    }
+
+    /** Digest da tabela sem a entrada de {@code exclude} (o vizinho a quem ele vai). */
+    synchronized List<Long> digest(String exclude) {
+        long[] d = buckets.clone();
+        Entry e = exclude != null ? entries.get(exclude) : null;
+        if (e != null) d[bucket(exclude)] ^= e.hash;
+        List<Long> out = new ArrayList<>(DIGEST_BUCKETS);
+        for (long h : d) out.add(h);
+        return out;
+    }
+
+    /**
+     * Entradas dos baldes em que {@code remote} difere do nosso digest (todas,
+     * se {@code remote} for null ou de outro tamanho), sem a de {@code exclude};
+     * as vistas mais recentemente primeiro, até {@code max}.
+     */
+    synchronized List<PeerInfo> delta(List<Long> remote, String exclude, int max) {
+        List<Long> mine = digest(exclude);
+        boolean all = remote == null || remote.size() != DIGEST_BUCKETS;
+        List<PeerInfo> out = new ArrayList<>();
+        for (Entry e : entries.values()) {
+            String id = e.info.getId();
+            if (id.equals(exclude)) continue;
+            int b = bucket(id);
+            if (all || remote.get(b) == null || remote.get(b) != mine.get(b).longValue()) {
+                out.add(copy(e.info, e.info.getLastSeen()));
+            }
+        }
+        out.sort((a, b) -> Long.compare(b.getLastSeen(), a.getLastSeen()));
+        return out.size() > max ? new ArrayList<>(out.subList(0, max)) : out;
+    }
+
+    synchronized List<PeerInfo> snapshot() {
+        List<PeerInfo> out = new ArrayList<>(entries.size());
+        for (Entry e : entries.values()) out.add(copy(e.info, e.info.getLastSeen()));
+        return out;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long expired() {
+        return expired;
+    }
+
+    synchronized long evicted() {
+        return evicted;
+    }
+
+    synchronized long rejected() {
+        return rejected;
+    }
+
+    private void put(PeerInfo p, Entry old) {
+        int b = bucket(p.getId());
+        if (old != null) buckets[b] ^= old.hash;
+        Entry e = new Entry(p);
+        entries.put(p.getId(), e);
+        buckets[b] ^= e.hash;
+    }
+
+    /** Despeja a entrada não conectada de {@code lastSeen} mais antigo, se for anterior a {@code seen}. */
+    private boolean evictOlderThan(long seen) {
+        Entry oldest = null;
+        for (Entry e : entries.values()) {
+            if (pinned.test(e.info.getId())) continue;
+            if (oldest == null || e.info.getLastSeen() < oldest.info.getLastSeen()) oldest = e;
+        }
+        if (oldest == null || oldest.info.getLastSeen() >= seen) return false;
+        entries.remove(oldest.info.getId());
+        buckets[bucket(oldest.info.getId())] ^= oldest.hash;
+        evicted++;
+        return true;
+    }
+
+    private static PeerInfo copy(PeerInfo p, long lastSeen) {
+        PeerInfo c = new PeerInfo();
+        c.setId(p.getId());
+        c.setName(p.getName());
+        c.setHost(p.getHost());
+        c.setPort(p.getPort());
+        c.setLastSeen(lastSeen);
+        return c;
+    }
+
+    // String.hashCode é especificado: o mesmo id cai no mesmo balde em qualquer JVM
+    private static int bucket(String id) {
+        return (int) (mix(id.hashCode()) >>> 60) & (DIGEST_BUCKETS - 1);
+    }
+
+    private static long hash(PeerInfo p) {
+        long h = p.getId().hashCode();
+        h = h * 0x9E3779B97F4A7C15L + Objects.hashCode(p.getHost());
+        h = h * 0x9E3779B97F4A7C15L + p.getPort();
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+}
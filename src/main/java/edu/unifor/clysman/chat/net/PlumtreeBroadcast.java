@@ -0,0 +1,240 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.model.Message;
+
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broadcast por árvore epidêmica (Plumtree, Leitão et al.). Cada vizinho de
+ * {@code connectionsByPeerId} está no conjunto eager (recebe o CHAT completo)
+ * ou lazy (recebe só IHAVE com o id). Uma duplicata faz o remetente ir para
+ * lazy (PRUNE); um IHAVE sem o CHAT correspondente dentro do prazo faz o
+ * anunciante voltar para eager (GRAFT). Assim os enlaces eager convergem para
+ * uma árvore geradora e a árvore se repara sozinha quando um enlace cai.
+ *
+ * Vizinhos que não anunciam Plumtree no HELLO (peers antigos, modo FLOOD)
+ * ignoram IHAVE e PRUNE: ficam sempre em eager e recebem o CHAT completo.
+ *
+ * Todo o estado fica sob o monitor deste objeto; os envios acontecem fora dele.
+ */
+final class PlumtreeBroadcast {
+
+    private static final int MAX_IDS_PER_MESSAGE = 256;
+
+    private final PeerNode node;
+    private final ScheduledExecutorService scheduler;
+    private final long missingTimeoutMs;
+    private final long graftTimeoutMs;
+
+    private final Set<String> eager = new HashSet<>();
+    private final Set<String> lazy = new HashSet<>();
+    private final Set<String> legacy = new HashSet<>(); // sempre eager, nunca podados
+    // CHAT recebidos recentemente, para responder a GRAFT e saber o que já temos
+    private final LinkedHashMap<String, OutboundFrame> cache;
+    private final Map<String, Missing> missing = new HashMap<>();
+    private final Map<String, List<String>> pendingIhave = new HashMap<>();
+    private ScheduledFuture<?> ihaveFlusher;
+
+    private final AtomicLong ihaveSent = new AtomicLong();
+    private final AtomicLong graftsSent = new AtomicLong();
+    private final AtomicLong prunesSent = new AtomicLong();
+
+    private static final class Missing {
+        final Deque<String> announcers = new ArrayDeque<>();
+        ScheduledFuture<?> timer;
+    }
+
+    PlumtreeBroadcast(PeerNode node, ScheduledExecutorService scheduler, NodeConfig config) {
+        this.node = node;
+        this.scheduler = scheduler;
+        this.missingTimeoutMs = config.getPlumtreeMissingTimeoutMillis();
+        this.graftTimeoutMs = Math.max(1, config.getPlumtreeMissingTimeoutMillis() / 2);
+        int cacheSize = config.getPlumtreeCacheSize();
+        this.cache = new LinkedHashMap<String, OutboundFrame>(cacheSize, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OutboundFrame> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        long flushMs = config.getPlumtreeIhaveFlushMillis();
+        this.ihaveFlusher = scheduler.scheduleWithFixedDelay(this::flushIhave, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void neighborUp(String peerId, boolean plumtree) {
+        lazy.remove(peerId);
+        eager.add(peerId);
+        if (plumtree) legacy.remove(peerId);
+        else legacy.add(peerId);
+    }
+
+    synchronized void neighborDown(String peerId) {
+        eager.remove(peerId);
+        lazy.remove(peerId);
+        legacy.remove(peerId);
+        pendingIhave.remove(peerId);
+        for (Missing m : missing.values()) m.announcers.remove(peerId);
+    }
+
+    /** CHAT originado aqui. */
+    void broadcast(String msgId, OutboundFrame frame) {
+        forward(msgId, frame, null);
+    }
+
+    /** CHAT novo vindo de {@code from}: o enlace passa a fazer parte da árvore. */
+    void onGossip(ConnectionHandler from, String msgId, OutboundFrame frame) {
+        String fromId = peerId(from);
+        synchronized (this) {
+            Missing m = missing.remove(msgId);
+            if (m != null && m.timer != null) m.timer.cancel(false);
+            if (fromId != null) {
+                lazy.remove(fromId);
+                eager.add(fromId);
+            }
+        }
+        forward(msgId, frame, from);
+    }
+
+    /** CHAT repetido: o enlace é redundante, poda. */
+    void onDuplicate(ConnectionHandler from) {
+        String fromId = peerId(from);
+        if (fromId == null) return;
+        synchronized (this) {
+            if (legacy.contains(fromId) || !eager.remove(fromId)) return;
+            lazy.add(fromId);
+        }
+        prunesSent.incrementAndGet();
+        from.send(Message.prune(node.getMyId()));
+    }
+
+    void onPrune(ConnectionHandler from) {
+        String fromId = peerId(from);
+        if (fromId == null) return;
+        synchronized (this) {
+            if (!legacy.contains(fromId) && eager.remove(fromId)) lazy.add(fromId);
+        }
+    }
+
+    void onIhave(ConnectionHandler from, List<String> ids) {
+        String fromId = peerId(from);
+        if (fromId == null || ids == null) return;
+        synchronized (this) {
+            for (String id : ids) {
+                // o cache só guarda o que veio por gossip e recentemente; SYNC e o que já saiu dele ficam no nó
+                if (id == null || cache.containsKey(id) || node.hasSeen(id)) continue;
+                Missing m = missing.get(id);
+                if (m == null) {
+                    m = new Missing();
+                    missing.put(id, m);
+                    m.timer = scheduler.schedule(() -> onMissingTimeout(id), missingTimeoutMs, TimeUnit.MILLISECONDS);
+                }
+                if (!m.announcers.contains(fromId)) m.announcers.addLast(fromId);
+            }
+        }
+    }
+
+    void onGraft(ConnectionHandler from, List<String> ids) {
+        String fromId = peerId(from);
+        if (fromId == null) return;
+        List<OutboundFrame> replies = new ArrayList<>();
+        synchronized (this) {
+            lazy.remove(fromId);
+            eager.add(fromId);
+            if (ids != null) {
+                for (String id : ids) {
+                    OutboundFrame f = cache.get(id);
+                    if (f != null) replies.add(f);
+                }
+            }
+        }
+        for (OutboundFrame f : replies) node.pushChat(from, f, null);
+    }
+
+    private void onMissingTimeout(String msgId) {
+        String announcer;
+        synchronized (this) {
+            Missing m = missing.get(msgId);
+            if (m == null) return;
+            if (node.hasSeen(msgId)) {
+                // chegou por SYNC enquanto esperávamos: um GRAFT só traria duplicata (e PRUNE)
+                missing.remove(msgId);
+                return;
+            }
+            announcer = m.announcers.pollFirst();
+            if (announcer == null) {
+                missing.remove(msgId);
+                return;
+            }
+            lazy.remove(announcer);
+            eager.add(announcer);
+            // se este GRAFT não trouxer a mensagem, tenta o próximo anunciante
+            m.timer = m.announcers.isEmpty()
+                    ? null
+                    : scheduler.schedule(() -> onMissingTimeout(msgId), graftTimeoutMs, TimeUnit.MILLISECONDS);
+            if (m.timer == null) missing.remove(msgId);
+        }
+        ConnectionHandler ch = node.connection(announcer);
+        if (ch != null) {
+            graftsSent.incrementAndGet();
+            ch.send(Message.graft(node.getMyId(), Collections.singletonList(msgId)));
+        }
+    }
+
+    private void forward(String msgId, OutboundFrame frame, ConnectionHandler except) {
+        String exceptId = except != null ? peerId(except) : null;
+        List<String> pushTo;
+        synchronized (this) {
+            cache.put(msgId, frame);
+            pushTo = new ArrayList<>(eager);
+            for (String p : lazy) {
+                if (p.equals(exceptId)) continue;
+                pendingIhave.computeIfAbsent(p, k -> new ArrayList<>()).add(msgId);
+            }
+        }
+        for (String p : pushTo) {
+            if (p.equals(exceptId)) continue;
+            ConnectionHandler ch = node.connection(p);
+            if (ch != null) node.pushChat(ch, frame, except);
+        }
+    }
+
+    /** IHAVE vão em lote para não gerar uma mensagem de controle por CHAT. */
+    private void flushIhave() {
+        Map<String, List<String>> batch;
+        synchronized (this) {
+            if (pendingIhave.isEmpty()) return;
+            batch = new HashMap<>(pendingIhave);
+            pendingIhave.clear();
+        }
+        for (Map.Entry<String, List<String>> e : batch.entrySet()) {
+            ConnectionHandler ch = node.connection(e.getKey());
+            if (ch == null) continue;
+            List<String> ids = e.getValue();
+            for (int i = 0; i < ids.size(); i += MAX_IDS_PER_MESSAGE) {
+                ihaveSent.incrementAndGet();
+                ch.send(Message.ihave(node.getMyId(), new ArrayList<>(ids.subList(i, Math.min(ids.size(), i + MAX_IDS_PER_MESSAGE)))));
+            }
+        }
+    }
+
+    synchronized void shutdown() {
+        if (ihaveFlusher != null) ihaveFlusher.cancel(false);
+        for (Missing m : missing.values()) {
+            if (m.timer != null) m.timer.cancel(false);
+        }
+        missing.clear();
+    }
+
+    long ihaveSent() { return ihaveSent.get(); }
+    long graftsSent() { return graftsSent.get(); }
+    long prunesSent() { return prunesSent.get(); }
+    synchronized int eagerCount() { return eager.size(); }
+    synchronized int lazyCount() { return lazy.size(); }
+
+    private static String peerId(ConnectionHandler ch) {
+        return ch.getPeerInfo() != null ? ch.getPeerInfo().getId() : null;
+    }
+}
@@ -0,0 +1,51 @@
+package edu.unifor.clysman.chat.net;
+
+/**
+ * RTT de uma conexão a partir dos PONG, como o TCP (RFC 6298): média móvel
+ * exponencial ({@code srtt}, peso 1/8 para a amostra nova) e variação média
+ * ({@code rttvar}, peso 1/4), que serve de medida de jitter. Tempos em µs.
+ */
+final class RttEstimator {
+
+    private long srtt;
+    private long rttvar;
+    private long min = Long.MAX_VALUE;
+    private long last;
+    private long samples;
+
+    synchronized void sample(long rttMicros) {
+        if (rttMicros < 0) return;
+        if (samples == 0) {
+            srtt = rttMicros;
+            rttvar = rttMicros / 2;
+        } else {
+            rttvar += (Math.abs(srtt - rttMicros) - rttvar) / 4;
+            srtt += (rttMicros - srtt) / 8;
+        }
+        min = Math.min(min, rttMicros);
+        last = rttMicros;
+        samples++;
+    }
+
+    /** RTT suavizado em µs; -1 sem amostras. */
+    synchronized long srtt() {
+        return samples == 0 ? -1 : srtt;
+    }
+
+    /** Jitter (variação média do RTT) em µs; -1 sem amostras. */
+    synchronized long rttvar() {
+        return samples == 0 ? -1 : rttvar;
+    }
+
+    synchronized long min() {
+        return samples == 0 ? -1 : min;
+    }
+
+    synchronized long last() {
+        return samples == 0 ? -1 : last;
+    }
+
+    synchronized long samples() {
+        return samples;
+    }
+}
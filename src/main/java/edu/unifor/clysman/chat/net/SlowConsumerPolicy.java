@@ -0,0 +1,16 @@
+package edu.unifor.clysman.chat.net;
+
+/** O que fazer quando a fila de saída de um vizinho passa do limite em bytes. */
+public enum SlowConsumerPolicy {
+    /** Descarta os CHAT mais antigos da fila até caber o novo. */
+    DROP_OLDEST_CHAT,
+    /** Descarta o CHAT que está chegando. */
+    DROP_NEWEST,
+    /** Desconecta o vizinho lento. */
+    DISCONNECT,
+    /**
+     * Aceita além do limite (até o dobro) e pausa a leitura da conexão que
+     * originou o repasse até a fila esvaziar pela metade.
+     */
+    BACKPRESSURE
+}
@@ -0,0 +1,16 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.model.Message;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Fonte persistente de CHAT antigos para a anti-entropia, consultada quando o
+ * vizinho está atrás do que o nó ainda guarda em memória.
+ */
+public interface SyncArchive {
+
+    /** CHAT de {@code origin} com seq em (afterSeq, beforeSeq), em ordem crescente de seq, até {@code max}. */
+    List<Message> chatsBetween(String origin, long afterSeq, long beforeSeq, int max) throws IOException;
+}
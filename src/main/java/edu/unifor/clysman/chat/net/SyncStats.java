@@ -0,0 +1,34 @@
+package edu.unifor.clysman.chat.net;
+
+/** Fotografia dos contadores de anti-entropia do nó. */
+public final class SyncStats {
+
+    private final long digestsSent;
+    private final long digestsReceived;
+    private final long messagesStreamed;
+    private final long archiveReads;
+    private final int activeSessions;
+
+    SyncStats(long digestsSent, long digestsReceived, long messagesStreamed, long archiveReads, int activeSessions) {
+        this.digestsSent = digestsSent;
+        this.digestsReceived = digestsReceived;
+        this.messagesStreamed = messagesStreamed;
+        this.archiveReads = archiveReads;
+        this.activeSessions = activeSessions;
+    }
+
+    public long getDigestsSent() { return digestsSent; }
+    public long getDigestsReceived() { return digestsReceived; }
+    /** CHAT reenviados a vizinhos que estavam atrás. */
+    public long getMessagesStreamed() { return messagesStreamed; }
+    /** Lotes que precisaram ir ao {@link SyncArchive}. */
+    public long getArchiveReads() { return archiveReads; }
+    /** Vizinhos recebendo mensagens faltantes agora. */
+    public int getActiveSessions() { return activeSessions; }
+
+    @Override
+    public String toString() {
+        return String.format("digests %d enviados / %d recebidos, %d mensagens reenviadas (%d lotes do arquivo), %d sessões ativas",
+                digestsSent, digestsReceived, messagesStreamed, archiveReads, activeSessions);
+    }
+}
@@ -0,0 +1,8 @@
+package edu.unifor.clysman.chat.net;
+
+public enum ThreadMode {
+    /** Threads de plataforma (uma thread do SO por tarefa bloqueante). */
+    PLATFORM,
+    /** Virtual threads (JDK 21+). Em JDKs anteriores cai para PLATFORM. */
+    VIRTUAL
+}
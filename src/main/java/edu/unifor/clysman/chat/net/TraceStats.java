@@ -0,0 +1,73 @@
+package edu.unifor.clysman.chat.net;
+
+import edu.unifor.clysman.chat.metrics.Histogram;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Fotografia do rastreio de saltos: propagação desde a origem e latência de
+ * cada salto, agregadas por vizinho e por origem. Percentis são o limite
+ * superior da faixa do histograma (potências de 2 em µs).
+ */
+public final class TraceStats {
+
+    /** Latência de um vizinho ou de uma origem. */
+    public static final class Latency {
+        private final String name;
+        private final long count;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p99Millis;
+
+        Latency(String name, Histogram.Snapshot s) {
+            this.name = name;
+            this.count = s.count();
+            this.meanMillis = s.mean() * 1000;
+            this.p50Millis = s.quantile(0.5) * 1000;
+            this.p99Millis = s.quantile(0.99) * 1000;
+        }
+
+        public String getName() { return name; }
+        public long getCount() { return count; }
+        public double getMeanMillis() { return meanMillis; }
+        public double getP50Millis() { return p50Millis; }
+        public double getP99Millis() { return p99Millis; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d, média %.2f ms, p50 ≤%.2f, p99 ≤%.2f", name, count, meanMillis, p50Millis, p99Millis);
+        }
+    }
+
+    private final long received;
+    private final double meanHops;
+    private final Latency propagation;
+    private final Map<String, Latency> byNeighbor;
+    private final Map<String, Latency> byOrigin;
+
+    TraceStats(Histogram.Snapshot propagation, Histogram.Snapshot hops,
+               Map<String, Latency> byNeighbor, Map<String, Latency> byOrigin) {
+        this.received = hops.count();
+        this.meanHops = hops.mean();
+        this.propagation = new Latency(null, propagation);
+        this.byNeighbor = Collections.unmodifiableMap(byNeighbor);
+        this.byOrigin = Collections.unmodifiableMap(byOrigin);
+    }
+
+    /** CHAT rastreados recebidos. */
+    public long getReceived() { return received; }
+    /** Saltos médios da origem até este nó. */
+    public double getMeanHops() { return meanHops; }
+    public Latency getPropagation() { return propagation; }
+    /** Latência do salto vindo de cada vizinho (id → latência). */
+    public Map<String, Latency> getByNeighbor() { return byNeighbor; }
+    /** Propagação desde cada origem (id → latência). */
+    public Map<String, Latency> getByOrigin() { return byOrigin; }
+
+    @Override
+    public String toString() {
+        return String.format("%d rastreados, %.2f saltos em média, propagação média %.2f ms (p99 ≤%.2f), %d vizinhos, %d origens",
+                received, meanHops, propagation.getMeanMillis(), propagation.getP99Millis(), byNeighbor.size(), byOrigin.size());
+    }
+}
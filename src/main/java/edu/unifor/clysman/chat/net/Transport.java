@@ -0,0 +1,54 @@
+package edu.unifor.clysman.chat.net;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Transporte plugável do {@link PeerNode}. Os modos TCP de
+ * {@link TransportMode} são embutidos; outra implementação entra pelo
+ * construtor {@link PeerNode#PeerNode(String, int, NodeConfig, Transport)},
+ * como a rede simulada em memória de {@code sim.SimNetwork}.
+ *
+ * Uma instância atende um único nó. Além das conexões, o transporte pode
+ * fornecer o executor, o agendador, os ids e o relógio do nó: é assim que uma simulação
+ * controla o relógio e fica reproduzível.
+ */
+public interface Transport {
+
+    interface Acceptor {
+        void accept(TransportChannel channel);
+    }
+
+    /** Passa a aceitar conexões a partir de {@code port}; retorna a porta efetiva. */
+    int listen(int port, Acceptor acceptor) throws IOException;
+
+    /** Abre uma conexão de saída. Pode bloquear: o nó chama a partir do seu executor. */
+    TransportChannel connect(String host, int port) throws IOException;
+
+    /** Executor das tarefas de I/O do nó (conexões de saída, anti-entropia); null para o padrão. */
+    default ExecutorService executor() {
+        return null;
+    }
+
+    /** Agendador dos timers do nó (Plumtree, anti-entropia); null para o padrão. */
+    default ScheduledExecutorService scheduler() {
+        return null;
+    }
+
+    /** Id do nó e dos CHAT que ele origina. */
+    default String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /** Relógio do rastreio de saltos, em µs desde a época. */
+    default long currentTimeMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+    }
+
+    /** Para de aceitar conexões; as já abertas são fechadas pelo nó. */
+    void close();
+}
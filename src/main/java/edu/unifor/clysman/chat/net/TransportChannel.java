@@ -0,0 +1,41 @@
+package edu.unifor.clysman.chat.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Uma conexão de um {@link Transport}: fluxo de bytes confiável e em ordem,
+ * como TCP. Cada escrita pode chegar ao outro lado em pedaços quaisquer; o
+ * recorte em frames é feito pelo nó.
+ */
+public interface TransportChannel {
+
+    interface Receiver {
+        /** Bytes recebidos; válidos só durante a chamada. */
+        void onData(ByteBuffer data);
+
+        /** O canal voltou a aceitar escritas depois de {@link #isWritable()} ter dado false. */
+        void onWritable();
+
+        /** O outro lado fechou ou a conexão caiu. */
+        void onClosed();
+    }
+
+    /** Começa a entregar eventos a {@code receiver}. */
+    void open(Receiver receiver);
+
+    /** False quando o buffer de envio está cheio; {@link Receiver#onWritable()} avisa quando liberar. */
+    boolean isWritable();
+
+    /** Enfileira os frames para envio. Os buffers são somente leitura e não mudam depois. */
+    void write(ByteBuffer[] frames, int offset, int count) throws IOException;
+
+    /** Com true, bytes que chegarem ficam retidos até a leitura ser retomada. */
+    void setReadPaused(boolean paused);
+
+    void close();
+
+    String remoteHost();
+
+    int remotePort();
+}
@@ -0,0 +1,8 @@
+package edu.unifor.clysman.chat.net;
+
+public enum TransportMode {
+    /** Uma thread de leitura e uma de escrita por conexão (modelo original). */
+    BLOCKING,
+    /** Selector/SocketChannel com um conjunto fixo de event loops para todas as conexões. */
+    NIO
+}
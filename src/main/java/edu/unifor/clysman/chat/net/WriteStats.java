@@ -0,0 +1,40 @@
+package edu.unifor.clysman.chat.net;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Contadores de escrita de uma conexão. Só a thread que escreve no socket
+ * atualiza; leituras de outras threads são aproximadas, o que basta para métricas.
+ */
+final class WriteStats {
+
+    /** Limites superiores (inclusive) das faixas de frames por lote; a última é aberta. */
+    static final int[] BATCH_BUCKETS = {1, 2, 4, 8, 16, 32, 64, Integer.MAX_VALUE};
+
+    private volatile long frames;
+    private volatile long bytes;
+    private volatile long batches;
+    private volatile long maxBatchFrames;
+    private final AtomicLongArray histogram = new AtomicLongArray(BATCH_BUCKETS.length);
+
+    void recordBatch(int batchFrames, long batchBytes) {
+        frames += batchFrames;
+        bytes += batchBytes;
+        batches++;
+        if (batchFrames > maxBatchFrames) maxBatchFrames = batchFrames;
+        int b = 0;
+        while (batchFrames > BATCH_BUCKETS[b]) b++;
+        histogram.lazySet(b, histogram.get(b) + 1);
+    }
+
+    long frames() { return frames; }
+    long bytes() { return bytes; }
+    long batches() { return batches; }
+    long maxBatchFrames() { return maxBatchFrames; }
+
+    long[] histogram() {
+        long[] h = new long[BATCH_BUCKETS.length];
+        for (int i = 0; i < h.length; i++) h[i] = histogram.get(i);
+        return h;
+    }
+}
@@ -0,0 +1,11 @@
+package edu.unifor.clysman.chat.service;
+
+/** Quando as linhas do histórico passam da memória para o disco. */
+public enum Durability {
+    /** Escreve só quando o buffer de 64 KB enche ou no fechamento; uma queda perde o que estiver em memória. */
+    NONE,
+    /** Entrega ao sistema operacional a cada intervalo (sobrevive à queda do processo, não à da máquina). */
+    FLUSH,
+    /** Como FLUSH, seguido de {@code FileChannel.force} (sobrevive à queda da máquina). */
+    FSYNC
+}
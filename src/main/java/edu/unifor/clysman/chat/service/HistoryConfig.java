@@ -0,0 +1,68 @@
+package edu.unifor.clysman.chat.service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/** Parâmetros do histórico. Os valores padrão servem para a aplicação Swing. */
+public class HistoryConfig {
+
+    private Path baseDir = Paths.get("history");
+    private Durability durability = Durability.FLUSH;
+    private long syncIntervalMillis = 200;
+    private int segmentBytes = 8 * 1024 * 1024;
+    private long retentionBytes = 256L * 1024 * 1024;
+    private long retentionMillis = TimeUnit.DAYS.toMillis(30);
+    private boolean searchEnabled = true;
+
+    public Path getBaseDir() { return baseDir; }
+    public Durability getDurability() { return durability; }
+    public long getSyncIntervalMillis() { return syncIntervalMillis; }
+    public int getSegmentBytes() { return segmentBytes; }
+    public long getRetentionBytes() { return retentionBytes; }
+    public long getRetentionMillis() { return retentionMillis; }
+    public boolean isSearchEnabled() { return searchEnabled; }
+
+    /** Cada usuário/porta ganha um subdiretório aqui. */
+    public HistoryConfig setBaseDir(Path baseDir) {
+        this.baseDir = baseDir;
+        return this;
+    }
+
+    public HistoryConfig setDurability(Durability durability) {
+        this.durability = durability;
+        return this;
+    }
+
+    /** Intervalo entre commits em FLUSH/FSYNC; 0 faz commit assim que a fila esvazia. */
+    public HistoryConfig setSyncIntervalMillis(long syncIntervalMillis) {
+        if (syncIntervalMillis < 0) throw new IllegalArgumentException("syncIntervalMillis deve ser >= 0");
+        this.syncIntervalMillis = syncIntervalMillis;
+        return this;
+    }
+
+    /** Tamanho fixo de cada arquivo de segmento. */
+    public HistoryConfig setSegmentBytes(int segmentBytes) {
+        if (segmentBytes < 64 * 1024) throw new IllegalArgumentException("segmentBytes deve ser >= 64 KB");
+        this.segmentBytes = segmentBytes;
+        return this;
+    }
+
+    /** Acima disto os segmentos mais antigos são apagados (o ativo nunca é). */
+    public HistoryConfig setRetentionBytes(long retentionBytes) {
+        this.retentionBytes = retentionBytes;
+        return this;
+    }
+
+    /** Segmentos cuja mensagem mais nova é mais velha que isto são apagados; 0 desliga. */
+    public HistoryConfig setRetentionMillis(long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+        return this;
+    }
+
+    /** Mantém o índice de busca em {@code <histórico>/index}. */
+    public HistoryConfig setSearchEnabled(boolean searchEnabled) {
+        this.searchEnabled = searchEnabled;
+        return this;
+    }
+}
@@ -0,0 +1,114 @@
+package edu.unifor.clysman.chat.service;
+
+import java.util.*;
+
+/**
+ * Parte do índice de busca ainda em memória: recebe os documentos novos e,
+ * ao atingir o limite, vira um {@link IndexSegment}. Também é usado para
+ * montar o resultado de uma mesclagem.
+ *
+ * Não é thread-safe: o {@link SearchIndex} sincroniza no próprio objeto.
+ */
+final class IndexBuffer implements PostingSource {
+
+    private long[] docIds = new long[256];
+    private long[] storedAt = new long[256];
+    private int[] lengths = new int[256];
+    private int[] senders = new int[256];
+    private int docCount;
+    private long totalLength;
+    private long cursorAfter;
+
+    private final List<String> senderIds = new ArrayList<>();
+    private final List<String> senderNames = new ArrayList<>();
+    private final Map<String, Integer> senderIndex = new HashMap<>();
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+
+    /** Tokeniza o texto e indexa a mensagem como o próximo documento. */
+    void add(long docId, StoredMessage m) {
+        List<String> tokens = Tokenizer.tokenize(m.getText());
+        int ord = addDoc(docId, m.getStoredAt(), tokens.size(), m.getFromId(), m.getFromName());
+        Map<String, Integer> tf = new HashMap<>();
+        for (String t : tokens) tf.merge(t, 1, Integer::sum);
+        for (Map.Entry<String, Integer> e : tf.entrySet()) addPosting(e.getKey(), ord, e.getValue());
+    }
+
+    int addDoc(long docId, long at, int length, String fromId, String fromName) {
+        if (docCount == docIds.length) {
+            int n = docCount * 2;
+            docIds = Arrays.copyOf(docIds, n);
+            storedAt = Arrays.copyOf(storedAt, n);
+            lengths = Arrays.copyOf(lengths, n);
+            senders = Arrays.copyOf(senders, n);
+        }
+        String key = fromId + '\u0000' + fromName;
+        Integer s = senderIndex.get(key);
+        if (s == null) {
+            s = senderIds.size();
+            senderIds.add(fromId);
+            senderNames.add(fromName);
+            senderIndex.put(key, s);
+        }
+        docIds[docCount] = docId;
+        storedAt[docCount] = at;
+        lengths[docCount] = length;
+        senders[docCount] = s;
+        totalLength += length;
+        return docCount++;
+    }
+
+    /** Postings de um termo precisam chegar em ordem crescente de ordinal. */
+    void addPosting(String term, int ord, int tf) {
+        terms.computeIfAbsent(term, k -> new Postings()).add(ord, tf);
+    }
+
+    void setCursorAfter(long cursor) {
+        this.cursorAfter = cursor;
+    }
+
+    @Override public int docCount() { return docCount; }
+    @Override public long totalLength() { return totalLength; }
+    @Override public long cursorAfter() { return cursorAfter; }
+    @Override public long docId(int ord) { return docIds[ord]; }
+    @Override public long storedAt(int ord) { return storedAt[ord]; }
+    @Override public int docLength(int ord) { return lengths[ord]; }
+    @Override public int sender(int ord) { return senders[ord]; }
+    @Override public int senderCount() { return senderIds.size(); }
+    @Override public String senderId(int index) { return senderIds.get(index); }
+    @Override public String senderName(int index) { return senderNames.get(index); }
+
+    @Override
+    public int df(String term) {
+        Postings p = terms.get(term);
+        return p != null ? p.size : 0;
+    }
+
+    @Override
+    public void postings(String term, PostingVisitor visitor) {
+        Postings p = terms.get(term);
+        if (p == null) return;
+        for (int i = 0; i < p.size; i++) visitor.visit(p.ords[i], p.tfs[i]);
+    }
+
+    /** Termos em ordem, como o {@link IndexSegment} grava. */
+    @Override
+    public Collection<String> terms() {
+        return terms.keySet();
+    }
+
+    private static final class Postings {
+        int[] ords = new int[4];
+        int[] tfs = new int[4];
+        int size;
+
+        void add(int ord, int tf) {
+            if (size == ords.length) {
+                ords = Arrays.copyOf(ords, size * 2);
+                tfs = Arrays.copyOf(tfs, size * 2);
+            }
+            ords[size] = ord;
+            tfs[size] = tf;
+            size++;
+        }
+    }
+}
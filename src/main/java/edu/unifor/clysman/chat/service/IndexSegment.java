@@ -0,0 +1,242 @@
+package edu.unifor.clysman.chat.service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Pedaço imutável do índice de busca, num arquivo lido por
+ * {@link MappedByteBuffer}. Só o dicionário de termos e a tabela de
+ * remetentes ficam em memória; postings e a tabela de documentos são lidos
+ * direto do mapeamento.
+ *
+ * Formato: cabeçalho fixo | postings (varint delta do ordinal, varint tf) |
+ * documentos (docId, storedAt, tamanho, remetente; 24 bytes cada) |
+ * termos (termo, offset, df) | remetentes (id, nome).
+ */
+final class IndexSegment implements PostingSource {
+
+    static final String SUFFIX = ".fts";
+
+    private static final int MAGIC = 0x50325046; // "P2PF"
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int DOC_ENTRY = 24;
+
+    private final Path file;
+    private final long generation;
+    private final MappedByteBuffer map;
+    private final int docCount;
+    private final long totalLength;
+    private final long cursorAfter;
+    private final int docsOffset;
+    private final Map<String, TermInfo> dictionary;
+    private final String[] senderIds;
+    private final String[] senderNames;
+
+    private static final class TermInfo {
+        final int offset;
+        final int df;
+
+        TermInfo(int offset, int df) {
+            this.offset = offset;
+            this.df = df;
+        }
+    }
+
+    private IndexSegment(Path file, long generation) throws IOException {
+        this.file = file;
+        this.generation = generation;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            // o mapeamento continua válido depois de fechar o canal (e de apagar o arquivo)
+            this.map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (map.capacity() < HEADER || map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+            throw new IOException("índice inválido: " + file);
+        }
+        docCount = map.getInt(8);
+        int termCount = map.getInt(12);
+        int senderCount = map.getInt(16);
+        totalLength = map.getLong(24);
+        cursorAfter = map.getLong(32);
+        docsOffset = (int) map.getLong(40);
+        int termsOffset = (int) map.getLong(48);
+        int sendersOffset = (int) map.getLong(56);
+
+        DataInputStream terms = region(termsOffset, sendersOffset);
+        dictionary = new HashMap<>(termCount * 2);
+        for (int i = 0; i < termCount; i++) {
+            String term = terms.readUTF();
+            dictionary.put(term, new TermInfo(terms.readInt(), terms.readInt()));
+        }
+        DataInputStream senders = region(sendersOffset, map.capacity());
+        senderIds = new String[senderCount];
+        senderNames = new String[senderCount];
+        for (int i = 0; i < senderCount; i++) {
+            senderIds[i] = emptyToNull(senders.readUTF());
+            senderNames[i] = emptyToNull(senders.readUTF());
+        }
+    }
+
+    private DataInputStream region(int from, int to) {
+        byte[] b = new byte[to - from];
+        ByteBuffer src = map.duplicate();
+        src.position(from);
+        src.get(b);
+        return new DataInputStream(new ByteArrayInputStream(b));
+    }
+
+    static IndexSegment open(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        return new IndexSegment(file, Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+    }
+
+    static Path fileFor(Path dir, long generation) {
+        return dir.resolve(String.format("%020d%s", generation, SUFFIX));
+    }
+
+    /** Grava {@code src} (termos em ordem) como o segmento {@code generation} e o abre. */
+    static IndexSegment write(Path dir, long generation, PostingSource src) throws IOException {
+        Path target = fileFor(dir, generation);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        List<String> terms = new ArrayList<>(src.terms());
+        int[] termOffsets = new int[terms.size()];
+        int[] termDf = new int[terms.size()];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+            out.write(new byte[HEADER]);
+            for (int i = 0; i < terms.size(); i++) {
+                termOffsets[i] = out.size();
+                int[] prev = {0};
+                int[] df = {0};
+                src.postings(terms.get(i), (ord, tf) -> {
+                    try {
+                        writeVarInt(out, ord - prev[0]);
+                        writeVarInt(out, tf);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    prev[0] = ord;
+                    df[0]++;
+                });
+                termDf[i] = df[0];
+            }
+            long docsOffset = out.size();
+            for (int ord = 0; ord < src.docCount(); ord++) {
+                out.writeLong(src.docId(ord));
+                out.writeLong(src.storedAt(ord));
+                out.writeInt(src.docLength(ord));
+                out.writeInt(src.sender(ord));
+            }
+            long termsOffset = out.size();
+            for (int i = 0; i < terms.size(); i++) {
+                out.writeUTF(terms.get(i));
+                out.writeInt(termOffsets[i]);
+                out.writeInt(termDf[i]);
+            }
+            long sendersOffset = out.size();
+            for (int i = 0; i < src.senderCount(); i++) {
+                out.writeUTF(nullToEmpty(src.senderId(i)));
+                out.writeUTF(nullToEmpty(src.senderName(i)));
+            }
+            out.flush();
+            if (out.size() == Integer.MAX_VALUE) throw new IOException("segmento de índice maior que 2 GB");
+
+            try (RandomAccessFile raf = new RandomAccessFile(tmp.toFile(), "rw")) {
+                raf.writeInt(MAGIC);
+                raf.writeInt(VERSION);
+                raf.writeInt(src.docCount());
+                raf.writeInt(terms.size());
+                raf.writeInt(src.senderCount());
+                raf.writeInt(0);
+                raf.writeLong(src.totalLength());
+                raf.writeLong(src.cursorAfter());
+                raf.writeLong(docsOffset);
+                raf.writeLong(termsOffset);
+                raf.writeLong(sendersOffset);
+                raf.getFD().sync();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new IndexSegment(target, generation);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    @Override
+    public void postings(String term, PostingVisitor visitor) {
+        TermInfo t = dictionary.get(term);
+        if (t == null) return;
+        int p = t.offset;
+        int ord = 0;
+        for (int i = 0; i < t.df; i++) {
+            int delta = 0, shift = 0, tf = 0;
+            byte b;
+            do {
+                b = map.get(p++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            shift = 0;
+            do {
+                b = map.get(p++);
+                tf |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            ord += delta;
+            visitor.visit(ord, tf);
+        }
+    }
+
+    @Override
+    public int df(String term) {
+        TermInfo t = dictionary.get(term);
+        return t != null ? t.df : 0;
+    }
+
+    @Override
+    public Collection<String> terms() {
+        return dictionary.keySet();
+    }
+
+    @Override public int docCount() { return docCount; }
+    @Override public long totalLength() { return totalLength; }
+    @Override public long cursorAfter() { return cursorAfter; }
+    @Override public long docId(int ord) { return map.getLong(docsOffset + ord * DOC_ENTRY); }
+    @Override public long storedAt(int ord) { return map.getLong(docsOffset + ord * DOC_ENTRY + 8); }
+    @Override public int docLength(int ord) { return map.getInt(docsOffset + ord * DOC_ENTRY + 16); }
+    @Override public int sender(int ord) { return map.getInt(docsOffset + ord * DOC_ENTRY + 20); }
+    @Override public int senderCount() { return senderIds.length; }
+    @Override public String senderId(int index) { return senderIds[index]; }
+    @Override public String senderName(int index) { return senderNames[index]; }
+
+    long generation() { return generation; }
+
+    long firstDocId() { return docCount > 0 ? docId(0) : Long.MAX_VALUE; }
+
+    long lastDocId() { return docCount > 0 ? docId(docCount - 1) : Long.MIN_VALUE; }
+
+    long sizeBytes() { return map.capacity(); }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static String nullToEmpty(String s) {
+        return s != null ? s : "";
+    }
+
+    private static String emptyToNull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+}
@@ -0,0 +1,83 @@
+package edu.unifor.clysman.chat.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fila circular limitada, vários produtores e um consumidor, sem locks
+ * (esquema de sequência por posição do Vyukov). Cada entrada guarda o item e
+ * o instante em que foi enfileirada, usado para medir a latência do commit.
+ */
+final class JournalRing<T> {
+
+    private final int mask;
+    private final Object[] items;
+    private final long[] enqueuedAt;
+    // sequences[i] == pos: livre para o produtor de pos; == pos + 1: pronta para o consumidor
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    JournalRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacidade deve ser potência de 2: " + capacity);
+        this.mask = capacity - 1;
+        this.items = new Object[capacity];
+        this.enqueuedAt = new long[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) sequences.set(i, i);
+    }
+
+    /** Retorna false se a fila estiver cheia. */
+    boolean offer(T item, long nanos) {
+        while (true) {
+            long pos = tail.get();
+            int idx = (int) (pos & mask);
+            long dif = sequences.get(idx) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items[idx] = item;
+                    enqueuedAt[idx] = nanos;
+                    sequences.lazySet(idx, pos + 1);
+                    return true;
+                }
+            } else if (dif < 0) {
+                return false;
+            }
+            // outro produtor ganhou a posição: tenta a próxima
+        }
+    }
+
+    /** Só o consumidor chama. Retorna null se não houver entrada pronta. */
+    @SuppressWarnings("unchecked")
+    T peek() {
+        long pos = head;
+        int idx = (int) (pos & mask);
+        return sequences.get(idx) == pos + 1 ? (T) items[idx] : null;
+    }
+
+    /** Instante de enfileiramento da entrada devolvida por {@link #peek()}. */
+    long peekEnqueuedAt() {
+        return enqueuedAt[(int) (head & mask)];
+    }
+
+    /** Descarta a entrada devolvida por {@link #peek()}. */
+    void advance() {
+        long pos = head;
+        int idx = (int) (pos & mask);
+        items[idx] = null;
+        sequences.lazySet(idx, pos + mask + 1);
+        head = pos + 1;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,70 @@
+package edu.unifor.clysman.chat.service;
+
+/** Fotografia dos contadores do histórico assíncrono. */
+public final class JournalStats {
+
+    private final Durability durability;
+    private final long appended;
+    private final long committed;
+    private final long commits;
+    private final long maxCommitLines;
+    private final long fullStalls;
+    private final int queueDepth;
+    private final int maxQueueDepth;
+    private final int queueCapacity;
+    private final long appendAvgNanos;
+    private final long appendMaxNanos;
+    private final long commitAvgNanos;
+    private final long commitMaxNanos;
+
+    JournalStats(Durability durability, long appended, long committed, long commits, long maxCommitLines,
+                 long fullStalls, int queueDepth, int maxQueueDepth, int queueCapacity,
+                 long appendAvgNanos, long appendMaxNanos, long commitAvgNanos, long commitMaxNanos) {
+        this.durability = durability;
+        this.appended = appended;
+        this.committed = committed;
+        this.commits = commits;
+        this.maxCommitLines = maxCommitLines;
+        this.fullStalls = fullStalls;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.queueCapacity = queueCapacity;
+        this.appendAvgNanos = appendAvgNanos;
+        this.appendMaxNanos = appendMaxNanos;
+        this.commitAvgNanos = commitAvgNanos;
+        this.commitMaxNanos = commitMaxNanos;
+    }
+
+    public Durability getDurability() { return durability; }
+    /** Linhas aceitas por {@code append}. */
+    public long getAppended() { return appended; }
+    /** Linhas que já atingiram o ponto de durabilidade do modo. */
+    public long getCommitted() { return committed; }
+    /** Quantos commits em grupo foram feitos. */
+    public long getCommits() { return commits; }
+    public long getMaxCommitLines() { return maxCommitLines; }
+    /** Quantas vezes um {@code append} esperou por fila cheia. */
+    public long getFullStalls() { return fullStalls; }
+    public int getQueueDepth() { return queueDepth; }
+    public int getMaxQueueDepth() { return maxQueueDepth; }
+    public int getQueueCapacity() { return queueCapacity; }
+    /** Tempo gasto dentro de {@code append} (o que a thread chamadora, ex. EDT, sente). */
+    public long getAppendAvgNanos() { return appendAvgNanos; }
+    public long getAppendMaxNanos() { return appendMaxNanos; }
+    /** Do {@code append} até o commit que tornou a linha durável. */
+    public long getCommitAvgNanos() { return commitAvgNanos; }
+    public long getCommitMaxNanos() { return commitMaxNanos; }
+
+    public double getAvgCommitLines() {
+        return commits == 0 ? 0 : (double) committed / commits;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d linhas em %d commits (média %.1f, máx %d), fila %d/%d (máx %d, esperas %d), "
+                        + "append médio %d ns (máx %d), commit médio %.2f ms (máx %.2f)",
+                durability, committed, commits, getAvgCommitLines(), maxCommitLines,
+                queueDepth, queueCapacity, maxQueueDepth, fullStalls,
+                appendAvgNanos, appendMaxNanos, commitAvgNanos / 1e6, commitMaxNanos / 1e6);
+    }
+}
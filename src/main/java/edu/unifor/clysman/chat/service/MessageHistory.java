@@ -1,41 +1,301 @@
 package edu.unifor.clysman.chat.service;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
+import edu.unifor.clysman.chat.metrics.Histogram;
+import edu.unifor.clysman.chat.metrics.MetricsRegistry;
+import edu.unifor.clysman.chat.model.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Histórico em disco com escrita assíncrona. {@link #append} só coloca o
+ * registro numa fila circular sem locks e retorna, então pode ser chamado da
+ * EDT; uma thread de escrita drena a fila para o {@link MessageStore} e faz
+ * commit em grupo, no ritmo definido pela {@link Durability}. O histórico de
+ * um usuário/porta persiste entre sessões e pode ser consultado.
+ */
 public class MessageHistory implements Closeable {
 
-    private BufferedWriter out;
-    private final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private final HistoryConfig config;
+    private final Durability durability;
+    private final long syncIntervalNanos;
+    private final JournalRing<StoredMessage> ring = new JournalRing<>(QUEUE_CAPACITY);
+
+    private MessageStore store;
+    private SearchIndex search;
+    private Thread writer;
+    private volatile boolean writerWaiting;
+    private volatile boolean closed;
+
+    // Só a thread de escrita usa
+    private long pendingLines;
+    private long pendingEnqueuedSum;
+    private long pendingOldest;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder appendNanos = new LongAdder();
+    private final AtomicLong appendMaxNanos = new AtomicLong();
+    private final LongAdder fullStalls = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder writerFailures = new LongAdder();
+    private volatile long committed;
+    private volatile long commits;
+    private volatile long maxCommitLines;
+    private volatile long commitNanos;
+    private volatile long commitMaxNanos;
+    private volatile int maxQueueDepth;
+    // ns; até ~34 s nas faixas fechadas
+    private final Histogram appendLatency = new Histogram(37, 1e-9);
+    private final Histogram commitLatency = new Histogram(37, 1e-9);
+
+    /** Entrega ao SO a cada 200 ms. */
+    public MessageHistory() {
+        this(new HistoryConfig());
+    }
 
+    /**
+     * @param syncIntervalMillis intervalo entre commits em FLUSH/FSYNC; 0 faz
+     *                           commit assim que a fila esvazia (ignorado em NONE)
+     */
+    public MessageHistory(Durability durability, long syncIntervalMillis) {
+        this(new HistoryConfig().setDurability(durability).setSyncIntervalMillis(syncIntervalMillis));
+    }
+
+    public MessageHistory(HistoryConfig config) {
+        this.config = config;
+        this.durability = config.getDurability();
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getSyncIntervalMillis());
+    }
+
+    /** Abre o histórico de {@code userName}/{@code port}, mantendo o das sessões anteriores. */
     public void start(String userName, int port) throws IOException {
-        String ts = sdf.format(new Date());
-        File dir = new File("history");
-        if (!dir.exists()) dir.mkdirs();
-        File f = new File(dir, "chat_" + userName + "_" + port + "_" + ts + ".log");
-        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f, true), StandardCharsets.UTF_8));
+        Path dir = config.getBaseDir().resolve(userName.replaceAll("[^\\p{Alnum}_.-]", "_") + "_" + port);
+        store = MessageStore.open(dir, config);
+        if (config.isSearchEnabled()) {
+            search = new SearchIndex(dir.resolve("index"), store);
+            search.start();
+        }
+        writer = new Thread(this::writeLoop, "history-writer");
+        writer.setDaemon(true);
+        writer.start();
         append("== Nova sessão iniciada em " + new Date() + " ==");
     }
 
-    public synchronized void append(String line) {
+    /** Linha do sistema. */
+    public void append(String line) {
+        append(line, System.currentTimeMillis());
+    }
+
+    /**
+     * Linha do sistema com o instante (epoch ms) em que aconteceu, para a
+     * tela e o histórico concordarem na paginação ({@link #before}).
+     */
+    public void append(String line, long storedAt) {
+        enqueue(StoredMessage.system(line, storedAt));
+    }
+
+    /** Mensagem de chat (enviada ou recebida). */
+    public void append(Message m) {
+        append(m, System.currentTimeMillis());
+    }
+
+    /** Mensagem de chat com o instante (epoch ms) em que foi entregue. */
+    public void append(Message m, long storedAt) {
+        enqueue(StoredMessage.chat(m, storedAt));
+    }
+
+    /** Enfileira o registro; só espera se a fila estiver cheia (o escritor não acompanha). */
+    private void enqueue(StoredMessage record) {
+        if (writer == null || closed) return;
+        long t0 = System.nanoTime();
+        if (!ring.offer(record, t0)) {
+            fullStalls.increment();
+            do {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(50_000);
+                if (closed) return;
+            } while (!ring.offer(record, System.nanoTime()));
+        }
+        if (writerWaiting) LockSupport.unpark(writer);
+        long d = System.nanoTime() - t0;
+        appendLatency.record(d);
+        appended.increment();
+        appendNanos.add(d);
+        if (d > appendMaxNanos.get()) appendMaxNanos.accumulateAndGet(d, Math::max);
+    }
+
+    // ---- consultas (do mais antigo para o mais novo; não incluem o que ainda está na fila) ----
+
+    /** As últimas {@code n} entradas, inclusive de sessões anteriores. */
+    public List<StoredMessage> last(int n) throws IOException {
+        return requireStore().last(n);
+    }
+
+    /**
+     * As últimas {@code n} entradas gravadas antes de {@code until} (epoch ms,
+     * exclusivo): a página anterior ao que já está na tela.
+     */
+    public List<StoredMessage> before(long until, int n) throws IOException {
+        return requireStore().before(until, n);
+    }
+
+    /** Entradas gravadas a partir de {@code since} (epoch ms), até {@code limit}. */
+    public List<StoredMessage> since(long since, int limit) throws IOException {
+        return requireStore().since(since, limit);
+    }
+
+    /** As últimas {@code n} mensagens do peer {@code fromId}. */
+    public List<StoredMessage> fromSender(String fromId, int n) throws IOException {
+        return requireStore().fromSender(fromId, n);
+    }
+
+    /**
+     * CHAT de {@code origin} com seq entre {@code afterSeq} e {@code beforeSeq}
+     * (exclusivos), em ordem; serve de arquivo para a anti-entropia do nó.
+     */
+    public List<Message> chatsBetween(String origin, long afterSeq, long beforeSeq, int max) throws IOException {
+        List<StoredMessage> stored = requireStore().senderRange(origin, afterSeq, beforeSeq, max);
+        List<Message> out = new ArrayList<>(stored.size());
+        for (StoredMessage m : stored) out.add(m.toMessage());
+        return out;
+    }
+
+    /** Busca por texto no histórico, com filtros opcionais; mais relevantes primeiro. */
+    public List<SearchHit> search(SearchQuery query) throws IOException {
+        SearchIndex s = search;
+        if (s == null) throw new IOException("busca desativada ou histórico não iniciado");
+        return s.search(query);
+    }
+
+    private MessageStore requireStore() throws IOException {
+        MessageStore s = store;
+        if (s == null) throw new IOException("histórico não iniciado");
+        return s;
+    }
+
+    public JournalStats getStats() {
+        long n = appended.sum();
+        long c = committed;
+        return new JournalStats(durability, n, c, commits, maxCommitLines, fullStalls.sum(),
+                ring.size(), maxQueueDepth, ring.capacity(),
+                n == 0 ? 0 : appendNanos.sum() / n, appendMaxNanos.get(),
+                c == 0 ? 0 : commitNanos / c, commitMaxNanos);
+    }
+
+    /** Publica os contadores do histórico em {@code registry} (ex.: o do nó, {@code PeerNode.getMetrics()}). */
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.counter("p2pchat_history_appended_total", "Registros aceitos por append", appended::sum);
+        registry.counter("p2pchat_history_committed_total", "Registros que atingiram o ponto de durabilidade", () -> committed);
+        registry.counter("p2pchat_history_commits_total", "Commits em grupo", () -> commits);
+        registry.counter("p2pchat_history_full_stalls_total", "Appends que esperaram por fila cheia", fullStalls::sum);
+        registry.counter("p2pchat_history_writer_failures_total", "Falhas que pararam o escritor do histórico", writerFailures::sum);
+        registry.counter("p2pchat_history_dropped_total", "Registros descartados pelo store (maiores que meio segmento)", dropped::sum);
+        registry.gauge("p2pchat_history_queue_depth", "Registros na fila do escritor", ring::size);
+        registry.histogram("p2pchat_history_append_seconds", "Tempo dentro de append (o que a thread chamadora sente)", appendLatency);
+        registry.histogram("p2pchat_history_commit_age_seconds", "Idade do registro mais antigo de cada commit em grupo", commitLatency);
+    }
+
+    private void writeLoop() {
+        long nextCommit = System.nanoTime() + syncIntervalNanos;
         try {
-            if (out != null) {
-                out.write(line);
-                out.write("\n");
-                out.flush();
+            while (true) {
+                boolean stopping = closed;
+                int depth = ring.size();
+                if (depth > maxQueueDepth) maxQueueDepth = depth;
+                drain();
+                long now = System.nanoTime();
+                if (stopping && ring.isEmpty()) {
+                    commit(true);
+                    return;
+                }
+                if (durability != Durability.NONE && pendingLines > 0 && now - nextCommit >= 0) {
+                    commit(durability == Durability.FSYNC);
+                    nextCommit = now + syncIntervalNanos;
+                }
+                if (!ring.isEmpty()) continue;
+                // espera mais registros ou o próximo commit; o produtor acorda se writerWaiting
+                writerWaiting = true;
+                if (ring.isEmpty() && !closed) {
+                    if (durability != Durability.NONE && pendingLines > 0) LockSupport.parkNanos(nextCommit - now);
+                    else LockSupport.park();
+                }
+                writerWaiting = false;
+                if (pendingLines == 0) nextCommit = Math.max(nextCommit, System.nanoTime() + syncIntervalNanos);
             }
-        } catch (IOException ignored) {}
+        } catch (IOException | RuntimeException e) {
+            // disco indisponível ou erro no store/índice: o histórico para, o chat continua
+            writerFailures.increment();
+        } finally {
+            // sem escritor, enqueue não pode ficar esperando a fila esvaziar
+            closed = true;
+        }
+    }
+
+    /**
+     * Passa para o store o que já está pronto na fila. Limitado a uma volta
+     * da fila para o prazo do commit ser checado sob carga contínua.
+     */
+    private void drain() throws IOException {
+        StoredMessage record;
+        for (int n = ring.capacity(); n > 0 && (record = ring.peek()) != null; n--) {
+            long enqueuedAt = ring.peekEnqueuedAt();
+            ring.advance();
+            MessageStore.Append r = store.append(record);
+            if (r == MessageStore.Append.DROPPED) {
+                dropped.increment(); // não entra em committed
+                continue;
+            }
+            // buffer do store cheio: em NONE/FLUSH isto já é o ponto de durabilidade
+            if (r == MessageStore.Append.FLUSHED && durability != Durability.FSYNC) account();
+            if (pendingLines++ == 0) pendingOldest = enqueuedAt;
+            pendingEnqueuedSum += enqueuedAt;
+        }
+    }
+
+    private void commit(boolean force) throws IOException {
+        store.commit(force);
+        account();
+        if (search != null) search.signal();
+    }
+
+    /** Conta todos os registros pendentes como um commit em grupo. */
+    private void account() {
+        if (pendingLines == 0) return;
+        long now = System.nanoTime();
+        commitNanos += pendingLines * now - pendingEnqueuedSum;
+        if (now - pendingOldest > commitMaxNanos) commitMaxNanos = now - pendingOldest;
+        commitLatency.record(now - pendingOldest);
+        if (pendingLines > maxCommitLines) maxCommitLines = pendingLines;
+        committed += pendingLines;
+        commits++;
+        pendingLines = 0;
+        pendingEnqueuedSum = 0;
     }
 
     @Override
     public void close() {
+        if (writer == null || closed) return;
+        append("== Sessão encerrada em " + new Date() + " ==");
+        closed = true;
+        LockSupport.unpark(writer);
         try {
-            if (out != null) {
-                append("== Sessão encerrada em " + new Date() + " ==");
-                out.close();
-            }
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (search != null) search.close();
+        try {
+            store.close();
         } catch (IOException ignored) {}
     }
-}
\ No newline at end of file
+}
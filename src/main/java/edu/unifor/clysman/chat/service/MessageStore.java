@@ -0,0 +1,289 @@
+package edu.unifor.clysman.chat.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Histórico estruturado: uma sequência de {@link Segment}s de tamanho fixo
+ * num diretório. Só o último segmento recebe escritas; ao encher é selado e
+ * um novo é criado, e a retenção apaga os mais antigos por tamanho total e
+ * idade. As consultas usam os índices de cada segmento e não varrem arquivos
+ * inteiros.
+ *
+ * Um único escritor (a thread do {@link MessageHistory}) chama {@link #append};
+ * consultas podem vir de qualquer thread. Tudo é serializado pelo monitor.
+ */
+final class MessageStore implements Closeable {
+
+    static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long retentionBytes;
+    private final long retentionMillis;
+
+    private final List<Segment> segments = new ArrayList<>(); // do mais antigo para o mais novo
+    private Segment active;
+    private long lastStoredAt;
+    private final Segment.RecordBuffer scratch = new Segment.RecordBuffer();
+    private boolean closed;
+
+    private MessageStore(Path dir, HistoryConfig cfg) {
+        this.dir = dir;
+        this.segmentBytes = cfg.getSegmentBytes();
+        this.retentionBytes = cfg.getRetentionBytes();
+        this.retentionMillis = cfg.getRetentionMillis();
+    }
+
+    /** Abre (ou cria) o histórico em {@code dir}, recuperando um final corrompido do segmento ativo. */
+    static MessageStore open(Path dir, HistoryConfig cfg) throws IOException {
+        Files.createDirectories(dir);
+        MessageStore store = new MessageStore(dir, cfg);
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + Segment.SUFFIX)) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(0, name.length() - Segment.SUFFIX.length())), p);
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        for (Map.Entry<Long, Path> e : files.entrySet()) {
+            boolean last = e.getKey().equals(files.lastKey());
+            Segment s = Segment.open(e.getValue(), e.getKey(), last, WRITE_BUFFER_SIZE);
+            if (s != null) store.segments.add(s);
+        }
+        if (!store.segments.isEmpty()) {
+            Segment newest = store.segments.get(store.segments.size() - 1);
+            if (!newest.isSealed()) store.active = newest;
+            if (newest.count() > 0) store.lastStoredAt = newest.maxTs();
+        }
+        store.enforceRetention();
+        return store;
+    }
+
+    /** Resultado de {@link #append}. */
+    enum Append {
+        /** No buffer do segmento ativo, até o próximo {@link #commit}. */
+        BUFFERED,
+        /** Aceito, e o buffer pendente precisou ir para o arquivo antes dele. */
+        FLUSHED,
+        /** Não gravado: maior que meio segmento, ou store fechado. */
+        DROPPED
+    }
+
+    /** Grava {@code m} no segmento ativo (em memória até {@link #commit}). */
+    synchronized Append append(StoredMessage m) throws IOException {
+        if (closed) return Append.DROPPED;
+        if (m.getStoredAt() < lastStoredAt) {
+            // o índice de tempo exige storedAt não decrescente (relógio voltou)
+            m = new StoredMessage(m.getKind(), lastStoredAt, m.getTimestamp(), m.getSeq(),
+                    m.getId(), m.getFromId(), m.getFromName(), m.getText());
+        }
+        int len = Segment.encode(m, scratch);
+        if (len > segmentBytes / 2) return Append.DROPPED;
+        Segment.finish(scratch.array(), len);
+        boolean wrote = false;
+        if (active == null || !active.fits(len)) {
+            roll();
+            wrote = true;
+        }
+        wrote |= active.append(scratch.array(), len, m);
+        lastStoredAt = m.getStoredAt();
+        return wrote ? Append.FLUSHED : Append.BUFFERED;
+    }
+
+    /** Passa o pendente para o arquivo e, com {@code force}, para o disco. */
+    void commit(boolean force) throws IOException {
+        Segment s;
+        synchronized (this) {
+            if (closed || active == null) return;
+            active.writePending();
+            s = active;
+        }
+        if (!force) return;
+        try {
+            // fora do monitor para o fsync não travar consultas
+            s.force();
+        } catch (ClosedChannelException ignored) {
+            // selado ou fechado no meio-tempo: seal()/close() já forçaram
+        }
+    }
+
+    private void roll() throws IOException {
+        long number = 1;
+        if (active != null) active.seal();
+        if (!segments.isEmpty()) number = segments.get(segments.size() - 1).number() + 1;
+        active = Segment.create(dir, number, segmentBytes, WRITE_BUFFER_SIZE);
+        segments.add(active);
+        enforceRetention();
+    }
+
+    private void enforceRetention() {
+        long total = 0;
+        for (Segment s : segments) total += s.capacity();
+        long cutoff = retentionMillis > 0 ? System.currentTimeMillis() - retentionMillis : Long.MIN_VALUE;
+        Iterator<Segment> it = segments.iterator();
+        while (it.hasNext()) {
+            Segment s = it.next();
+            if (s == active) break;
+            boolean tooBig = retentionBytes > 0 && total > retentionBytes;
+            boolean tooOld = s.count() == 0 || s.maxTs() < cutoff;
+            if (!tooBig && !tooOld) break;
+            try {
+                s.delete();
+            } catch (IOException ignored) {
+                // ex.: arquivo ainda mapeado no Windows; tenta de novo no próximo roll
+                continue;
+            }
+            total -= s.capacity();
+            it.remove();
+        }
+    }
+
+    // ---- consultas (resultado do mais antigo para o mais novo) ----
+
+    /** As últimas {@code n} entradas. */
+    synchronized List<StoredMessage> last(int n) throws IOException {
+        flushForRead();
+        ArrayDeque<StoredMessage> out = new ArrayDeque<>();
+        for (int i = segments.size() - 1; i >= 0 && out.size() < n; i--) {
+            segments.get(i).tail(n - out.size(), out);
+        }
+        return new ArrayList<>(out);
+    }
+
+    /** As últimas {@code n} entradas gravadas antes de {@code until} (epoch ms, exclusivo). */
+    synchronized List<StoredMessage> before(long until, int n) throws IOException {
+        flushForRead();
+        ArrayDeque<StoredMessage> out = new ArrayDeque<>();
+        for (int i = segments.size() - 1; i >= 0 && out.size() < n; i--) {
+            segments.get(i).tailBefore(until, n - out.size(), out);
+        }
+        return new ArrayList<>(out);
+    }
+
+    /** Entradas gravadas a partir de {@code since} (epoch ms), até {@code limit}. */
+    synchronized List<StoredMessage> since(long since, int limit) throws IOException {
+        flushForRead();
+        List<StoredMessage> out = new ArrayList<>();
+        for (Segment s : segments) {
+            if (out.size() >= limit) break;
+            s.since(since, limit, out);
+        }
+        return out;
+    }
+
+    /** As últimas {@code n} mensagens de chat do peer {@code fromId}. */
+    synchronized List<StoredMessage> fromSender(String fromId, int n) throws IOException {
+        flushForRead();
+        List<StoredMessage> out = new ArrayList<>();
+        for (int i = segments.size() - 1; i >= 0 && out.size() < n; i--) {
+            segments.get(i).fromSender(fromId, n, out);
+        }
+        Collections.reverse(out);
+        return out;
+    }
+
+    /**
+     * Até {@code max} CHAT de {@code fromId} com seq em ({@code afterSeq},
+     * {@code beforeSeq}), em ordem de seq. Usado pela anti-entropia.
+     */
+    synchronized List<StoredMessage> senderRange(String fromId, long afterSeq, long beforeSeq, int max) throws IOException {
+        flushForRead();
+        List<StoredMessage> out = new ArrayList<>();
+        for (int i = segments.size() - 1; i >= 0; i--) segments.get(i).senderRange(fromId, afterSeq, beforeSeq, out);
+        out.sort(Comparator.comparingLong(StoredMessage::getSeq));
+        return out.size() > max ? new ArrayList<>(out.subList(0, max)) : out;
+    }
+
+    // ---- acesso por id (usado pelo índice de busca) ----
+
+    /** Id compacto de um registro: número do segmento nos 32 bits altos, posição nos baixos. */
+    static long docId(long segment, int pos) {
+        return (segment << 32) | pos;
+    }
+
+    interface DocConsumer {
+        void accept(long docId, StoredMessage m);
+    }
+
+    /** O registro {@code docId}, ou null se a retenção já apagou seu segmento. */
+    synchronized StoredMessage read(long docId) throws IOException {
+        flushForRead();
+        Segment s = segment(docId >>> 32);
+        return s != null ? s.read((int) docId) : null;
+    }
+
+    /** Menor id ainda existente; ids abaixo dele foram apagados pela retenção. */
+    synchronized long firstDocId() {
+        return segments.isEmpty() ? 0 : docId(segments.get(0).number(), Segment.HEADER);
+    }
+
+    /**
+     * Entrega até {@code max} registros a partir do cursor (um id, ou 0 para o
+     * início) e retorna o cursor seguinte, para continuar de onde parou.
+     */
+    synchronized long scan(long cursor, int max, DocConsumer action) throws IOException {
+        flushForRead();
+        int[] delivered = {0};
+        for (Segment s : segments) {
+            long number = s.number();
+            if (number < cursor >>> 32) continue;
+            int pos = number == cursor >>> 32 ? Math.max(Segment.HEADER, (int) cursor) : Segment.HEADER;
+            pos = s.scan(pos, max - delivered[0], (p, m) -> {
+                delivered[0]++;
+                action.accept(docId(number, p), m);
+            });
+            cursor = docId(number, pos);
+            if (delivered[0] >= max || s == active || pos < s.end()) return cursor;
+        }
+        return cursor;
+    }
+
+    private Segment segment(long number) {
+        int lo = 0, hi = segments.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long n = segments.get(mid).number();
+            if (n < number) lo = mid + 1;
+            else if (n > number) hi = mid - 1;
+            else return segments.get(mid);
+        }
+        return null;
+    }
+
+    synchronized long sizeBytes() {
+        long total = 0;
+        for (Segment s : segments) total += s.capacity();
+        return total;
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /** Leituras vão pelo mapeamento do arquivo: o que ainda está no buffer precisa descer antes. */
+    private void flushForRead() throws IOException {
+        if (closed) throw new IOException("histórico fechado");
+        if (active != null) active.writePending();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (active != null) {
+            active.writePending();
+            active.force();
+        }
+        for (Segment s : segments) s.close();
+        segments.clear();
+        active = null;
+    }
+}
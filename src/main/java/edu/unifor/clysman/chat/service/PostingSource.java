@@ -0,0 +1,45 @@
+package edu.unifor.clysman.chat.service;
+
+import java.util.Collection;
+
+/**
+ * Visão de leitura de um pedaço do índice de busca. Documentos são
+ * identificados por ordinais densos (0..docCount-1) em ordem crescente de
+ * docId do {@link MessageStore}; as listas de postings usam esses ordinais.
+ */
+interface PostingSource {
+
+    int docCount();
+
+    /** Soma dos tamanhos (em termos) de todos os documentos. */
+    long totalLength();
+
+    /** Em quantos documentos {@code term} aparece. */
+    int df(String term);
+
+    /** Percorre os postings de {@code term} em ordem crescente de ordinal. */
+    void postings(String term, PostingVisitor visitor);
+
+    Collection<String> terms();
+
+    long docId(int ord);
+
+    long storedAt(int ord);
+
+    int docLength(int ord);
+
+    int sender(int ord);
+
+    int senderCount();
+
+    String senderId(int index);
+
+    String senderName(int index);
+
+    /** Cursor do {@link MessageStore} logo após o último registro coberto. */
+    long cursorAfter();
+
+    interface PostingVisitor {
+        void visit(int ord, int tf);
+    }
+}
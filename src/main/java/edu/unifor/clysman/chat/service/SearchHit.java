@@ -0,0 +1,16 @@
+package edu.unifor.clysman.chat.service;
+
+/** Resultado de busca: a mensagem e sua pontuação (BM25). */
+public final class SearchHit {
+
+    private final StoredMessage message;
+    private final double score;
+
+    SearchHit(StoredMessage message, double score) {
+        this.message = message;
+        this.score = score;
+    }
+
+    public StoredMessage getMessage() { return message; }
+    public double getScore() { return score; }
+}
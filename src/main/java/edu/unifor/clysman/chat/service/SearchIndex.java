@@ -0,0 +1,353 @@
+package edu.unifor.clysman.chat.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Índice invertido do texto das mensagens de chat, mantido ao lado do
+ * {@link MessageStore}. Uma thread própria acompanha o store por um cursor
+ * (nada passa pelo caminho de recebimento/repasse), acumula os documentos num
+ * {@link IndexBuffer} e o grava como {@link IndexSegment} a cada
+ * {@link #FLUSH_DOCS} documentos. Segmentos de tamanho parecido são
+ * mesclados em segundo plano, na mesma thread, descartando o que a retenção
+ * do store já apagou.
+ *
+ * A busca soma BM25 dos termos da consulta (qualquer termo casa; quem tem
+ * mais termos sobe) e aceita filtro por remetente e por intervalo de tempo.
+ */
+final class SearchIndex {
+
+    static final int FLUSH_DOCS = 8192;
+    private static final int MERGE_FACTOR = 4;
+    private static final int SCAN_BATCH = 2048;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final Path dir;
+    private final MessageStore store;
+
+    // Trocados juntos sob o monitor deste objeto; as listas são imutáveis
+    private List<IndexSegment> segments = Collections.emptyList();
+    private IndexBuffer buffer = new IndexBuffer();
+    private long nextGeneration = 1;
+
+    private Thread indexer;
+    private volatile boolean closed;
+    private volatile long indexedDocs;
+    private volatile long merges;
+
+    SearchIndex(Path dir, MessageStore store) {
+        this.dir = dir;
+        this.store = store;
+    }
+
+    /** Carrega os segmentos existentes e começa a indexar do ponto onde o último parou. */
+    void start() throws IOException {
+        Files.createDirectories(dir);
+        List<IndexSegment> loaded = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + IndexSegment.SUFFIX)) {
+            for (Path p : ds) {
+                try {
+                    IndexSegment s = IndexSegment.open(p);
+                    loaded.add(s);
+                    nextGeneration = Math.max(nextGeneration, s.generation() + 1);
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+        // Uma queda entre gravar a mescla e apagar as entradas deixa sobreposição: fica o maior
+        loaded.sort(Comparator.comparingLong(IndexSegment::firstDocId)
+                .thenComparing(Comparator.comparingInt(IndexSegment::docCount).reversed()));
+        List<IndexSegment> kept = new ArrayList<>();
+        for (IndexSegment s : loaded) {
+            IndexSegment prev = kept.isEmpty() ? null : kept.get(kept.size() - 1);
+            if (s.docCount() == 0 || (prev != null && s.lastDocId() <= prev.lastDocId())) s.delete();
+            else kept.add(s);
+        }
+        long cursor = 0;
+        for (IndexSegment s : kept) cursor = Math.max(cursor, s.cursorAfter());
+        synchronized (this) {
+            segments = Collections.unmodifiableList(kept);
+            buffer.setCursorAfter(cursor);
+        }
+        indexer = new Thread(this::indexLoop, "search-indexer");
+        indexer.setDaemon(true);
+        indexer.setPriority(Thread.MIN_PRIORITY);
+        indexer.start();
+    }
+
+    /** Avisa que há registros novos no store. */
+    void signal() {
+        Thread t = indexer;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    private void indexLoop() {
+        long[] ids = new long[SCAN_BATCH];
+        List<StoredMessage> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                IndexBuffer buf;
+                synchronized (this) {
+                    buf = buffer;
+                }
+                batch.clear();
+                // copia sob o monitor do store e indexa fora dele, para não atrasar o escritor
+                long cursor = store.scan(buf.cursorAfter(), SCAN_BATCH, (docId, m) -> {
+                    if (m.getKind() != StoredMessage.Kind.CHAT) return;
+                    ids[batch.size()] = docId;
+                    batch.add(m);
+                });
+                synchronized (buf) {
+                    for (int i = 0; i < batch.size(); i++) buf.add(ids[i], batch.get(i));
+                    buf.setCursorAfter(cursor);
+                }
+                indexedDocs += batch.size();
+                if (buf.docCount() >= FLUSH_DOCS) flush();
+                maybeMerge();
+                if (batch.isEmpty()) LockSupport.parkNanos(IDLE_PARK_NANOS);
+            } catch (IOException e) {
+                // store fechado ou disco com problema: tenta de novo mais tarde
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /** Grava o buffer como um novo segmento. Só a thread de indexação (ou o close) chama. */
+    private void flush() throws IOException {
+        IndexBuffer buf;
+        synchronized (this) {
+            buf = buffer;
+        }
+        IndexSegment seg;
+        synchronized (buf) {
+            if (buf.docCount() == 0) return;
+            seg = IndexSegment.write(dir, nextGeneration++, buf);
+        }
+        IndexBuffer fresh = new IndexBuffer();
+        fresh.setCursorAfter(buf.cursorAfter());
+        synchronized (this) {
+            List<IndexSegment> next = new ArrayList<>(segments);
+            next.add(seg);
+            segments = Collections.unmodifiableList(next);
+            buffer = fresh;
+        }
+    }
+
+    /**
+     * Política logarítmica: enquanto os {@link #MERGE_FACTOR} segmentos mais
+     * novos tiverem tamanhos da mesma ordem, mescla-os num só. Segmentos
+     * inteiramente apagados pela retenção saem da lista.
+     */
+    private void maybeMerge() throws IOException {
+        long firstLive = store.firstDocId();
+        List<IndexSegment> current;
+        synchronized (this) {
+            current = segments;
+        }
+        List<IndexSegment> dead = new ArrayList<>();
+        for (IndexSegment s : current) {
+            if (s.lastDocId() < firstLive) dead.add(s);
+        }
+        if (!dead.isEmpty()) replace(dead, null);
+
+        while (!closed) {
+            synchronized (this) {
+                current = segments;
+            }
+            int n = current.size();
+            if (n < MERGE_FACTOR) return;
+            List<IndexSegment> group = current.subList(n - MERGE_FACTOR, n);
+            int min = Integer.MAX_VALUE, max = 0;
+            for (IndexSegment s : group) {
+                min = Math.min(min, s.docCount());
+                max = Math.max(max, s.docCount());
+            }
+            if (max > (long) min * MERGE_FACTOR) return;
+            replace(new ArrayList<>(group), merge(group, firstLive));
+            merges++;
+        }
+    }
+
+    private IndexSegment merge(List<IndexSegment> group, long firstLive) throws IOException {
+        IndexBuffer out = new IndexBuffer();
+        List<int[]> remaps = new ArrayList<>();
+        TreeSet<String> terms = new TreeSet<>();
+        for (IndexSegment s : group) {
+            int[] remap = new int[s.docCount()];
+            for (int ord = 0; ord < s.docCount(); ord++) {
+                long docId = s.docId(ord);
+                int sender = s.sender(ord);
+                remap[ord] = docId < firstLive ? -1
+                        : out.addDoc(docId, s.storedAt(ord), s.docLength(ord), s.senderId(sender), s.senderName(sender));
+            }
+            remaps.add(remap);
+            terms.addAll(s.terms());
+        }
+        for (String term : terms) {
+            for (int i = 0; i < group.size(); i++) {
+                int[] remap = remaps.get(i);
+                group.get(i).postings(term, (ord, tf) -> {
+                    if (remap[ord] >= 0) out.addPosting(term, remap[ord], tf);
+                });
+            }
+        }
+        out.setCursorAfter(group.get(group.size() - 1).cursorAfter());
+        long generation;
+        synchronized (this) {
+            generation = nextGeneration++;
+        }
+        return IndexSegment.write(dir, generation, out);
+    }
+
+    /** Troca {@code old} (consecutivos) por {@code merged} e apaga os arquivos antigos. */
+    private void replace(List<IndexSegment> old, IndexSegment merged) throws IOException {
+        synchronized (this) {
+            List<IndexSegment> next = new ArrayList<>();
+            boolean inserted = false;
+            for (IndexSegment s : segments) {
+                if (old.contains(s)) {
+                    if (!inserted && merged != null && merged.docCount() > 0) next.add(merged);
+                    inserted = true;
+                } else {
+                    next.add(s);
+                }
+            }
+            segments = Collections.unmodifiableList(next);
+        }
+        if (merged != null && merged.docCount() == 0) merged.delete();
+        // buscas em andamento continuam lendo pelo mapeamento, que sobrevive ao delete
+        for (IndexSegment s : old) s.delete();
+    }
+
+    // ---- busca ----
+
+    List<SearchHit> search(SearchQuery query) throws IOException {
+        Set<String> terms = new LinkedHashSet<>(Tokenizer.tokenize(query.getText()));
+        if (terms.isEmpty()) return Collections.emptyList();
+        List<IndexSegment> segs;
+        IndexBuffer buf;
+        synchronized (this) {
+            segs = segments;
+            buf = buffer;
+        }
+        synchronized (buf) {
+            List<PostingSource> sources = new ArrayList<>(segs);
+            sources.add(buf);
+            return rank(sources, terms, query);
+        }
+    }
+
+    private List<SearchHit> rank(List<PostingSource> sources, Set<String> terms, SearchQuery q) throws IOException {
+        long docs = 0, length = 0;
+        Map<String, Double> idf = new HashMap<>();
+        for (PostingSource s : sources) {
+            docs += s.docCount();
+            length += s.totalLength();
+        }
+        if (docs == 0) return Collections.emptyList();
+        for (String t : terms) {
+            long df = 0;
+            for (PostingSource s : sources) df += s.df(t);
+            if (df > 0) idf.put(t, Math.log(1 + (docs - df + 0.5) / (df + 0.5)));
+        }
+        double avgLength = Math.max(1.0, (double) length / docs);
+        long firstLive = store.firstDocId();
+
+        // top-k: menor pontuação (e, no empate, mais antiga) sai primeiro
+        PriorityQueue<Candidate> top = new PriorityQueue<>();
+        for (PostingSource s : sources) {
+            boolean[] senderOk = senderFilter(s, q.getSender());
+            // acumulador denso por ordinal: bem mais barato que um mapa por documento
+            double[] acc = new double[s.docCount()];
+            for (Map.Entry<String, Double> e : idf.entrySet()) {
+                double w = e.getValue();
+                s.postings(e.getKey(), (ord, tf) -> {
+                    double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * s.docLength(ord) / avgLength));
+                    acc[ord] += w * norm;
+                });
+            }
+            for (int ord = 0; ord < acc.length; ord++) {
+                double score = acc[ord];
+                if (score == 0) continue;
+                if (top.size() == q.getLimit() && !top.peek().isBelow(score, s.docId(ord))) continue;
+                if (senderOk != null && !senderOk[s.sender(ord)]) continue;
+                long at = s.storedAt(ord);
+                if (at < q.getFrom() || at > q.getUntil()) continue;
+                long docId = s.docId(ord);
+                if (docId < firstLive) continue;
+                top.add(new Candidate(docId, score));
+                if (top.size() > q.getLimit()) top.poll();
+            }
+        }
+        List<SearchHit> hits = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Candidate c = top.poll();
+            StoredMessage m = store.read(c.docId);
+            if (m != null) hits.add(new SearchHit(m, c.score));
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        final long docId;
+        final double score;
+
+        Candidate(long docId, double score) {
+            this.docId = docId;
+            this.score = score;
+        }
+
+        /** true se (score, docId) entraria no lugar deste candidato. */
+        boolean isBelow(double otherScore, long otherDocId) {
+            return score < otherScore || (score == otherScore && docId < otherDocId);
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            int c = Double.compare(score, o.score);
+            return c != 0 ? c : Long.compare(docId, o.docId);
+        }
+    }
+
+    /** null se não houver filtro de remetente. */
+    private static boolean[] senderFilter(PostingSource s, String sender) {
+        if (sender == null || sender.isEmpty()) return null;
+        boolean[] ok = new boolean[s.senderCount()];
+        for (int i = 0; i < ok.length; i++) {
+            ok[i] = sender.equals(s.senderId(i)) || sender.equalsIgnoreCase(s.senderName(i));
+        }
+        return ok;
+    }
+
+    long indexedDocs() { return indexedDocs; }
+    long merges() { return merges; }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /** Para a indexação e grava o que estiver no buffer. Chamar antes de fechar o store. */
+    void close() {
+        closed = true;
+        Thread t = indexer;
+        if (t == null) return;
+        LockSupport.unpark(t);
+        try {
+            t.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (IOException ignored) {}
+    }
+}
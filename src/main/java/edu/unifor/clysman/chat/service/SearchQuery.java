@@ -0,0 +1,40 @@
+package edu.unifor.clysman.chat.service;
+
+/** Busca no histórico: termos (ordenados por relevância) e filtros opcionais. */
+public class SearchQuery {
+
+    private final String text;
+    private String sender;
+    private long from = Long.MIN_VALUE;
+    private long until = Long.MAX_VALUE;
+    private int limit = 50;
+
+    public SearchQuery(String text) {
+        this.text = text;
+    }
+
+    public String getText() { return text; }
+    public String getSender() { return sender; }
+    public long getFrom() { return from; }
+    public long getUntil() { return until; }
+    public int getLimit() { return limit; }
+
+    /** Só mensagens deste remetente (id do peer ou nome, sem diferenciar maiúsculas). */
+    public SearchQuery setSender(String sender) {
+        this.sender = sender;
+        return this;
+    }
+
+    /** Só mensagens gravadas em [from, until] (epoch ms). */
+    public SearchQuery setTimeRange(long from, long until) {
+        this.from = from;
+        this.until = until;
+        return this;
+    }
+
+    public SearchQuery setLimit(int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit deve ser >= 1");
+        this.limit = limit;
+        return this;
+    }
+}
@@ -0,0 +1,512 @@
+package edu.unifor.clysman.chat.service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Arquivo de tamanho fixo com registros do histórico, lido por um
+ * {@link MappedByteBuffer}. Cada registro é {@code int tamanho | int crc32 |
+ * corpo}; um tamanho 0 marca o fim. Em memória o segmento mantém um índice
+ * esparso de tempo (um ponto a cada {@link #INDEX_INTERVAL} bytes) e as
+ * posições de cada remetente; ao ser selado esses índices vão para um arquivo
+ * {@code .idx} ao lado, para a próxima abertura não precisar varrer o segmento.
+ *
+ * Não é thread-safe: o {@link MessageStore} serializa o acesso.
+ */
+final class Segment {
+
+    static final String SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x50325053;       // "P2PS"
+    private static final int INDEX_MAGIC = 0x50325049; // "P2PI"
+    private static final int INDEX_VERSION = 1;
+    static final int HEADER = 8;
+    static final int RECORD_HEADER = 8;
+    static final int INDEX_INTERVAL = 4096;
+
+    private final long number;
+    private final Path file;
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+
+    private int end = HEADER;   // fim do que já está no arquivo
+    private ByteBuffer pending; // registros ainda não gravados (só no segmento ativo)
+    private int count;
+    private long minTs = Long.MAX_VALUE;
+    private long maxTs = Long.MIN_VALUE;
+    private boolean sealed;
+
+    // índice esparso: storedAt, posição e ordinal do primeiro registro após cada intervalo
+    private long[] idxTs = new long[16];
+    private int[] idxPos = new int[16];
+    private int[] idxOrd = new int[16];
+    private int idxLen;
+    private int nextIndexAt = HEADER;
+
+    private final Map<String, IntList> bySender = new HashMap<>();
+
+    private Segment(long number, Path file, FileChannel channel, int capacity) throws IOException {
+        this.number = number;
+        this.file = file;
+        this.channel = channel;
+        this.capacity = capacity;
+        this.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+    }
+
+    static Path fileFor(Path dir, long number) {
+        return dir.resolve(String.format("%020d%s", number, SUFFIX));
+    }
+
+    /** Cria um segmento vazio, já com o tamanho final, pronto para escrita. */
+    static Segment create(Path dir, long number, int capacity, int bufferBytes) throws IOException {
+        Path file = fileFor(dir, number);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(capacity);
+            raf.writeInt(MAGIC);
+            raf.writeInt(capacity);
+        }
+        Segment s = new Segment(number, file, FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE), capacity);
+        s.pending = ByteBuffer.allocate(bufferBytes);
+        return s;
+    }
+
+    /**
+     * Abre um segmento existente. Usa o {@code .idx} se houver; senão varre os
+     * registros (descartando um final corrompido por queda) e, se
+     * {@code active} for false, sela e grava o índice.
+     * Retorna null se o arquivo não for um segmento.
+     */
+    static Segment open(Path file, long number, boolean active, int bufferBytes) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = ch.size();
+        if (size < HEADER || size > Integer.MAX_VALUE) {
+            ch.close();
+            return null;
+        }
+        Segment s = new Segment(number, file, ch, (int) size);
+        if (s.map.getInt(0) != MAGIC) {
+            s.close();
+            return null;
+        }
+        if (!s.loadIndex()) {
+            s.scan();
+            if (!active) s.seal();
+        }
+        if (!s.sealed) s.pending = ByteBuffer.allocate(bufferBytes);
+        return s;
+    }
+
+    private void scan() {
+        int pos = HEADER;
+        CRC32 crc = new CRC32();
+        ByteBuffer view = map.duplicate();
+        while (pos + RECORD_HEADER <= capacity) {
+            int len = view.getInt(pos);
+            if (len <= 0 || pos + RECORD_HEADER + len > capacity) break;
+            crc.reset();
+            ByteBuffer body = view.duplicate();
+            body.limit(pos + RECORD_HEADER + len).position(pos + RECORD_HEADER);
+            crc.update(body);
+            if ((int) crc.getValue() != view.getInt(pos + 4)) break;
+            StoredMessage m = decode(view, pos);
+            indexRecord(pos, m);
+            pos += RECORD_HEADER + len;
+        }
+        end = pos;
+    }
+
+    boolean fits(int recordBytes) {
+        return !sealed && writePos() + recordBytes <= capacity;
+    }
+
+    private int writePos() {
+        return end + (pending != null ? pending.position() : 0);
+    }
+
+    /**
+     * Acrescenta um registro já codificado. Retorna true se para isso foi
+     * preciso gravar no arquivo o que estava pendente.
+     */
+    boolean append(byte[] record, int len, StoredMessage m) throws IOException {
+        boolean wrote = false;
+        if (len > pending.remaining()) {
+            writePending();
+            wrote = true;
+        }
+        int pos = writePos();
+        if (len > pending.capacity()) {
+            ByteBuffer big = ByteBuffer.wrap(record, 0, len);
+            while (big.hasRemaining()) end += channel.write(big, end);
+        } else {
+            pending.put(record, 0, len);
+        }
+        indexRecord(pos, m);
+        return wrote;
+    }
+
+    private void indexRecord(int pos, StoredMessage m) {
+        if (pos >= nextIndexAt) {
+            if (idxLen == idxTs.length) {
+                idxTs = Arrays.copyOf(idxTs, idxLen * 2);
+                idxPos = Arrays.copyOf(idxPos, idxLen * 2);
+                idxOrd = Arrays.copyOf(idxOrd, idxLen * 2);
+            }
+            idxTs[idxLen] = m.getStoredAt();
+            idxPos[idxLen] = pos;
+            idxOrd[idxLen] = count;
+            idxLen++;
+            nextIndexAt = pos + INDEX_INTERVAL;
+        }
+        if (m.getKind() == StoredMessage.Kind.CHAT && m.getFromId() != null) {
+            bySender.computeIfAbsent(m.getFromId(), k -> new IntList()).add(pos);
+        }
+        if (m.getStoredAt() < minTs) minTs = m.getStoredAt();
+        if (m.getStoredAt() > maxTs) maxTs = m.getStoredAt();
+        count++;
+    }
+
+    /** Passa o pendente para o arquivo; a partir daí fica visível pelo mapeamento. */
+    void writePending() throws IOException {
+        if (pending == null || pending.position() == 0) return;
+        pending.flip();
+        while (pending.hasRemaining()) end += channel.write(pending, end);
+        pending.clear();
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /** Grava o pendente, força para o disco e persiste o índice; depois disso o segmento é só leitura. */
+    void seal() throws IOException {
+        writePending();
+        channel.force(false);
+        pending = null;
+        sealed = true;
+        writeIndex();
+    }
+
+    // ---- leitura ----
+
+    /** Os últimos {@code n} registros, do mais antigo para o mais novo. */
+    void tail(int n, Deque<StoredMessage> out) {
+        if (n <= 0 || count == 0) return;
+        int start = HEADER;
+        // ponto do índice mais adiante que ainda deixa pelo menos n registros para frente
+        for (int i = idxLen - 1; i >= 0; i--) {
+            if (count - idxOrd[i] >= n) {
+                start = idxPos[i];
+                break;
+            }
+        }
+        ArrayDeque<StoredMessage> window = new ArrayDeque<>(n);
+        ByteBuffer view = map.duplicate();
+        for (int pos = start; pos < end; pos += RECORD_HEADER + view.getInt(pos)) {
+            if (window.size() == n) window.pollFirst();
+            window.addLast(decode(view, pos));
+        }
+        while (!window.isEmpty()) out.addFirst(window.pollLast());
+    }
+
+    /** Os últimos {@code n} registros com storedAt < {@code until}, do mais antigo para o mais novo. */
+    void tailBefore(long until, int n, Deque<StoredMessage> out) {
+        if (n <= 0 || count == 0 || minTs >= until) return;
+        if (maxTs < until) {
+            tail(n, out);
+            return;
+        }
+        // último ponto do índice com storedAt < until; os registros entre dois pontos anteriores a ele contam
+        int last = -1, lo = 0, hi = idxLen - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (idxTs[mid] < until) {
+                last = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        int start = HEADER;
+        for (int i = last; i >= 0; i--) {
+            if (idxOrd[last] - idxOrd[i] >= n) {
+                start = idxPos[i];
+                break;
+            }
+        }
+        ArrayDeque<StoredMessage> window = new ArrayDeque<>(n);
+        ByteBuffer view = map.duplicate();
+        for (int pos = start; pos < end; pos += RECORD_HEADER + view.getInt(pos)) {
+            if (view.getLong(pos + RECORD_HEADER + 1) >= until) break;
+            if (window.size() == n) window.pollFirst();
+            window.addLast(decode(view, pos));
+        }
+        while (!window.isEmpty()) out.addFirst(window.pollLast());
+    }
+
+    /** Registros com storedAt >= {@code since}, em ordem, até {@code limit}. */
+    void since(long since, int limit, List<StoredMessage> out) {
+        if (count == 0 || maxTs < since) return;
+        int start = HEADER;
+        int lo = 0, hi = idxLen - 1;
+        // último ponto do índice com storedAt < since (os anteriores são todos menores)
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (idxTs[mid] < since) {
+                start = idxPos[mid];
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        ByteBuffer view = map.duplicate();
+        for (int pos = start; pos < end && out.size() < limit; pos += RECORD_HEADER + view.getInt(pos)) {
+            if (view.getLong(pos + RECORD_HEADER + 1) < since) continue;
+            out.add(decode(view, pos));
+        }
+    }
+
+    /** Os {@code n} registros mais novos de {@code fromId}, do mais novo para o mais antigo. */
+    void fromSender(String fromId, int n, List<StoredMessage> out) {
+        IntList positions = bySender.get(fromId);
+        if (positions == null) return;
+        ByteBuffer view = map.duplicate();
+        for (int i = positions.size - 1; i >= 0 && out.size() < n; i--) {
+            int pos = positions.values[i];
+            if (pos < end) out.add(decode(view, pos));
+        }
+    }
+
+    /**
+     * CHAT de {@code fromId} com seq em ({@code afterSeq}, {@code beforeSeq}),
+     * do mais novo para o mais antigo. Os registros estão em ordem de entrega,
+     * não de seq (um SYNC chega atrasado), então todos são conferidos; o seq é
+     * lido direto do registro e só os do intervalo são decodificados.
+     */
+    void senderRange(String fromId, long afterSeq, long beforeSeq, List<StoredMessage> out) {
+        IntList positions = bySender.get(fromId);
+        if (positions == null) return;
+        ByteBuffer view = map.duplicate();
+        for (int i = positions.size - 1; i >= 0; i--) {
+            int pos = positions.values[i];
+            if (pos >= end) continue;
+            long seq = view.getLong(pos + RECORD_HEADER + 17);
+            if (seq > afterSeq && seq < beforeSeq) out.add(decode(view, pos));
+        }
+    }
+
+    /** Registro em {@code pos} (uma posição devolvida pelo próprio segmento), ou null se ainda não gravado. */
+    StoredMessage read(int pos) {
+        if (pos < HEADER || pos >= end) return null;
+        return decode(map.duplicate(), pos);
+    }
+
+    /** Entrega até {@code max} registros a partir de {@code pos}; retorna a posição seguinte ao último. */
+    int scan(int pos, int max, RecordConsumer action) {
+        ByteBuffer view = map.duplicate();
+        for (int n = 0; pos < end && n < max; n++) {
+            action.accept(pos, decode(view, pos));
+            pos += RECORD_HEADER + view.getInt(pos);
+        }
+        return pos;
+    }
+
+    interface RecordConsumer {
+        void accept(int pos, StoredMessage m);
+    }
+
+    // ---- formato ----
+
+    /** Codifica {@code m} (cabeçalho incluso) em {@code scratch}; retorna o tamanho. */
+    static int encode(StoredMessage m, RecordBuffer scratch) {
+        scratch.reset();
+        DataOutputStream out = new DataOutputStream(scratch);
+        try {
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(m.getKind().ordinal());
+            out.writeLong(m.getStoredAt());
+            out.writeLong(m.getTimestamp());
+            out.writeLong(m.getSeq());
+            writeString(out, m.getId());
+            writeString(out, m.getFromId());
+            writeString(out, m.getFromName());
+            writeString(out, m.getText());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return scratch.size();
+    }
+
+    /** Preenche tamanho e crc no cabeçalho de um registro codificado por {@link #encode}. */
+    static void finish(byte[] record, int len) {
+        int bodyLen = len - RECORD_HEADER;
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER, bodyLen);
+        putInt(record, 0, bodyLen);
+        putInt(record, 4, (int) crc.getValue());
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static StoredMessage decode(ByteBuffer view, int pos) {
+        int p = pos + RECORD_HEADER;
+        StoredMessage.Kind kind = StoredMessage.Kind.values()[view.get(p)];
+        long storedAt = view.getLong(p + 1);
+        long timestamp = view.getLong(p + 9);
+        long seq = view.getLong(p + 17);
+        int[] cursor = {p + 25};
+        String id = readString(view, cursor);
+        String fromId = readString(view, cursor);
+        String fromName = readString(view, cursor);
+        String text = readString(view, cursor);
+        return new StoredMessage(kind, storedAt, timestamp, seq, id, fromId, fromName, text);
+    }
+
+    private static String readString(ByteBuffer view, int[] cursor) {
+        int len = view.getInt(cursor[0]);
+        cursor[0] += 4;
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        ByteBuffer src = view.duplicate();
+        src.position(cursor[0]);
+        src.get(b);
+        cursor[0] += len;
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // ---- arquivo de índice ----
+
+    private Path indexFile() {
+        return file.resolveSibling(file.getFileName().toString().replace(SUFFIX, INDEX_SUFFIX));
+    }
+
+    private void writeIndex() throws IOException {
+        Path tmp = indexFile().resolveSibling(indexFile().getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(end);
+            out.writeInt(count);
+            out.writeLong(minTs);
+            out.writeLong(maxTs);
+            out.writeInt(idxLen);
+            for (int i = 0; i < idxLen; i++) {
+                out.writeLong(idxTs[i]);
+                out.writeInt(idxPos[i]);
+                out.writeInt(idxOrd[i]);
+            }
+            out.writeInt(bySender.size());
+            for (Map.Entry<String, IntList> e : bySender.entrySet()) {
+                out.writeUTF(e.getKey());
+                IntList l = e.getValue();
+                out.writeInt(l.size);
+                for (int i = 0; i < l.size; i++) out.writeInt(l.values[i]);
+            }
+        }
+        Files.move(tmp, indexFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Retorna false se o índice não existir ou não bater com o segmento. */
+    private boolean loadIndex() {
+        Path idx = indexFile();
+        if (!Files.exists(idx)) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(idx)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) return false;
+            int e = in.readInt();
+            if (e < HEADER || e > capacity) return false;
+            end = e;
+            count = in.readInt();
+            minTs = in.readLong();
+            maxTs = in.readLong();
+            idxLen = in.readInt();
+            idxTs = new long[Math.max(16, idxLen)];
+            idxPos = new int[idxTs.length];
+            idxOrd = new int[idxTs.length];
+            for (int i = 0; i < idxLen; i++) {
+                idxTs[i] = in.readLong();
+                idxPos[i] = in.readInt();
+                idxOrd[i] = in.readInt();
+            }
+            int senders = in.readInt();
+            for (int s = 0; s < senders; s++) {
+                String id = in.readUTF();
+                int n = in.readInt();
+                IntList l = new IntList();
+                for (int i = 0; i < n; i++) l.add(in.readInt());
+                bySender.put(id, l);
+            }
+            sealed = true;
+            return true;
+        } catch (IOException e) {
+            bySender.clear();
+            count = 0;
+            idxLen = 0;
+            minTs = Long.MAX_VALUE;
+            maxTs = Long.MIN_VALUE;
+            return false;
+        }
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /** Fecha e apaga o segmento e seu índice. */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(indexFile());
+        Files.deleteIfExists(file);
+    }
+
+    long number() { return number; }
+    int end() { return end; }
+    int count() { return count; }
+    int capacity() { return capacity; }
+    long minTs() { return minTs; }
+    long maxTs() { return maxTs; }
+    boolean isSealed() { return sealed; }
+
+    /** Buffer de codificação reaproveitado entre registros. */
+    static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer() {
+            super(256);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[8];
+        int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package edu.unifor.clysman.chat.service;
+
+import edu.unifor.clysman.chat.model.Message;
+
+/** Registro do histórico: uma mensagem de chat ou uma linha do sistema. */
+public final class StoredMessage {
+
+    public enum Kind { CHAT, SYSTEM }
+
+    private final Kind kind;
+    private final long storedAt;
+    private final long timestamp;
+    private final long seq;
+    private final String id;
+    private final String fromId;
+    private final String fromName;
+    private final String text;
+
+    StoredMessage(Kind kind, long storedAt, long timestamp, long seq,
+                  String id, String fromId, String fromName, String text) {
+        this.kind = kind;
+        this.storedAt = storedAt;
+        this.timestamp = timestamp;
+        this.seq = seq;
+        this.id = id;
+        this.fromId = fromId;
+        this.fromName = fromName;
+        this.text = text;
+    }
+
+    static StoredMessage chat(Message m, long storedAt) {
+        return new StoredMessage(Kind.CHAT, storedAt, m.getTimestamp(), m.getSeq(),
+                m.getId(), m.getFromId(), m.getFromName(), m.getText());
+    }
+
+    static StoredMessage system(String text, long storedAt) {
+        return new StoredMessage(Kind.SYSTEM, storedAt, storedAt, 0, null, null, null, text);
+    }
+
+    public Kind getKind() { return kind; }
+    /** Instante local de gravação; nunca decresce dentro de um histórico. */
+    public long getStoredAt() { return storedAt; }
+    /** Instante informado pelo remetente. */
+    public long getTimestamp() { return timestamp; }
+    public long getSeq() { return seq; }
+    public String getId() { return id; }
+    public String getFromId() { return fromId; }
+    public String getFromName() { return fromName; }
+    public String getText() { return text; }
+
+    /** Reconstrói o CHAT original; null para linhas do sistema. */
+    public Message toMessage() {
+        if (kind != Kind.CHAT) return null;
+        Message m = new Message();
+        m.setType("CHAT");
+        m.setId(id);
+        m.setFromId(fromId);
+        m.setFromName(fromName);
+        m.setText(text);
+        m.setTimestamp(timestamp);
+        m.setSeq(seq);
+        return m;
+    }
+}
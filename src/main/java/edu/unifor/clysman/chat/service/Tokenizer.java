@@ -0,0 +1,33 @@
+package edu.unifor.clysman.chat.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/** Quebra texto em termos: minúsculas, sem acentos, separando em tudo que não é letra ou dígito. */
+final class Tokenizer {
+
+    static final int MAX_TERM_LENGTH = 64;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private Tokenizer() {}
+
+    static List<String> tokenize(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+        String norm = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= norm.length(); i++) {
+            boolean word = i < norm.length() && Character.isLetterOrDigit(norm.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) out.add(norm.substring(start, i));
+                start = -1;
+            }
+        }
+        return out;
+    }
+}
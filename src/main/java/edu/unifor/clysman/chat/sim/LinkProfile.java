@@ -0,0 +1,64 @@
+package edu.unifor.clysman.chat.sim;
+
+/**
+ * Características de um enlace simulado, aplicadas a cada sentido de cada
+ * conexão. Perdas seguem o modelo do TCP: o pedaço perdido é retransmitido
+ * depois de {@code retransmitMillis} e segura os que vêm atrás dele.
+ */
+public class LinkProfile {
+
+    private double latencyMillis = 5;
+    private double jitterMillis = 1;
+    private long bandwidthBytesPerSecond = 0;
+    private double lossRate = 0;
+    private double retransmitMillis = 200;
+    private int sendBufferBytes = 64 * 1024;
+
+    public double getLatencyMillis() { return latencyMillis; }
+    public double getJitterMillis() { return jitterMillis; }
+    public long getBandwidthBytesPerSecond() { return bandwidthBytesPerSecond; }
+    public double getLossRate() { return lossRate; }
+    public double getRetransmitMillis() { return retransmitMillis; }
+    public int getSendBufferBytes() { return sendBufferBytes; }
+
+    /** Atraso de propagação num sentido. */
+    public LinkProfile setLatencyMillis(double latencyMillis) {
+        if (latencyMillis < 0) throw new IllegalArgumentException("latencyMillis deve ser >= 0");
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /** Variação uniforme de até ± este valor sobre a latência (a ordem de entrega é mantida). */
+    public LinkProfile setJitterMillis(double jitterMillis) {
+        if (jitterMillis < 0) throw new IllegalArgumentException("jitterMillis deve ser >= 0");
+        this.jitterMillis = jitterMillis;
+        return this;
+    }
+
+    /** Taxa de transmissão por sentido; 0 = ilimitada. */
+    public LinkProfile setBandwidthBytesPerSecond(long bandwidthBytesPerSecond) {
+        if (bandwidthBytesPerSecond < 0) throw new IllegalArgumentException("bandwidthBytesPerSecond deve ser >= 0");
+        this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+        return this;
+    }
+
+    /** Probabilidade de cada escrita ser perdida (e retransmitida). */
+    public LinkProfile setLossRate(double lossRate) {
+        if (lossRate < 0 || lossRate >= 1) throw new IllegalArgumentException("lossRate deve estar em [0, 1)");
+        this.lossRate = lossRate;
+        return this;
+    }
+
+    public LinkProfile setRetransmitMillis(double retransmitMillis) {
+        if (retransmitMillis <= 0) throw new IllegalArgumentException("retransmitMillis deve ser > 0");
+        this.retransmitMillis = retransmitMillis;
+        return this;
+    }
+
+    /** Bytes ainda não transmitidos a partir dos quais o canal deixa de aceitar escritas (só com banda limitada). */
+    public LinkProfile setSendBufferBytes(int sendBufferBytes) {
+        if (sendBufferBytes < 1) throw new IllegalArgumentException("sendBufferBytes deve ser >= 1");
+        this.sendBufferBytes = sendBufferBytes;
+        return this;
+    }
+}
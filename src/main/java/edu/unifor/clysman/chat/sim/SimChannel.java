@@ -0,0 +1,164 @@
+package edu.unifor.clysman.chat.sim;
+
+import edu.unifor.clysman.chat.net.TransportChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Uma ponta de uma conexão simulada. Cada escrita ocupa o enlace pelo tempo
+ * de transmissão (com banda limitada) e chega ao outro lado depois da
+ * latência; a ordem é sempre preservada, como no TCP.
+ */
+final class SimChannel implements TransportChannel {
+
+    /** Uma escrita em trânsito; {@code frames == null} é o FIN. */
+    static final class Chunk {
+        final ByteBuffer[] frames;
+        final long bytes;
+
+        Chunk(ByteBuffer[] frames, long bytes) {
+            this.frames = frames;
+            this.bytes = bytes;
+        }
+    }
+
+    private final SimNetwork network;
+    final SimTransport owner;
+    private final String remoteHost;
+    private final int remotePort;
+    SimChannel peer;
+
+    private Receiver receiver;
+    private boolean closed;
+    private boolean readPaused;
+    private final ArrayDeque<Chunk> pending = new ArrayDeque<>(); // chegou, mas ainda não foi lido
+    private boolean drainScheduled;
+
+    // sentido desta ponta para o par
+    private long txFree;       // quando o enlace termina de transmitir o que já foi escrito
+    long lastArrival;          // chegada da última escrita: as próximas não podem passar à frente
+    private long unsent;       // bytes escritos e ainda não transmitidos
+    private boolean writeBlocked;
+    final ArrayDeque<Chunk> held = new ArrayDeque<>(); // retidos por partição, em ordem
+
+    SimChannel(SimNetwork network, SimTransport owner, String remoteHost, int remotePort) {
+        this.network = network;
+        this.owner = owner;
+        this.remoteHost = remoteHost;
+        this.remotePort = remotePort;
+    }
+
+    @Override
+    public void open(Receiver receiver) {
+        this.receiver = receiver;
+        scheduleDrain();
+    }
+
+    @Override
+    public boolean isWritable() {
+        LinkProfile link = network.link();
+        if (link.getBandwidthBytesPerSecond() == 0 || unsent < link.getSendBufferBytes()) return true;
+        writeBlocked = true;
+        return false;
+    }
+
+    @Override
+    public void write(ByteBuffer[] frames, int offset, int count) throws IOException {
+        if (closed) throw new IOException("canal fechado");
+        ByteBuffer[] copy = new ByteBuffer[count];
+        long bytes = 0;
+        for (int i = 0; i < count; i++) {
+            copy[i] = frames[offset + i].duplicate();
+            bytes += copy[i].remaining();
+        }
+        send(new Chunk(copy, bytes));
+    }
+
+    private void send(Chunk chunk) {
+        LinkProfile link = network.link();
+        long now = network.nowNanos();
+        long txEnd = Math.max(now, txFree);
+        if (link.getBandwidthBytesPerSecond() > 0) {
+            txEnd += chunk.bytes * 1_000_000_000L / link.getBandwidthBytesPerSecond();
+            unsent += chunk.bytes;
+            network.schedule(owner.simExecutor(), txEnd - now, 0, () -> transmitted(chunk.bytes));
+        }
+        txFree = txEnd;
+        long arrival = txEnd + network.sampleLatencyNanos();
+        while (link.getLossRate() > 0 && network.random().nextDouble() < link.getLossRate()) {
+            arrival += (long) (link.getRetransmitMillis() * 1_000_000);
+            network.countRetransmit();
+        }
+        arrival = Math.max(arrival, lastArrival);
+        lastArrival = arrival;
+        SimChannel to = peer;
+        network.schedule(to.owner.simExecutor(), arrival - now, 0, () -> network.arrive(this, chunk));
+        network.countSent(chunk.bytes);
+    }
+
+    private void transmitted(long bytes) {
+        unsent -= bytes;
+        if (writeBlocked && unsent < network.link().getSendBufferBytes()) {
+            writeBlocked = false;
+            if (receiver != null && !closed) receiver.onWritable();
+        }
+    }
+
+    /** Chegada de uma escrita do par (já passou pela partição). */
+    void receive(Chunk chunk) {
+        if (closed) return;
+        pending.add(chunk);
+        if (pending.size() == 1) drain();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled || pending.isEmpty()) return;
+        drainScheduled = true;
+        network.schedule(owner.simExecutor(), 0, 0, () -> {
+            drainScheduled = false;
+            drain();
+        });
+    }
+
+    private void drain() {
+        while (receiver != null && !readPaused && !pending.isEmpty()) {
+            Chunk c = pending.poll();
+            if (c.frames == null) {
+                boolean wasOpen = !closed;
+                closed = true;
+                pending.clear();
+                if (wasOpen) receiver.onClosed();
+                return;
+            }
+            if (closed) continue;
+            for (ByteBuffer f : c.frames) receiver.onData(f.duplicate());
+        }
+    }
+
+    @Override
+    public void setReadPaused(boolean paused) {
+        readPaused = paused;
+        // retoma num evento próprio: quem chamou pode estar no meio de uma escrita
+        if (!paused) scheduleDrain();
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        pending.clear();
+        send(new Chunk(null, 0));
+    }
+
+    @Override
+    public String remoteHost() {
+        return remoteHost;
+    }
+
+    @Override
+    public int remotePort() {
+        return remotePort;
+    }
+}
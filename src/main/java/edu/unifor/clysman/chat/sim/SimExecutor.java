@@ -0,0 +1,132 @@
+package edu.unifor.clysman.chat.sim;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Executor e agendador de um nó simulado. Nada roda em outra thread: cada
+ * tarefa vira um evento no relógio virtual da {@link SimNetwork}. Depois de
+ * encerrado, os eventos pendentes do nó são ignorados.
+ */
+final class SimExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private final SimNetwork network;
+    private boolean shutdown;
+
+    SimExecutor(SimNetwork network) {
+        this.network = network;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) throw new RejectedExecutionException("nó simulado encerrado");
+        network.schedule(this, 0, 0, command);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        if (shutdown) throw new RejectedExecutionException("nó simulado encerrado");
+        return network.schedule(this, unit.toNanos(delay), 0, command);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        if (shutdown) throw new RejectedExecutionException("nó simulado encerrado");
+        FutureTask<V> task = new FutureTask<>(callable);
+        return new CallableFuture<>(network.schedule(this, unit.toNanos(delay), 0, task), task);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        // no relógio virtual a tarefa não leva tempo: taxa fixa e atraso fixo coincidem
+        return scheduleWithFixedDelay(command, initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (shutdown) throw new RejectedExecutionException("nó simulado encerrado");
+        if (delay <= 0) throw new IllegalArgumentException("delay deve ser > 0");
+        return network.schedule(this, unit.toNanos(initialDelay), unit.toNanos(delay), command);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return shutdown;
+    }
+
+    /** Futuro de um {@link Callable}: o prazo vem do evento, o valor (ou a exceção) do {@link FutureTask}. */
+    private static final class CallableFuture<V> implements ScheduledFuture<V> {
+
+        private final SimTask event;
+        private final FutureTask<V> task;
+
+        CallableFuture(SimTask event, FutureTask<V> task) {
+            this.event = event;
+            this.task = task;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return event.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return event.compareTo(o);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            event.cancel(mayInterruptIfRunning);
+            return task.cancel(false);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return task.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            // o evento também termina quando o nó encerra antes de a tarefa rodar
+            return task.isDone() || event.isDone();
+        }
+
+        /** Como em {@link SimTask#get()}: não há outra thread para esperar. */
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            if (!task.isDone()) {
+                if (event.isDone()) throw new CancellationException("nó simulado encerrado antes da tarefa");
+                throw new IllegalStateException("tarefa simulada ainda não executou; avance o relógio");
+            }
+            return task.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException {
+            return get();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package edu.unifor.clysman.chat.sim;
+
+import edu.unifor.clysman.chat.net.NodeConfig;
+import edu.unifor.clysman.chat.net.PeerNode;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Rede simulada em memória para rodar milhares de {@link PeerNode}s numa só
+ * thread. Tudo (entregas, timers, tarefas de I/O dos nós) é um evento num
+ * relógio virtual, processado em ordem de tempo e, no empate, de criação.
+ * Com a mesma semente e o mesmo roteiro, duas execuções produzem exatamente
+ * a mesma sequência de eventos.
+ *
+ * Não é thread-safe: crie os nós, chame {@link #connect}, {@link #at} e
+ * {@link #runFor} sempre da mesma thread.
+ *
+ * <pre>
+ * SimNetwork net = new SimNetwork(42).setLink(new LinkProfile().setLatencyMillis(20));
+ * PeerNode a = net.newNode("a", new NodeConfig()), b = net.newNode("b", new NodeConfig());
+ * a.start(); b.start();
+ * net.connect(a, b);
+ * net.runFor(1000);
+ * </pre>
+ */
+public final class SimNetwork {
+
+    private static final int PORT = 5000;
+
+    private final Random random;
+    private final Random ids;
+    private final PriorityQueue<SimTask> queue = new PriorityQueue<>();
+    private long now;
+    private long nextSeq;
+    private LinkProfile link = new LinkProfile();
+
+    private final Map<String, SimTransport> listeners = new HashMap<>();
+    private final Map<PeerNode, SimTransport> transports = new IdentityHashMap<>();
+    private int nextHost = 1;
+    private int nextEphemeral = 40_000;
+
+    private final Map<String, Integer> partitionOf = new HashMap<>(); // host -> grupo; ausente = grupo 0
+    private final Set<SimChannel> holding = new LinkedHashSet<>();
+
+    private long events;
+    private long chunksSent;
+    private long bytesSent;
+    private long retransmits;
+    private long heldChunks;
+    private long refusedConnects;
+    private long taskFailures;
+
+    public SimNetwork(long seed) {
+        this.random = new Random(seed);
+        // ids numa sequência própria: mudar o enlace não muda os ids
+        this.ids = new Random(seed ^ 0x5DEECE66DL);
+    }
+
+    /** Perfil aplicado a todos os enlaces (inclusive os já abertos, a partir da próxima escrita). */
+    public SimNetwork setLink(LinkProfile link) {
+        this.link = Objects.requireNonNull(link);
+        return this;
+    }
+
+    public LinkProfile link() {
+        return link;
+    }
+
+    /**
+     * Cria um nó com endereço próprio na rede. Descoberta multicast, JMX e o
+     * endpoint de métricas são desligados em {@code config}: não fazem sentido aqui.
+     * Os eventos do nó ficam síncronos, na thread da simulação, para manter o determinismo.
+     */
+    public PeerNode newNode(String name, NodeConfig config) {
+        int h = nextHost++;
+        SimTransport t = new SimTransport(this, "10." + ((h >>> 16) & 0xFF) + "." + ((h >>> 8) & 0xFF) + "." + (h & 0xFF));
+        PeerNode node = new PeerNode(name, PORT, config.setDiscovery(false).setJmx(false).setMetricsPort(-1).setAsyncEvents(false), t);
+        transports.put(node, t);
+        return node;
+    }
+
+    public String hostOf(PeerNode node) {
+        return transport(node).host;
+    }
+
+    public int portOf(PeerNode node) {
+        return transport(node).port;
+    }
+
+    /** {@code from} disca para {@code to} (como {@code connectAsync}); conclui ao avançar o relógio. */
+    public void connect(PeerNode from, PeerNode to) {
+        from.connectAsync(hostOf(to), portOf(to));
+    }
+
+    private SimTransport transport(PeerNode node) {
+        SimTransport t = transports.get(node);
+        if (t == null) throw new IllegalArgumentException("nó não pertence a esta rede");
+        return t;
+    }
+
+    // ---- relógio ----
+
+    public long nowMillis() {
+        return now / 1_000_000;
+    }
+
+    /** Tempo virtual desde a criação da rede. */
+    public long nowNanos() {
+        return now;
+    }
+
+    /** Agenda uma ação do roteiro para daqui a {@code delayMillis} de tempo virtual. */
+    public void at(double delayMillis, Runnable action) {
+        schedule(null, (long) (delayMillis * 1_000_000), 0, action);
+    }
+
+    /** Processa os eventos dos próximos {@code millis} de tempo virtual. */
+    public void runFor(double millis) {
+        long end = now + (long) (millis * 1_000_000);
+        SimTask t;
+        while ((t = queue.peek()) != null && t.at <= end) {
+            queue.poll();
+            now = t.at;
+            events++;
+            t.fire();
+        }
+        now = Math.max(now, end);
+    }
+
+    /**
+     * Avança em passos de {@code stepMillis} até {@code done} ser verdade ou
+     * passar {@code maxMillis}; retorna se a condição foi atingida.
+     */
+    public boolean runUntil(BooleanSupplier done, double stepMillis, double maxMillis) {
+        double elapsed = 0;
+        while (!done.getAsBoolean()) {
+            if (elapsed >= maxMillis) return false;
+            runFor(stepMillis);
+            elapsed += stepMillis;
+        }
+        return true;
+    }
+
+    SimTask schedule(SimExecutor owner, long delayNanos, long periodNanos, Runnable action) {
+        SimTask t = new SimTask(this, owner, action, now + Math.max(0, delayNanos), periodNanos);
+        enqueue(t);
+        return t;
+    }
+
+    void enqueue(SimTask t) {
+        t.seq = nextSeq++;
+        queue.add(t);
+    }
+
+    void taskFailed(RuntimeException e) {
+        if (taskFailures++ < 10) {
+            System.err.println("simulação: tarefa falhou em t=" + nowMillis() + "ms: " + e);
+        }
+    }
+
+    // ---- endereços e conexões ----
+
+    int bind(SimTransport t, int port) throws IOException {
+        String key = t.host + ":" + port;
+        if (listeners.containsKey(key)) throw new IOException("endereço em uso: " + key);
+        listeners.put(key, t);
+        return port;
+    }
+
+    void unbind(SimTransport t) {
+        listeners.remove(t.host + ":" + t.port, t);
+    }
+
+    SimChannel connect(SimTransport from, String host, int port) throws IOException {
+        SimTransport target = listeners.get(host + ":" + port);
+        if (target == null) {
+            refusedConnects++;
+            throw new ConnectException("Conexão recusada: " + host + ":" + port);
+        }
+        if (partitioned(from.host, host)) {
+            refusedConnects++;
+            throw new NoRouteToHostException("Sem rota para " + host + " (partição)");
+        }
+        SimChannel local = new SimChannel(this, from, host, port);
+        SimChannel remote = new SimChannel(this, target, from.host, nextEphemeral++);
+        local.peer = remote;
+        remote.peer = local;
+        // o aceite chega antes de qualquer dado escrito pelo lado que discou
+        long acceptAt = now + sampleLatencyNanos();
+        local.lastArrival = acceptAt;
+        schedule(target.simExecutor(), acceptAt - now, 0, () -> {
+            if (target.acceptor != null && listeners.get(host + ":" + port) == target) target.acceptor.accept(remote);
+            else local.receive(new SimChannel.Chunk(null, 0));
+        });
+        return local;
+    }
+
+    /** Escrita de {@code from} chegando ao par; retida se houver partição entre os dois. */
+    void arrive(SimChannel from, SimChannel.Chunk chunk) {
+        if (!from.held.isEmpty() || partitioned(from.owner.host, from.peer.owner.host)) {
+            from.held.add(chunk);
+            holding.add(from);
+            heldChunks++;
+            return;
+        }
+        from.peer.receive(chunk);
+    }
+
+    // ---- partições ----
+
+    /**
+     * Divide a rede: cada coleção vira um grupo isolado dos demais, e quem
+     * não estiver em nenhuma fica no grupo restante. Conexões atravessando a
+     * partição não caem, mas nada passa (como um cabo cortado sob TCP) até
+     * {@link #heal()}; novas conexões entre grupos falham.
+     */
+    @SafeVarargs
+    public final void partition(Collection<PeerNode>... groups) {
+        partitionOf.clear();
+        for (int g = 0; g < groups.length; g++) {
+            for (PeerNode n : groups[g]) partitionOf.put(hostOf(n), g + 1);
+        }
+    }
+
+    /** Desfaz a partição; o que ficou retido é entregue, em ordem, após uma latência. */
+    public void heal() {
+        partitionOf.clear();
+        for (SimChannel ch : holding) {
+            schedule(ch.peer.owner.simExecutor(), sampleLatencyNanos(), 0, () -> {
+                while (!ch.held.isEmpty() && !partitioned(ch.owner.host, ch.peer.owner.host)) {
+                    ch.peer.receive(ch.held.poll());
+                }
+            });
+        }
+        holding.clear();
+    }
+
+    private boolean partitioned(String a, String b) {
+        if (partitionOf.isEmpty()) return false;
+        return !partitionOf.getOrDefault(a, 0).equals(partitionOf.getOrDefault(b, 0));
+    }
+
+    // ---- aleatoriedade e contadores ----
+
+    Random random() {
+        return random;
+    }
+
+    long sampleLatencyNanos() {
+        double ms = link.getLatencyMillis();
+        if (link.getJitterMillis() > 0) ms += (random.nextDouble() * 2 - 1) * link.getJitterMillis();
+        return (long) (Math.max(0, ms) * 1_000_000);
+    }
+
+    String newId() {
+        return new UUID(ids.nextLong(), ids.nextLong()).toString();
+    }
+
+    void countSent(long bytes) {
+        chunksSent++;
+        bytesSent += bytes;
+    }
+
+    void countRetransmit() {
+        retransmits++;
+    }
+
+    public SimStats getStats() {
+        return new SimStats(nowMillis(), events, queue.size(), chunksSent, bytesSent, retransmits,
+                heldChunks, refusedConnects, taskFailures);
+    }
+}
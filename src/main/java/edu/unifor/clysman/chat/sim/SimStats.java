@@ -0,0 +1,48 @@
+package edu.unifor.clysman.chat.sim;
+
+/** Contadores da rede simulada. */
+public class SimStats {
+
+    private final long virtualMillis;
+    private final long events;
+    private final int pendingEvents;
+    private final long writes;
+    private final long bytes;
+    private final long retransmits;
+    private final long heldByPartition;
+    private final long refusedConnects;
+    private final long taskFailures;
+
+    SimStats(long virtualMillis, long events, int pendingEvents, long writes, long bytes, long retransmits,
+             long heldByPartition, long refusedConnects, long taskFailures) {
+        this.virtualMillis = virtualMillis;
+        this.events = events;
+        this.pendingEvents = pendingEvents;
+        this.writes = writes;
+        this.bytes = bytes;
+        this.retransmits = retransmits;
+        this.heldByPartition = heldByPartition;
+        this.refusedConnects = refusedConnects;
+        this.taskFailures = taskFailures;
+    }
+
+    public long getVirtualMillis() { return virtualMillis; }
+    public long getEvents() { return events; }
+    public int getPendingEvents() { return pendingEvents; }
+    /** Escritas em lote nos canais (cada uma com um ou mais frames). */
+    public long getWrites() { return writes; }
+    public long getBytes() { return bytes; }
+    public long getRetransmits() { return retransmits; }
+    public long getHeldByPartition() { return heldByPartition; }
+    public long getRefusedConnects() { return refusedConnects; }
+    /** Exceções escapadas de tarefas dos nós; deveria ser zero. */
+    public long getTaskFailures() { return taskFailures; }
+
+    @Override
+    public String toString() {
+        return String.format("t=%d ms, %d eventos (%d pendentes), %d escritas/%d bytes, %d retransmissões, "
+                        + "%d retidas por partição, %d conexões recusadas, %d falhas",
+                virtualMillis, events, pendingEvents, writes, bytes, retransmits, heldByPartition,
+                refusedConnects, taskFailures);
+    }
+}
@@ -0,0 +1,89 @@
+package edu.unifor.clysman.chat.sim;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/** Evento na fila da simulação; também serve de futuro para os timers dos nós. */
+final class SimTask implements ScheduledFuture<Object> {
+
+    private final SimNetwork network;
+    private final SimExecutor owner; // null: evento da própria rede
+    private final Runnable action;
+    private final long periodNanos;  // > 0: repete com atraso fixo
+    long at;
+    long seq;
+    private boolean cancelled;
+    private boolean done;
+
+    SimTask(SimNetwork network, SimExecutor owner, Runnable action, long at, long periodNanos) {
+        this.network = network;
+        this.owner = owner;
+        this.action = action;
+        this.at = at;
+        this.periodNanos = periodNanos;
+    }
+
+    /** Roda a ação (se o dono ainda estiver de pé) e reagenda se for periódica. */
+    void fire() {
+        if (cancelled || (owner != null && owner.isShutdown())) {
+            done = true;
+            return;
+        }
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            network.taskFailed(e);
+        }
+        if (periodNanos > 0 && !cancelled && (owner == null || !owner.isShutdown())) {
+            at = network.nowNanos() + periodNanos;
+            network.enqueue(this);
+        } else {
+            done = true;
+        }
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(at - network.nowNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+        if (o instanceof SimTask) {
+            SimTask t = (SimTask) o;
+            int c = Long.compare(at, t.at);
+            return c != 0 ? c : Long.compare(seq, t.seq);
+        }
+        return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (done) return false;
+        cancelled = true;
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done || cancelled;
+    }
+
+    /** Não há outra thread para esperar: só responde depois que a tarefa rodou. */
+    @Override
+    public Object get() {
+        if (!isDone()) throw new IllegalStateException("tarefa simulada ainda não executou; avance o relógio");
+        return null;
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit) {
+        return get();
+    }
+}
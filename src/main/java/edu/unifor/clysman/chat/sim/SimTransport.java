@@ -0,0 +1,66 @@
+package edu.unifor.clysman.chat.sim;
+
+import edu.unifor.clysman.chat.net.Transport;
+import edu.unifor.clysman.chat.net.TransportChannel;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/** Transporte de um nó na {@link SimNetwork}: endereço próprio, relógio e ids da rede. */
+final class SimTransport implements Transport {
+
+    private final SimNetwork network;
+    final String host;
+    private final SimExecutor executor;
+    int port = -1;
+    Acceptor acceptor;
+
+    SimTransport(SimNetwork network, String host) {
+        this.network = network;
+        this.host = host;
+        this.executor = new SimExecutor(network);
+    }
+
+    SimExecutor simExecutor() {
+        return executor;
+    }
+
+    @Override
+    public int listen(int port, Acceptor acceptor) throws IOException {
+        this.acceptor = acceptor;
+        this.port = network.bind(this, port);
+        return this.port;
+    }
+
+    @Override
+    public TransportChannel connect(String host, int port) throws IOException {
+        return network.connect(this, host, port);
+    }
+
+    @Override
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    @Override
+    public ScheduledExecutorService scheduler() {
+        return executor;
+    }
+
+    @Override
+    public String newId() {
+        return network.newId();
+    }
+
+    /** Relógio virtual: a "época" é a criação da rede. */
+    @Override
+    public long currentTimeMicros() {
+        return network.nowNanos() / 1000;
+    }
+
+    @Override
+    public void close() {
+        network.unbind(this);
+    }
+}
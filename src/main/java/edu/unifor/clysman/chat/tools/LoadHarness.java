@@ -0,0 +1,450 @@
+package edu.unifor.clysman.chat.tools;
+
+import edu.unifor.clysman.chat.model.Message;
+import edu.unifor.clysman.chat.model.PeerInfo;
+import edu.unifor.clysman.chat.net.*;
+import edu.unifor.clysman.chat.util.Json;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.DataFormatException;
+
+/**
+ * Teste de carga sem interface: N {@link PeerNode}s em 127.0.0.1, num só
+ * processo ou divididos entre vários, ligados numa topologia e recebendo
+ * CHAT a uma taxa fixa por {@code broadcastChat}. Mede latência ponta a ponta
+ * (histograma HDR), vazão, duplicatas e quantos nós receberam cada mensagem,
+ * e acrescenta o relatório como uma linha JSON em {@code --out}.
+ *
+ * A carga é em laço aberto: cada mensagem leva no texto o instante em que
+ * deveria ter sido enviada, então atrasos do próprio gerador entram na
+ * latência em vez de sumirem.
+ *
+ * Uso: java -cp p2pchat.jar edu.unifor.clysman.chat.tools.LoadHarness
+ *      [--nodes 16] [--topology RING|RANDOM|MESH] [--degree 4] [--rate 200]
+ *      [--seconds 10] [--warmup 2] [--size 128] [--senders 0] [--procs 1]
+ *      [--mode FLOOD|PLUMTREE] [--transport NIO|BLOCKING] [--base-port 30000]
+ *      [--seed 1] [--out load-report.jsonl]
+ */
+public class LoadHarness {
+
+    private static final String TAG = "lt|";
+    private static final long CONNECT_SETTLE_MILLIS = 3000;
+    private static final long DRAIN_MILLIS = 3000;
+
+    static final class Options {
+        int nodes = 16;
+        Topology topology = Topology.RING;
+        int degree = 4;
+        double rate = 200;
+        int seconds = 10;
+        int warmup = 2;
+        int size = 128;
+        int senders = 0; // 0 = todos
+        int procs = 1;
+        BroadcastMode mode = BroadcastMode.FLOOD;
+        TransportMode transport = TransportMode.NIO;
+        int basePort = 30000;
+        long seed = 1;
+        String out = "load-report.jsonl";
+
+        int senderCount() {
+            return senders > 0 ? Math.min(senders, nodes) : nodes;
+        }
+
+        static Options parse(String[] args, List<String> rest) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (!a.startsWith("--") || i + 1 >= args.length) throw new IllegalArgumentException("argumento inválido: " + a);
+                String v = args[++i];
+                switch (a) {
+                    case "--nodes": o.nodes = Integer.parseInt(v); break;
+                    case "--topology": o.topology = Topology.valueOf(v.toUpperCase()); break;
+                    case "--degree": o.degree = Integer.parseInt(v); break;
+                    case "--rate": o.rate = Double.parseDouble(v); break;
+                    case "--seconds": o.seconds = Integer.parseInt(v); break;
+                    case "--warmup": o.warmup = Integer.parseInt(v); break;
+                    case "--size": o.size = Integer.parseInt(v); break;
+                    case "--senders": o.senders = Integer.parseInt(v); break;
+                    case "--procs": o.procs = Integer.parseInt(v); break;
+                    case "--mode": o.mode = BroadcastMode.valueOf(v.toUpperCase()); break;
+                    case "--transport": o.transport = TransportMode.valueOf(v.toUpperCase()); break;
+                    case "--base-port": o.basePort = Integer.parseInt(v); break;
+                    case "--seed": o.seed = Long.parseLong(v); break;
+                    case "--out": o.out = v; break;
+                    default:
+                        // opções internas (--child, --start) ficam para quem chamou
+                        rest.add(a);
+                        rest.add(v);
+                }
+            }
+            if (o.nodes < 2) throw new IllegalArgumentException("--nodes deve ser >= 2");
+            if (o.rate <= 0) throw new IllegalArgumentException("--rate deve ser > 0");
+            if (o.procs < 1 || o.procs > o.nodes) throw new IllegalArgumentException("--procs deve estar entre 1 e --nodes");
+            return o;
+        }
+    }
+
+    /** O que cada processo mede; serializado em JSON quando há vários processos. */
+    static final class ProcessResult {
+        long sent;
+        Map<String, Integer> received = new HashMap<>();
+        String histogram;
+        long duplicates;
+        long pushed;
+        long lateSends;
+        List<String> errors = new ArrayList<>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> internal = new ArrayList<>();
+        Options o = Options.parse(args, internal);
+        Map<String, String> extra = new HashMap<>();
+        for (int i = 0; i + 1 < internal.size(); i += 2) extra.put(internal.get(i), internal.get(i + 1));
+
+        if (extra.containsKey("--child")) {
+            int child = Integer.parseInt(extra.get("--child"));
+            ProcessResult r = runNodes(o, nodesOf(o, child), Long.parseLong(extra.get("--start")));
+            System.out.println("RESULT " + Json.get().toJson(r));
+            System.exit(0);
+        }
+
+        long start = System.currentTimeMillis() + (o.procs > 1 ? 3000 : 200);
+        List<ProcessResult> results = new ArrayList<>();
+        if (o.procs == 1) {
+            results.add(runNodes(o, nodesOf(o, 0), start));
+        } else {
+            results.addAll(runChildren(args, o, start));
+        }
+        Report report = Report.of(o, results);
+        System.out.println(report.text());
+        try (Writer w = Files.newBufferedWriter(Paths.get(o.out), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            w.write(Json.get().toJson(report));
+            w.write('\n');
+        }
+        System.out.println("Relatório acrescentado em " + o.out);
+        System.exit(0);
+    }
+
+    private static List<Integer> nodesOf(Options o, int proc) {
+        List<Integer> mine = new ArrayList<>();
+        for (int i = proc; i < o.nodes; i += o.procs) mine.add(i);
+        return mine;
+    }
+
+    private static List<ProcessResult> runChildren(String[] args, Options o, long start) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> procs = new ArrayList<>();
+        for (int k = 0; k < o.procs; k++) {
+            List<String> cmd = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                    LoadHarness.class.getName()));
+            cmd.addAll(Arrays.asList(args));
+            cmd.addAll(Arrays.asList("--child", String.valueOf(k), "--start", String.valueOf(start)));
+            procs.add(new ProcessBuilder(cmd).redirectErrorStream(true).start());
+        }
+        List<ProcessResult> results = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> readers = new ArrayList<>();
+        for (int k = 0; k < procs.size(); k++) {
+            Process p = procs.get(k);
+            String prefix = "[" + k + "] ";
+            Thread t = new Thread(() -> {
+                try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        if (line.startsWith("RESULT ")) results.add(Json.get().fromJson(line.substring(7), ProcessResult.class));
+                        else System.out.println(prefix + line);
+                    }
+                } catch (IOException e) {
+                    System.out.println(prefix + "falha lendo saída: " + e.getMessage());
+                }
+            }, "load-child-" + k);
+            t.start();
+            readers.add(t);
+        }
+        for (Process p : procs) p.waitFor();
+        for (Thread t : readers) t.join();
+        if (results.size() != o.procs) throw new IllegalStateException("só " + results.size() + " de " + o.procs + " processos terminaram");
+        return results;
+    }
+
+    /** Sobe os nós {@code mine}, monta os enlaces deles, gera a carga e mede. */
+    private static ProcessResult runNodes(Options o, List<Integer> mine, long start) throws Exception {
+        ProcessResult result = new ProcessResult();
+        ConcurrentHistogram latency = new ConcurrentHistogram(3_600_000_000L, 3); // µs, até 1 h
+        Map<String, Integer> received = new ConcurrentHashMap<>();
+        NodeConfig cfg = new NodeConfig()
+                .setDiscovery(false)
+                .setPeerShareConnect(false)
+                .setMinDegree(0)
+                .setMaxDegree(o.nodes) // a topologia pedida manda, inclusive MESH
+                .setBroadcastMode(o.mode)
+                .setTransportMode(o.transport);
+
+        Map<Integer, PeerNode> nodes = new LinkedHashMap<>();
+        try {
+            for (int i : mine) {
+                PeerNode node = new PeerNode("n" + i, o.basePort + i, cfg);
+                String self = node.getMyId();
+                node.setUiCallbacks(new PeerNode.UiCallbacks() {
+                    @Override public void onStatus(String msg) {}
+                    @Override public void onPeerConnected(PeerInfo peer) {}
+                    @Override public void onPeerDisconnected(PeerInfo peer) {}
+                    @Override public void onPeerDiscovered(String host, int port, String name, String id) {}
+                    @Override public void onPeerSlow(PeerInfo peer, SlowConsumerPolicy policy) {}
+                    @Override
+                    public void onMessageReceived(Message m) {
+                        if (self.equals(m.getFromId()) || m.getText() == null || !m.getText().startsWith(TAG)) return;
+                        int a = TAG.length();
+                        int b = m.getText().indexOf('|', a);
+                        int c = m.getText().indexOf('|', b + 1);
+                        String key = m.getText().substring(a, b);
+                        if (key.charAt(0) != 'm') return; // aquecimento
+                        long sentAt = Long.parseLong(m.getText().substring(b + 1, c));
+                        latency.recordValue(Math.max(0, nowMicros() - sentAt));
+                        received.merge(key, 1, Integer::sum);
+                    }
+                });
+                node.start();
+                if (node.getListenPort() != o.basePort + i) {
+                    result.errors.add("n" + i + " escutando em " + node.getListenPort() + " (porta " + (o.basePort + i) + " ocupada)");
+                }
+                nodes.put(i, node);
+            }
+
+            // todos os processos já escutam em start: só então discam
+            sleepUntil(start);
+            int[] expectedDegree = new int[o.nodes];
+            for (int[] link : o.topology.links(o.nodes, o.degree, o.seed)) {
+                expectedDegree[link[0]]++;
+                expectedDegree[link[1]]++;
+                PeerNode dialer = nodes.get(link[0]);
+                if (dialer != null) dialer.connectAsync("127.0.0.1", o.basePort + link[1]);
+            }
+            long connectDeadline = start + CONNECT_SETTLE_MILLIS;
+            while (System.currentTimeMillis() < connectDeadline && !allConnected(nodes, expectedDegree)) Thread.sleep(20);
+            for (Map.Entry<Integer, PeerNode> e : nodes.entrySet()) {
+                int have = e.getValue().getConnectedPeerCount();
+                if (have < expectedDegree[e.getKey()]) {
+                    result.errors.add("n" + e.getKey() + " com " + have + " de " + expectedDegree[e.getKey()] + " vizinhos");
+                }
+            }
+            sleepUntil(connectDeadline);
+
+            List<PeerNode> senders = new ArrayList<>();
+            for (Map.Entry<Integer, PeerNode> e : nodes.entrySet()) {
+                if (e.getKey() < o.senderCount()) senders.add(e.getValue());
+            }
+            long warmupEnd = connectDeadline + o.warmup * 1000L;
+            long[] before = null;
+            if (!senders.isEmpty()) {
+                double localRate = o.rate * senders.size() / o.senderCount();
+                drive(o, senders, localRate, connectDeadline, warmupEnd, "w", null);
+                before = broadcastTotals(nodes.values());
+                drive(o, senders, localRate, warmupEnd, warmupEnd + o.seconds * 1000L, "m", result);
+            } else {
+                sleepUntil(warmupEnd);
+                before = broadcastTotals(nodes.values());
+                sleepUntil(warmupEnd + o.seconds * 1000L);
+            }
+            Thread.sleep(DRAIN_MILLIS);
+
+            long[] after = broadcastTotals(nodes.values());
+            result.pushed = after[0] - before[0];
+            result.duplicates = after[1] - before[1];
+            result.received = new HashMap<>(received);
+            result.histogram = encode(latency);
+        } finally {
+            for (PeerNode n : nodes.values()) n.shutdown();
+        }
+        return result;
+    }
+
+    /** Envia a {@code rate} msg/s entre {@code from} e {@code to} (epoch ms), alternando remetentes. */
+    private static void drive(Options o, List<PeerNode> senders, double rate, long from, long to,
+                              String prefix, ProcessResult result) {
+        long intervalNanos = (long) (1_000_000_000L / rate);
+        long baseWallMicros = from * 1000L;
+        sleepUntil(from);
+        long baseNanos = System.nanoTime();
+        long durationNanos = (to - from) * 1_000_000L;
+        String pad = pad(o.size);
+        for (long k = 0; ; k++) {
+            long offset = k * intervalNanos;
+            if (offset >= durationNanos) break;
+            long wait = baseNanos + offset - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            else if (result != null && -wait > intervalNanos) result.lateSends++;
+            PeerNode sender = senders.get((int) (k % senders.size()));
+            String key = prefix + sender.getMyName().substring(1) + "-" + k;
+            sender.broadcastChat(TAG + key + "|" + (baseWallMicros + offset / 1000) + "|" + pad);
+            if (result != null) result.sent++;
+        }
+    }
+
+    private static boolean allConnected(Map<Integer, PeerNode> nodes, int[] expectedDegree) {
+        for (Map.Entry<Integer, PeerNode> e : nodes.entrySet()) {
+            if (e.getValue().getConnectedPeerCount() < expectedDegree[e.getKey()]) return false;
+        }
+        return true;
+    }
+
+    private static long[] broadcastTotals(Collection<PeerNode> nodes) {
+        long pushed = 0, dup = 0;
+        for (PeerNode n : nodes) {
+            BroadcastStats s = n.getBroadcastStats();
+            pushed += s.getMessagesPushed();
+            dup += s.getDuplicatesReceived();
+        }
+        return new long[]{pushed, dup};
+    }
+
+    private static String pad(int size) {
+        char[] c = new char[Math.max(0, size)];
+        Arrays.fill(c, 'x');
+        return new String(c);
+    }
+
+    private static long nowMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000L + now.getNano() / 1000;
+    }
+
+    private static void sleepUntil(long epochMillis) {
+        long ms;
+        while ((ms = epochMillis - System.currentTimeMillis()) > 0) {
+            try {
+                Thread.sleep(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static String encode(Histogram h) {
+        ByteBuffer b = ByteBuffer.allocate(h.getNeededByteBufferCapacity());
+        int len = h.encodeIntoCompressedByteBuffer(b);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(b.array(), len));
+    }
+
+    static Histogram decode(String s) {
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(s)), 0);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("histograma corrompido", e);
+        }
+    }
+
+    /** Resultado consolidado; cada execução vira uma linha JSON para acompanhar ao longo do tempo. */
+    static final class Report {
+        String at;
+        String java;
+        int nodes;
+        String topology;
+        int links;
+        String mode;
+        String transport;
+        double rate;
+        int seconds;
+        int size;
+        int senders;
+        int procs;
+
+        long sent;
+        long deliveries;
+        long expectedDeliveries;
+        /** Fração das entregas esperadas (cada mensagem para os outros N-1 nós). */
+        double completeness;
+        double minCompleteness;
+        /** Fração das mensagens que chegaram a todos os nós. */
+        double fullyDelivered;
+        double sentPerSecond;
+        double deliveriesPerSecond;
+        long duplicates;
+        /** Cópias repetidas recebidas por entrega útil. */
+        double duplicateRatio;
+        double pushesPerMessage;
+        long lateSends;
+        double p50Millis, p90Millis, p99Millis, p999Millis, maxMillis;
+        List<String> errors = new ArrayList<>();
+
+        static Report of(Options o, List<ProcessResult> results) {
+            Report r = new Report();
+            r.at = Instant.now().toString();
+            r.java = System.getProperty("java.version");
+            r.nodes = o.nodes;
+            r.topology = o.topology.name();
+            r.links = o.topology.links(o.nodes, o.degree, o.seed).size();
+            r.mode = o.mode.name();
+            r.transport = o.transport.name();
+            r.rate = o.rate;
+            r.seconds = o.seconds;
+            r.size = o.size;
+            r.senders = o.senderCount();
+            r.procs = o.procs;
+
+            Histogram latency = new Histogram(3_600_000_000L, 3);
+            Map<String, Integer> received = new HashMap<>();
+            long pushed = 0;
+            for (ProcessResult p : results) {
+                r.sent += p.sent;
+                r.duplicates += p.duplicates;
+                r.lateSends += p.lateSends;
+                pushed += p.pushed;
+                r.errors.addAll(p.errors);
+                latency.add(decode(p.histogram));
+                for (Map.Entry<String, Integer> e : p.received.entrySet()) received.merge(e.getKey(), e.getValue(), Integer::sum);
+            }
+            int others = o.nodes - 1;
+            long full = 0;
+            int min = r.sent > received.size() ? 0 : others;
+            for (int c : received.values()) {
+                r.deliveries += c;
+                if (c >= others) full++;
+                min = Math.min(min, c);
+            }
+            r.expectedDeliveries = r.sent * others;
+            r.completeness = ratio(r.deliveries, r.expectedDeliveries);
+            r.minCompleteness = r.sent == 0 ? 0 : (double) min / others;
+            r.fullyDelivered = ratio(full, r.sent);
+            r.sentPerSecond = (double) r.sent / o.seconds;
+            r.deliveriesPerSecond = (double) r.deliveries / o.seconds;
+            r.duplicateRatio = ratio(r.duplicates, r.deliveries);
+            r.pushesPerMessage = ratio(pushed, r.sent);
+            r.p50Millis = latency.getValueAtPercentile(50) / 1000.0;
+            r.p90Millis = latency.getValueAtPercentile(90) / 1000.0;
+            r.p99Millis = latency.getValueAtPercentile(99) / 1000.0;
+            r.p999Millis = latency.getValueAtPercentile(99.9) / 1000.0;
+            r.maxMillis = latency.getMaxValue() / 1000.0;
+            return r;
+        }
+
+        private static double ratio(long a, long b) {
+            return b == 0 ? 0 : (double) a / b;
+        }
+
+        String text() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d nós, %s (%d enlaces), %s/%s, %.0f msg/s por %ds, %d B, %d remetentes, %d processo(s)%n",
+                    nodes, topology, links, mode, transport, rate, seconds, size, senders, procs));
+            sb.append(String.format("enviadas:      %d (%.1f msg/s, %d atrasadas no gerador)%n", sent, sentPerSecond, lateSends));
+            sb.append(String.format("entregas:      %d de %d (%.2f%%), %.1f/s%n", deliveries, expectedDeliveries, completeness * 100, deliveriesPerSecond));
+            sb.append(String.format("completas:     %.2f%% das mensagens chegaram a todos; pior mensagem %.2f%%%n", fullyDelivered * 100, minCompleteness * 100));
+            sb.append(String.format("duplicatas:    %d (%.3f por entrega), %.1f envios por mensagem%n", duplicates, duplicateRatio, pushesPerMessage));
+            sb.append(String.format("latência (ms): p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  máx %.2f",
+                    p50Millis, p90Millis, p99Millis, p999Millis, maxMillis));
+            for (String e : errors) sb.append(String.format("%naviso: %s", e));
+            return sb.toString();
+        }
+    }
+}
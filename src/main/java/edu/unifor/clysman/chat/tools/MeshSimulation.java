@@ -0,0 +1,219 @@
+package edu.unifor.clysman.chat.tools;
+
+import edu.unifor.clysman.chat.model.Message;
+import edu.unifor.clysman.chat.model.PeerInfo;
+import edu.unifor.clysman.chat.model.TraceHop;
+import edu.unifor.clysman.chat.net.*;
+import edu.unifor.clysman.chat.sim.LinkProfile;
+import edu.unifor.clysman.chat.sim.SimNetwork;
+import edu.unifor.clysman.chat.sim.SimStats;
+import edu.unifor.clysman.chat.util.Json;
+import org.HdrHistogram.Histogram;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Cenário de broadcast sobre a rede simulada ({@link SimNetwork}): milhares
+ * de nós numa thread, com relógio virtual, latência, banda, perda e partição
+ * configuráveis. Mesma semente, mesmo resultado — serve para comparar
+ * mudanças de protocolo sem o ruído de sockets reais.
+ *
+ * Uso: java -cp p2pchat.jar edu.unifor.clysman.chat.tools.MeshSimulation
+ *      [--nodes 1000] [--topology RANDOM] [--degree 6] [--messages 200]
+ *      [--interval 5] [--size 128] [--mode FLOOD|PLUMTREE] [--latency 20]
+ *      [--jitter 5] [--bandwidth 0] [--loss 0] [--partition-at -1]
+ *      [--heal-at -1] [--anti-entropy false] [--trace-rate 0] [--heartbeat 0] [--seed 1] [--out sim-report.jsonl]
+ */
+public class MeshSimulation {
+
+    private static final String TAG = "sim|";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> a = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("argumento inválido: " + args[i]);
+            a.put(args[i].substring(2), args[i + 1]);
+        }
+        int n = Integer.parseInt(a.getOrDefault("nodes", "1000"));
+        Topology topology = Topology.valueOf(a.getOrDefault("topology", "RANDOM").toUpperCase());
+        int degree = Integer.parseInt(a.getOrDefault("degree", "6"));
+        int messages = Integer.parseInt(a.getOrDefault("messages", "200"));
+        double interval = Double.parseDouble(a.getOrDefault("interval", "5"));
+        int size = Integer.parseInt(a.getOrDefault("size", "128"));
+        BroadcastMode mode = BroadcastMode.valueOf(a.getOrDefault("mode", "FLOOD").toUpperCase());
+        long seed = Long.parseLong(a.getOrDefault("seed", "1"));
+        double partitionAt = Double.parseDouble(a.getOrDefault("partition-at", "-1"));
+        double healAt = Double.parseDouble(a.getOrDefault("heal-at", "-1"));
+        boolean antiEntropy = Boolean.parseBoolean(a.getOrDefault("anti-entropy", "false"));
+        double traceRate = Double.parseDouble(a.getOrDefault("trace-rate", "0"));
+        // desligado por padrão: numa partição o heartbeat derrubaria os enlaces, e aqui ninguém redisca
+        int heartbeat = Integer.parseInt(a.getOrDefault("heartbeat", "0"));
+        String out = a.getOrDefault("out", "sim-report.jsonl");
+        LinkProfile link = new LinkProfile()
+                .setLatencyMillis(Double.parseDouble(a.getOrDefault("latency", "20")))
+                .setJitterMillis(Double.parseDouble(a.getOrDefault("jitter", "5")))
+                .setBandwidthBytesPerSecond(Long.parseLong(a.getOrDefault("bandwidth", "0")))
+                .setLossRate(Double.parseDouble(a.getOrDefault("loss", "0")));
+
+        long wallStart = System.nanoTime();
+        SimNetwork net = new SimNetwork(seed).setLink(link);
+        Histogram latency = new Histogram(3_600_000_000L, 3); // µs virtuais
+        Map<String, Integer> received = new HashMap<>();
+        Histogram traceHops = new Histogram(1_000, 2);
+        Histogram hopLatency = new Histogram(3_600_000_000L, 3); // µs virtuais, por salto
+
+        List<PeerNode> nodes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            NodeConfig cfg = new NodeConfig()
+                    .setBroadcastMode(mode)
+                    .setAntiEntropy(antiEntropy)
+                    .setTraceSampleRate(traceRate)
+                    .setPeerShareConnect(false)
+                    .setHeartbeatIntervalMillis(heartbeat)
+                    .setMinDegree(0)
+                    .setMaxDegree(n);
+            PeerNode node = net.newNode("n" + i, cfg);
+            String self = node.getMyId();
+            node.setUiCallbacks(new PeerNode.UiCallbacks() {
+                @Override public void onStatus(String msg) {}
+                @Override public void onPeerConnected(PeerInfo peer) {}
+                @Override public void onPeerDisconnected(PeerInfo peer) {}
+                @Override public void onPeerDiscovered(String host, int port, String name, String id) {}
+                @Override public void onPeerSlow(PeerInfo peer, SlowConsumerPolicy policy) {}
+                @Override
+                public void onMessageReceived(Message m) {
+                    if (self.equals(m.getFromId()) || m.getText() == null || !m.getText().startsWith(TAG)) return;
+                    int b = m.getText().indexOf('|', TAG.length());
+                    int c = m.getText().indexOf('|', b + 1);
+                    long sentNanos = Long.parseLong(m.getText().substring(b + 1, c));
+                    latency.recordValue(Math.max(0, (net.nowNanos() - sentNanos) / 1000));
+                    received.merge(m.getText().substring(TAG.length(), b), 1, Integer::sum);
+                    List<TraceHop> trace = m.getTrace();
+                    if (trace != null && !trace.isEmpty()) {
+                        traceHops.recordValue(trace.size());
+                        long arrival = net.nowNanos() / 1000;
+                        for (int i = 1; i <= trace.size(); i++) {
+                            long recv = i < trace.size() ? trace.get(i).getRecv() : arrival;
+                            hopLatency.recordValue(Math.max(0, recv - trace.get(i - 1).getFwd()));
+                        }
+                    }
+                }
+            });
+            node.start();
+            nodes.add(node);
+        }
+        List<int[]> links = topology.links(n, degree, seed);
+        for (int[] l : links) net.connect(nodes.get(l[0]), nodes.get(l[1]));
+        int[] expected = new int[n];
+        for (int[] l : links) {
+            expected[l[0]]++;
+            expected[l[1]]++;
+        }
+        boolean connected = net.runUntil(() -> {
+            for (int i = 0; i < n; i++) if (nodes.get(i).getConnectedPeerCount() < expected[i]) return false;
+            return true;
+        }, 10, 30_000);
+        long setupMillis = net.nowMillis();
+
+        if (partitionAt >= 0) {
+            net.at(partitionAt, () -> net.partition(nodes.subList(0, n / 2)));
+            if (healAt >= 0) net.at(healAt, net::heal);
+        }
+        Random pick = new Random(seed);
+        String pad = String.join("", Collections.nCopies(size, "x"));
+        for (int k = 0; k < messages; k++) {
+            PeerNode sender = nodes.get(pick.nextInt(n));
+            String key = "m" + k;
+            net.at(k * interval, () -> sender.broadcastChat(TAG + key + "|" + net.nowNanos() + "|" + pad));
+        }
+        long pushedBefore = 0, dupBefore = 0;
+        for (PeerNode p : nodes) {
+            pushedBefore += p.getBroadcastStats().getMessagesPushed();
+            dupBefore += p.getBroadcastStats().getDuplicatesReceived();
+        }
+        long bytesBefore = net.getStats().getBytes();
+        double settle = Math.max(5_000, healAt + 5_000);
+        net.runFor(messages * interval + settle);
+
+        long pushed = -pushedBefore, dup = -dupBefore;
+        for (PeerNode p : nodes) {
+            pushed += p.getBroadcastStats().getMessagesPushed();
+            dup += p.getBroadcastStats().getDuplicatesReceived();
+        }
+        SimStats stats = net.getStats();
+        double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+        for (PeerNode p : nodes) p.shutdown();
+
+        long deliveries = 0, full = 0;
+        int min = received.size() < messages ? 0 : n - 1;
+        for (int c : received.values()) {
+            deliveries += c;
+            if (c >= n - 1) full++;
+            min = Math.min(min, c);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("at", Instant.now().toString());
+        report.put("nodes", n);
+        report.put("topology", topology.name());
+        report.put("links", links.size());
+        report.put("mode", mode.name());
+        report.put("seed", seed);
+        report.put("latencyMillis", link.getLatencyMillis());
+        report.put("jitterMillis", link.getJitterMillis());
+        report.put("bandwidth", link.getBandwidthBytesPerSecond());
+        report.put("loss", link.getLossRate());
+        report.put("partitionAt", partitionAt);
+        report.put("healAt", healAt);
+        report.put("antiEntropy", antiEntropy);
+        report.put("traceRate", traceRate);
+        report.put("messages", messages);
+        report.put("connected", connected);
+        report.put("setupMillis", setupMillis);
+        report.put("completeness", (double) deliveries / ((long) messages * (n - 1)));
+        report.put("minCompleteness", (double) min / (n - 1));
+        report.put("fullyDelivered", (double) full / messages);
+        report.put("duplicatesPerDelivery", deliveries == 0 ? 0 : (double) dup / deliveries);
+        report.put("pushesPerMessage", (double) pushed / messages);
+        report.put("bytesPerMessage", (double) (stats.getBytes() - bytesBefore) / messages);
+        report.put("p50Millis", latency.getValueAtPercentile(50) / 1000.0);
+        report.put("p99Millis", latency.getValueAtPercentile(99) / 1000.0);
+        report.put("maxMillis", latency.getMaxValue() / 1000.0);
+        if (traceHops.getTotalCount() > 0) {
+            report.put("tracedDeliveries", traceHops.getTotalCount());
+            report.put("traceHopsMean", traceHops.getMean());
+            report.put("traceHopsMax", traceHops.getMaxValue());
+            report.put("hopP50Millis", hopLatency.getValueAtPercentile(50) / 1000.0);
+            report.put("hopP99Millis", hopLatency.getValueAtPercentile(99) / 1000.0);
+        }
+        report.put("events", stats.getEvents());
+        report.put("wallSeconds", wallSeconds);
+        report.put("taskFailures", stats.getTaskFailures());
+
+        System.out.printf("%d nós, %s (%d enlaces), %s, semente %d, %s%n", n, topology, links.size(), mode, seed,
+                connected ? "topologia completa em " + setupMillis + " ms" : "TOPOLOGIA INCOMPLETA");
+        System.out.printf("completude %.4f (pior mensagem %.4f, %.2f%% completas), %.3f duplicatas/entrega, %.1f envios/msg%n",
+                report.get("completeness"), report.get("minCompleteness"), 100 * (double) report.get("fullyDelivered"),
+                report.get("duplicatesPerDelivery"), report.get("pushesPerMessage"));
+        System.out.printf("latência virtual (ms): p50 %.2f  p99 %.2f  máx %.2f%n",
+                report.get("p50Millis"), report.get("p99Millis"), report.get("maxMillis"));
+        if (traceHops.getTotalCount() > 0) {
+            System.out.printf("rastreio: %d entregas, %.2f saltos em média (máx %d), salto p50 %.2f ms  p99 %.2f ms%n",
+                    traceHops.getTotalCount(), traceHops.getMean(), traceHops.getMaxValue(),
+                    report.get("hopP50Millis"), report.get("hopP99Millis"));
+        }
+        System.out.printf("%s%n%.2f s de relógio real (%.0f eventos/s)%n", stats, wallSeconds, stats.getEvents() / wallSeconds);
+
+        try (Writer w = Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            w.write(Json.get().toJson(report));
+            w.write('\n');
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package edu.unifor.clysman.chat.tools;
+
+import edu.unifor.clysman.chat.model.Message;
+import edu.unifor.clysman.chat.net.NodeConfig;
+import edu.unifor.clysman.chat.net.PeerNode;
+import edu.unifor.clysman.chat.net.ThreadMode;
+import edu.unifor.clysman.chat.net.TransportMode;
+import edu.unifor.clysman.chat.util.Json;
+import edu.unifor.clysman.chat.util.Threads;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compara threads e memória de um nó com N vizinhos em cada combinação de
+ * transporte e ThreadMode. Cada cenário roda num processo separado para que a
+ * medição de memória de um não contamine o outro.
+ *
+ * Uso: java -cp p2pchat.jar edu.unifor.clysman.chat.tools.ThreadModeReport [conexoes]
+ */
+public class ThreadModeReport {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            runChild(TransportMode.valueOf(args[1]), ThreadMode.valueOf(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+
+        System.out.println("JDK " + System.getProperty("java.version")
+                + " | virtual threads: " + (Threads.virtualThreadsSupported() ? "sim" : "não") + " | conexões: " + connections);
+        System.out.printf("%-10s %-9s %11s %14s %14s %12s %10s%n",
+                "transporte", "threads", "conectados", "threads (SO)", "pico threads", "heap (MB)", "RSS (MB)");
+        String[][] scenarios = {
+                {"BLOCKING", "PLATFORM"}, {"BLOCKING", "VIRTUAL"}, {"NIO", "PLATFORM"}, {"NIO", "VIRTUAL"}
+        };
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        for (String[] sc : scenarios) {
+            Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    ThreadModeReport.class.getName(), "--child", sc[0], sc[1], String.valueOf(connections))
+                    .redirectErrorStream(true).start();
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = r.readLine()) != null) System.out.println(line);
+            }
+            p.waitFor();
+        }
+    }
+
+    private static void runChild(TransportMode transport, ThreadMode threads, int connections) throws Exception {
+        PeerNode hub = new PeerNode("hub", 20000, new NodeConfig()
+                .setTransportMode(transport)
+                .setThreadMode(threads)
+                // o hub aceita todos os clientes e não disca para ninguém
+                .setMinDegree(0)
+                .setMaxDegree(connections));
+        hub.start();
+
+        List<Socket> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                Socket s = new Socket("127.0.0.1", hub.getListenPort());
+                Message hello = Message.hello(UUID.randomUUID().toString(), "client-" + i, 0, Collections.emptyList());
+                OutputStream out = s.getOutputStream();
+                out.write((Json.get().toJson(hello) + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                clients.add(s);
+            }
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (hub.getConnectedPeerCount() < connections && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            System.gc();
+            Thread.sleep(200);
+            int live = ManagementFactory.getThreadMXBean().getThreadCount();
+            int peak = ManagementFactory.getThreadMXBean().getPeakThreadCount();
+            long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            System.out.printf("%-10s %-9s %11d %14d %14d %12.1f %10s%n",
+                    transport, threads, hub.getConnectedPeerCount(), live, peak, heap / (1024.0 * 1024.0), rssMb());
+        } finally {
+            for (Socket s : clients) {
+                try { s.close(); } catch (IOException ignored) {}
+            }
+            hub.shutdown();
+        }
+    }
+
+    private static String rssMb() {
+        try {
+            for (String l : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (l.startsWith("VmRSS:")) {
+                    long kb = Long.parseLong(l.replaceAll("\\D+", ""));
+                    return String.format("%.1f", kb / 1024.0);
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {}
+        return "n/d";
+    }
+}
@@ -0,0 +1,66 @@
+package edu.unifor.clysman.chat.tools;
+
+import java.util.*;
+
+/**
+ * Formas de ligar N nós no teste de carga. Os enlaces são determinísticos
+ * para uma semente, então processos diferentes chegam à mesma topologia sem
+ * combinar nada além dos parâmetros.
+ */
+public enum Topology {
+    /** Cada nó ligado ao seguinte; diâmetro N/2. */
+    RING,
+    /** Anel mais enlaces sorteados até cada nó ter cerca de {@code degree} vizinhos. */
+    RANDOM,
+    /** Todos com todos. */
+    MESH;
+
+    /**
+     * Enlaces {@code {a, b}} com {@code a > b}: o nó {@code a} disca para {@code b}.
+     */
+    List<int[]> links(int n, int degree, long seed) {
+        Set<Long> seen = new LinkedHashSet<>();
+        switch (this) {
+            case MESH:
+                for (int a = 1; a < n; a++) {
+                    for (int b = 0; b < a; b++) seen.add(key(a, b));
+                }
+                break;
+            case RING:
+                ring(n, seen);
+                break;
+            case RANDOM:
+                ring(n, seen);
+                int target = Math.min(degree, n - 1);
+                int[] deg = new int[n];
+                for (long k : seen) {
+                    deg[(int) (k >>> 32)]++;
+                    deg[(int) k]++;
+                }
+                Random r = new Random(seed);
+                for (int a = 0; a < n; a++) {
+                    for (int tries = 0; deg[a] < target && tries < 50 * n; tries++) {
+                        int b = r.nextInt(n);
+                        if (b == a || deg[b] >= target) continue;
+                        if (seen.add(key(a, b))) {
+                            deg[a]++;
+                            deg[b]++;
+                        }
+                    }
+                }
+                break;
+        }
+        List<int[]> out = new ArrayList<>(seen.size());
+        for (long k : seen) out.add(new int[]{(int) (k >>> 32), (int) k});
+        return out;
+    }
+
+    private static void ring(int n, Set<Long> seen) {
+        if (n < 2) return;
+        for (int i = 0; i < n; i++) seen.add(key(i, (i + 1) % n));
+    }
+
+    private static long key(int a, int b) {
+        return ((long) Math.max(a, b) << 32) | Math.min(a, b);
+    }
+}
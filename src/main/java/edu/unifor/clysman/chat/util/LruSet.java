@@ -22,4 +22,9 @@ public class LruSet<T> {
         map.put(value, Boolean.TRUE);
         return !exists;
     }
+
+    /** Não conta como acesso: a ordem de despejo não muda. */
+    public synchronized boolean contains(T value) {
+        return map.containsKey(value);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package edu.unifor.clysman.chat.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deduplicação exata por (origem, número de sequência). Para cada origem
+ * guarda uma marca d'água (tudo até ela já foi visto) e um bitmap dos números
+ * que chegaram fora de ordem logo acima dela. A memória cresce com o número de
+ * origens ativas, não com o volume de mensagens.
+ *
+ * Cada origem tem seu próprio monitor, então só mensagens da mesma origem
+ * disputam o mesmo lock.
+ */
+public class SequenceDedup {
+
+    /** Quantos números acima da marca d'água podem chegar fora de ordem. */
+    public static final int WINDOW = 1024;
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final int maxOrigins;
+    // relógio lógico de uso: ordem estável, sem depender do relógio real (simulação reproduzível)
+    private final AtomicLong ticks = new AtomicLong();
+
+    public SequenceDedup(int maxOrigins) {
+        this.maxOrigins = maxOrigins;
+    }
+
+    /** Registra {@code seq} de {@code origin}; retorna false se já tinha sido visto. */
+    public boolean add(String origin, long seq) {
+        Window w = windows.get(origin);
+        if (w == null) {
+            if (windows.size() >= maxOrigins) evictIdlest();
+            w = windows.computeIfAbsent(origin, k -> new Window());
+        }
+        w.lastTouched = ticks.incrementAndGet();
+        return w.add(seq);
+    }
+
+    /** Maior número contíguo já visto de cada origem. */
+    public long watermark(String origin) {
+        Window w = windows.get(origin);
+        return w != null ? w.watermark() : 0;
+    }
+
+    /** Marcas d'água das {@code max} origens usadas mais recentemente. */
+    public Map<String, Long> watermarks(int max) {
+        List<Map.Entry<String, Window>> all = new ArrayList<>(windows.entrySet());
+        all.sort((a, b) -> Long.compare(b.getValue().lastTouched, a.getValue().lastTouched));
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (int i = 0; i < all.size() && i < max; i++) out.put(all.get(i).getKey(), all.get(i).getValue().watermark());
+        return out;
+    }
+
+    public int origins() {
+        return windows.size();
+    }
+
+    private void evictIdlest() {
+        String idlest = null;
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<String, Window> e : windows.entrySet()) {
+            long t = e.getValue().lastTouched;
+            if (t < oldest) {
+                oldest = t;
+                idlest = e.getKey();
+            }
+        }
+        if (idlest != null) windows.remove(idlest);
+    }
+
+    private static final class Window {
+        private long base;                                  // todos os seq <= base já vistos
+        private final long[] bits = new long[WINDOW / 64];  // bit i => base + 1 + i visto
+        private int offset;                                 // rotação do bitmap circular
+        volatile long lastTouched;
+
+        synchronized boolean add(long seq) {
+            if (seq <= base) return false;
+            long dist = seq - base - 1;
+            if (dist >= WINDOW) {
+                // muito à frente: desliza a janela; o que ficar para trás conta como visto
+                slide(dist - WINDOW + 1);
+                dist = seq - base - 1;
+            }
+            int idx = (int) ((offset + dist) % WINDOW);
+            long mask = 1L << (idx & 63);
+            if ((bits[idx >>> 6] & mask) != 0) return false;
+            bits[idx >>> 6] |= mask;
+            // avança a marca d'água enquanto o próximo número já estiver presente
+            while (isSet(offset)) {
+                clear(offset);
+                offset = (offset + 1) % WINDOW;
+                base++;
+            }
+            return true;
+        }
+
+        private void slide(long n) {
+            if (n >= WINDOW) {
+                Arrays.fill(bits, 0);
+                offset = 0;
+                base += n;
+                return;
+            }
+            for (long i = 0; i < n; i++) {
+                clear(offset);
+                offset = (offset + 1) % WINDOW;
+                base++;
+            }
+        }
+
+        private boolean isSet(int idx) {
+            return (bits[idx >>> 6] & (1L << (idx & 63))) != 0;
+        }
+
+        private void clear(int idx) {
+            bits[idx >>> 6] &= ~(1L << (idx & 63));
+        }
+
+        synchronized long watermark() {
+            return base;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package edu.unifor.clysman.chat.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fábricas de threads para os dois modos de execução. Virtual threads são
+ * obtidas por reflexão para que o código continue compilando com release 11;
+ * se o JDK em execução não as suportar, usa threads de plataforma daemon.
+ * Os métodos do builder são procurados nas interfaces públicas
+ * ({@code Thread.Builder}, {@code Thread.Builder.OfVirtual}): a classe
+ * concreta devolvida por {@code Thread.ofVirtual()} não é pública e não
+ * pode ser chamada por reflexão.
+ */
+public final class Threads {
+
+    private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+    private static final Method NAME = lookup(type("java.lang.Thread$Builder$OfVirtual"), "name", String.class, long.class);
+    private static final Method FACTORY = lookup(type("java.lang.Thread$Builder"), "factory");
+    private static final Method PER_TASK = lookup(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+    // só vale se uma fábrica de verdade puder ser criada neste JDK
+    private static final boolean VIRTUAL_SUPPORTED = PER_TASK != null && newVirtualFactory("probe-") != null;
+
+    private Threads() {}
+
+    public static boolean virtualThreadsSupported() {
+        return VIRTUAL_SUPPORTED;
+    }
+
+    public static ThreadFactory platformFactory(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** Fábrica de virtual threads nomeadas {@code prefix0, prefix1, ...}; null se não suportado. */
+    public static ThreadFactory virtualFactory(String prefix) {
+        return VIRTUAL_SUPPORTED ? newVirtualFactory(prefix) : null;
+    }
+
+    private static ThreadFactory newVirtualFactory(String prefix) {
+        if (OF_VIRTUAL == null || NAME == null || FACTORY == null) return null;
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public static ThreadFactory factory(boolean virtual, String prefix) {
+        ThreadFactory f = virtual ? virtualFactory(prefix) : null;
+        return f != null ? f : platformFactory(prefix);
+    }
+
+    /**
+     * Executor para tarefas bloqueantes: uma virtual thread por tarefa, ou o
+     * cached pool de plataforma de sempre.
+     */
+    public static ExecutorService ioExecutor(boolean virtual, String prefix) {
+        ThreadFactory vf = virtual ? virtualFactory(prefix) : null;
+        if (vf != null) {
+            try {
+                return (ExecutorService) PER_TASK.invoke(null, vf);
+            } catch (ReflectiveOperationException | RuntimeException ignored) {}
+        }
+        return Executors.newCachedThreadPool(platformFactory(prefix));
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method lookup(Class<?> owner, String name, Class<?>... params) {
+        if (owner == null) return null;
+        try {
+            return owner.getMethod(name, params);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}